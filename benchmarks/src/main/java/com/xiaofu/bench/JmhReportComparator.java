@@ -0,0 +1,134 @@
+package com.xiaofu.bench;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 对比两次 JMH 运行的 JSON 结果，找出性能回退
+ *
+ * 用法：
+ * <pre>
+ * mvn -B package -pl benchmarks -am -DskipTests
+ * java -jar benchmarks/target/benchmarks.jar -rf json -rff base.json      # 在基线提交上
+ * java -jar benchmarks/target/benchmarks.jar -rf json -rff current.json   # 在待合并的提交上
+ * java -cp benchmarks/target/benchmarks.jar com.xiaofu.bench.JmhReportComparator base.json current.json 10
+ * </pre>
+ * 同一个基准（含 @Param 组合）变差超过阈值百分比、且差值超出两次结果误差之和时判为回退，进程以 1 退出，
+ * 可以直接放进 CI。avgt / sample / ss 越小越好，thrpt 越大越好
+ **/
+public final class JmhReportComparator {
+
+    private JmhReportComparator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: JmhReportComparator <baseline.json> <current.json> [thresholdPercent=10]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, Result> baseline = load(args[0]);
+        Map<String, Result> current = load(args[1]);
+        List<String> regressions = compare(baseline, current, threshold, System.out);
+        if (!regressions.isEmpty()) {
+            System.out.printf("%d regression(s) above %.1f%%%n", regressions.size(), threshold);
+            System.exit(1);
+        }
+    }
+
+    static Map<String, Result> load(String file) throws IOException {
+        return parse(new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8));
+    }
+
+    static Map<String, Result> parse(String json) {
+        Map<String, Result> results = new LinkedHashMap<>();
+        JSONArray runs = JSON.parseArray(json);
+        for (int i = 0; i < runs.size(); i++) {
+            JSONObject run = runs.getJSONObject(i);
+            JSONObject metric = run.getJSONObject("primaryMetric");
+            Result result = new Result(run.getString("mode"), metric.getDoubleValue("score"),
+                metric.getDoubleValue("scoreError"), metric.getString("scoreUnit"));
+            results.put(key(run), result);
+        }
+        return results;
+    }
+
+    /**
+     * 基准名加排好序的参数，例如 SelectorBenchmark.select(queues=64,selector=jump)
+     */
+    private static String key(JSONObject run) {
+        String benchmark = run.getString("benchmark");
+        String name = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+        JSONObject params = run.getJSONObject("params");
+        if (params == null || params.isEmpty()) {
+            return name;
+        }
+        return name + new TreeMap<>(params).toString().replace('{', '(').replace('}', ')').replace(", ", ",");
+    }
+
+    /**
+     * 打印对比表，返回回退的基准
+     */
+    static List<String> compare(Map<String, Result> baseline, Map<String, Result> current, double threshold,
+                                PrintStream out) {
+        List<String> regressions = new ArrayList<>();
+        out.printf("%-70s %14s %14s %9s%n", "benchmark", "baseline", "current", "change");
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result now = entry.getValue();
+            Result before = baseline.get(entry.getKey());
+            if (before == null) {
+                out.printf("%-70s %14s %14.3f %9s%n", entry.getKey(), "-", now.score, "new");
+                continue;
+            }
+            // 正数表示变差
+            double worse = now.lowerIsBetter() ? now.score - before.score : before.score - now.score;
+            double percent = before.score == 0 ? 0 : worse / before.score * 100;
+            boolean regressed = percent > threshold && Math.abs(worse) > before.error + now.error;
+            if (regressed) {
+                regressions.add(entry.getKey());
+            }
+            out.printf("%-70s %14.3f %14.3f %+8.1f%%%s %s%n", entry.getKey(), before.score, now.score, percent,
+                regressed ? " REGRESSION" : "", now.unit);
+        }
+        for (String removed : baseline.keySet()) {
+            if (!current.containsKey(removed)) {
+                out.printf("%-70s %14.3f %14s %9s%n", removed, baseline.get(removed).score, "-", "removed");
+            }
+        }
+        return regressions;
+    }
+
+    static final class Result {
+        final String mode;
+        final double score;
+        final double error;
+        final String unit;
+
+        Result(String mode, double score, double error, String unit) {
+            this.mode = mode;
+            this.score = score;
+            // 只跑一轮时 JMH 给出 NaN
+            this.error = Double.isNaN(error) ? 0 : error;
+            this.unit = unit;
+        }
+
+        boolean lowerIsBetter() {
+            return !"thrpt".equals(mode);
+        }
+    }
+}
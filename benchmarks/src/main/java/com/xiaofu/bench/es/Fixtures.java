@@ -0,0 +1,68 @@
+package com.xiaofu.bench.es;
+
+import com.xiaofu.es.entity.Hotel;
+import com.xiaofu.es.entity.Location;
+import com.xiaofu.es.entity.Room;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 基准共用的测试数据
+ *
+ * fixtures/hotel-search-response.json 是一次 hotel 索引查询的响应（500 条命中，带 typed_keys 的聚合，约 300KB），
+ * 更新 Hotel 映射后需要重新录制，否则解析基准测的是旧结构
+ **/
+final class Fixtures {
+
+    static final String SEARCH_RESPONSE = "fixtures/hotel-search-response.json";
+
+    private Fixtures() {
+    }
+
+    static byte[] load(String resource) {
+        try (InputStream in = Fixtures.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("fixture not found: " + resource);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static Hotel sampleHotel() {
+        Hotel hotel = new Hotel();
+        hotel.setId(36934L);
+        hotel.setName("7天连锁酒店(上海宝山路地铁站店)");
+        hotel.setStars(2);
+        hotel.setPrice(336.5);
+        hotel.setDescription("交通便利，\"近地铁\"");
+        hotel.setAddress("静安交通路40号");
+        hotel.setLocation(new Location(31.251433, 121.47522));
+        Room room1 = new Room();
+        room1.setRoomNumber("101");
+        room1.setRoomType("大床房");
+        room1.setBedCount(1);
+        Room room2 = new Room();
+        room2.setRoomNumber("102");
+        room2.setRoomType("双床房");
+        room2.setBedCount(2);
+        hotel.setRooms(Arrays.asList(room1, room2));
+        hotel.setAmenities(Arrays.asList("wifi", "parking"));
+        hotel.setLastUpdated(new Date(1717200000123L));
+        return hotel;
+    }
+}
@@ -0,0 +1,74 @@
+package com.xiaofu.bench.es;
+
+import com.alibaba.fastjson2.JSON;
+import com.xiaofu.es.codec.HotelCodec;
+import com.xiaofu.es.entity.Hotel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description Hotel 文档的 fastjson2 编解码，与 HotelCodec 对照
+ *
+ * fastjson 三条路径分别对应写入（toJSONBytes）、按字节读（parseObject(byte[])）和
+ * 旧代码里先取 String 再解析（parseObject(String)）
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotelJsonBenchmark {
+
+    private Hotel hotel;
+
+    private byte[] json;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        hotel = Fixtures.sampleHotel();
+        json = JSON.toJSONBytes(hotel);
+        text = new String(json, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encodeFastjson() {
+        return JSON.toJSONBytes(hotel);
+    }
+
+    @Benchmark
+    public byte[] encodeCodec() {
+        return HotelCodec.encode(hotel);
+    }
+
+    @Benchmark
+    public Hotel decodeFastjsonBytes() {
+        return JSON.parseObject(json, Hotel.class);
+    }
+
+    @Benchmark
+    public Hotel decodeFastjsonString() {
+        return JSON.parseObject(text, Hotel.class);
+    }
+
+    @Benchmark
+    public Hotel decodeCodec() {
+        return HotelCodec.decode(json);
+    }
+}
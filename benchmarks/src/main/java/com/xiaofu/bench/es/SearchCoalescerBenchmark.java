@@ -0,0 +1,115 @@
+package com.xiaofu.bench.es;
+
+import com.xiaofu.es.SearchCoalescer;
+import com.xiaofu.es.StubEsServer;
+import com.xiaofu.es.constants.HotelConstants;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description SearchCoalescer 的吞吐与尾延迟取舍：32 个线程并发查询，对比直接 client.search 和不同窗口的合并发送
+ *
+ * 进程内的 StubEsServer 模拟 ES：每次 HTTP 往返固定 roundTripMicros，每个查询再加 itemMicros。
+ * 客户端默认每个节点最多 10 个连接，直接发送时并发查询在连接池排队，合并后一次往返处理一批。
+ * Throughput 看吞吐，SampleTime 给出 p99 / p99.9，windowMicros=0 为直接发送：
+ * java -jar benchmarks/target/benchmarks.jar SearchCoalescerBenchmark
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(32)
+@Fork(1)
+public class SearchCoalescerBenchmark {
+
+    @Param({"0", "500", "2000"})
+    private long windowMicros;
+
+    @Param({"1000"})
+    private long roundTripMicros;
+
+    @Param({"20"})
+    private long itemMicros;
+
+    private StubEsServer server;
+
+    private RestHighLevelClient client;
+
+    private SearchCoalescer coalescer;
+
+    private SearchRequest request;
+
+    @Setup
+    public void setUp() throws IOException {
+        String response = StubEsServer.searchResponse(1,
+            StubEsServer.hit("36934", "{\"id\":36934,\"name\":\"7天连锁酒店(上海宝山路地铁站店)\",\"price\":336.0}"));
+        String item = response.replaceFirst("}$", ",\"status\":200}");
+        server = new StubEsServer()
+            .on("/_msearch", (method, path, query, body) -> {
+                int items = count(body) / 2;
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros + items * itemMicros));
+                StringBuilder responses = new StringBuilder("{\"took\":1,\"responses\":[");
+                for (int i = 0; i < items; i++) {
+                    responses.append(i == 0 ? "" : ",").append(item);
+                }
+                return StubEsServer.Response.ok(responses.append("]}").toString());
+            })
+            .on("/_search", (method, path, query, body) -> {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros + itemMicros));
+                return StubEsServer.Response.ok(response);
+            });
+        client = server.newClient();
+        coalescer = new SearchCoalescer(client, SearchCoalescer.Options.builder().windowMicros(windowMicros).build());
+        request = new SearchRequest(HotelConstants.INDEX_NAME)
+            .source(new SearchSourceBuilder().query(SearchSourceBenchmark.boolQuery()).size(10));
+    }
+
+    private static int count(byte[] ndjson) {
+        int lines = 0;
+        for (byte b : ndjson) {
+            if (b == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        coalescer.close();
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public SearchResponse search() throws IOException {
+        if (windowMicros == 0) {
+            return client.search(request, RequestOptions.DEFAULT);
+        }
+        return coalescer.search(request);
+    }
+}
@@ -0,0 +1,108 @@
+package com.xiaofu.bench.es;
+
+import com.alibaba.fastjson2.JSON;
+import com.xiaofu.es.codec.HotelCodec;
+import com.xiaofu.es.entity.Hotel;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.ParseField;
+import org.elasticsearch.common.xcontent.DeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.aggregations.Aggregation;
+import org.elasticsearch.search.aggregations.bucket.terms.ParsedStringTerms;
+import org.elasticsearch.search.aggregations.bucket.terms.StringTerms;
+import org.elasticsearch.search.aggregations.metrics.AvgAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.ParsedAvg;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 解析录制的大 SearchResponse（500 条命中 + 聚合），以及把命中转成 Hotel 的两种方式
+ *
+ * 解析方式与 RestHighLevelClient 收到响应后一致：SearchResponse.fromXContent。
+ * 客户端的默认 NamedXContentRegistry 不对外开放，这里只注册 fixture 里用到的 sterms 和 avg 聚合
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchResponseParseBenchmark {
+
+    private static final NamedXContentRegistry REGISTRY = new NamedXContentRegistry(Arrays.asList(
+        new NamedXContentRegistry.Entry(Aggregation.class, new ParseField(StringTerms.NAME),
+            (parser, name) -> ParsedStringTerms.fromXContent(parser, (String) name)),
+        new NamedXContentRegistry.Entry(Aggregation.class, new ParseField(AvgAggregationBuilder.NAME),
+            (parser, name) -> ParsedAvg.fromXContent(parser, (String) name))));
+
+    private byte[] json;
+
+    private SearchResponse parsed;
+
+    @Setup
+    public void setUp() throws IOException {
+        json = Fixtures.load(Fixtures.SEARCH_RESPONSE);
+        parsed = parse(json);
+        if (parsed.getHits().getHits().length != 500 || parsed.getAggregations().get("by_brand") == null) {
+            throw new IllegalStateException("unexpected fixture content");
+        }
+    }
+
+    static SearchResponse parse(byte[] json) throws IOException {
+        try (XContentParser parser = XContentType.JSON.xContent()
+            .createParser(REGISTRY, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, json)) {
+            return SearchResponse.fromXContent(parser);
+        }
+    }
+
+    @Benchmark
+    public SearchResponse parseResponse() throws IOException {
+        return parse(json);
+    }
+
+    /**
+     * 已解析的响应上逐条 getSourceAsString 再反射解析
+     */
+    @Benchmark
+    public void decodeHitsViaString(Blackhole blackhole) {
+        for (SearchHit hit : parsed.getHits().getHits()) {
+            blackhole.consume(JSON.parseObject(hit.getSourceAsString(), Hotel.class));
+        }
+    }
+
+    @Benchmark
+    public void decodeHitsViaCodec(Blackhole blackhole) {
+        for (SearchHit hit : parsed.getHits().getHits()) {
+            blackhole.consume(HotelCodec.decode(hit));
+        }
+    }
+
+    /**
+     * 从响应字节到 Hotel 列表的完整路径
+     */
+    @Benchmark
+    public void parseAndDecode(Blackhole blackhole) throws IOException {
+        for (SearchHit hit : parse(json).getHits().getHits()) {
+            blackhole.consume(HotelCodec.decode(hit));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.xiaofu.bench.es;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.unit.DistanceUnit;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.fetch.subphase.highlight.HighlightBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 构建酒店查询 DSL 并序列化为请求体的开销
+ *
+ * 查询形状取自 EsQueryDocumentTest / NearbyHotelService：term + range + geo_distance 过滤、全文匹配、
+ * 按价格和 id 排序、品牌聚合和高亮。serialize 与 RestHighLevelClient 发请求前写请求体的方式相同
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchSourceBenchmark {
+
+    private SearchSourceBuilder prebuilt;
+
+    @Setup
+    public void setUp() {
+        prebuilt = searchSource();
+    }
+
+    static BoolQueryBuilder boolQuery() {
+        return QueryBuilders.boolQuery()
+            .must(QueryBuilders.matchQuery("all", "如家"))
+            .filter(QueryBuilders.termQuery("city", "上海"))
+            .filter(QueryBuilders.rangeQuery("price").gte(100).lte(500))
+            .filter(QueryBuilders.geoDistanceQuery("location").point(31.21, 121.5).distance(15, DistanceUnit.KILOMETERS))
+            .should(QueryBuilders.termQuery("isAD", true));
+    }
+
+    static SearchSourceBuilder searchSource() {
+        return new SearchSourceBuilder()
+            .query(boolQuery())
+            .from(20)
+            .size(10)
+            .sort(SortBuilders.fieldSort("price").order(SortOrder.ASC))
+            .sort(SortBuilders.fieldSort("id").order(SortOrder.ASC))
+            .aggregation(AggregationBuilders.terms("by_brand").field("brand").size(20))
+            .aggregation(AggregationBuilders.avg("avg_price").field("price"))
+            .highlighter(new HighlightBuilder().field("name").requireFieldMatch(false));
+    }
+
+    @Benchmark
+    public BoolQueryBuilder buildBoolQuery() {
+        return boolQuery();
+    }
+
+    @Benchmark
+    public SearchSourceBuilder buildSearchSource() {
+        return searchSource();
+    }
+
+    @Benchmark
+    public BytesReference serialize() throws IOException {
+        return XContentHelper.toXContent(prebuilt, XContentType.JSON, false);
+    }
+
+    @Benchmark
+    public BytesReference buildAndSerialize() throws IOException {
+        return XContentHelper.toXContent(searchSource(), XContentType.JSON, false);
+    }
+}
@@ -0,0 +1,156 @@
+package com.xiaofu.bench.mq;
+
+import com.xiaofu.mq.compress.BodyCodec;
+import com.xiaofu.mq.compress.BodyCompressor;
+import com.xiaofu.mq.compress.BodyDecompressor;
+import com.xiaofu.mq.compress.CompressedBody;
+import com.xiaofu.mq.compress.CompressionPolicy;
+import com.xiaofu.mq.compress.DictionaryStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 消息体压缩：批量酒店同步消息（约 10KB）用 LZ4 / zstd，单条小消息用 topic 字典
+ *
+ * 解压一侧与 5.x 消费端一致，从只读 ByteBuffer 读，对照复用缓冲区和每次分配数组两种出参。
+ * setUp 打印各方式压缩后的字节数，配合 -prof gc 看每条消息的分配
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+    private static final String TOPIC = "HotelSyncTopic";
+
+    private final BodyCompressor lz4 = new BodyCompressor(CompressionPolicy.builder().codec(BodyCodec.LZ4).build());
+
+    private final BodyCompressor zstd = new BodyCompressor(CompressionPolicy.builder().build());
+
+    private BodyCompressor zstdWithDictionary;
+
+    private BodyDecompressor decompressor;
+
+    private byte[] batch;
+
+    private byte[] single;
+
+    private CompressedBody lz4Batch;
+
+    private CompressedBody zstdBatch;
+
+    private CompressedBody dictionarySingle;
+
+    private Map<String, String> lz4Properties;
+
+    private Map<String, String> zstdProperties;
+
+    private Map<String, String> dictionaryProperties;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<byte[]> samples = new ArrayList<>();
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < 2000; i++) {
+            String hotel = hotel(i);
+            samples.add(hotel.getBytes(StandardCharsets.UTF_8));
+            if (i < 40) {
+                builder.append(i == 0 ? "" : ",").append(hotel);
+            }
+        }
+        batch = builder.append(']').toString().getBytes(StandardCharsets.UTF_8);
+        single = hotel(123_456).getBytes(StandardCharsets.UTF_8);
+
+        DictionaryStore dictionaries = DictionaryStore.open(Files.createTempDirectory("bench-dict"));
+        dictionaries.train(TOPIC, samples, 16 * 1024);
+        zstdWithDictionary = new BodyCompressor(CompressionPolicy.builder().build(), Collections.emptyMap(),
+            dictionaries);
+        decompressor = new BodyDecompressor(dictionaries);
+
+        lz4Batch = lz4.compress(TOPIC, batch);
+        zstdBatch = zstd.compress(TOPIC, batch);
+        dictionarySingle = zstdWithDictionary.compress(TOPIC, single);
+        lz4Properties = properties(lz4Batch);
+        zstdProperties = properties(zstdBatch);
+        dictionaryProperties = properties(dictionarySingle);
+        CompressedBody plainSingle = new BodyCompressor(CompressionPolicy.builder().threshold(0).build())
+            .compress(TOPIC, single);
+        System.out.printf("%nbatch %d bytes: lz4 %d, zstd %d; single %d bytes: zstd %s, zstd+dictionary %d%n",
+            batch.length, lz4Batch.getBody().length, zstdBatch.getBody().length, single.length,
+            plainSingle == null ? "not smaller" : String.valueOf(plainSingle.getBody().length),
+            dictionarySingle.getBody().length);
+    }
+
+    private static String hotel(int i) {
+        return "{\"id\":" + (36934 + i) + ",\"name\":\"7天连锁酒店(上海" + (i % 17) + "号店)\",\"stars\":" + (i % 5 + 1)
+            + ",\"price\":" + (199 + i % 300) + ".5,\"address\":\"静安交通路" + (i % 90) + "号\","
+            + "\"amenities\":[\"wifi\",\"parking\"],\"rooms\":[{\"room_number\":\"" + (100 + i % 20)
+            + "\",\"room_type\":\"大床房\",\"bed_count\":1}],\"last_updated\":" + (1_717_200_000_000L + i * 1000L) + "}";
+    }
+
+    private static Map<String, String> properties(CompressedBody compressed) {
+        Map<String, String> properties = new HashMap<>();
+        compressed.forEachProperty(properties::put);
+        return properties;
+    }
+
+    @Benchmark
+    public CompressedBody compressBatchLz4() {
+        return lz4.compress(TOPIC, batch);
+    }
+
+    @Benchmark
+    public CompressedBody compressBatchZstd() {
+        return zstd.compress(TOPIC, batch);
+    }
+
+    @Benchmark
+    public CompressedBody compressSingleWithDictionary() {
+        return zstdWithDictionary.compress(TOPIC, single);
+    }
+
+    @Benchmark
+    public ByteBuffer decompressBatchLz4Pooled() {
+        return decompressor.decompress(ByteBuffer.wrap(lz4Batch.getBody()).asReadOnlyBuffer(), lz4Properties);
+    }
+
+    @Benchmark
+    public ByteBuffer decompressBatchZstdPooled() {
+        return decompressor.decompress(ByteBuffer.wrap(zstdBatch.getBody()).asReadOnlyBuffer(), zstdProperties);
+    }
+
+    @Benchmark
+    public byte[] decompressBatchZstdToArray() {
+        return decompressor.decompress(zstdBatch.getBody(), zstdProperties);
+    }
+
+    @Benchmark
+    public ByteBuffer decompressSingleWithDictionary() {
+        return decompressor.decompress(ByteBuffer.wrap(dictionarySingle.getBody()).asReadOnlyBuffer(),
+            dictionaryProperties);
+    }
+}
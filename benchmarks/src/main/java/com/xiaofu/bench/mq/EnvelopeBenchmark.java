@@ -0,0 +1,127 @@
+package com.xiaofu.bench.mq;
+
+import com.alibaba.fastjson2.JSON;
+import com.xiaofu.mq.hotel.HotelEvent;
+import com.xiaofu.mq.order.OrderStep;
+import com.xiaofu.mq.schema.Envelope;
+import com.xiaofu.mq.schema.Envelopes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 酒店变更事件和订单步骤的信封编解码，与 fastjson2 的 JSON 对照
+ *
+ * 解码一侧与 5.x 消费端一致，从只读 ByteBuffer 读。setUp 打印两种格式的字节数
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnvelopeBenchmark {
+
+    private final Envelope<HotelEvent> hotelEnvelope = Envelopes.hotelEvent();
+
+    private final Envelope<OrderStep> orderEnvelope = Envelopes.orderStep();
+
+    private HotelEvent event;
+
+    private OrderStep step;
+
+    private byte[] hotelBytes;
+
+    private byte[] hotelJson;
+
+    private byte[] orderBytes;
+
+    private byte[] orderJson;
+
+    @Setup
+    public void setUp() {
+        event = new HotelEvent();
+        event.setId(36934);
+        event.setVersion(1_760_000_000_123L);
+        event.setName("7天连锁酒店(上海宝山路地铁站店)");
+        event.setStars(2);
+        event.setPrice(336.5);
+        event.setDescription("交通便利，\"近地铁\"");
+        event.setAddress("静安交通路40号");
+        event.setLat(31.251433);
+        event.setLon(121.47522);
+        HotelEvent.Room room1 = new HotelEvent.Room();
+        room1.setRoomNumber("101");
+        room1.setRoomType("大床房");
+        room1.setBedCount(1);
+        HotelEvent.Room room2 = new HotelEvent.Room();
+        room2.setRoomNumber("102");
+        room2.setRoomType("双床房");
+        room2.setBedCount(2);
+        event.setRooms(Arrays.asList(room1, room2));
+        event.setAmenities(Arrays.asList("wifi", "parking"));
+        event.setLastUpdated(1_717_200_000_123L);
+        step = new OrderStep(123_456_789L, OrderStep.StepType.PAY, 1_760_000_000_000L);
+
+        hotelBytes = hotelEnvelope.encode(event);
+        hotelJson = JSON.toJSONBytes(event);
+        orderBytes = orderEnvelope.encode(step);
+        orderJson = JSON.toJSONBytes(step);
+        System.out.printf("%nhotel-event: envelope %d bytes, json %d bytes; order-step: envelope %d bytes, json %d bytes%n",
+            hotelBytes.length, hotelJson.length, orderBytes.length, orderJson.length);
+    }
+
+    @Benchmark
+    public byte[] encodeHotelEnvelope() {
+        return hotelEnvelope.encode(event);
+    }
+
+    @Benchmark
+    public byte[] encodeHotelJson() {
+        return JSON.toJSONBytes(event);
+    }
+
+    @Benchmark
+    public HotelEvent decodeHotelEnvelope() {
+        return hotelEnvelope.decode(ByteBuffer.wrap(hotelBytes).asReadOnlyBuffer());
+    }
+
+    @Benchmark
+    public HotelEvent decodeHotelJson() {
+        return JSON.parseObject(ByteBuffer.wrap(hotelJson).asReadOnlyBuffer(), HotelEvent.class);
+    }
+
+    @Benchmark
+    public byte[] encodeOrderEnvelope() {
+        return orderEnvelope.encode(step);
+    }
+
+    @Benchmark
+    public byte[] encodeOrderJson() {
+        return JSON.toJSONBytes(step);
+    }
+
+    @Benchmark
+    public OrderStep decodeOrderEnvelope() {
+        return orderEnvelope.decode(ByteBuffer.wrap(orderBytes).asReadOnlyBuffer());
+    }
+
+    @Benchmark
+    public OrderStep decodeOrderJson() {
+        return JSON.parseObject(ByteBuffer.wrap(orderJson).asReadOnlyBuffer(), OrderStep.class);
+    }
+}
@@ -0,0 +1,88 @@
+package com.xiaofu.bench.mq;
+
+import org.apache.rocketmq.client.apis.message.Message;
+import org.apache.rocketmq.client.java.message.MessageBuilderImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 5.x 发送前的消息构建：MessageBuilderImpl 组装消息、消息体编码为 UTF-8
+ *
+ * 消息体含中文，走 String.getBytes 的非 ASCII 分支，与 MqProducerTest 中的用法一致
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageBuildBenchmark {
+
+    /**
+     * 消息体字符数
+     */
+    @Param({"128", "4096"})
+    public int bodyLength;
+
+    private String body;
+
+    private byte[] bodyBytes;
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder(bodyLength);
+        while (builder.length() < bodyLength) {
+            builder.append("订单步骤 order-step-").append(builder.length()).append(';');
+        }
+        body = builder.substring(0, bodyLength);
+        bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] encodeBody() {
+        return body.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 发送路径上的完整构建：编码消息体 + 组装
+     */
+    @Benchmark
+    public Message buildMessage() {
+        return new MessageBuilderImpl()
+            .setTopic("TestTopic")
+            .setTag("messageTag")
+            .setKeys("messageKey")
+            .setBody(body.getBytes(StandardCharsets.UTF_8))
+            .addProperty("OrderId", "36934")
+            .build();
+    }
+
+    /**
+     * 消息体已是字节时只剩组装的开销
+     */
+    @Benchmark
+    public Message buildMessagePreEncoded() {
+        return new MessageBuilderImpl()
+            .setTopic("TestTopic")
+            .setTag("messageTag")
+            .setKeys("messageKey")
+            .setBody(bodyBytes)
+            .addProperty("OrderId", "36934")
+            .build();
+    }
+}
@@ -0,0 +1,117 @@
+package com.xiaofu.bench.mq;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.xiaofu.mq.payload.HotelView;
+import com.xiaofu.mq.payload.Payload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 消费端从消息体里取几个字段：先解码成 String 再解析，对比直接在字节上读
+ *
+ * 消息体是一条酒店变更 JSON，description 填充到指定大小。body() 与 5.x MessageView.getBody() 一样返回只读 buffer。
+ * 每条消息的分配量用 GC profiler 看 gc.alloc.rate.norm：
+ * java -jar benchmarks/target/benchmarks.jar PayloadAccessBenchmark -prof gc
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PayloadAccessBenchmark {
+
+    /**
+     * 消息体字节数
+     */
+    @Param({"1024", "8192"})
+    public int bodySize;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() {
+        Map<String, Object> hotel = new LinkedHashMap<>();
+        hotel.put("id", 36934L);
+        hotel.put("name", "7天连锁酒店(上海宝山路地铁站店)");
+        hotel.put("stars", 2);
+        hotel.put("price", 336.5);
+        hotel.put("address", "静安交通路40号");
+        hotel.put("amenities", Arrays.asList("wifi", "parking"));
+        int base = JSON.toJSONBytes(hotel).length + "\"description\":\"\",".length();
+        StringBuilder description = new StringBuilder();
+        while (description.length() < bodySize - base) {
+            description.append("交通便利近地铁 near-metro ");
+        }
+        hotel.put("description", description.toString());
+        bytes = JSON.toJSONBytes(hotel);
+    }
+
+    private ByteBuffer body() {
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    /**
+     * TestOrderConsumer 的写法：UTF_8.decode 整个消息体后再解析
+     */
+    @Benchmark
+    public void decodeStringThenParse(Blackhole blackhole) {
+        String text = StandardCharsets.UTF_8.decode(body()).toString();
+        JSONObject json = JSON.parseObject(text);
+        blackhole.consume(json.getLongValue("id"));
+        blackhole.consume(json.getIntValue("stars"));
+    }
+
+    /**
+     * 4.x 消费者的写法：new String(messageExt.getBody()) 后再解析
+     */
+    @Benchmark
+    public void newStringThenParse(Blackhole blackhole) {
+        JSONObject json = JSON.parseObject(new String(bytes, StandardCharsets.UTF_8));
+        blackhole.consume(json.getLongValue("id"));
+        blackhole.consume(json.getIntValue("stars"));
+    }
+
+    @Benchmark
+    public void payloadFields(Blackhole blackhole) {
+        Payload payload = Payload.of(body());
+        blackhole.consume(payload.getLong("id", -1));
+        blackhole.consume(payload.getInt("stars", -1));
+    }
+
+    @Benchmark
+    public void payloadFieldsOnArray(Blackhole blackhole) {
+        Payload payload = Payload.of(bytes);
+        blackhole.consume(payload.getLong("id", -1));
+        blackhole.consume(payload.getInt("stars", -1));
+    }
+
+    @Benchmark
+    public void hotelView(Blackhole blackhole) {
+        HotelView view = HotelView.of(body());
+        blackhole.consume(view.getId());
+        blackhole.consume(view.getStars());
+        blackhole.consume(view.getName());
+    }
+}
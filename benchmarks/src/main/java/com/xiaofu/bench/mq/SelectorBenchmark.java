@@ -0,0 +1,96 @@
+package com.xiaofu.bench.mq;
+
+import com.xiaofu.mq.selector.HotKeySplittingSelector;
+import com.xiaofu.mq.selector.JumpHashSelector;
+import com.xiaofu.mq.selector.RendezvousHashSelector;
+import org.apache.rocketmq.client.producer.MessageQueueSelector;
+import org.apache.rocketmq.client.producer.selector.SelectMessageQueueByHash;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 4.x 顺序消息 MessageQueueSelector 的单次选择开销
+ *
+ * hash 为客户端自带的 SelectMessageQueueByHash，作为基线；订单号以 Long 传入，与 OrderStepProducer 一致。
+ * rendezvous 随队列数线性增长，jump 为对数级
+ **/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelectorBenchmark {
+
+    private static final int KEY_MASK = 1023;
+
+    @Param({"hash", "jump", "rendezvous", "hotKeySplitting"})
+    public String selector;
+
+    @Param({"8", "64", "256"})
+    public int queues;
+
+    private MessageQueueSelector impl;
+
+    private List<MessageQueue> mqs;
+
+    private Message message;
+
+    private final Long[] orderIds = new Long[KEY_MASK + 1];
+
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        switch (selector) {
+            case "hash":
+                impl = new SelectMessageQueueByHash();
+                break;
+            case "jump":
+                impl = new JumpHashSelector();
+                break;
+            case "rendezvous":
+                impl = new RendezvousHashSelector();
+                break;
+            case "hotKeySplitting":
+                // 约 1% 的订单是可拆分的热点
+                impl = new HotKeySplittingSelector(new JumpHashSelector(), key -> (Long) key % 100 == 0, 8);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown selector: " + selector);
+        }
+        mqs = new ArrayList<>(queues);
+        for (int i = 0; i < queues; i++) {
+            mqs.add(new MessageQueue("OrderTopic", "broker-" + (i % 2), i / 2));
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < orderIds.length; i++) {
+            orderIds[i] = 1_000_000L + random.nextInt(10_000_000);
+        }
+        message = new Message("OrderTopic", "CREATE", "36934", new byte[64]);
+    }
+
+    @Benchmark
+    public MessageQueue select() {
+        return impl.select(mqs, message, orderIds[cursor++ & KEY_MASK]);
+    }
+}
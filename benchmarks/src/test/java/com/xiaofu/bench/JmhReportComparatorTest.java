@@ -0,0 +1,53 @@
+package com.xiaofu.bench;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description JmhReportComparator：按基准和参数对齐、区分越小越好与越大越好、误差范围内不算回退
+ **/
+public class JmhReportComparatorTest {
+
+    private static String run(String benchmark, String mode, String params, double score, double error) {
+        return "{\"benchmark\":\"com.xiaofu.bench.mq." + benchmark + "\",\"mode\":\"" + mode + "\",\"params\":" + params
+            + ",\"primaryMetric\":{\"score\":" + score + ",\"scoreError\":" + error + ",\"scoreUnit\":\"ns/op\"}}";
+    }
+
+    @Test
+    void testRegressionsDetected() {
+        Map<String, JmhReportComparator.Result> baseline = JmhReportComparator.parse("[" + String.join(",",
+            run("SelectorBenchmark.select", "avgt", "{\"selector\":\"jump\",\"queues\":\"64\"}", 50, 1),
+            run("SelectorBenchmark.select", "avgt", "{\"selector\":\"hash\",\"queues\":\"64\"}", 8, 0.1),
+            run("ProducerBenchmark.send", "thrpt", "{}", 1000, 10),
+            run("ProducerBenchmark.noisy", "avgt", "{}", 100, 30)) + "]");
+        Map<String, JmhReportComparator.Result> current = JmhReportComparator.parse("[" + String.join(",",
+            // 变慢 40%
+            run("SelectorBenchmark.select", "avgt", "{\"queues\":\"64\",\"selector\":\"jump\"}", 70, 1),
+            // 变快
+            run("SelectorBenchmark.select", "avgt", "{\"queues\":\"64\",\"selector\":\"hash\"}", 6, 0.1),
+            // 吞吐下降 30%
+            run("ProducerBenchmark.send", "thrpt", "{}", 700, 10),
+            // 变化在误差范围内
+            run("ProducerBenchmark.noisy", "avgt", "{}", 130, 30)) + "]");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        List<String> regressions = JmhReportComparator.compare(baseline, current, 10, new PrintStream(out));
+
+        assertEquals(2, regressions.size());
+        assertTrue(regressions.contains("SelectorBenchmark.select(queues=64,selector=jump)"), regressions.toString());
+        assertTrue(regressions.contains("ProducerBenchmark.send"), regressions.toString());
+        assertTrue(out.toString().contains("REGRESSION"));
+        assertEquals(Collections.emptyList(), JmhReportComparator.compare(current, current, 10, new PrintStream(out)));
+    }
+}
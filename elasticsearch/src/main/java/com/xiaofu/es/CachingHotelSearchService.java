@@ -0,0 +1,193 @@
+package com.xiaofu.es;
+
+import com.alibaba.fastjson2.JSON;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.xiaofu.es.constants.HotelConstants;
+import lombok.EqualsAndHashCode;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 带结果缓存的酒店搜索
+ *
+ * - 缓存 key = 各索引的写入版本号 + 索引名 + routing/preference + 规范化后的 SearchSourceBuilder
+ * - 容量上限 + TTL，淘汰策略为 Caffeine 的 W-TinyLFU，热门查询不会被一次性扫描冲掉
+ * - 注册为 HotelWriteListener 后，写入推进该索引的版本号，查询这个索引的旧缓存项不再命中，随后被淘汰；
+ *   其它索引的缓存不受影响。索引按写请求和查询请求里的名字匹配，经别名写入时两边要用同一个名字
+ * - ES 写入要等下一次 refresh 才可见，索引写入后 refreshInterval 内读到的结果照常返回但不缓存，
+ *   避免把 refresh 之前的结果缓存一整个 TTL
+ **/
+public class CachingHotelSearchService implements HotelWriteListener {
+
+    private final RestHighLevelClient client;
+
+    private final Cache<Key, SearchResponse> cache;
+
+    /**
+     * 索引名 -> 写入版本号，每次写入加一
+     */
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    /**
+     * refreshInterval 内有过写入的索引，过期即认为写入已经 refresh 可见
+     */
+    private final Cache<String, Boolean> recentWrites;
+
+    public CachingHotelSearchService(RestHighLevelClient client) {
+        this(client, 10_000, Duration.ofSeconds(30));
+    }
+
+    public CachingHotelSearchService(RestHighLevelClient client, long maximumSize, Duration ttl) {
+        this(client, maximumSize, ttl, Duration.ofSeconds(1));
+    }
+
+    /**
+     * @param refreshInterval 索引的 refresh_interval，ES 默认 1s
+     */
+    public CachingHotelSearchService(RestHighLevelClient client, long maximumSize, Duration ttl,
+                                     Duration refreshInterval) {
+        this.client = client;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(ttl)
+            .recordStats()
+            .build();
+        this.recentWrites = Caffeine.newBuilder()
+            .expireAfterWrite(refreshInterval)
+            .build();
+    }
+
+    public SearchResponse search(SearchSourceBuilder source) throws IOException {
+        return search(new SearchRequest(HotelConstants.INDEX_NAME).source(source));
+    }
+
+    public SearchResponse search(SearchRequest request) throws IOException {
+        if (!isCacheable(request)) {
+            return client.search(request, RequestOptions.DEFAULT);
+        }
+        Key key = new Key(versionsOf(request.indices()), request);
+        SearchResponse[] uncached = new SearchResponse[1];
+        try {
+            // 同一个 key 并发未命中时只会有一个请求打到 ES
+            SearchResponse response = cache.get(key, k -> {
+                SearchResponse loaded;
+                try {
+                    loaded = client.search(request, RequestOptions.DEFAULT);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                // afterWrite 先记录写入再推进版本号：这里没看到写入时，之后的写入会让本 key 不再命中
+                for (String index : request.indices()) {
+                    if (recentWrites.getIfPresent(index) != null) {
+                        uncached[0] = loaded;
+                        return null;
+                    }
+                }
+                return loaded;
+            });
+            return response != null ? response : uncached[0];
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * scroll、point in time 这类有状态的请求不缓存
+     */
+    private static boolean isCacheable(SearchRequest request) {
+        return request.scroll() == null
+            && (request.source() == null || request.source().pointInTimeBuilder() == null);
+    }
+
+    @Override
+    public void afterWrite(DocWriteRequest<?> request) {
+        String index = request.index();
+        recentWrites.put(index, Boolean.TRUE);
+        versions.computeIfAbsent(index, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * @return 索引当前的写入版本号，没有写入过为 0
+     */
+    public long version(String index) {
+        AtomicLong version = versions.get(index);
+        return version == null ? 0 : version.get();
+    }
+
+    private String versionsOf(String[] indices) {
+        long[] current = new long[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            current[i] = version(indices[i]);
+        }
+        return Arrays.toString(current);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * 缓存 key。SearchSourceBuilder 先序列化为 json，再按字段名排序输出，
+     * 同样的查询无论以什么顺序设置 from/size/sort 等参数都会得到同一个 key
+     */
+    @EqualsAndHashCode
+    static final class Key {
+        private final String versions;
+        private final String indices;
+        private final String routing;
+        private final String preference;
+        private final String source;
+
+        Key(String versions, SearchRequest request) {
+            this.versions = versions;
+            this.indices = Arrays.toString(request.indices());
+            this.routing = request.routing();
+            this.preference = request.preference();
+            this.source = normalize(request.source());
+        }
+
+        static String normalize(SearchSourceBuilder source) {
+            if (source == null) {
+                return "";
+            }
+            return JSON.toJSONString(sorted(JSON.parse(source.toString())));
+        }
+
+        /**
+         * 对象按字段名排序，数组保持原顺序
+         */
+        private static Object sorted(Object value) {
+            if (value instanceof Map) {
+                Map<String, Object> sorted = new TreeMap<>();
+                ((Map<?, ?>) value).forEach((k, v) -> sorted.put(String.valueOf(k), sorted(v)));
+                return sorted;
+            }
+            if (value instanceof List) {
+                List<Object> sorted = new ArrayList<>();
+                ((List<?>) value).forEach(v -> sorted.add(sorted(v)));
+                return sorted;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.xiaofu.es;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 同步接口等待合并请求的结果，异常按 RestHighLevelClient 同步方法的习惯抛出
+ **/
+final class Futures {
+
+    private Futures() {
+    }
+
+    /**
+     * @throws IOException 请求失败；ES 返回的错误仍以 ElasticsearchException 等运行时异常抛出
+     */
+    static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for elasticsearch response");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.xiaofu.es;
+
+import com.xiaofu.es.codec.HotelCodec;
+import com.xiaofu.es.constants.HotelConstants;
+import com.xiaofu.es.entity.Hotel;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.rest.RestStatus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 酒店索引批量导入
+ *
+ * - 按文档数和字节数两个维度自动切分批次，哪个先到就先发送
+ * - 同时最多有 concurrentRequests 个 bulk 请求在途，超出时阻塞调用方（背压）
+ * - 只重试 BulkResponse 中因限流/不可用而失败的条目，成功的条目不会重复写入
+ **/
+@Slf4j
+public class HotelBulkIndexer implements Closeable {
+
+    private final RestHighLevelClient client;
+
+    private final Options options;
+
+    /**
+     * 在途 bulk 请求的许可，重试期间许可不归还
+     */
+    private final Semaphore inFlight;
+
+    private final ScheduledExecutorService retryScheduler;
+
+    private final HotelWriteListeners listeners = new HotelWriteListeners();
+
+    public HotelBulkIndexer(RestHighLevelClient client) {
+        this(client, Options.builder().build());
+    }
+
+    public HotelBulkIndexer(RestHighLevelClient client, Options options) {
+        this.client = client;
+        this.options = options;
+        this.inFlight = new Semaphore(options.getConcurrentRequests());
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "hotel-bulk-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 注册写入监听，每个写入成功的条目回调一次
+     */
+    public HotelBulkIndexer addListener(HotelWriteListener listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * 导入酒店文档，阻塞直到所有批次（含重试）结束
+     *
+     * @param hotels 酒店文档流
+     * @return 导入结果统计
+     * @throws InterruptedException
+     */
+    public Result index(Stream<Hotel> hotels) throws InterruptedException {
+        return index(hotels.iterator());
+    }
+
+    public Result index(Iterator<Hotel> hotels) throws InterruptedException {
+        return execute(new Iterator<DocWriteRequest<?>>() {
+            @Override
+            public boolean hasNext() {
+                return hotels.hasNext();
+            }
+
+            @Override
+            public DocWriteRequest<?> next() {
+                return toIndexRequest(hotels.next());
+            }
+        });
+    }
+
+    /**
+     * 执行任意写请求（index/update/delete），批次切分、并发控制与重试规则同 {@link #index(Stream)}
+     *
+     * @param requests 写请求
+     * @return 导入结果统计
+     * @throws InterruptedException
+     */
+    public Result execute(Iterator<? extends DocWriteRequest<?>> requests) throws InterruptedException {
+        Result result = new Result();
+        // 调用线程自身占一个 party，最后等待所有批次到达
+        Phaser phaser = new Phaser(1);
+        BulkRequest batch = new BulkRequest();
+        while (requests.hasNext()) {
+            batch.add(requests.next());
+            if (batch.numberOfActions() >= options.getMaxActions()
+                || batch.estimatedSizeInBytes() >= options.getMaxBytes()) {
+                dispatch(batch, phaser, result);
+                batch = new BulkRequest();
+            }
+        }
+        if (batch.numberOfActions() > 0) {
+            dispatch(batch, phaser, result);
+        }
+        phaser.arriveAndAwaitAdvance();
+        return result;
+    }
+
+    public IndexRequest toIndexRequest(Hotel hotel) {
+        IndexRequest request = new IndexRequest(options.getIndex());
+        if (hotel.getId() != null) {
+            request.id(String.valueOf(hotel.getId()));
+        }
+        return request.source(HotelCodec.encode(hotel), XContentType.JSON);
+    }
+
+    private void dispatch(BulkRequest batch, Phaser phaser, Result result) throws InterruptedException {
+        // 背压：在途请求达到上限时阻塞，不再继续读取上游数据
+        inFlight.acquire();
+        phaser.register();
+        result.batches.incrementAndGet();
+        send(batch, 0, phaser, result);
+    }
+
+    private void send(BulkRequest batch, int attempt, Phaser phaser, Result result) {
+        try {
+            client.bulkAsync(batch, RequestOptions.DEFAULT, ActionListener.wrap(
+                response -> onResponse(batch, response, attempt, phaser, result),
+                e -> onFailure(batch, e, attempt, phaser, result)));
+        } catch (RuntimeException e) {
+            onFailure(batch, e, attempt, phaser, result);
+        }
+    }
+
+    private void onResponse(BulkRequest batch, BulkResponse response, int attempt, Phaser phaser, Result result) {
+        if (!response.hasFailures()) {
+            result.succeeded.addAndGet(batch.numberOfActions());
+            batch.requests().forEach(listeners::afterWrite);
+            complete(phaser);
+            return;
+        }
+        BulkRequest retry = new BulkRequest();
+        for (BulkItemResponse item : response.getItems()) {
+            if (!item.isFailed()) {
+                result.succeeded.incrementAndGet();
+                listeners.afterWrite(batch.requests().get(item.getItemId()));
+            } else if (attempt < options.getMaxRetries() && isRetryable(item.status())) {
+                // itemId 即该条目在原请求中的下标
+                retry.add(batch.requests().get(item.getItemId()));
+            } else {
+                result.failed.incrementAndGet();
+                log.warn("Bulk item failed, id={}, reason={}", item.getId(), item.getFailureMessage());
+            }
+        }
+        if (retry.numberOfActions() == 0) {
+            complete(phaser);
+            return;
+        }
+        result.retried.addAndGet(retry.numberOfActions());
+        scheduleRetry(retry, attempt, phaser, result);
+    }
+
+    private void onFailure(BulkRequest batch, Exception e, int attempt, Phaser phaser, Result result) {
+        if (attempt < options.getMaxRetries() && isRetryable(e)) {
+            result.retried.addAndGet(batch.numberOfActions());
+            scheduleRetry(batch, attempt, phaser, result);
+            return;
+        }
+        log.warn("Bulk request failed, actions={}", batch.numberOfActions(), e);
+        result.failed.addAndGet(batch.numberOfActions());
+        complete(phaser);
+    }
+
+    private void scheduleRetry(BulkRequest batch, int attempt, Phaser phaser, Result result) {
+        // 指数退避：100ms、200ms、400ms ...
+        long delay = options.getInitialBackoffMillis() << attempt;
+        retryScheduler.schedule(() -> send(batch, attempt + 1, phaser, result), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void complete(Phaser phaser) {
+        inFlight.release();
+        phaser.arriveAndDeregister();
+    }
+
+    private static boolean isRetryable(RestStatus status) {
+        return status == RestStatus.TOO_MANY_REQUESTS
+            || status == RestStatus.SERVICE_UNAVAILABLE
+            || status == RestStatus.BAD_GATEWAY
+            || status == RestStatus.GATEWAY_TIMEOUT;
+    }
+
+    private static boolean isRetryable(Exception e) {
+        if (e instanceof ElasticsearchStatusException) {
+            return isRetryable(((ElasticsearchStatusException) e).status());
+        }
+        return e instanceof IOException;
+    }
+
+    @Override
+    public void close() {
+        retryScheduler.shutdownNow();
+    }
+
+    /**
+     * 批量导入参数
+     */
+    @Getter
+    @Builder
+    public static class Options {
+        @Builder.Default
+        private final String index = HotelConstants.INDEX_NAME;
+        /**
+         * 单批最大文档数
+         */
+        @Builder.Default
+        private final int maxActions = 1000;
+        /**
+         * 单批最大字节数
+         */
+        @Builder.Default
+        private final long maxBytes = 5L * 1024 * 1024;
+        /**
+         * 同时在途的 bulk 请求数
+         */
+        @Builder.Default
+        private final int concurrentRequests = 4;
+        @Builder.Default
+        private final int maxRetries = 3;
+        @Builder.Default
+        private final long initialBackoffMillis = 100;
+    }
+
+    /**
+     * 导入结果统计
+     */
+    public static class Result {
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong succeeded = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong retried = new AtomicLong();
+
+        public long getBatches() {
+            return batches.get();
+        }
+
+        public long getSucceeded() {
+            return succeeded.get();
+        }
+
+        public long getFailed() {
+            return failed.get();
+        }
+
+        /**
+         * 重试过的条目数（同一条目多次重试会重复计数）
+         */
+        public long getRetried() {
+            return retried.get();
+        }
+
+        @Override
+        public String toString() {
+            return "Result{batches=" + batches + ", succeeded=" + succeeded
+                + ", failed=" + failed + ", retried=" + retried + '}';
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.xiaofu.es;
+
+import com.xiaofu.es.codec.HotelCodec;
+import com.xiaofu.es.constants.HotelConstants;
+import com.xiaofu.es.entity.Hotel;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.action.update.UpdateResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 酒店文档写入：新增/全量更新、局部更新、删除，成功后通知 HotelWriteListener
+ **/
+public class HotelDocumentService {
+
+    private final RestHighLevelClient client;
+
+    private final String index;
+
+    private final HotelWriteListeners listeners = new HotelWriteListeners();
+
+    public HotelDocumentService(RestHighLevelClient client) {
+        this(client, HotelConstants.INDEX_NAME);
+    }
+
+    public HotelDocumentService(RestHighLevelClient client, String index) {
+        this.client = client;
+        this.index = index;
+    }
+
+    public HotelDocumentService addListener(HotelWriteListener listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * 新增文档，id 已存在时为全量更新；id 为空时由 ES 生成
+     */
+    public IndexResponse index(Hotel hotel) throws IOException {
+        IndexRequest request = new IndexRequest(index)
+            .source(HotelCodec.encode(hotel), XContentType.JSON);
+        if (hotel.getId() != null) {
+            request.id(String.valueOf(hotel.getId()));
+        }
+        IndexResponse response = client.index(request, RequestOptions.DEFAULT);
+        listeners.afterWrite(request);
+        return response;
+    }
+
+    /**
+     * 局部更新，只更新传入的字段
+     */
+    public UpdateResponse update(String id, Map<String, Object> fields) throws IOException {
+        UpdateRequest request = new UpdateRequest(index, id).doc(fields);
+        UpdateResponse response = client.update(request, RequestOptions.DEFAULT);
+        listeners.afterWrite(request);
+        return response;
+    }
+
+    public DeleteResponse delete(String id) throws IOException {
+        DeleteRequest request = new DeleteRequest(index, id);
+        DeleteResponse response = client.delete(request, RequestOptions.DEFAULT);
+        listeners.afterWrite(request);
+        return response;
+    }
+}
@@ -0,0 +1,258 @@
+package com.xiaofu.es;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import com.xiaofu.es.codec.HotelCodec;
+import com.xiaofu.es.constants.HotelConstants;
+import com.xiaofu.es.entity.Hotel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.PointInTimeBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 基于 search_after 的深分页
+ *
+ * from + size 分页越往后越慢，且超过 index.max_result_window 直接报错；search_after 每页只取 size 条，
+ * 开销与页码无关。排序固定为 price 升序 + id 升序，id 保证排序唯一、翻页不重不漏。
+ * - page：面向无限滚动的客户端，返回不透明的游标，无状态，不占用集群资源
+ * - stream：面向全量导出，基于 point in time 读取一致的快照，遍历结束后关闭
+ **/
+@Slf4j
+public class HotelPager {
+
+    private static final TimeValue PIT_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+
+    private final RestHighLevelClient client;
+
+    private final String index;
+
+    public HotelPager(RestHighLevelClient client) {
+        this(client, HotelConstants.INDEX_NAME);
+    }
+
+    public HotelPager(RestHighLevelClient client, String index) {
+        this.client = client;
+        this.index = index;
+    }
+
+    /**
+     * 查询一页
+     *
+     * @param query  查询条件
+     * @param size   每页条数
+     * @param cursor 上一页返回的游标，第一页传 null
+     * @return 当前页，nextCursor 为 null 表示没有下一页
+     * @throws IOException
+     */
+    public Page page(QueryBuilder query, int size, String cursor) throws IOException {
+        SearchSourceBuilder source = sortedSource(query, size);
+        if (cursor == null) {
+            // 只有第一页统计总数
+            source.trackTotalHits(true);
+        } else {
+            source.searchAfter(decodeCursor(cursor));
+        }
+        SearchResponse response = client.search(new SearchRequest(index).source(source), RequestOptions.DEFAULT);
+        SearchHit[] hits = response.getHits().getHits();
+        List<Hotel> hotels = new ArrayList<>(hits.length);
+        for (SearchHit hit : hits) {
+            hotels.add(HotelCodec.decode(hit));
+        }
+        String next = hits.length < size ? null : encodeCursor(hits[hits.length - 1].getSortValues());
+        long total = response.getHits().getTotalHits() == null ? -1 : response.getHits().getTotalHits().value;
+        return new Page(hotels, next, total);
+    }
+
+    /**
+     * 遍历所有匹配的酒店，用于导出。返回的 Stream 需要关闭以释放 point in time
+     *
+     * @param query     查询条件
+     * @param batchSize 每次拉取条数
+     * @return 酒店流
+     * @throws IOException
+     */
+    public Stream<Hotel> stream(QueryBuilder query, int batchSize) throws IOException {
+        ExportIterator iterator = new ExportIterator(query, batchSize, openPointInTime());
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+            Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(iterator::close);
+    }
+
+    private SearchSourceBuilder sortedSource(QueryBuilder query, int size) {
+        return new SearchSourceBuilder()
+            .query(query)
+            .size(size)
+            .trackTotalHits(false)
+            .sort(SortBuilders.fieldSort("price").order(SortOrder.ASC))
+            .sort(SortBuilders.fieldSort("id").order(SortOrder.ASC));
+    }
+
+    /**
+     * 7.12 的 RestHighLevelClient 还没有 openPointInTime，走低级客户端
+     */
+    private String openPointInTime() throws IOException {
+        Request request = new Request("POST", "/" + index + "/_pit");
+        request.addParameter("keep_alive", PIT_KEEP_ALIVE.getStringRep());
+        String body = EntityUtils.toString(client.getLowLevelClient().performRequest(request).getEntity());
+        return JSON.parseObject(body).getString("id");
+    }
+
+    private void closePointInTime(String pitId) {
+        Request request = new Request("DELETE", "/_pit");
+        JSONObject body = new JSONObject();
+        body.put("id", pitId);
+        request.setJsonEntity(body.toJSONString());
+        try {
+            client.getLowLevelClient().performRequest(request);
+        } catch (IOException e) {
+            // 关闭失败也会在 keep_alive 到期后自动释放
+            log.warn("Failed to close point in time", e);
+        }
+    }
+
+    static String encodeCursor(Object[] sortValues) {
+        byte[] json = JSON.toJSONBytes(sortValues);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+    }
+
+    static Object[] decodeCursor(String cursor) {
+        try {
+            JSONArray values = JSON.parseArray(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+            if (values == null || values.size() != 2) {
+                throw new IllegalArgumentException("invalid cursor: " + cursor);
+            }
+            Object[] sortValues = values.toArray();
+            for (int i = 0; i < sortValues.length; i++) {
+                // search_after 不接受 BigDecimal
+                if (sortValues[i] instanceof BigDecimal) {
+                    sortValues[i] = ((BigDecimal) sortValues[i]).doubleValue();
+                }
+            }
+            return sortValues;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("invalid cursor: " + cursor, e);
+        }
+    }
+
+    @Getter
+    public static class Page {
+        private final List<Hotel> hotels;
+        /**
+         * 下一页游标，null 表示已经是最后一页
+         */
+        private final String nextCursor;
+        /**
+         * 命中总数，只有第一页返回，其余页为 -1
+         */
+        private final long total;
+
+        Page(List<Hotel> hotels, String nextCursor, long total) {
+            this.hotels = Collections.unmodifiableList(hotels);
+            this.nextCursor = nextCursor;
+            this.total = total;
+        }
+    }
+
+    private class ExportIterator implements Iterator<Hotel>, Closeable {
+        private final QueryBuilder query;
+        private final int batchSize;
+        private String pitId;
+        private Object[] searchAfter;
+        private SearchHit[] batch = new SearchHit[0];
+        private int position;
+        private boolean exhausted;
+        private boolean closed;
+
+        ExportIterator(QueryBuilder query, int batchSize, String pitId) {
+            this.query = query;
+            this.batchSize = batchSize;
+            this.pitId = pitId;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (position < batch.length) {
+                return true;
+            }
+            if (exhausted) {
+                return false;
+            }
+            fetch();
+            return position < batch.length;
+        }
+
+        @Override
+        public Hotel next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return HotelCodec.decode(batch[position++]);
+        }
+
+        private void fetch() {
+            SearchSourceBuilder source = sortedSource(query, batchSize)
+                .pointInTimeBuilder(new PointInTimeBuilder(pitId).setKeepAlive(PIT_KEEP_ALIVE));
+            if (searchAfter != null) {
+                source.searchAfter(searchAfter);
+            }
+            try {
+                // 使用 point in time 时请求上不能再指定索引
+                SearchResponse response = client.search(new SearchRequest().source(source), RequestOptions.DEFAULT);
+                if (response.pointInTimeId() != null) {
+                    pitId = response.pointInTimeId();
+                }
+                batch = response.getHits().getHits();
+                position = 0;
+                if (batch.length < batchSize) {
+                    exhausted = true;
+                    close();
+                }
+                if (batch.length > 0) {
+                    searchAfter = batch[batch.length - 1].getSortValues();
+                }
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                closePointInTime(pitId);
+            }
+        }
+    }
+}
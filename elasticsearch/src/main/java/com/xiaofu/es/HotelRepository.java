@@ -0,0 +1,379 @@
+package com.xiaofu.es;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.xiaofu.es.codec.HotelCodec;
+import com.xiaofu.es.constants.HotelConstants;
+import com.xiaofu.es.entity.Hotel;
+import lombok.Builder;
+import lombok.Getter;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 按 id 读酒店文档，带进程内近端缓存
+ *
+ * - 缓存按条数或按 _source 字节数限制容量，淘汰策略为 Caffeine 的 W-TinyLFU，热门酒店常驻
+ * - offHeap 时缓存的是直接内存里的 _source，每次命中重新解码，换来堆上只剩很小的索引项；
+ *   否则缓存解码好的 Hotel，命中时返回同一个对象，调用方不要修改。
+ *   直接内存要等淘汰掉的 ByteBuffer 被 GC 回收才释放，maximumBytes 只限制缓存里的字节数，
+ *   淘汰频繁时实际占用会高于它，-XX:MaxDirectMemorySize 需要留出余量
+ * - 不存在的 id 也会缓存，避免反复打到 ES
+ * - 未命中的 id 在 windowMicros 内攒成一个 MultiGetRequest，同一 id 的并发未命中只读一次
+ * - 注册为 HotelDocumentService / HotelBulkIndexer 的 HotelWriteListener 后，写入成功即失效对应 id；
+ *   绕过本模块的写入靠 ttl 兜底
+ **/
+public class HotelRepository implements HotelWriteListener, Closeable {
+
+    /**
+     * 文档不存在
+     */
+    private static final Entry MISSING = new Entry(null, null, 1);
+
+    private final RestHighLevelClient client;
+
+    private final Options options;
+
+    private final Cache<Long, Entry> cache;
+
+    /**
+     * 正在读取的 id，新的未命中直接等这里的结果。
+     * 读取发出后该 id 被失效时会从这里移除，读到的结果只返回给调用方，不放进缓存
+     */
+    private final Map<Long, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService timer;
+
+    /**
+     * 正在攒的窗口，由 this 的锁保护
+     */
+    private Batch current;
+
+    private boolean closed;
+
+    private final AtomicLong reads = new AtomicLong();
+
+    public HotelRepository(RestHighLevelClient client) {
+        this(client, Options.builder().build());
+    }
+
+    public HotelRepository(RestHighLevelClient client, Options options) {
+        this.client = client;
+        this.options = options;
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+            .expireAfterWrite(options.getTtl())
+            .recordStats();
+        if (options.getMaximumBytes() > 0) {
+            builder.maximumWeight(options.getMaximumBytes()).weigher((Long id, Entry entry) -> entry.weight);
+        } else {
+            builder.maximumSize(options.getMaximumSize());
+        }
+        this.cache = builder.build();
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "hotel-repository");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Optional<Hotel> findById(long id) throws IOException {
+        Entry entry = cache.getIfPresent(id);
+        if (entry == null) {
+            entry = Futures.await(load(Collections.singletonList(id)).get(0));
+        }
+        return Optional.ofNullable(entry.toHotel());
+    }
+
+    /**
+     * @return 按 ids 的顺序返回存在的酒店，重复的 id 只返回一次
+     */
+    public List<Hotel> findAllById(Collection<Long> ids) throws IOException {
+        LinkedHashSet<Long> distinct = new LinkedHashSet<>(ids);
+        Map<Long, Entry> entries = new HashMap<>(cache.getAllPresent(distinct));
+        List<Long> misses = new ArrayList<>();
+        for (Long id : distinct) {
+            if (!entries.containsKey(id)) {
+                misses.add(id);
+            }
+        }
+        if (!misses.isEmpty()) {
+            List<CompletableFuture<Entry>> futures = load(misses);
+            for (int i = 0; i < misses.size(); i++) {
+                entries.put(misses.get(i), Futures.await(futures.get(i)));
+            }
+        }
+        List<Hotel> hotels = new ArrayList<>(distinct.size());
+        for (Long id : distinct) {
+            Hotel hotel = entries.get(id).toHotel();
+            if (hotel != null) {
+                hotels.add(hotel);
+            }
+        }
+        return hotels;
+    }
+
+    private List<CompletableFuture<Entry>> load(List<Long> ids) {
+        List<CompletableFuture<Entry>> futures = new ArrayList<>(ids.size());
+        List<Batch> full = new ArrayList<>(1);
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("hotel repository closed");
+            }
+            for (Long id : ids) {
+                CompletableFuture<Entry> future = loading.get(id);
+                if (future == null) {
+                    future = new CompletableFuture<>();
+                    loading.put(id, future);
+                    if (current == null) {
+                        Batch opened = new Batch();
+                        current = opened;
+                        timer.schedule(() -> flush(opened), options.getWindowMicros(), TimeUnit.MICROSECONDS);
+                    }
+                    current.add(id, future);
+                    if (current.ids.size() >= options.getMaxBatchSize()) {
+                        full.add(current);
+                        current = null;
+                    }
+                }
+                futures.add(future);
+            }
+        }
+        full.forEach(this::send);
+        return futures;
+    }
+
+    /**
+     * 窗口到期，已因数量提前发出的窗口忽略
+     */
+    private void flush(Batch expired) {
+        synchronized (this) {
+            if (current != expired) {
+                return;
+            }
+            current = null;
+        }
+        send(expired);
+    }
+
+    private void send(Batch batch) {
+        reads.incrementAndGet();
+        if (batch.ids.size() == 1) {
+            Long id = batch.ids.get(0);
+            CompletableFuture<Entry> future = batch.futures.get(0);
+            client.getAsync(new GetRequest(options.getIndex(), String.valueOf(id)), RequestOptions.DEFAULT,
+                ActionListener.wrap(response -> loaded(id, future, response), e -> failed(id, future, e)));
+            return;
+        }
+        MultiGetRequest request = new MultiGetRequest();
+        batch.ids.forEach(id -> request.add(options.getIndex(), String.valueOf(id)));
+        client.mgetAsync(request, RequestOptions.DEFAULT, new ActionListener<MultiGetResponse>() {
+            @Override
+            public void onResponse(MultiGetResponse response) {
+                MultiGetItemResponse[] items = response.getResponses();
+                for (int i = 0; i < batch.ids.size(); i++) {
+                    Long id = batch.ids.get(i);
+                    CompletableFuture<Entry> future = batch.futures.get(i);
+                    if (i >= items.length) {
+                        failed(id, future, new IOException("missing item " + i + " in mget response"));
+                    } else if (items[i].isFailed()) {
+                        failed(id, future, items[i].getFailure().getFailure());
+                    } else {
+                        loaded(id, future, items[i].getResponse());
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                for (int i = 0; i < batch.ids.size(); i++) {
+                    failed(batch.ids.get(i), batch.futures.get(i), e);
+                }
+            }
+        });
+    }
+
+    private void loaded(Long id, CompletableFuture<Entry> future, GetResponse response) {
+        Entry entry;
+        try {
+            entry = toEntry(response);
+        } catch (RuntimeException e) {
+            failed(id, future, e);
+            return;
+        }
+        cache.put(id, entry);
+        // 先放再检查：与 invalidate 的“先移出 loading 再删”交错时，两边至少有一方把这次读到的旧值删掉。
+        // 只看本 id，其它 id 的写入不影响这次结果进缓存；按值删除，不误删之后重新读到的新值
+        if (!loading.remove(id, future)) {
+            cache.asMap().remove(id, entry);
+        }
+        future.complete(entry);
+    }
+
+    private void failed(Long id, CompletableFuture<Entry> future, Exception e) {
+        loading.remove(id, future);
+        future.completeExceptionally(e);
+    }
+
+    private Entry toEntry(GetResponse response) {
+        if (!response.isExists() || response.getSourceInternal() == null) {
+            return MISSING;
+        }
+        BytesRef source = response.getSourceInternal().toBytesRef();
+        if (options.isOffHeap()) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(source.length);
+            buffer.put(source.bytes, source.offset, source.length).flip();
+            return new Entry(null, buffer, source.length);
+        }
+        return new Entry(HotelCodec.decode(source.bytes, source.offset, source.length), null, source.length);
+    }
+
+    @Override
+    public void afterWrite(DocWriteRequest<?> request) {
+        long id;
+        try {
+            id = Long.parseLong(request.id());
+        } catch (NumberFormatException e) {
+            return;
+        }
+        invalidate(id);
+    }
+
+    public void invalidate(long id) {
+        loading.remove(id);
+        cache.invalidate(id);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * 发到 ES 的读请求数（_mget 或单个 get）
+     */
+    public long getReads() {
+        return reads.get();
+    }
+
+    /**
+     * 立即发出正在攒的窗口并停止计时线程
+     */
+    @Override
+    public void close() {
+        Batch last;
+        synchronized (this) {
+            closed = true;
+            last = current;
+            current = null;
+        }
+        if (last != null) {
+            send(last);
+        }
+        timer.shutdownNow();
+    }
+
+    /**
+     * 缓存项：堆上的 Hotel 或直接内存里的 _source 二选一，都为空表示文档不存在
+     */
+    private static final class Entry {
+        final Hotel hotel;
+        final ByteBuffer source;
+        final int weight;
+
+        Entry(Hotel hotel, ByteBuffer source, int weight) {
+            this.hotel = hotel;
+            this.source = source;
+            this.weight = weight;
+        }
+
+        Hotel toHotel() {
+            if (source == null) {
+                return hotel;
+            }
+            byte[] bytes = new byte[source.remaining()];
+            source.duplicate().get(bytes);
+            return HotelCodec.decode(bytes);
+        }
+    }
+
+    private static final class Batch {
+        final List<Long> ids = new ArrayList<>();
+        final List<CompletableFuture<Entry>> futures = new ArrayList<>();
+
+        void add(Long id, CompletableFuture<Entry> future) {
+            ids.add(id);
+            futures.add(future);
+        }
+    }
+
+    /**
+     * 缓存与合并参数
+     */
+    @Getter
+    @Builder
+    public static class Options {
+        @Builder.Default
+        private final String index = HotelConstants.INDEX_NAME;
+        /**
+         * 最多缓存的酒店数，maximumBytes 大于 0 时不生效（Caffeine 只能二选一）
+         */
+        @Builder.Default
+        private final long maximumSize = 10_000;
+        /**
+         * 按 _source 字节数限制容量，0 表示按条数
+         */
+        @Builder.Default
+        private final long maximumBytes = 0;
+        /**
+         * 缓存 _source 到直接内存，减小堆占用，命中时多一次解码。
+         * 每项单独 allocateDirect，淘汰后要等 GC 才释放，直接内存上限按 maximumBytes 的数倍预留
+         */
+        @Builder.Default
+        private final boolean offHeap = false;
+        /**
+         * 写入后的最长存活时间，兜住绕过本模块的写入
+         */
+        @Builder.Default
+        private final Duration ttl = Duration.ofMinutes(10);
+        /**
+         * 未命中的合并窗口（微秒）
+         */
+        @Builder.Default
+        private final long windowMicros = 500;
+        /**
+         * 单个 _mget 最多包含的 id 数
+         */
+        @Builder.Default
+        private final int maxBatchSize = 100;
+    }
+}
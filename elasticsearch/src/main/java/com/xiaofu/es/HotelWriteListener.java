@@ -0,0 +1,20 @@
+package com.xiaofu.es;
+
+import org.elasticsearch.action.DocWriteRequest;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 酒店文档写入监听：index/update/delete 成功后回调，用于缓存失效、本地索引同步等
+ **/
+@FunctionalInterface
+public interface HotelWriteListener {
+
+    /**
+     * 写请求已被 ES 成功执行
+     *
+     * @param request IndexRequest、UpdateRequest 或 DeleteRequest
+     */
+    void afterWrite(DocWriteRequest<?> request);
+}
@@ -0,0 +1,34 @@
+package com.xiaofu.es;
+
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.DocWriteRequest;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 多个 HotelWriteListener 的组合，单个监听器异常不影响其它监听器和写入结果
+ **/
+@Slf4j
+public class HotelWriteListeners implements HotelWriteListener {
+
+    private final List<HotelWriteListener> listeners = new CopyOnWriteArrayList<>();
+
+    public void add(HotelWriteListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void afterWrite(DocWriteRequest<?> request) {
+        for (HotelWriteListener listener : listeners) {
+            try {
+                listener.afterWrite(request);
+            } catch (RuntimeException e) {
+                log.warn("Hotel write listener failed, id={}", request.id(), e);
+            }
+        }
+    }
+}
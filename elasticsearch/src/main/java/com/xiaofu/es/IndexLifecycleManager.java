@@ -0,0 +1,403 @@
+package com.xiaofu.es;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import com.xiaofu.es.constants.HotelConstants;
+import com.xiaofu.es.entity.Hotel;
+import com.xiaofu.es.mapping.EsMappings;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest.AliasActions;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequest;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.forcemerge.ForceMergeRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.client.GetAliasesResponse;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.CreateIndexRequest;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.cluster.metadata.AliasMetadata;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 不停服重建酒店索引：写入带版本号的新索引，完成后原子切换别名
+ *
+ * 读写方一律使用别名 hotel，实际索引为 hotel_v{n}。重建步骤：
+ * 1. 校验 mapping 与 Hotel 一致后创建 hotel_v{n+1}，导入期间 refresh 关闭、0 副本、translog 异步刷盘
+ * 2. 导入数据：reindex 从当前索引服务端切片并行复制；rebuild 从外部数据源按切片并行读取，经 HotelBulkIndexer 写入
+ * 3. 恢复副本数、refresh 和 translog 设置，refresh 后 force merge，等待集群健康
+ * 4. reindex 再补一次导入期间更新过的文档（按 last_updated，外部版本号保证不覆盖更新的数据）
+ * 5. 一次 _aliases 请求里把别名从旧索引移到新索引，搜索不会中断；保留最近 retainVersions 个旧索引用于回滚
+ *
+ * 任一步失败都会删掉新索引，别名保持不变。导入期间的删除不会同步到新索引，需要时由变更同步在切换后重放。
+ * 首次迁移时 hotel 还是具体索引而不是别名，切换请求会在同一原子操作里删除它（remove_index）并建立别名
+ **/
+@Slf4j
+public class IndexLifecycleManager {
+
+    private final RestHighLevelClient client;
+
+    private final Options options;
+
+    private final Pattern versioned;
+
+    /**
+     * force merge 和 reindex 轮询之外的长耗时请求用的超时
+     */
+    private final RequestOptions longRequest;
+
+    public IndexLifecycleManager(RestHighLevelClient client) {
+        this(client, Options.builder().build());
+    }
+
+    /**
+     * @throws IllegalStateException mapping 与 Hotel 不一致，新索引建出来也会丢字段或查不到
+     */
+    public IndexLifecycleManager(RestHighLevelClient client, Options options) {
+        EsMappings.validate(Hotel.class, options.getMapping());
+        this.client = client;
+        this.options = options;
+        this.versioned = Pattern.compile(Pattern.quote(options.getAlias()) + "_v(\\d+)");
+        this.longRequest = RequestOptions.DEFAULT.toBuilder()
+            .setRequestConfig(RequestConfig.custom()
+                .setSocketTimeout((int) Math.min(Integer.MAX_VALUE, options.getLongRequestTimeoutMillis()))
+                .build())
+            .build();
+    }
+
+    /**
+     * 从别名当前指向的索引重建，用于映射或分片数变更
+     *
+     * @return 新索引名
+     */
+    public String reindex() throws IOException, InterruptedException {
+        State state = state();
+        if (state.live.isEmpty()) {
+            throw new IllegalStateException("no index behind alias " + options.getAlias());
+        }
+        String source = String.join(",", state.live);
+        String target = create(state);
+        try {
+            long started = System.currentTimeMillis();
+            copy(source, target, null);
+            prepareForSearch(target);
+            JSONObject changed = new JSONObject();
+            changed.put("range", JSONObject.of("last_updated",
+                JSONObject.of("gte", started - options.getCatchUpMarginMillis(), "format", "epoch_millis")));
+            copy(source, target, changed);
+            client.indices().refresh(new RefreshRequest(target), RequestOptions.DEFAULT);
+            swap(target, state);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            deleteQuietly(target);
+            throw e;
+        }
+        retire(target, state);
+        return target;
+    }
+
+    /**
+     * 从外部数据源全量重建
+     *
+     * @param slices 并行读取的切片数
+     * @param source 切片号（0 ~ slices-1）到该切片数据的映射，各切片的数据不应重叠，例如按 id 取模
+     * @return 新索引名
+     */
+    public String rebuild(int slices, IntFunction<Iterator<Hotel>> source) throws IOException, InterruptedException {
+        State state = state();
+        String target = create(state);
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService readers = Executors.newFixedThreadPool(slices, r -> {
+            Thread thread = new Thread(r, "hotel-rebuild-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (HotelBulkIndexer indexer = new HotelBulkIndexer(client, HotelBulkIndexer.Options.builder()
+            .index(target)
+            .concurrentRequests(slices)
+            .build())) {
+            List<Future<HotelBulkIndexer.Result>> results = new ArrayList<>(slices);
+            for (int slice = 0; slice < slices; slice++) {
+                int current = slice;
+                results.add(readers.submit(() -> indexer.index(source.apply(current))));
+            }
+            long succeeded = 0;
+            long failed = 0;
+            for (Future<HotelBulkIndexer.Result> result : results) {
+                succeeded += result.get().getSucceeded();
+                failed += result.get().getFailed();
+            }
+            if (failed > 0) {
+                throw new IOException("rebuild " + target + " failed for " + failed + " of " + (succeeded + failed)
+                    + " hotels");
+            }
+            log.info("Loaded {} hotels into {} with {} slices", succeeded, target, slices);
+            prepareForSearch(target);
+            swap(target, state);
+        } catch (ExecutionException e) {
+            deleteQuietly(target);
+            throw new IOException("rebuild " + target + " failed", e.getCause());
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            deleteQuietly(target);
+            throw e;
+        } finally {
+            readers.shutdownNow();
+        }
+        retire(target, state);
+        return target;
+    }
+
+    /**
+     * 把别名切到指定索引，例如回滚到上一个版本
+     */
+    public void switchTo(String index) throws IOException {
+        State state = state();
+        swap(index, state);
+        retire(index, state);
+    }
+
+    /**
+     * 别名当前指向的索引和已有的版本
+     */
+    private State state() throws IOException {
+        GetAliasesResponse response = client.indices().getAlias(
+            new GetAliasesRequest().indices(options.getAlias() + "_v*"), RequestOptions.DEFAULT);
+        State state = new State();
+        for (Map.Entry<String, Set<AliasMetadata>> entry : response.getAliases().entrySet()) {
+            Matcher matcher = versioned.matcher(entry.getKey());
+            if (!matcher.matches()) {
+                continue;
+            }
+            state.versions.put(Integer.parseInt(matcher.group(1)), entry.getKey());
+            for (AliasMetadata alias : entry.getValue()) {
+                if (options.getAlias().equals(alias.alias())) {
+                    state.live.add(entry.getKey());
+                }
+            }
+        }
+        if (state.live.isEmpty()
+            && client.indices().exists(new GetIndexRequest(options.getAlias()), RequestOptions.DEFAULT)) {
+            // 还没有迁移到别名的具体索引
+            state.legacy = true;
+            state.live.add(options.getAlias());
+        }
+        return state;
+    }
+
+    private String create(State state) throws IOException {
+        int version = state.versions.isEmpty() ? 1 : state.versions.lastKey() + 1;
+        String index = options.getAlias() + "_v" + version;
+        CreateIndexRequest request = new CreateIndexRequest(index)
+            .settings(Settings.builder()
+                .put("index.number_of_shards", options.getShards())
+                .put("index.number_of_replicas", 0)
+                .put("index.refresh_interval", "-1")
+                .put("index.translog.durability", "async"))
+            .mapping(options.getMapping(), XContentType.JSON);
+        client.indices().create(request, RequestOptions.DEFAULT);
+        log.info("Created {} for loading", index);
+        return index;
+    }
+
+    /**
+     * 服务端 reindex，按 slices 切片并行读取源索引；提交为后台任务后轮询结果，避免长请求超时
+     *
+     * @param query 只复制匹配的文档，null 为全部
+     */
+    private void copy(String source, String target, JSONObject query) throws IOException, InterruptedException {
+        JSONObject from = JSONObject.of("index", source, "size", options.getReindexBatchSize());
+        if (query != null) {
+            from.put("query", query);
+        }
+        JSONObject body = new JSONObject();
+        body.put("source", from);
+        // 保留源文档的版本号，已是更新版本的文档产生冲突后跳过
+        body.put("dest", JSONObject.of("index", target, "version_type", "external"));
+        body.put("conflicts", "proceed");
+        Request submit = new Request("POST", "/_reindex");
+        submit.addParameter("wait_for_completion", "false");
+        submit.addParameter("slices", options.getSlices() > 0 ? String.valueOf(options.getSlices()) : "auto");
+        submit.setJsonEntity(body.toJSONString());
+        String task = JSON.parseObject(perform(submit)).getString("task");
+
+        JSONObject status;
+        while (true) {
+            status = JSON.parseObject(perform(new Request("GET", "/_tasks/" + task)));
+            if (status.getBooleanValue("completed")) {
+                break;
+            }
+            TimeUnit.MILLISECONDS.sleep(options.getPollIntervalMillis());
+        }
+        if (status.containsKey("error")) {
+            throw new IOException("reindex " + source + " -> " + target + " failed: " + status.getJSONObject("error"));
+        }
+        JSONObject result = status.getJSONObject("response");
+        JSONArray failures = result == null ? null : result.getJSONArray("failures");
+        if (failures != null && !failures.isEmpty()) {
+            throw new IOException("reindex " + source + " -> " + target + " failed: " + failures.get(0));
+        }
+        log.info("Reindexed {} -> {}{}: {}", source, target, query == null ? "" : " (changed)", result);
+    }
+
+    private String perform(Request request) throws IOException {
+        return EntityUtils.toString(client.getLowLevelClient().performRequest(request).getEntity());
+    }
+
+    /**
+     * 恢复查询用的设置，合并段并等待副本分配
+     */
+    private void prepareForSearch(String index) throws IOException {
+        client.indices().putSettings(new UpdateSettingsRequest(index).settings(Settings.builder()
+            .put("index.number_of_replicas", options.getReplicas())
+            .put("index.refresh_interval", options.getRefreshInterval())
+            .put("index.translog.durability", "request")), RequestOptions.DEFAULT);
+        client.indices().refresh(new RefreshRequest(index), RequestOptions.DEFAULT);
+        client.indices().forcemerge(new ForceMergeRequest(index).maxNumSegments(options.getMaxNumSegments()),
+            longRequest);
+
+        Request health = new Request("GET", "/_cluster/health/" + index);
+        health.addParameter("wait_for_status", options.getWaitForStatus());
+        health.addParameter("timeout", options.getHealthTimeoutSeconds() + "s");
+        JSONObject status = JSON.parseObject(perform(health));
+        if (status.getBooleanValue("timed_out")) {
+            // 单节点等副本无法分配的集群达不到 green，不因此放弃这次重建
+            log.warn("{} is still {} after {}s, switching anyway", index, status.getString("status"),
+                options.getHealthTimeoutSeconds());
+        }
+    }
+
+    /**
+     * 一次 _aliases 请求完成别名切换
+     */
+    private void swap(String target, State state) throws IOException {
+        IndicesAliasesRequest request = new IndicesAliasesRequest();
+        request.addAliasAction(AliasActions.add().index(target).alias(options.getAlias()));
+        for (String live : state.live) {
+            if (state.legacy) {
+                request.addAliasAction(AliasActions.removeIndex().index(live));
+            } else if (!live.equals(target)) {
+                request.addAliasAction(AliasActions.remove().index(live).alias(options.getAlias()));
+            }
+        }
+        client.indices().updateAliases(request, RequestOptions.DEFAULT);
+        log.info("Alias {} now points to {} (was {})", options.getAlias(), target, state.live);
+    }
+
+    /**
+     * 删除超出保留数量的旧版本。别名已经切到 target，这里的失败不算重建失败，只记日志，下次重建时会再删
+     */
+    private void retire(String target, State state) {
+        List<String> retired = new ArrayList<>(state.versions.descendingMap().values());
+        retired.remove(target);
+        for (String index : retired.subList(Math.min(options.getRetainVersions(), retired.size()), retired.size())) {
+            try {
+                client.indices().delete(new DeleteIndexRequest(index), RequestOptions.DEFAULT);
+                log.info("Deleted retired index {}", index);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to delete retired index {}", index, e);
+            }
+        }
+    }
+
+    private void deleteQuietly(String index) {
+        try {
+            client.indices().delete(new DeleteIndexRequest(index), RequestOptions.DEFAULT);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to delete unfinished index {}", index, e);
+        }
+    }
+
+    private static final class State {
+        /**
+         * 版本号 -> 索引名
+         */
+        final TreeMap<Integer, String> versions = new TreeMap<>();
+        final List<String> live = new ArrayList<>(1);
+        boolean legacy;
+    }
+
+    /**
+     * 重建参数
+     */
+    @Getter
+    @Builder
+    public static class Options {
+        /**
+         * 读写方使用的别名，实际索引为 {alias}_v{n}
+         */
+        @Builder.Default
+        private final String alias = HotelConstants.INDEX_NAME;
+        @Builder.Default
+        private final String mapping = HotelConstants.MAPPING_TEMPLATE;
+        @Builder.Default
+        private final int shards = 1;
+        /**
+         * 导入完成后恢复的副本数
+         */
+        @Builder.Default
+        private final int replicas = 1;
+        /**
+         * 导入完成后恢复的 refresh 间隔
+         */
+        @Builder.Default
+        private final String refreshInterval = "1s";
+        /**
+         * reindex 的切片数，0 为 auto（每个分片一片）
+         */
+        @Builder.Default
+        private final int slices = 0;
+        @Builder.Default
+        private final int reindexBatchSize = 1000;
+        /**
+         * 补导时 last_updated 相对开始时间往前多取的毫秒数，覆盖写入方的时钟偏差
+         */
+        @Builder.Default
+        private final long catchUpMarginMillis = 60_000;
+        @Builder.Default
+        private final long pollIntervalMillis = 5_000;
+        @Builder.Default
+        private final int maxNumSegments = 1;
+        /**
+         * 切换前等待的集群健康状态，单节点开发环境用 yellow
+         */
+        @Builder.Default
+        private final String waitForStatus = "green";
+        @Builder.Default
+        private final long healthTimeoutSeconds = 600;
+        @Builder.Default
+        private final long longRequestTimeoutMillis = TimeUnit.HOURS.toMillis(2);
+        /**
+         * 切换后保留的旧版本数，用于 switchTo 回滚
+         */
+        @Builder.Default
+        private final int retainVersions = 1;
+    }
+}
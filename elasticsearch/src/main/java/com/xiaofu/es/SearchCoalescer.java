@@ -0,0 +1,215 @@
+package com.xiaofu.es;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 把并发的搜索请求攒成一个 MultiSearchRequest 发送，减少 HTTP 往返
+ *
+ * - 窗口从第一个请求到达开始计时，windowMicros 到期或攒够 maxBatchSize 个请求时发出，哪个先到就先发送
+ * - 每个调用方拿到自己的 future，MultiSearchResponse.Item 按请求顺序一一对应；单个条目失败只影响它自己的调用方
+ * - 窗口里只有一个请求时直接走 _search，低并发时只多出窗口等待的时间
+ * - scroll 请求 _msearch 不支持，直接发送
+ *
+ * 窗口越大，每次往返分摊的请求越多，吞吐越高，但每个请求都要多等最多一个窗口，尾延迟随之上升，
+ * 取舍见 benchmarks 模块的 SearchCoalescerBenchmark
+ **/
+public class SearchCoalescer implements Closeable {
+
+    private final RestHighLevelClient client;
+
+    private final Options options;
+
+    private final ScheduledExecutorService timer;
+
+    /**
+     * 正在攒的窗口，由 this 的锁保护
+     */
+    private Batch current;
+
+    private boolean closed;
+
+    private final AtomicLong batches = new AtomicLong();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public SearchCoalescer(RestHighLevelClient client) {
+        this(client, Options.builder().build());
+    }
+
+    public SearchCoalescer(RestHighLevelClient client, Options options) {
+        this.client = client;
+        this.options = options;
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "search-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 同步搜索，阻塞到所在窗口的响应返回
+     *
+     * @throws IOException 请求失败，ES 返回的错误以 ElasticsearchException 抛出，与 client.search 一致
+     */
+    public SearchResponse search(SearchRequest request) throws IOException {
+        return Futures.await(searchAsync(request));
+    }
+
+    public CompletableFuture<SearchResponse> searchAsync(SearchRequest request) {
+        CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+        if (request.scroll() != null) {
+            client.searchAsync(request, RequestOptions.DEFAULT, complete(future));
+            return future;
+        }
+        Batch full = null;
+        synchronized (this) {
+            if (closed) {
+                future.completeExceptionally(new IllegalStateException("search coalescer closed"));
+                return future;
+            }
+            if (current == null) {
+                Batch opened = new Batch();
+                current = opened;
+                timer.schedule(() -> flush(opened), options.getWindowMicros(), TimeUnit.MICROSECONDS);
+            }
+            current.add(request, future);
+            if (current.requests.size() >= options.getMaxBatchSize()) {
+                full = current;
+                current = null;
+            }
+        }
+        if (full != null) {
+            send(full);
+        }
+        return future;
+    }
+
+    /**
+     * 窗口到期，已因数量提前发出的窗口忽略
+     */
+    private void flush(Batch expired) {
+        synchronized (this) {
+            if (current != expired) {
+                return;
+            }
+            current = null;
+        }
+        send(expired);
+    }
+
+    private void send(Batch batch) {
+        batches.incrementAndGet();
+        if (batch.requests.size() == 1) {
+            client.searchAsync(batch.requests.get(0), RequestOptions.DEFAULT, complete(batch.futures.get(0)));
+            return;
+        }
+        coalesced.addAndGet(batch.requests.size());
+        MultiSearchRequest multi = new MultiSearchRequest();
+        batch.requests.forEach(multi::add);
+        client.msearchAsync(multi, RequestOptions.DEFAULT, new ActionListener<MultiSearchResponse>() {
+            @Override
+            public void onResponse(MultiSearchResponse response) {
+                MultiSearchResponse.Item[] items = response.getResponses();
+                for (int i = 0; i < batch.futures.size(); i++) {
+                    CompletableFuture<SearchResponse> future = batch.futures.get(i);
+                    if (i >= items.length) {
+                        future.completeExceptionally(new IOException("missing item " + i + " in msearch response"));
+                    } else if (items[i].isFailure()) {
+                        future.completeExceptionally(items[i].getFailure());
+                    } else {
+                        future.complete(items[i].getResponse());
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                batch.futures.forEach(future -> future.completeExceptionally(e));
+            }
+        });
+    }
+
+    private static ActionListener<SearchResponse> complete(CompletableFuture<SearchResponse> future) {
+        return ActionListener.wrap(future::complete, future::completeExceptionally);
+    }
+
+    /**
+     * 已发出的批次数，含只有一个请求、直接走 _search 的批次
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * 经 _msearch 合并发送的请求数
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * 立即发出正在攒的窗口并停止计时线程，已发出的请求照常返回
+     */
+    @Override
+    public void close() {
+        Batch last;
+        synchronized (this) {
+            closed = true;
+            last = current;
+            current = null;
+        }
+        if (last != null) {
+            send(last);
+        }
+        timer.shutdownNow();
+    }
+
+    private static final class Batch {
+        final List<SearchRequest> requests = new ArrayList<>();
+        final List<CompletableFuture<SearchResponse>> futures = new ArrayList<>();
+
+        void add(SearchRequest request, CompletableFuture<SearchResponse> future) {
+            requests.add(request);
+            futures.add(future);
+        }
+    }
+
+    /**
+     * 合并参数
+     */
+    @Getter
+    @Builder
+    public static class Options {
+        /**
+         * 窗口时长（微秒），即单个请求最多多等的时间
+         */
+        @Builder.Default
+        private final long windowMicros = 1_000;
+        /**
+         * 单个 _msearch 最多包含的请求数
+         */
+        @Builder.Default
+        private final int maxBatchSize = 32;
+    }
+}
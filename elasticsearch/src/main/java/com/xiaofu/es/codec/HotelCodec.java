@@ -0,0 +1,337 @@
+package com.xiaofu.es.codec;
+
+import com.alibaba.fastjson2.JSONException;
+import com.alibaba.fastjson2.JSONReader;
+import com.alibaba.fastjson2.JSONWriter;
+import com.alibaba.fastjson2.util.Fnv;
+import com.xiaofu.es.entity.Hotel;
+import com.xiaofu.es.entity.Location;
+import com.xiaofu.es.entity.Room;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.search.SearchHit;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description Hotel 文档编解码
+ *
+ * 直接在 _source 的 UTF-8 字节上按字段名 hash 分派解析，不经过中间 String，也不走反射；
+ * 编码同样直接写 UTF-8 字节，可用于 IndexRequest.source(bytes, XContentType.JSON)
+ **/
+public final class HotelCodec {
+
+    private static final long ID = Fnv.hashCode64("id");
+    private static final long NAME = Fnv.hashCode64("name");
+    private static final long BRAND = Fnv.hashCode64("brand");
+    private static final long CITY = Fnv.hashCode64("city");
+    private static final long BUSINESS = Fnv.hashCode64("business");
+    private static final long STARS = Fnv.hashCode64("stars");
+    private static final long PRICE = Fnv.hashCode64("price");
+    private static final long DESCRIPTION = Fnv.hashCode64("description");
+    private static final long ADDRESS = Fnv.hashCode64("address");
+    private static final long PIC = Fnv.hashCode64("pic");
+    private static final long IS_AD = Fnv.hashCode64("isAD");
+    private static final long LOCATION = Fnv.hashCode64("location");
+    private static final long LAT = Fnv.hashCode64("lat");
+    private static final long LON = Fnv.hashCode64("lon");
+    private static final long ROOMS = Fnv.hashCode64("rooms");
+    private static final long ROOM_NUMBER = Fnv.hashCode64("room_number");
+    private static final long ROOM_TYPE = Fnv.hashCode64("room_type");
+    private static final long BED_COUNT = Fnv.hashCode64("bed_count");
+    private static final long AMENITIES = Fnv.hashCode64("amenities");
+    private static final long LAST_UPDATED = Fnv.hashCode64("last_updated");
+
+    private HotelCodec() {
+    }
+
+    public static Hotel decode(SearchHit hit) {
+        return decode(hit.getSourceRef());
+    }
+
+    public static Hotel decode(GetResponse response) {
+        return response.isExists() ? decode(response.getSourceInternal()) : null;
+    }
+
+    public static Hotel decode(BytesReference source) {
+        if (source == null) {
+            return null;
+        }
+        // 响应体由单个数组承载时 toBytesRef 不会拷贝
+        BytesRef ref = source.toBytesRef();
+        return decode(ref.bytes, ref.offset, ref.length);
+    }
+
+    public static Hotel decode(byte[] bytes) {
+        return decode(bytes, 0, bytes.length);
+    }
+
+    public static Hotel decode(byte[] bytes, int offset, int length) {
+        try (JSONReader reader = JSONReader.of(bytes, offset, length, StandardCharsets.UTF_8)) {
+            if (!reader.nextIfObjectStart()) {
+                throw new JSONException("hotel source must be a json object");
+            }
+            Hotel hotel = new Hotel();
+            while (!reader.nextIfObjectEnd()) {
+                long field = reader.readFieldNameHashCode();
+                if (reader.nextIfNull()) {
+                    continue;
+                }
+                if (field == ID) {
+                    hotel.setId(reader.readInt64Value());
+                } else if (field == NAME) {
+                    hotel.setName(reader.readString());
+                } else if (field == BRAND) {
+                    hotel.setBrand(reader.readString());
+                } else if (field == CITY) {
+                    hotel.setCity(reader.readString());
+                } else if (field == BUSINESS) {
+                    hotel.setBusiness(reader.readString());
+                } else if (field == STARS) {
+                    hotel.setStars(reader.readInt32Value());
+                } else if (field == PRICE) {
+                    hotel.setPrice(reader.readDoubleValue());
+                } else if (field == DESCRIPTION) {
+                    hotel.setDescription(reader.readString());
+                } else if (field == ADDRESS) {
+                    hotel.setAddress(reader.readString());
+                } else if (field == PIC) {
+                    hotel.setPic(reader.readString());
+                } else if (field == IS_AD) {
+                    hotel.setIsAD(reader.readBoolValue());
+                } else if (field == LOCATION) {
+                    hotel.setLocation(readLocation(reader));
+                } else if (field == ROOMS) {
+                    hotel.setRooms(readRooms(reader));
+                } else if (field == AMENITIES) {
+                    hotel.setAmenities(readStrings(reader));
+                } else if (field == LAST_UPDATED) {
+                    hotel.setLastUpdated(reader.readDate());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            return hotel;
+        }
+    }
+
+    /**
+     * geo_point 支持 {"lat":..,"lon":..}、"lat,lon" 和 [lon, lat] 三种写法
+     */
+    private static Location readLocation(JSONReader reader) {
+        if (reader.isString()) {
+            String text = reader.readString();
+            int comma = text.indexOf(',');
+            if (comma < 0) {
+                throw new JSONException("unsupported geo_point: " + text);
+            }
+            return new Location(Double.parseDouble(text.substring(0, comma).trim()),
+                Double.parseDouble(text.substring(comma + 1).trim()));
+        }
+        Location location = new Location();
+        if (reader.nextIfArrayStart()) {
+            location.setLon(reader.readDoubleValue());
+            location.setLat(reader.readDoubleValue());
+            while (!reader.nextIfArrayEnd()) {
+                reader.skipValue();
+            }
+            return location;
+        }
+        if (!reader.nextIfObjectStart()) {
+            throw new JSONException("unsupported geo_point");
+        }
+        while (!reader.nextIfObjectEnd()) {
+            long field = reader.readFieldNameHashCode();
+            if (field == LAT) {
+                location.setLat(reader.readDoubleValue());
+            } else if (field == LON) {
+                location.setLon(reader.readDoubleValue());
+            } else {
+                reader.skipValue();
+            }
+        }
+        return location;
+    }
+
+    private static List<Room> readRooms(JSONReader reader) {
+        List<Room> rooms = new ArrayList<>();
+        if (!reader.nextIfArrayStart()) {
+            // 单个对象也是合法的 nested 写法
+            rooms.add(readRoom(reader));
+            return rooms;
+        }
+        while (!reader.nextIfArrayEnd()) {
+            rooms.add(readRoom(reader));
+        }
+        return rooms;
+    }
+
+    private static Room readRoom(JSONReader reader) {
+        if (!reader.nextIfObjectStart()) {
+            throw new JSONException("room must be a json object");
+        }
+        Room room = new Room();
+        while (!reader.nextIfObjectEnd()) {
+            long field = reader.readFieldNameHashCode();
+            if (reader.nextIfNull()) {
+                continue;
+            }
+            if (field == ROOM_NUMBER) {
+                room.setRoomNumber(reader.readString());
+            } else if (field == ROOM_TYPE) {
+                room.setRoomType(reader.readString());
+            } else if (field == BED_COUNT) {
+                room.setBedCount(reader.readInt32Value());
+            } else {
+                reader.skipValue();
+            }
+        }
+        return room;
+    }
+
+    private static List<String> readStrings(JSONReader reader) {
+        List<String> values = new ArrayList<>();
+        if (!reader.nextIfArrayStart()) {
+            // keyword 字段可以是单值
+            values.add(reader.readString());
+            return values;
+        }
+        while (!reader.nextIfArrayEnd()) {
+            values.add(reader.readString());
+        }
+        return values;
+    }
+
+    /**
+     * 编码为 _source 字节，null 字段不输出
+     */
+    public static byte[] encode(Hotel hotel) {
+        try (JSONWriter writer = JSONWriter.ofUTF8()) {
+            writer.startObject();
+            if (hotel.getId() != null) {
+                writer.writeName("id");
+                writer.writeColon();
+                writer.writeInt64(hotel.getId());
+            }
+            writeString(writer, "name", hotel.getName());
+            writeString(writer, "brand", hotel.getBrand());
+            writeString(writer, "city", hotel.getCity());
+            writeString(writer, "business", hotel.getBusiness());
+            if (hotel.getStars() != null) {
+                writer.writeName("stars");
+                writer.writeColon();
+                writer.writeInt32(hotel.getStars());
+            }
+            if (hotel.getPrice() != null) {
+                writer.writeName("price");
+                writer.writeColon();
+                writer.writeDouble(hotel.getPrice());
+            }
+            writeString(writer, "description", hotel.getDescription());
+            writeString(writer, "address", hotel.getAddress());
+            writeString(writer, "pic", hotel.getPic());
+            if (hotel.getIsAD() != null) {
+                writer.writeName("isAD");
+                writer.writeColon();
+                writer.writeBool(hotel.getIsAD());
+            }
+            if (hotel.getLocation() != null) {
+                writer.writeName("location");
+                writer.writeColon();
+                writer.startObject();
+                writer.writeName("lat");
+                writer.writeColon();
+                writer.writeDouble(hotel.getLocation().getLat());
+                writer.writeName("lon");
+                writer.writeColon();
+                writer.writeDouble(hotel.getLocation().getLon());
+                writer.endObject();
+            }
+            if (hotel.getRooms() != null) {
+                writer.writeName("rooms");
+                writer.writeColon();
+                writer.startArray();
+                List<Room> rooms = hotel.getRooms();
+                for (int i = 0; i < rooms.size(); i++) {
+                    if (i > 0) {
+                        writer.writeComma();
+                    }
+                    writeRoom(writer, rooms.get(i));
+                }
+                writer.endArray();
+            }
+            if (hotel.getAmenities() != null) {
+                writer.writeName("amenities");
+                writer.writeColon();
+                writer.writeString(hotel.getAmenities());
+            }
+            if (hotel.getLastUpdated() != null) {
+                writer.writeName("last_updated");
+                writer.writeColon();
+                writeStrictDateTime(writer, hotel.getLastUpdated());
+            }
+            writer.endObject();
+            return writer.getBytes();
+        }
+    }
+
+    private static void writeRoom(JSONWriter writer, Room room) {
+        writer.startObject();
+        writeString(writer, "room_number", room.getRoomNumber());
+        writeString(writer, "room_type", room.getRoomType());
+        if (room.getBedCount() != null) {
+            writer.writeName("bed_count");
+            writer.writeColon();
+            writer.writeInt32(room.getBedCount());
+        }
+        writer.endObject();
+    }
+
+    private static void writeString(JSONWriter writer, String name, String value) {
+        if (value != null) {
+            writer.writeName(name);
+            writer.writeColon();
+            writer.writeString(value);
+        }
+    }
+
+    /**
+     * strict_date_time：yyyy-MM-dd'T'HH:mm:ss.SSSZ，统一按 UTC 输出；毫秒为 0 时也必须输出 .000
+     */
+    private static void writeStrictDateTime(JSONWriter writer, Date date) {
+        long millis = date.getTime();
+        LocalDateTime time = LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L), 0, ZoneOffset.UTC);
+        char[] chars = new char[24];
+        digits(chars, 0, time.getYear(), 4);
+        chars[4] = '-';
+        digits(chars, 5, time.getMonthValue(), 2);
+        chars[7] = '-';
+        digits(chars, 8, time.getDayOfMonth(), 2);
+        chars[10] = 'T';
+        digits(chars, 11, time.getHour(), 2);
+        chars[13] = ':';
+        digits(chars, 14, time.getMinute(), 2);
+        chars[16] = ':';
+        digits(chars, 17, time.getSecond(), 2);
+        chars[19] = '.';
+        digits(chars, 20, (int) Math.floorMod(millis, 1000L), 3);
+        chars[23] = 'Z';
+        writer.writeString(chars);
+    }
+
+    private static void digits(char[] chars, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
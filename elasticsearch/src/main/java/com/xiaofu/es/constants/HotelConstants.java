@@ -1,5 +1,8 @@
 package com.xiaofu.es.constants;
 
+import com.xiaofu.es.entity.Hotel;
+import com.xiaofu.es.mapping.EsMappings;
+
 /**
  * @author fuzhouling
  * @date 2024/06/01
@@ -7,46 +10,19 @@ package com.xiaofu.es.constants;
  * @description HotelConstants
  **/
 public class HotelConstants {
-    public static final String MAPPING_TEMPLATE = "{\"properties\": {\n" +
-        "      \"name\": {\n" +
-        "        \"type\": \"text\"\n" +
-        "      },\n" +
-        "      \"stars\": {\n" +
-        "        \"type\": \"integer\"\n" +
-        "      },\n" +
-        "      \"price\": {\n" +
-        "        \"type\": \"double\"\n" +
-        "      },\n" +
-        "      \"description\": {\n" +
-        "        \"type\": \"text\"\n" +
-        "      },\n" +
-        "      \"address\": {\n" +
-        "        \"type\": \"text\"\n" +
-        "      },\n" +
-        "      \"location\": {\n" +
-        "        \"type\": \"geo_point\"\n" +
-        "      },\n" +
-        "      \"rooms\": {\n" +
-        "        \"type\": \"nested\",\n" +
-        "        \"properties\": {\n" +
-        "          \"room_number\": {\n" +
-        "            \"type\": \"keyword\"\n" +
-        "          },\n" +
-        "          \"room_type\": {\n" +
-        "            \"type\": \"text\"\n" +
-        "          },\n" +
-        "          \"bed_count\": {\n" +
-        "            \"type\": \"integer\"\n" +
-        "          }\n" +
-        "        }\n" +
-        "      },\n" +
-        "      \"amenities\": {\n" +
-        "        \"type\": \"keyword\"\n" +
-        "      },\n" +
-        "      \"last_updated\": {\n" +
-        "        \"type\": \"date\",\n" +
-        "        \"format\": \"strict_date_time\"\n" +
-        "      }\n" +
-        "    }}";
+    /**
+     * 酒店索引库名称
+     */
+    public static final String INDEX_NAME = "hotel";
+
+    /**
+     * 组合搜索字段，name、brand、business、address、description、amenities 通过 copy_to 写入
+     */
+    public static final String ALL_FIELD = "all";
+
+    /**
+     * 由 Hotel 上的 @EsField 生成，实体与 mapping 只维护一处
+     */
+    public static final String MAPPING_TEMPLATE = EsMappings.mapping(Hotel.class);
 
 }
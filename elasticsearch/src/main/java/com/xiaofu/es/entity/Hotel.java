@@ -1,14 +1,87 @@
 package com.xiaofu.es.entity;
 
+import com.alibaba.fastjson2.annotation.JSONField;
+import com.xiaofu.es.constants.HotelConstants;
+import com.xiaofu.es.mapping.EsField;
+import com.xiaofu.es.mapping.FieldType;
 import lombok.Data;
 
+import java.util.Date;
+import java.util.List;
+
 /**
  * @author fuzhouling
  * @date 2024/06/01
  * @program middle_ware_group
- * @description 酒店实体类
+ * @description 酒店实体类，HotelConstants.MAPPING_TEMPLATE 由字段上的 @EsField 生成
+ *
+ * 名称、品牌、商圈、地址、描述、设施都复制到 all，关键字搜索只查 all 一个字段
  **/
 @Data
 public class Hotel {
+    /**
+     * 酒店id，同时作为文档 _id
+     */
+    @EsField(type = FieldType.KEYWORD)
+    private Long id;
+    @EsField(type = FieldType.TEXT, copyTo = HotelConstants.ALL_FIELD, keyword = true)
     private String name;
+    /**
+     * 品牌，用于聚合
+     */
+    @EsField(type = FieldType.KEYWORD, copyTo = HotelConstants.ALL_FIELD)
+    private String brand;
+    @EsField(type = FieldType.KEYWORD)
+    private String city;
+    /**
+     * 商圈
+     */
+    @EsField(type = FieldType.KEYWORD, copyTo = HotelConstants.ALL_FIELD)
+    private String business;
+    /**
+     * 星级
+     */
+    @EsField(type = FieldType.INTEGER)
+    private Integer stars;
+    @EsField(type = FieldType.DOUBLE)
+    private Double price;
+    /**
+     * 只经 all 参与搜索
+     */
+    @EsField(type = FieldType.TEXT, copyTo = HotelConstants.ALL_FIELD, index = false)
+    private String description;
+    @EsField(type = FieldType.TEXT, copyTo = HotelConstants.ALL_FIELD, index = false)
+    private String address;
+    /**
+     * 图片地址，只展示
+     */
+    @EsField(type = FieldType.KEYWORD, index = false, docValues = false)
+    private String pic;
+    /**
+     * 是否广告，用于加权
+     */
+    @JSONField(name = "isAD")
+    @EsField(type = FieldType.BOOLEAN)
+    private Boolean isAD;
+    /**
+     * 经纬度，对应 geo_point
+     */
+    @EsField(type = FieldType.GEO_POINT)
+    private Location location;
+    /**
+     * 房间，对应 nested 类型
+     */
+    @EsField(type = FieldType.NESTED)
+    private List<Room> rooms;
+    /**
+     * 设施，对应 keyword 数组
+     */
+    @EsField(type = FieldType.KEYWORD, copyTo = HotelConstants.ALL_FIELD)
+    private List<String> amenities;
+    /**
+     * 最后更新时间，对应 strict_date_time 格式
+     */
+    @JSONField(name = "last_updated", format = "yyyy-MM-dd'T'HH:mm:ss.SSSXXX")
+    @EsField(type = FieldType.DATE, format = "strict_date_time")
+    private Date lastUpdated;
 }
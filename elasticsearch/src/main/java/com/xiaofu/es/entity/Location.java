@@ -0,0 +1,25 @@
+package com.xiaofu.es.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 经纬度，对应 geo_point 的 {"lat": .., "lon": ..} 格式
+ **/
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Location {
+    /**
+     * 纬度
+     */
+    private double lat;
+    /**
+     * 经度
+     */
+    private double lon;
+}
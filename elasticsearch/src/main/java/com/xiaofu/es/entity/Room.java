@@ -0,0 +1,28 @@
+package com.xiaofu.es.entity;
+
+import com.alibaba.fastjson2.annotation.JSONField;
+import com.xiaofu.es.mapping.EsField;
+import com.xiaofu.es.mapping.FieldType;
+import lombok.Data;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 酒店房间，对应 hotel.rooms 的 nested 文档
+ **/
+@Data
+public class Room {
+    /**
+     * 只按房号精确查找，不排序
+     */
+    @JSONField(name = "room_number")
+    @EsField(type = FieldType.KEYWORD, docValues = false)
+    private String roomNumber;
+    @JSONField(name = "room_type")
+    @EsField(type = FieldType.TEXT, keyword = true)
+    private String roomType;
+    @JSONField(name = "bed_count")
+    @EsField(type = FieldType.INTEGER)
+    private Integer bedCount;
+}
@@ -0,0 +1,416 @@
+package com.xiaofu.es.geo;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.xiaofu.es.HotelWriteListener;
+import com.xiaofu.es.codec.HotelCodec;
+import com.xiaofu.es.entity.Hotel;
+import com.xiaofu.es.entity.Location;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.common.geo.GeoUtils;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.geometry.utils.Geohash;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 热门区域酒店坐标的进程内 geohash 索引
+ *
+ * - 区域（region）：regionPrecision 位 geohash，默认 4 位，约 39km x 20km，大致对应一个城市的主城区
+ * - 格子（cell）：cellPrecision 位 geohash，默认 6 位，约 1.2km x 0.6km，酒店按坐标落到格子里
+ * - 只收录热门区域内的酒店；查询圆的外接矩形完全落在已就绪的热门区域内时才由本地回答，否则交给 ES
+ * - 注册为 HotelWriteListener 后随写入同步：index 全量替换，update 在本地合并局部字段，delete 删除
+ * - 本地无法合并的更新（脚本更新、本地没有的酒店移入热门区域）先从本地移除，再由后台线程从 ES 取回完整文档；
+ *   afterWrite 可能在 ES 客户端的 I/O 线程上回调，这里不做任何阻塞读取
+ *
+ * 读无锁，写按对象加锁；存入的 Hotel 不再修改，调用方拿到后也不要修改
+ **/
+@Slf4j
+public class HotelGeoIndex implements HotelWriteListener {
+
+    /**
+     * 一次查询最多扫描的格子数，半径过大时交给 ES
+     */
+    private static final int MAX_SCAN_CELLS = 4096;
+
+    private final int regionPrecision;
+
+    private final int cellPrecision;
+
+    /**
+     * 已加载完成、可以回答查询的区域
+     */
+    private final Set<String> readyRegions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 正在加载的区域，写入照常同步，但还不回答查询
+     */
+    private final Set<String> loadingRegions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 格子 -> (文档 id -> 酒店)
+     */
+    private final Map<String, Map<String, Hotel>> cells = new ConcurrentHashMap<>();
+
+    /**
+     * 文档 id -> 所在格子，坐标变化时用于从旧格子移除
+     */
+    private final Map<String, String> cellOfId = new ConcurrentHashMap<>();
+
+    /**
+     * 本地没有的文档发生局部更新且坐标移入热门区域时，用它取回完整文档
+     */
+    private volatile Function<String, Hotel> missingDocLoader;
+
+    /**
+     * 等待后台取回的文档 id -> 本次取回的标记；期间该 id 有新的写入时标记被替换或清除，旧的取回结果丢弃
+     */
+    private final Map<String, Object> pendingReloads = new ConcurrentHashMap<>();
+
+    private final ExecutorService reloader = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "hotel-geo-reload");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public HotelGeoIndex() {
+        this(4, 6);
+    }
+
+    public HotelGeoIndex(int regionPrecision, int cellPrecision) {
+        if (regionPrecision < 1 || cellPrecision < regionPrecision || cellPrecision > Geohash.PRECISION) {
+            throw new IllegalArgumentException("invalid precision: region=" + regionPrecision
+                + ", cell=" + cellPrecision);
+        }
+        this.regionPrecision = regionPrecision;
+        this.cellPrecision = cellPrecision;
+    }
+
+    public void setMissingDocLoader(Function<String, Hotel> missingDocLoader) {
+        this.missingDocLoader = missingDocLoader;
+    }
+
+    public int getRegionPrecision() {
+        return regionPrecision;
+    }
+
+    /**
+     * 开始收录一个区域，之后该区域内的写入都会同步到本地
+     */
+    public void startLoading(String region) {
+        checkRegion(region);
+        loadingRegions.add(region);
+    }
+
+    /**
+     * 区域加载完成，开始由本地回答查询
+     */
+    public void markReady(String region) {
+        checkRegion(region);
+        readyRegions.add(region);
+        loadingRegions.remove(region);
+    }
+
+    /**
+     * 移除区域及其中的酒店
+     */
+    public synchronized void removeRegion(String region) {
+        readyRegions.remove(region);
+        loadingRegions.remove(region);
+        cells.keySet().removeIf(cell -> {
+            if (!cell.startsWith(region)) {
+                return false;
+            }
+            cellOfId.keySet().removeAll(cells.get(cell).keySet());
+            return true;
+        });
+    }
+
+    public Set<String> readyRegions() {
+        return Collections.unmodifiableSet(readyRegions);
+    }
+
+    public int size() {
+        return cellOfId.size();
+    }
+
+    private void checkRegion(String region) {
+        if (region == null || region.length() != regionPrecision) {
+            throw new IllegalArgumentException("region must be a geohash of length " + regionPrecision
+                + ": " + region);
+        }
+    }
+
+    private boolean isTracked(String region) {
+        return readyRegions.contains(region) || loadingRegions.contains(region);
+    }
+
+    /**
+     * 查询圆是否完全落在已就绪的区域内
+     */
+    public boolean covers(double lat, double lon, double radiusMeters) {
+        BoundingBox box = BoundingBox.of(lat, lon, radiusMeters);
+        if (box == null) {
+            return false;
+        }
+        Set<String> regions = box.geohashes(regionPrecision, MAX_SCAN_CELLS);
+        return regions != null && readyRegions.containsAll(regions);
+    }
+
+    /**
+     * 本地查询半径内的酒店，按距离升序，调用前应先用 covers 判断
+     *
+     * @param size 最多返回条数
+     */
+    public List<NearbyHotel> nearby(double lat, double lon, double radiusMeters, int size) {
+        BoundingBox box = BoundingBox.of(lat, lon, radiusMeters);
+        Set<String> scan = box == null ? null : box.geohashes(cellPrecision, MAX_SCAN_CELLS);
+        if (scan == null) {
+            throw new IllegalArgumentException("radius too large for local search: " + radiusMeters);
+        }
+        // 大顶堆保留最近的 size 个
+        Comparator<NearbyHotel> byDistance = Comparator.comparingDouble(NearbyHotel::getDistanceMeters)
+            .thenComparing(nearby -> nearby.getHotel().getId(), Comparator.nullsLast(Comparator.naturalOrder()));
+        PriorityQueue<NearbyHotel> nearest = new PriorityQueue<>(size + 1, byDistance.reversed());
+        for (String cell : scan) {
+            Map<String, Hotel> hotels = cells.get(cell);
+            if (hotels == null) {
+                continue;
+            }
+            for (Hotel hotel : hotels.values()) {
+                Location location = hotel.getLocation();
+                double distance = GeoUtils.arcDistance(lat, lon, location.getLat(), location.getLon());
+                if (distance > radiusMeters) {
+                    continue;
+                }
+                nearest.add(new NearbyHotel(hotel, distance));
+                if (nearest.size() > size) {
+                    nearest.poll();
+                }
+            }
+        }
+        List<NearbyHotel> result = new ArrayList<>(nearest);
+        result.sort(byDistance);
+        return result;
+    }
+
+    public Hotel get(String id) {
+        String cell = cellOfId.get(id);
+        if (cell == null) {
+            return null;
+        }
+        Map<String, Hotel> hotels = cells.get(cell);
+        return hotels == null ? null : hotels.get(id);
+    }
+
+    /**
+     * 写入或替换酒店；坐标不在收录区域内时从本地移除
+     */
+    public void put(Hotel hotel) {
+        put(String.valueOf(hotel.getId()), hotel);
+    }
+
+    /**
+     * @param id 文档 _id
+     */
+    public synchronized void put(String id, Hotel hotel) {
+        pendingReloads.remove(id);
+        Location location = hotel.getLocation();
+        String cell = location == null ? null : Geohash.stringEncode(location.getLon(), location.getLat(), cellPrecision);
+        if (cell == null || !isTracked(cell.substring(0, regionPrecision))) {
+            remove(id);
+            return;
+        }
+        String previous = cellOfId.put(id, cell);
+        if (previous != null && !previous.equals(cell)) {
+            removeFromCell(previous, id);
+        }
+        cells.computeIfAbsent(cell, k -> new ConcurrentHashMap<>()).put(id, hotel);
+    }
+
+    /**
+     * 仅在本地没有该酒店、也不在等待取回时写入，用于区域加载，避免覆盖加载期间同步进来的更新
+     */
+    public synchronized void putIfAbsent(Hotel hotel) {
+        String id = String.valueOf(hotel.getId());
+        if (!cellOfId.containsKey(id) && !pendingReloads.containsKey(id)) {
+            put(id, hotel);
+        }
+    }
+
+    public synchronized void remove(String id) {
+        pendingReloads.remove(id);
+        String cell = cellOfId.remove(id);
+        if (cell != null) {
+            removeFromCell(cell, id);
+        }
+    }
+
+    private void removeFromCell(String cell, String id) {
+        Map<String, Hotel> hotels = cells.get(cell);
+        if (hotels != null) {
+            hotels.remove(id);
+            if (hotels.isEmpty()) {
+                cells.remove(cell);
+            }
+        }
+    }
+
+    @Override
+    public void afterWrite(DocWriteRequest<?> request) {
+        if (request instanceof IndexRequest) {
+            Hotel hotel = HotelCodec.decode(((IndexRequest) request).source());
+            put(request.id() != null ? request.id() : String.valueOf(hotel.getId()), hotel);
+        } else if (request instanceof DeleteRequest) {
+            remove(request.id());
+        } else if (request instanceof UpdateRequest) {
+            applyUpdate((UpdateRequest) request);
+        }
+    }
+
+    private synchronized void applyUpdate(UpdateRequest request) {
+        String id = request.id();
+        if (request.script() != null || request.doc() == null || pendingReloads.containsKey(id)) {
+            // 脚本更新的结果只有 ES 知道；已在等待取回的文档重新取一次，避免拿到这次写入之前的版本
+            reload(id);
+            return;
+        }
+        Map<String, Object> changes = request.doc().sourceAsMap();
+        Hotel existing = get(id);
+        if (existing != null) {
+            // 与 ES 一致的局部合并：对象字段递归合并，其余字段覆盖
+            JSONObject source = JSON.parseObject(HotelCodec.encode(existing));
+            XContentHelper.update(source, changes, false);
+            put(id, HotelCodec.decode(JSON.toJSONBytes(source)));
+        } else if (changes.containsKey("location")) {
+            Location location = HotelCodec.decode(request.doc().source()).getLocation();
+            if (location != null
+                && isTracked(Geohash.stringEncode(location.getLon(), location.getLat(), regionPrecision))) {
+                // 从别处移入热门区域，本地没有其它字段
+                reload(id);
+            }
+        }
+    }
+
+    /**
+     * 先从本地移除，再交给后台线程取回，调用方持有锁，不能在这里读 ES
+     */
+    private void reload(String id) {
+        remove(id);
+        Function<String, Hotel> loader = missingDocLoader;
+        if (loader == null) {
+            log.warn("No loader for hotel {}, dropped from geo index until next load", id);
+            return;
+        }
+        Object token = new Object();
+        pendingReloads.put(id, token);
+        reloader.execute(() -> load(id, token, loader));
+    }
+
+    private void load(String id, Object token, Function<String, Hotel> loader) {
+        if (pendingReloads.get(id) != token) {
+            return;
+        }
+        Hotel hotel;
+        try {
+            hotel = loader.apply(id);
+        } catch (RuntimeException e) {
+            pendingReloads.remove(id, token);
+            log.warn("Failed to reload hotel {}, dropped from geo index until next load", id, e);
+            return;
+        }
+        synchronized (this) {
+            if (pendingReloads.remove(id, token) && hotel != null) {
+                put(id, hotel);
+            }
+        }
+    }
+
+    /**
+     * 等待后台取回的文档数
+     */
+    public int pendingReloads() {
+        return pendingReloads.size();
+    }
+
+    /**
+     * 查询圆的外接经纬度矩形
+     */
+    static final class BoundingBox {
+        final double minLat;
+        final double maxLat;
+        final double minLon;
+        final double maxLon;
+
+        private BoundingBox(double minLat, double maxLat, double minLon, double maxLon) {
+            this.minLat = minLat;
+            this.maxLat = maxLat;
+            this.minLon = minLon;
+            this.maxLon = maxLon;
+        }
+
+        /**
+         * 跨越极点或 180 度经线时返回 null，交给 ES 处理
+         */
+        static BoundingBox of(double lat, double lon, double radiusMeters) {
+            double latDelta = Math.toDegrees(radiusMeters / GeoUtils.EARTH_MEAN_RADIUS);
+            double minLat = lat - latDelta;
+            double maxLat = lat + latDelta;
+            if (minLat < -90 || maxLat > 90) {
+                return null;
+            }
+            // 取纬度绝对值较大的一边计算经度跨度，保证矩形包住整个圆
+            double widestLat = Math.toRadians(Math.max(Math.abs(minLat), Math.abs(maxLat)));
+            double lonDelta = Math.toDegrees(radiusMeters / (GeoUtils.EARTH_MEAN_RADIUS * Math.cos(widestLat)));
+            double minLon = lon - lonDelta;
+            double maxLon = lon + lonDelta;
+            if (minLon < -180 || maxLon > 180) {
+                return null;
+            }
+            return new BoundingBox(minLat, maxLat, minLon, maxLon);
+        }
+
+        /**
+         * 与矩形相交的所有 geohash，超过 limit 个时返回 null
+         */
+        Set<String> geohashes(int precision, int limit) {
+            double height = Geohash.latHeightInDegrees(precision);
+            double width = Geohash.lonWidthInDegrees(precision);
+            long firstRow = (long) Math.floor((minLat + 90) / height);
+            long lastRow = (long) Math.floor((maxLat + 90) / height);
+            long firstCol = (long) Math.floor((minLon + 180) / width);
+            long lastCol = (long) Math.floor((maxLon + 180) / width);
+            if ((lastRow - firstRow + 1) * (lastCol - firstCol + 1) > limit) {
+                return null;
+            }
+            Set<String> hashes = new HashSet<>();
+            for (long row = firstRow; row <= lastRow; row++) {
+                // 取格子中心点编码，避免落在边界上的浮点误差
+                double lat = Math.min(-90 + (row + 0.5) * height, 90);
+                for (long col = firstCol; col <= lastCol; col++) {
+                    double lon = Math.min(-180 + (col + 0.5) * width, 180);
+                    hashes.add(Geohash.stringEncode(lon, lat, precision));
+                }
+            }
+            return hashes;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.xiaofu.es.geo;
+
+import com.xiaofu.es.entity.Hotel;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 附近酒店查询结果：酒店 + 与查询点的球面距离
+ **/
+@Getter
+@ToString
+public class NearbyHotel {
+    private final Hotel hotel;
+    /**
+     * 距离，单位米
+     */
+    private final double distanceMeters;
+
+    public NearbyHotel(Hotel hotel, double distanceMeters) {
+        this.hotel = hotel;
+        this.distanceMeters = distanceMeters;
+    }
+}
@@ -0,0 +1,146 @@
+package com.xiaofu.es.geo;
+
+import com.xiaofu.es.HotelPager;
+import com.xiaofu.es.codec.HotelCodec;
+import com.xiaofu.es.constants.HotelConstants;
+import com.xiaofu.es.entity.Hotel;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.geo.GeoDistance;
+import org.elasticsearch.common.unit.DistanceUnit;
+import org.elasticsearch.geometry.Rectangle;
+import org.elasticsearch.geometry.utils.Geohash;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 附近酒店：按半径过滤、按距离升序
+ *
+ * 热门区域由进程内的 HotelGeoIndex 回答，不经过集群；长尾区域走 ES 的 geo_distance 过滤 + _geo_distance 排序。
+ * 两边都使用球面（arc）距离，结果一致。使用前需要把 HotelGeoIndex 注册到 HotelDocumentService / HotelBulkIndexer
+ **/
+@Slf4j
+public class NearbyHotelService {
+
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private final RestHighLevelClient client;
+
+    private final String index;
+
+    private final HotelGeoIndex geoIndex;
+
+    private final LongAdder localQueries = new LongAdder();
+
+    private final LongAdder remoteQueries = new LongAdder();
+
+    public NearbyHotelService(RestHighLevelClient client, HotelGeoIndex geoIndex) {
+        this(client, HotelConstants.INDEX_NAME, geoIndex);
+    }
+
+    public NearbyHotelService(RestHighLevelClient client, String index, HotelGeoIndex geoIndex) {
+        this.client = client;
+        this.index = index;
+        this.geoIndex = geoIndex;
+        geoIndex.setMissingDocLoader(this::get);
+    }
+
+    /**
+     * 把一个区域加载进本地索引，加载完成后该区域的查询不再访问 ES
+     *
+     * 先开始跟踪写入再导出快照，导出的数据只在本地没有时写入，不会覆盖加载期间同步进来的更新
+     *
+     * @param region geohash，长度等于 HotelGeoIndex 的 regionPrecision
+     */
+    public void loadRegion(String region) throws IOException {
+        geoIndex.startLoading(region);
+        Rectangle box = Geohash.toBoundingBox(region);
+        int loaded = 0;
+        try (Stream<Hotel> hotels = new HotelPager(client, index).stream(QueryBuilders.geoBoundingBoxQuery("location")
+            .setCorners(box.getMaxLat(), box.getMinLon(), box.getMinLat(), box.getMaxLon()), LOAD_BATCH_SIZE)) {
+            for (Hotel hotel : (Iterable<Hotel>) hotels::iterator) {
+                geoIndex.putIfAbsent(hotel);
+                loaded++;
+            }
+        } catch (UncheckedIOException e) {
+            geoIndex.removeRegion(region);
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            geoIndex.removeRegion(region);
+            throw e;
+        }
+        geoIndex.markReady(region);
+        log.info("Loaded {} hotels of region {} into geo index", loaded, region);
+    }
+
+    /**
+     * 查询附近的酒店
+     *
+     * @param lat          纬度
+     * @param lon          经度
+     * @param radiusMeters 半径，单位米
+     * @param size         最多返回条数
+     * @return 按距离升序
+     */
+    public List<NearbyHotel> nearby(double lat, double lon, double radiusMeters, int size) throws IOException {
+        if (geoIndex.covers(lat, lon, radiusMeters)) {
+            localQueries.increment();
+            return geoIndex.nearby(lat, lon, radiusMeters, size);
+        }
+        remoteQueries.increment();
+        SearchSourceBuilder source = new SearchSourceBuilder()
+            .query(QueryBuilders.boolQuery().filter(QueryBuilders.geoDistanceQuery("location")
+                .point(lat, lon)
+                .distance(radiusMeters, DistanceUnit.METERS)
+                .geoDistance(GeoDistance.ARC)))
+            .sort(SortBuilders.geoDistanceSort("location", lat, lon)
+                .unit(DistanceUnit.METERS)
+                .geoDistance(GeoDistance.ARC)
+                .order(SortOrder.ASC))
+            .size(size)
+            .trackTotalHits(false);
+        SearchResponse response = client.search(new SearchRequest(index).source(source), RequestOptions.DEFAULT);
+        SearchHit[] hits = response.getHits().getHits();
+        List<NearbyHotel> result = new ArrayList<>(hits.length);
+        for (SearchHit hit : hits) {
+            double distance = ((Number) hit.getSortValues()[0]).doubleValue();
+            result.add(new NearbyHotel(HotelCodec.decode(hit), distance));
+        }
+        return result;
+    }
+
+    public long localQueries() {
+        return localQueries.sum();
+    }
+
+    public long remoteQueries() {
+        return remoteQueries.sum();
+    }
+
+    private Hotel get(String id) {
+        try {
+            GetResponse response = client.get(new GetRequest(index, id), RequestOptions.DEFAULT);
+            return response.isExists() ? HotelCodec.decode(response) : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
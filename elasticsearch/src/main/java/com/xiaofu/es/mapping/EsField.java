@@ -0,0 +1,51 @@
+package com.xiaofu.es.mapping;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 实体字段到 ES mapping 的声明，由 EsMappings 生成 mapping 并校验
+ *
+ * 字段名取 fastjson2 的 @JSONField(name)，没有时用 Java 字段名，与 _source 的编解码保持一致
+ **/
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface EsField {
+
+    FieldType type();
+
+    /**
+     * 复制到的组合字段，如 "all"。目标字段不在实体里，生成时自动声明为 text，
+     * 查询时用一个 match 代替跨多个字段的 multi_match
+     */
+    String[] copyTo() default {};
+
+    /**
+     * text 字段增加 keyword 子字段（name.keyword），用于排序、聚合和精确匹配
+     */
+    boolean keyword() default false;
+
+    /**
+     * 为 false 时不建倒排索引，只展示或只经 copyTo 参与搜索的字段用
+     */
+    boolean index() default true;
+
+    /**
+     * 为 false 时不建列存，不参与排序、聚合的 keyword / 数值字段用，节省磁盘和合并开销
+     */
+    boolean docValues() default true;
+
+    /**
+     * date 字段的格式
+     */
+    String format() default "";
+
+    String analyzer() default "";
+}
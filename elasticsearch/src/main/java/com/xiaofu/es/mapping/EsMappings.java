@@ -0,0 +1,204 @@
+package com.xiaofu.es.mapping;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.annotation.JSONField;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 按实体上的 @EsField 生成 mapping，并校验已有 mapping 与实体是否一致
+ *
+ * - 实体的每个实例字段都必须声明 @EsField，Java 类型与 ES 类型不匹配时直接报错，漏改实体或 mapping 在启动时就能发现
+ * - 只输出与 ES 默认值不同的属性，生成结果可以直接与 GET /{index}/_mapping 的返回逐字段比较
+ * - copyTo 的目标字段不在实体里，声明为同级的 text 字段
+ **/
+public final class EsMappings {
+
+    private EsMappings() {
+    }
+
+    /**
+     * @return {"properties": {...}}，可直接用于 CreateIndexRequest.mapping
+     */
+    public static String mapping(Class<?> type) {
+        return JSON.toJSONString(Collections.singletonMap("properties", properties(type)));
+    }
+
+    public static Map<String, Object> properties(Class<?> type) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        Set<String> copyTargets = new LinkedHashSet<>();
+        for (Field field : type.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())) {
+                continue;
+            }
+            EsField es = field.getAnnotation(EsField.class);
+            if (es == null) {
+                throw new IllegalStateException(type.getSimpleName() + "." + field.getName() + " has no @EsField");
+            }
+            properties.put(nameOf(field), property(type, field, es));
+            copyTargets.addAll(Arrays.asList(es.copyTo()));
+        }
+        for (String target : copyTargets) {
+            Object existing = properties.get(target);
+            if (existing == null) {
+                properties.put(target, Collections.singletonMap("type", FieldType.TEXT.getName()));
+            } else if (!FieldType.TEXT.getName().equals(((Map<?, ?>) existing).get("type"))) {
+                throw new IllegalStateException(type.getSimpleName() + " copies to non-text field " + target);
+            }
+        }
+        return properties;
+    }
+
+    private static Map<String, Object> property(Class<?> owner, Field field, EsField es) {
+        String where = owner.getSimpleName() + "." + field.getName();
+        Class<?> javaType = elementType(field);
+        if (!es.type().accepts(javaType)) {
+            throw new IllegalStateException(where + " of " + javaType.getSimpleName() + " cannot be " + es.type().getName());
+        }
+        if (es.keyword() && es.type() != FieldType.TEXT) {
+            throw new IllegalStateException(where + " keyword sub-field only applies to text");
+        }
+        Map<String, Object> property = new LinkedHashMap<>();
+        property.put("type", es.type().getName());
+        if (!es.analyzer().isEmpty()) {
+            property.put("analyzer", es.analyzer());
+        }
+        if (!es.format().isEmpty()) {
+            property.put("format", es.format());
+        }
+        if (!es.index()) {
+            property.put("index", false);
+        }
+        if (!es.docValues()) {
+            property.put("doc_values", false);
+        }
+        if (es.copyTo().length > 0) {
+            property.put("copy_to", Arrays.asList(es.copyTo()));
+        }
+        if (es.keyword()) {
+            Map<String, Object> keyword = new LinkedHashMap<>();
+            keyword.put("type", FieldType.KEYWORD.getName());
+            keyword.put("ignore_above", 256);
+            property.put("fields", Collections.singletonMap("keyword", keyword));
+        }
+        if (es.type() == FieldType.NESTED || es.type() == FieldType.OBJECT) {
+            property.put("properties", properties(javaType));
+        }
+        return property;
+    }
+
+    /**
+     * 与 _source 的编解码一致：优先 @JSONField(name)
+     */
+    private static String nameOf(Field field) {
+        JSONField json = field.getAnnotation(JSONField.class);
+        return json != null && !json.name().isEmpty() ? json.name() : field.getName();
+    }
+
+    /**
+     * 集合和数组字段取元素类型，ES 里数组与单值用同一个 mapping
+     */
+    private static Class<?> elementType(Field field) {
+        if (field.getType().isArray()) {
+            return field.getType().getComponentType();
+        }
+        if (Collection.class.isAssignableFrom(field.getType())) {
+            Type generic = field.getGenericType();
+            if (generic instanceof ParameterizedType) {
+                Type argument = ((ParameterizedType) generic).getActualTypeArguments()[0];
+                if (argument instanceof Class) {
+                    return (Class<?>) argument;
+                }
+            }
+            throw new IllegalStateException(field.getDeclaringClass().getSimpleName() + "." + field.getName()
+                + " needs a concrete element type");
+        }
+        return field.getType();
+    }
+
+    /**
+     * @param mapping {"properties": {...}}，如 MAPPING_TEMPLATE 或 GET /{index}/_mapping 返回的索引 mapping
+     * @throws IllegalStateException 列出所有不一致的字段
+     */
+    public static void validate(Class<?> type, String mapping) {
+        validate(type, JSON.parseObject(mapping));
+    }
+
+    public static void validate(Class<?> type, Map<String, Object> mapping) {
+        List<String> problems = diff(type, mapping);
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("mapping does not match " + type.getSimpleName() + ": " + problems);
+        }
+    }
+
+    /**
+     * @return 不一致的字段描述，一致时为空
+     */
+    public static List<String> diff(Class<?> type, Map<String, Object> mapping) {
+        List<String> problems = new ArrayList<>();
+        diff("", properties(type), propertiesOf(mapping), problems);
+        return problems;
+    }
+
+    private static void diff(String prefix, Map<String, Object> expected, Map<String, Object> actual,
+                             List<String> problems) {
+        for (Map.Entry<String, Object> entry : expected.entrySet()) {
+            String path = prefix + entry.getKey();
+            Map<String, Object> want = asMap(entry.getValue());
+            Map<String, Object> got = asMap(actual.get(entry.getKey()));
+            if (got == null) {
+                problems.add(path + " missing from mapping");
+                continue;
+            }
+            // 返回的 mapping 里 object 类型不带 type
+            Object gotType = got.containsKey("type") ? got.get("type") : got.containsKey("properties") ? "object" : null;
+            if (!Objects.equals(want.get("type"), gotType)) {
+                problems.add(path + " is " + want.get("type") + " in entity but " + gotType + " in mapping");
+                continue;
+            }
+            Set<String> keys = new LinkedHashSet<>(want.keySet());
+            keys.addAll(got.keySet());
+            keys.remove("type");
+            keys.remove("properties");
+            for (String key : keys) {
+                if (!Objects.equals(want.get(key), got.get(key))) {
+                    problems.add(path + "." + key + " is " + want.get(key) + " in entity but " + got.get(key) + " in mapping");
+                }
+            }
+            if (want.containsKey("properties")) {
+                diff(path + ".", asMap(want.get("properties")), propertiesOf(got), problems);
+            }
+        }
+        for (String name : actual.keySet()) {
+            if (!expected.containsKey(name)) {
+                problems.add(prefix + name + " in mapping but not in entity");
+            }
+        }
+    }
+
+    private static Map<String, Object> propertiesOf(Map<String, Object> mapping) {
+        Map<String, Object> properties = asMap(mapping.get("properties"));
+        return properties == null ? Collections.emptyMap() : properties;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value) {
+        return (Map<String, Object>) value;
+    }
+}
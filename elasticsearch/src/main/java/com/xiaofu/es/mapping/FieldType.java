@@ -0,0 +1,63 @@
+package com.xiaofu.es.mapping;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Date;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description ES 字段类型，以及每种类型允许对应的 Java 类型
+ **/
+public enum FieldType {
+    KEYWORD("keyword", String.class, Long.class, Integer.class, long.class, int.class),
+    TEXT("text", String.class),
+    INTEGER("integer", Integer.class, int.class),
+    LONG("long", Long.class, long.class),
+    DOUBLE("double", Double.class, double.class),
+    BOOLEAN("boolean", Boolean.class, boolean.class),
+    DATE("date", Date.class, Instant.class, LocalDateTime.class, LocalDate.class, Long.class, long.class),
+    /**
+     * 对应 {"lat": .., "lon": ..} 结构的实体
+     */
+    GEO_POINT("geo_point"),
+    /**
+     * 对象数组里的每个对象单独索引，字段取自元素类型
+     */
+    NESTED("nested"),
+    OBJECT("object");
+
+    private final String name;
+
+    private final Class<?>[] javaTypes;
+
+    FieldType(String name, Class<?>... javaTypes) {
+        this.name = name;
+        this.javaTypes = javaTypes;
+    }
+
+    /**
+     * mapping 里的 type 名
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param type 字段类型，集合字段传元素类型
+     */
+    boolean accepts(Class<?> type) {
+        if (this == GEO_POINT || this == NESTED || this == OBJECT) {
+            // 需要有自己字段的实体类
+            return !type.isPrimitive() && !type.getName().startsWith("java.");
+        }
+        for (Class<?> javaType : javaTypes) {
+            if (javaType == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
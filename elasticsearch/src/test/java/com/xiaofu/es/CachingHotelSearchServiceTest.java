@@ -0,0 +1,195 @@
+package com.xiaofu.es;
+
+import com.xiaofu.es.constants.HotelConstants;
+import com.xiaofu.es.entity.Hotel;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description CachingHotelSearchService 查询缓存与写入失效
+ **/
+public class CachingHotelSearchServiceTest {
+    private StubEsServer server;
+    private RestHighLevelClient client;
+    private final AtomicInteger searchCalls = new AtomicInteger();
+    private final List<String> writePaths = new CopyOnWriteArrayList<>();
+    private final List<String> hits = new CopyOnWriteArrayList<>(
+        Collections.singletonList(StubEsServer.hit("1", "{\"id\":1,\"name\":\"如家\",\"price\":299.0}")));
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubEsServer()
+            .on("/_search", (method, path, query, body) -> {
+                searchCalls.incrementAndGet();
+                return StubEsServer.Response.ok(StubEsServer.searchResponse(hits.size(), hits.toArray(new String[0])));
+            })
+            .on("/_doc", (method, path, query, body) -> {
+                writePaths.add(method + " " + path);
+                return StubEsServer.Response.ok(StubEsServer.writeResponse("1", "DELETE".equals(method) ? "deleted" : "created"));
+            })
+            .on("/_update/", (method, path, query, body) ->
+                StubEsServer.Response.ok(StubEsServer.writeResponse("1", "updated")));
+        client = server.newClient();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    /**
+     * 对应 EsQueryDocumentTest.testBoolDoc / testPageAndSortDoc 的查询
+     */
+    private static SearchSourceBuilder boolQuery(boolean sortFirst) {
+        BoolQueryBuilder boolQuery = QueryBuilders.boolQuery()
+            .must(QueryBuilders.termQuery("city", "上海"))
+            .filter(QueryBuilders.rangeQuery("price").lte(500));
+        SearchSourceBuilder source = new SearchSourceBuilder();
+        if (sortFirst) {
+            source.sort("price", SortOrder.ASC).from(0).size(10).query(boolQuery);
+        } else {
+            source.query(boolQuery).size(10).from(0).sort("price", SortOrder.ASC);
+        }
+        return source;
+    }
+
+    @Test
+    void testRepeatedQueryHitsCache() throws IOException {
+        CachingHotelSearchService service = new CachingHotelSearchService(client);
+
+        SearchResponse first = service.search(boolQuery(true));
+        SearchResponse second = service.search(boolQuery(false));
+
+        assertSame(first, second);
+        assertEquals(1, searchCalls.get());
+        assertEquals(1, service.stats().hitCount());
+    }
+
+    @Test
+    void testDifferentQueryMisses() throws IOException {
+        CachingHotelSearchService service = new CachingHotelSearchService(client);
+
+        service.search(new SearchSourceBuilder().query(QueryBuilders.matchQuery("all", "如家")));
+        service.search(new SearchSourceBuilder().query(QueryBuilders.matchQuery("all", "7天")));
+
+        assertEquals(2, searchCalls.get());
+    }
+
+    private static Hotel hotel(Long id) {
+        Hotel hotel = new Hotel();
+        hotel.setId(id);
+        hotel.setName("如家");
+        return hotel;
+    }
+
+    @Test
+    void testWriteInvalidates() throws IOException {
+        CachingHotelSearchService service = new CachingHotelSearchService(client, 100, Duration.ofSeconds(30), Duration.ZERO);
+        HotelDocumentService documentService = new HotelDocumentService(client).addListener(service);
+
+        service.search(boolQuery(true));
+        documentService.index(hotel(1L));
+        service.search(boolQuery(true));
+        documentService.update("1", Collections.singletonMap("price", 199.0));
+        service.search(boolQuery(true));
+        documentService.delete("1");
+        service.search(boolQuery(true));
+        service.search(boolQuery(true));
+
+        assertEquals(3, service.version(HotelConstants.INDEX_NAME));
+        assertEquals(4, searchCalls.get());
+    }
+
+    @Test
+    void testNewMatchingDocumentIsVisibleAfterWrite() throws IOException {
+        CachingHotelSearchService service = new CachingHotelSearchService(client, 100, Duration.ofSeconds(30), Duration.ZERO);
+        HotelDocumentService documentService = new HotelDocumentService(client).addListener(service);
+
+        assertEquals(1, service.search(boolQuery(true)).getHits().getHits().length);
+        // 新酒店满足查询条件，写入并 refresh 后出现在命中里
+        documentService.index(hotel(2L));
+        hits.add(StubEsServer.hit("2", "{\"id\":2,\"name\":\"如家\",\"price\":199.0}"));
+
+        SearchResponse response = service.search(boolQuery(true));
+        assertEquals(Arrays.asList("1", "2"), Arrays.stream(response.getHits().getHits())
+            .map(SearchHit::getId).collect(Collectors.toList()));
+        assertEquals(2, searchCalls.get());
+    }
+
+    @Test
+    void testWriteToOtherIndexKeepsCache() throws IOException {
+        CachingHotelSearchService service = new CachingHotelSearchService(client);
+        HotelDocumentService archive = new HotelDocumentService(client, "hotel_archive").addListener(service);
+
+        service.search(boolQuery(true));
+        archive.index(hotel(2L));
+        archive.delete("3");
+        service.search(boolQuery(true));
+
+        assertEquals(1, searchCalls.get());
+        assertEquals(0, service.version(HotelConstants.INDEX_NAME));
+    }
+
+    @Test
+    void testResultsBeforeRefreshAreNotCached() throws Exception {
+        CachingHotelSearchService service = new CachingHotelSearchService(client, 100, Duration.ofSeconds(30), Duration.ofMillis(200));
+        HotelDocumentService documentService = new HotelDocumentService(client).addListener(service);
+
+        service.search(boolQuery(true));
+        documentService.update("1", Collections.singletonMap("price", 199.0));
+        // refresh 之前读到的结果可能还是旧文档，不缓存
+        service.search(boolQuery(true));
+        service.search(boolQuery(true));
+        assertEquals(3, searchCalls.get());
+
+        Thread.sleep(300);
+        service.search(boolQuery(true));
+        service.search(boolQuery(true));
+        assertEquals(4, searchCalls.get());
+    }
+
+    @Test
+    void testIndexWithoutIdLetsEsGenerateIt() throws IOException {
+        HotelDocumentService documentService = new HotelDocumentService(client);
+
+        documentService.index(hotel(null));
+        documentService.index(hotel(7L));
+
+        assertEquals(Arrays.asList("POST /hotel/_doc", "PUT /hotel/_doc/7"), writePaths);
+    }
+
+    @Test
+    void testTtlExpires() throws Exception {
+        CachingHotelSearchService service = new CachingHotelSearchService(client, 100, Duration.ofMillis(50));
+
+        service.search(boolQuery(true));
+        Thread.sleep(100);
+        service.search(boolQuery(true));
+
+        assertEquals(2, searchCalls.get());
+    }
+}
@@ -1,6 +1,6 @@
 package com.xiaofu.es;
 
-import com.alibaba.fastjson2.JSON;
+import com.xiaofu.es.codec.HotelCodec;
 import com.xiaofu.es.entity.Hotel;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
@@ -107,8 +107,7 @@ public class EsHotelDocumentTest {
         // 2. 发送请求
         GetResponse response = client.get(request, RequestOptions.DEFAULT);
         // 3. 解析响应结果，并把json 反序列化为对应的对象
-        String sourceAsString = response.getSourceAsString();
-        Hotel hotel = JSON.parseObject(sourceAsString, Hotel.class);
+        Hotel hotel = HotelCodec.decode(response);
         System.out.println(hotel.toString());
 
         // 验证 get()是否被调用
@@ -1,6 +1,6 @@
 package com.xiaofu.es;
 
-import com.alibaba.fastjson2.JSON;
+import com.xiaofu.es.codec.HotelCodec;
 import com.xiaofu.es.entity.Hotel;
 import org.apache.lucene.search.TotalHits;
 import org.elasticsearch.action.search.SearchRequest;
@@ -165,7 +165,7 @@ public class EsQueryDocumentTest {
         request.source().query(QueryBuilders.matchAllQuery());
         // 2.2 排序 sort
         request.source().sort("price", SortOrder.ASC);
-        // 2.3 分页 from、size
+        // 2.3 分页 from、size：页码越深开销越大，超过 index.max_result_window 会报错，深分页使用 HotelPager
         request.source().from((page - 1) * size).size(size);
 
         // 模拟 search 请求
@@ -206,9 +206,9 @@ public class EsQueryDocumentTest {
         SearchHit[] searchHits = response.getHits().getHits();
         LinkedList<Hotel> hotels = new LinkedList<>();
         for(SearchHit hit: searchHits) {
-            String json = hit.getSourceAsString();
-            Hotel hotel = JSON.parseObject(json, Hotel.class);
-            System.out.println(json);
+            // 直接解析 _source 字节，不再经过中间 String
+            Hotel hotel = HotelCodec.decode(hit);
+            System.out.println(hotel);
             // 高亮字段
             Map<String, HighlightField> highlightFields = hit.getHighlightFields();
             if (!CollectionUtils.isEmpty(highlightFields)) {
@@ -239,9 +239,9 @@ public class EsQueryDocumentTest {
         SearchHit[] searchHits = response.getHits().getHits();
         LinkedList<Hotel> hotels = new LinkedList<>();
         for(SearchHit hit: searchHits) {
-            String json = hit.getSourceAsString();
-            Hotel hotel = JSON.parseObject(json, Hotel.class);
-            System.out.println(json);
+            // 直接解析 _source 字节，不再经过中间 String
+            Hotel hotel = HotelCodec.decode(hit);
+            System.out.println(hotel);
             hotels.add(hotel);
         }
     }
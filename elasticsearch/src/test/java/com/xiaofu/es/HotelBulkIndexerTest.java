@@ -0,0 +1,189 @@
+package com.xiaofu.es;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.xiaofu.es.entity.Hotel;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description HotelBulkIndexer 批量导入
+ **/
+public class HotelBulkIndexerTest {
+    private StubEsServer server;
+    private RestHighLevelClient client;
+
+    /**
+     * 每个文档 id 被 bulk 请求发送的次数
+     */
+    private final Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+    private final AtomicInteger bulkCalls = new AtomicInteger();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubEsServer();
+        client = server.newClient();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    /**
+     * 按文档数切分批次
+     */
+    @Test
+    void testSplitByActions() throws Exception {
+        stubBulk(id -> 201, 0);
+        try (HotelBulkIndexer indexer = new HotelBulkIndexer(client,
+            HotelBulkIndexer.Options.builder().maxActions(10).build())) {
+            HotelBulkIndexer.Result result = indexer.index(hotels(25));
+
+            assertEquals(3, result.getBatches());
+            assertEquals(3, bulkCalls.get());
+            assertEquals(25, result.getSucceeded());
+            assertEquals(0, result.getFailed());
+        }
+    }
+
+    /**
+     * 按字节数切分批次
+     */
+    @Test
+    void testSplitByBytes() throws Exception {
+        stubBulk(id -> 201, 0);
+        try (HotelBulkIndexer indexer = new HotelBulkIndexer(client,
+            HotelBulkIndexer.Options.builder().maxActions(1000).maxBytes(200).build())) {
+            HotelBulkIndexer.Result result = indexer.index(hotels(20));
+
+            assertTrue(result.getBatches() > 1, result.toString());
+            assertEquals(20, result.getSucceeded());
+        }
+    }
+
+    /**
+     * 只重试被限流的条目
+     */
+    @Test
+    void testRetryOnlyFailedItems() throws Exception {
+        // id 为 5 的倍数的文档第一次返回 429
+        stubBulk(id -> Integer.parseInt(id) % 5 == 0 && attempts.get(id).get() == 1 ? 429 : 201, 0);
+        try (HotelBulkIndexer indexer = new HotelBulkIndexer(client,
+            HotelBulkIndexer.Options.builder().maxActions(10).initialBackoffMillis(1).build())) {
+            AtomicInteger written = new AtomicInteger();
+            indexer.addListener(request -> written.incrementAndGet());
+            HotelBulkIndexer.Result result = indexer.index(hotels(30));
+
+            assertEquals(30, result.getSucceeded());
+            assertEquals(0, result.getFailed());
+            assertEquals(6, result.getRetried());
+            // 每个写入成功的条目只通知一次监听器
+            assertEquals(30, written.get());
+            attempts.forEach((id, count) ->
+                assertEquals(Integer.parseInt(id) % 5 == 0 ? 2 : 1, count.get(), "id=" + id));
+        }
+    }
+
+    /**
+     * 不可重试的错误直接计为失败
+     */
+    @Test
+    void testNonRetryableFailure() throws Exception {
+        stubBulk(id -> "3".equals(id) ? 400 : 201, 0);
+        try (HotelBulkIndexer indexer = new HotelBulkIndexer(client)) {
+            HotelBulkIndexer.Result result = indexer.index(hotels(5));
+
+            assertEquals(4, result.getSucceeded());
+            assertEquals(1, result.getFailed());
+            assertEquals(0, result.getRetried());
+            assertEquals(1, attempts.get("3").get());
+        }
+    }
+
+    /**
+     * 在途请求数不超过 concurrentRequests
+     */
+    @Test
+    void testConcurrentRequestsBounded() throws Exception {
+        stubBulk(id -> 201, 20);
+        try (HotelBulkIndexer indexer = new HotelBulkIndexer(client,
+            HotelBulkIndexer.Options.builder().maxActions(5).concurrentRequests(3).build())) {
+            HotelBulkIndexer.Result result = indexer.index(hotels(100));
+
+            assertEquals(100, result.getSucceeded());
+            assertEquals(20, bulkCalls.get());
+            assertTrue(maxConcurrent.get() <= 3, "maxConcurrent=" + maxConcurrent.get());
+            assertTrue(maxConcurrent.get() > 1, "maxConcurrent=" + maxConcurrent.get());
+        }
+    }
+
+    private static Stream<Hotel> hotels(int count) {
+        return IntStream.rangeClosed(1, count).mapToObj(i -> {
+            Hotel hotel = new Hotel();
+            hotel.setId((long) i);
+            hotel.setName("如家酒店" + i);
+            return hotel;
+        });
+    }
+
+    /**
+     * 解析 NDJSON 请求体，按 statusOf 给每个条目返回状态
+     */
+    private void stubBulk(Function<String, Integer> statusOf, long latencyMillis) {
+        server.on("/_bulk", (method, path, query, body) -> {
+            bulkCalls.incrementAndGet();
+            int now = concurrent.incrementAndGet();
+            maxConcurrent.accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(latencyMillis);
+                StringBuilder items = new StringBuilder();
+                boolean errors = false;
+                String[] lines = new String(body, StandardCharsets.UTF_8).split("\n");
+                for (int i = 0; i < lines.length; i += 2) {
+                    JSONObject action = JSON.parseObject(lines[i]).getJSONObject("index");
+                    String id = action.getString("_id");
+                    attempts.computeIfAbsent(id, k -> new AtomicInteger()).incrementAndGet();
+                    int status = statusOf.apply(id);
+                    errors |= status >= 300;
+                    items.append(items.length() == 0 ? "" : ",").append(item(id, status));
+                }
+                return StubEsServer.Response.ok(
+                    "{\"took\":1,\"errors\":" + errors + ",\"items\":[" + items + "]}");
+            } finally {
+                concurrent.decrementAndGet();
+            }
+        });
+    }
+
+    private static String item(String id, int status) {
+        if (status < 300) {
+            return "{\"index\":{\"_index\":\"hotel\",\"_type\":\"_doc\",\"_id\":\"" + id + "\",\"_version\":1,"
+                + "\"result\":\"created\",\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0},"
+                + "\"_seq_no\":0,\"_primary_term\":1,\"status\":" + status + "}}";
+        }
+        String type = status == 429 ? "es_rejected_execution_exception" : "mapper_parsing_exception";
+        return "{\"index\":{\"_index\":\"hotel\",\"_type\":\"_doc\",\"_id\":\"" + id + "\",\"status\":" + status
+            + ",\"error\":{\"type\":\"" + type + "\",\"reason\":\"stub\"}}}";
+    }
+}
@@ -0,0 +1,153 @@
+package com.xiaofu.es;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import com.xiaofu.es.entity.Hotel;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description HotelPager 基于 search_after 的分页与导出
+ **/
+public class HotelPagerTest {
+    /**
+     * 模拟索引中的数据，按 price、id 排序；每两个酒店价格相同，用 id 区分
+     */
+    private static final int TOTAL = 23;
+
+    private StubEsServer server;
+    private RestHighLevelClient client;
+    private final List<String> requestBodies = new ArrayList<>();
+    private final AtomicInteger pitOpened = new AtomicInteger();
+    private final AtomicInteger pitClosed = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubEsServer()
+            .on("^/hotel/_search$", (method, path, query, body) -> search(body))
+            .on("^/_search$", (method, path, query, body) -> search(body))
+            .on("^/hotel/_pit$", (method, path, query, body) -> {
+                pitOpened.incrementAndGet();
+                return StubEsServer.Response.ok("{\"id\":\"pit-1\"}");
+            })
+            .on("^/_pit$", (method, path, query, body) -> {
+                pitClosed.incrementAndGet();
+                return StubEsServer.Response.ok("{\"succeeded\":true,\"num_freed\":1}");
+            });
+        client = server.newClient();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    private static String id(int i) {
+        return String.format("%03d", i);
+    }
+
+    private static double price(int i) {
+        return 100 + (i / 2) * 10;
+    }
+
+    /**
+     * 根据请求中的 search_after 找到起点，返回 size 条
+     */
+    private synchronized StubEsServer.Response search(byte[] body) {
+        JSONObject request = JSON.parseObject(body);
+        requestBodies.add(request.toJSONString());
+        int size = request.getIntValue("size");
+        int from = 0;
+        JSONArray after = request.getJSONArray("search_after");
+        if (after != null) {
+            while (from < TOTAL && compare(from, after.getDoubleValue(0), after.getString(1)) <= 0) {
+                from++;
+            }
+        }
+        List<String> hits = new ArrayList<>();
+        for (int i = from; i < Math.min(TOTAL, from + size); i++) {
+            String source = "{\"id\":\"" + id(i) + "\",\"name\":\"酒店" + i + "\",\"price\":" + price(i) + "}";
+            hits.add(StubEsServer.hit(id(i), source, String.valueOf(price(i)), "\"" + id(i) + "\""));
+        }
+        return StubEsServer.Response.ok(StubEsServer.searchResponse(TOTAL, hits.toArray(new String[0])));
+    }
+
+    private static int compare(int i, double price, String id) {
+        int c = Double.compare(price(i), price);
+        return c != 0 ? c : id(i).compareTo(id);
+    }
+
+    @Test
+    void testPageWithCursor() throws IOException {
+        HotelPager pager = new HotelPager(client);
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            HotelPager.Page page = pager.page(QueryBuilders.matchAllQuery(), 5, cursor);
+            if (pages == 0) {
+                assertEquals(TOTAL, page.getTotal());
+            }
+            page.getHotels().forEach(hotel -> ids.add(hotel.getId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(5, pages);
+        assertEquals(TOTAL, ids.size());
+        assertEquals(TOTAL, ids.stream().distinct().count());
+        // 请求中只有 search_after，不再有 from
+        requestBodies.forEach(body -> assertFalse(body.contains("\"from\""), body));
+        assertTrue(requestBodies.get(1).contains("\"search_after\":[120.0,\"004\"]"), requestBodies.get(1));
+    }
+
+    @Test
+    void testLastPageHasNoCursor() throws IOException {
+        HotelPager.Page page = new HotelPager(client).page(QueryBuilders.matchAllQuery(), 100, null);
+
+        assertEquals(TOTAL, page.getHotels().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void testInvalidCursor() {
+        HotelPager pager = new HotelPager(client);
+        assertThrows(IllegalArgumentException.class, () -> pager.page(QueryBuilders.matchAllQuery(), 5, "not-a-cursor"));
+    }
+
+    @Test
+    void testStreamExport() throws IOException {
+        List<Hotel> hotels;
+        try (Stream<Hotel> stream = new HotelPager(client).stream(QueryBuilders.matchAllQuery(), 4)) {
+            hotels = stream.collect(Collectors.toList());
+        }
+
+        assertEquals(TOTAL, hotels.size());
+        assertEquals(0L, hotels.get(0).getId());
+        assertEquals(TOTAL - 1L, hotels.get(TOTAL - 1).getId());
+        assertEquals(1, pitOpened.get());
+        assertEquals(1, pitClosed.get());
+        requestBodies.forEach(body -> assertTrue(body.contains("\"pit\""), body));
+    }
+}
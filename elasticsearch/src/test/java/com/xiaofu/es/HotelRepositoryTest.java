@@ -0,0 +1,224 @@
+package com.xiaofu.es;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.xiaofu.es.entity.Hotel;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description HotelRepository 近端缓存：命中不访问 ES、并发未命中合并为一次 _mget、写入后失效
+ **/
+public class HotelRepositoryTest {
+    private static final Pattern DOC_ID = Pattern.compile("/hotel/_(?:doc|update)/(\\d+)");
+
+    private StubEsServer server;
+    private RestHighLevelClient client;
+    private final Map<String, JSONObject> docs = new ConcurrentHashMap<>();
+    private final AtomicInteger getCalls = new AtomicInteger();
+    private final AtomicInteger mgetCalls = new AtomicInteger();
+    private volatile CountDownLatch mgetStarted;
+    private volatile CountDownLatch mgetGate;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        for (int i = 1; i <= 20; i++) {
+            docs.put(String.valueOf(i), JSON.parseObject("{\"id\":" + i + ",\"name\":\"如家酒店" + i + "\",\"price\":299.0}"));
+        }
+        server = new StubEsServer()
+            .on("/_mget", (method, path, query, body) -> {
+                mgetCalls.incrementAndGet();
+                if (mgetGate != null) {
+                    mgetStarted.countDown();
+                    try {
+                        mgetGate.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                String items = JSON.parseObject(new String(body, StandardCharsets.UTF_8)).getJSONArray("docs").stream()
+                    .map(doc -> getResponse(((JSONObject) doc).getString("_id")))
+                    .collect(Collectors.joining(","));
+                return StubEsServer.Response.ok("{\"docs\":[" + items + "]}");
+            })
+            .on("/hotel/_update/", (method, path, query, body) -> {
+                String id = idOf(path);
+                docs.get(id).putAll(JSON.parseObject(new String(body, StandardCharsets.UTF_8)).getJSONObject("doc"));
+                return StubEsServer.Response.ok(StubEsServer.writeResponse(id, "updated"));
+            })
+            .on("/hotel/_doc/", (method, path, query, body) -> {
+                String id = idOf(path);
+                if ("DELETE".equals(method)) {
+                    docs.remove(id);
+                    return StubEsServer.Response.ok(StubEsServer.writeResponse(id, "deleted"));
+                }
+                getCalls.incrementAndGet();
+                String response = getResponse(id);
+                return docs.containsKey(id) ? StubEsServer.Response.ok(response) : new StubEsServer.Response(404, response);
+            });
+        client = server.newClient();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    private static String idOf(String path) {
+        Matcher matcher = DOC_ID.matcher(path);
+        if (!matcher.find()) {
+            throw new IllegalArgumentException(path);
+        }
+        return matcher.group(1);
+    }
+
+    private String getResponse(String id) {
+        JSONObject source = docs.get(id);
+        if (source == null) {
+            return "{\"_index\":\"hotel\",\"_type\":\"_doc\",\"_id\":\"" + id + "\",\"found\":false}";
+        }
+        return "{\"_index\":\"hotel\",\"_type\":\"_doc\",\"_id\":\"" + id + "\",\"_version\":1,\"_seq_no\":0,"
+            + "\"_primary_term\":1,\"found\":true,\"_source\":" + source.toJSONString() + "}";
+    }
+
+    @Test
+    void testRepeatedLookupsHitCache() throws IOException {
+        try (HotelRepository repository = new HotelRepository(client)) {
+            Hotel first = repository.findById(1).orElse(null);
+            Hotel second = repository.findById(1).orElse(null);
+
+            assertEquals("如家酒店1", first.getName());
+            assertSame(first, second);
+            assertEquals(1, getCalls.get());
+            assertEquals(1, repository.stats().hitCount());
+        }
+    }
+
+    @Test
+    void testMissingHotelIsCachedAsAbsent() throws IOException {
+        try (HotelRepository repository = new HotelRepository(client)) {
+            assertFalse(repository.findById(404).isPresent());
+            assertFalse(repository.findById(404).isPresent());
+
+            assertEquals(1, getCalls.get());
+        }
+    }
+
+    @Test
+    void testConcurrentMissesShareOneMget() throws Exception {
+        int threads = 16;
+        ExecutorService callers = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try (HotelRepository repository = new HotelRepository(client,
+            HotelRepository.Options.builder().windowMicros(50_000).build())) {
+            List<Future<Optional<Hotel>>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                // 两个线程读同一个 id
+                long id = i / 2 + 1;
+                futures.add(callers.submit(() -> {
+                    start.await();
+                    return repository.findById(id);
+                }));
+            }
+            start.countDown();
+            for (int i = 0; i < threads; i++) {
+                assertEquals("如家酒店" + (i / 2 + 1), futures.get(i).get(5, TimeUnit.SECONDS).get().getName());
+            }
+
+            assertEquals(1, mgetCalls.get());
+            assertEquals(0, getCalls.get());
+            assertEquals(1, repository.getReads());
+
+            List<Hotel> hotels = repository.findAllById(Arrays.asList(3L, 404L, 9L, 3L, 10L));
+            assertEquals(Arrays.asList(3L, 9L, 10L), hotels.stream().map(Hotel::getId).collect(Collectors.toList()));
+            // 3 已缓存，9、10、404 合并为第二次 _mget
+            assertEquals(2, mgetCalls.get());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void testWritesThroughModuleInvalidate() throws IOException {
+        try (HotelRepository repository = new HotelRepository(client)) {
+            HotelDocumentService service = new HotelDocumentService(client).addListener(repository);
+            assertEquals(299.0, repository.findById(1).get().getPrice());
+
+            service.update("1", Collections.singletonMap("price", 199.0));
+            assertEquals(199.0, repository.findById(1).get().getPrice());
+
+            service.delete("1");
+            assertFalse(repository.findById(1).isPresent());
+            assertEquals(3, getCalls.get());
+        }
+    }
+
+    @Test
+    void testInvalidationOnlyDropsInflightResultOfThatId() throws Exception {
+        mgetStarted = new CountDownLatch(1);
+        mgetGate = new CountDownLatch(1);
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try (HotelRepository repository = new HotelRepository(client)) {
+            Future<List<Hotel>> inflight = caller.submit(() -> repository.findAllById(Arrays.asList(1L, 2L)));
+            assertTrue(mgetStarted.await(5, TimeUnit.SECONDS));
+
+            // _mget 发出后：1 被改写，另一个不相关的 id 也有写入
+            repository.invalidate(1);
+            repository.invalidate(20);
+            mgetGate.countDown();
+            assertEquals(2, inflight.get(5, TimeUnit.SECONDS).size());
+            mgetGate = null;
+
+            repository.findById(2);
+            assertEquals(0, getCalls.get());
+            repository.findById(1);
+            assertEquals(1, getCalls.get());
+        } finally {
+            caller.shutdownNow();
+        }
+    }
+
+    @Test
+    void testOffHeapReturnsFreshCopies() throws IOException {
+        try (HotelRepository repository = new HotelRepository(client,
+            HotelRepository.Options.builder().offHeap(true).maximumBytes(1024 * 1024).build())) {
+            Hotel first = repository.findById(2).get();
+            Hotel second = repository.findById(2).get();
+
+            assertEquals(first, second);
+            assertNotSame(first, second);
+            assertEquals(1, getCalls.get());
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.xiaofu.es;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.xiaofu.es.entity.Hotel;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description IndexLifecycleManager 的重建顺序：导入期设置、切片导入、恢复设置与 force merge、单次请求切换别名、失败时保留旧索引
+ **/
+public class IndexLifecycleManagerTest {
+    private StubEsServer server;
+    private RestHighLevelClient client;
+
+    /**
+     * 模拟集群里的索引 -> 别名
+     */
+    private final Map<String, Set<String>> indices = new TreeMap<>();
+
+    /**
+     * 按顺序记录的请求，形如 "PUT /hotel_v2"
+     */
+    private final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+
+    private final Map<String, String> bodies = new ConcurrentHashMap<>();
+
+    private final AtomicInteger bulkDocs = new AtomicInteger();
+
+    private volatile String reindexFailure;
+
+    /**
+     * 删除这个索引时返回 500
+     */
+    private volatile String failDelete;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubEsServer()
+            .on("^/hotel_v\\*/_alias$", (method, path, query, body) -> {
+                JSONObject response = new JSONObject();
+                synchronized (indices) {
+                    indices.forEach((index, aliases) -> {
+                        if (index.startsWith("hotel_v")) {
+                            JSONObject names = new JSONObject();
+                            aliases.forEach(alias -> names.put(alias, new JSONObject()));
+                            response.put(index, JSONObject.of("aliases", names));
+                        }
+                    });
+                }
+                return StubEsServer.Response.ok(response.toJSONString());
+            })
+            .on("^/hotel[^/]*$", (method, path, query, body) -> {
+                String index = path.substring(1);
+                record(method, path, body);
+                synchronized (indices) {
+                    if ("HEAD".equals(method)) {
+                        return new StubEsServer.Response(indices.containsKey(index) ? 200 : 404, "");
+                    }
+                    if ("PUT".equals(method)) {
+                        indices.put(index, new TreeSet<>());
+                        return StubEsServer.Response.ok(
+                            "{\"acknowledged\":true,\"shards_acknowledged\":true,\"index\":\"" + index + "\"}");
+                    }
+                    if (index.equals(failDelete)) {
+                        return new StubEsServer.Response(500, "{\"error\":{\"root_cause\":[],\"type\":\"exception\","
+                            + "\"reason\":\"node disconnected\"},\"status\":500}");
+                    }
+                    indices.remove(index);
+                    return StubEsServer.Response.ok("{\"acknowledged\":true}");
+                }
+            })
+            .on("^/_aliases$", (method, path, query, body) -> {
+                record(method, path, body);
+                synchronized (indices) {
+                    for (Object action : JSON.parseObject(new String(body, StandardCharsets.UTF_8)).getJSONArray("actions")) {
+                        JSONObject json = (JSONObject) action;
+                        if (json.containsKey("add")) {
+                            indices.get(first(json.getJSONObject("add"), "index"))
+                                .add(first(json.getJSONObject("add"), "alias"));
+                        } else if (json.containsKey("remove")) {
+                            indices.get(first(json.getJSONObject("remove"), "index"))
+                                .remove(first(json.getJSONObject("remove"), "alias"));
+                        } else {
+                            indices.remove(first(json.getJSONObject("remove_index"), "index"));
+                        }
+                    }
+                }
+                return StubEsServer.Response.ok("{\"acknowledged\":true}");
+            })
+            .on("^/_reindex$", (method, path, query, body) -> {
+                record(method, path + "?" + query, body);
+                return StubEsServer.Response.ok("{\"task\":\"node-1:" + calls.size() + "\"}");
+            })
+            .on("^/_tasks/", (method, path, query, body) -> {
+                String failures = reindexFailure == null ? "" : "{\"cause\":{\"type\":\"mapper_parsing_exception\",\"reason\":\""
+                    + reindexFailure + "\"},\"status\":400}";
+                return StubEsServer.Response.ok("{\"completed\":true,\"task\":{\"node\":\"node-1\",\"id\":1,"
+                    + "\"action\":\"indices:data/write/reindex\"},\"response\":{\"total\":3,\"created\":3,\"updated\":0,"
+                    + "\"version_conflicts\":0,\"failures\":[" + failures + "]}}");
+            })
+            .on("/_settings$", (method, path, query, body) -> {
+                record(method, path, body);
+                return StubEsServer.Response.ok("{\"acknowledged\":true}");
+            })
+            .on("/_(refresh|forcemerge)$", (method, path, query, body) -> {
+                record(method, path + (query == null ? "" : "?" + query), body);
+                return StubEsServer.Response.ok("{\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0}}");
+            })
+            .on("^/_cluster/health/", (method, path, query, body) -> {
+                record(method, path, body);
+                return StubEsServer.Response.ok("{\"status\":\"yellow\",\"timed_out\":true}");
+            })
+            .on("^/_bulk$", (method, path, query, body) -> {
+                String[] lines = new String(body, StandardCharsets.UTF_8).split("\n");
+                StringBuilder items = new StringBuilder();
+                for (int i = 0; i < lines.length; i += 2) {
+                    JSONObject action = JSON.parseObject(lines[i]).getJSONObject("index");
+                    bodies.put("bulk-index", action.getString("_index"));
+                    bulkDocs.incrementAndGet();
+                    items.append(items.length() == 0 ? "" : ",").append("{\"index\":{\"_index\":\"")
+                        .append(action.getString("_index")).append("\",\"_type\":\"_doc\",\"_id\":\"")
+                        .append(action.getString("_id")).append("\",\"_version\":1,\"result\":\"created\",")
+                        .append("\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0},\"_seq_no\":0,")
+                        .append("\"_primary_term\":1,\"status\":201}}");
+                }
+                return StubEsServer.Response.ok("{\"took\":1,\"errors\":false,\"items\":[" + items + "]}");
+            });
+        client = server.newClient();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    private void record(String method, String path, byte[] body) {
+        String call = method + " " + path;
+        calls.add(call);
+        if (body.length > 0) {
+            bodies.merge(call, new String(body, StandardCharsets.UTF_8), (a, b) -> a + "\n" + b);
+        }
+    }
+
+    /**
+     * _aliases 里的 index / alias 既可能是字符串也可能是数组
+     */
+    private static String first(JSONObject action, String field) {
+        String plural = "index".equals(field) ? "indices" : "aliases";
+        Object value = action.containsKey(field) ? action.get(field) : action.getJSONArray(plural).get(0);
+        return value instanceof List ? String.valueOf(((List<?>) value).get(0)) : String.valueOf(value);
+    }
+
+    /**
+     * 请求体里的设置可能是扁平的也可能是嵌套的，统一展开成 index.xxx
+     */
+    private static Settings settings(JSONObject json) {
+        return Settings.builder().loadFromSource(json.toJSONString(), XContentType.JSON).build();
+    }
+
+    /**
+     * 第一个以 prefix 开头的请求的位置，客户端会在路径后追加查询参数
+     */
+    private int indexOf(String prefix) {
+        synchronized (calls) {
+            for (int i = 0; i < calls.size(); i++) {
+                if (calls.get(i).startsWith(prefix)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private IndexLifecycleManager manager() {
+        return new IndexLifecycleManager(client, IndexLifecycleManager.Options.builder().pollIntervalMillis(1).build());
+    }
+
+    @Test
+    void testReindexSwapsAliasInOneRequest() throws Exception {
+        indices.put("hotel_v1", new TreeSet<>());
+        indices.put("hotel_v2", new TreeSet<>(Collections.singleton("hotel")));
+
+        String target = manager().reindex();
+
+        assertEquals("hotel_v3", target);
+        JSONObject created = JSON.parseObject(bodies.get("PUT /hotel_v3"));
+        Settings settings = settings(created.getJSONObject("settings"));
+        assertEquals("-1", settings.get("index.refresh_interval"));
+        assertEquals("0", settings.get("index.number_of_replicas"));
+        assertTrue(created.getJSONObject("mappings").getJSONObject("properties").containsKey("location"));
+
+        List<String> reindexes = calls.stream().filter(c -> c.startsWith("POST /_reindex")).collect(Collectors.toList());
+        assertEquals(2, reindexes.size());
+        assertTrue(reindexes.get(0).contains("slices=auto"), reindexes.get(0));
+        String[] copies = bodies.get(reindexes.get(0)).split("\n");
+        assertEquals("hotel_v2", JSON.parseObject(copies[0]).getJSONObject("source").getString("index"));
+        assertEquals("external", JSON.parseObject(copies[0]).getJSONObject("dest").getString("version_type"));
+        // 第二次只补导入期间更新过的文档
+        assertTrue(JSON.parseObject(copies[1]).getJSONObject("source").getJSONObject("query").containsKey("range"));
+
+        int restored = indexOf("PUT /hotel_v3/_settings");
+        int merged = indexOf("POST /hotel_v3/_forcemerge");
+        int swapped = indexOf("POST /_aliases");
+        assertTrue(calls.get(merged).contains("max_num_segments=1"), calls.get(merged));
+        assertTrue(restored > indexOf("POST /_reindex"));
+        assertTrue(restored < merged && merged < swapped, calls.toString());
+        // 补导入在 force merge 之后、切换之前
+        int catchUp = calls.lastIndexOf(reindexes.get(1));
+        assertTrue(catchUp > merged && catchUp < swapped, calls.toString());
+        assertEquals("1", settings(JSON.parseObject(bodies.get("PUT /hotel_v3/_settings"))).get("index.number_of_replicas"));
+        assertEquals(1, calls.stream().filter("POST /_aliases"::equals).count());
+
+        assertEquals(Collections.singleton("hotel"), indices.get("hotel_v3"));
+        assertTrue(indices.get("hotel_v2").isEmpty());
+        // 保留上一个版本用于回滚，更早的删除
+        assertFalse(indices.containsKey("hotel_v1"));
+        assertTrue(indexOf("DELETE /hotel_v1") > swapped);
+
+        manager().switchTo("hotel_v2");
+        assertEquals(Collections.singleton("hotel"), indices.get("hotel_v2"));
+        assertTrue(indices.get("hotel_v3").isEmpty());
+    }
+
+    @Test
+    void testRetiredIndexCleanupFailureKeepsNewIndex() throws Exception {
+        indices.put("hotel_v1", new TreeSet<>());
+        indices.put("hotel_v2", new TreeSet<>(Collections.singleton("hotel")));
+        failDelete = "hotel_v1";
+
+        String target = manager().reindex();
+
+        assertEquals("hotel_v3", target);
+        assertEquals(Collections.singleton("hotel"), indices.get("hotel_v3"));
+        assertTrue(indices.containsKey("hotel_v1"));
+        assertFalse(calls.contains("DELETE /hotel_v3"));
+    }
+
+    @Test
+    void testLegacyIndexIsReplacedAtomically() throws Exception {
+        indices.put("hotel", new TreeSet<>());
+
+        String target = manager().reindex();
+
+        assertEquals("hotel_v1", target);
+        String aliases = bodies.get("POST /_aliases");
+        assertTrue(aliases.contains("remove_index"), aliases);
+        assertFalse(indices.containsKey("hotel"));
+        assertEquals(Collections.singleton("hotel"), indices.get("hotel_v1"));
+    }
+
+    @Test
+    void testFailedReindexKeepsAlias() {
+        indices.put("hotel_v1", new TreeSet<>(Collections.singleton("hotel")));
+        reindexFailure = "failed to parse field [location]";
+
+        IOException e = assertThrows(IOException.class, () -> manager().reindex());
+
+        assertTrue(e.getMessage().contains("location"), e.getMessage());
+        assertFalse(indices.containsKey("hotel_v2"));
+        assertFalse(calls.contains("POST /_aliases"));
+        assertEquals(Collections.singleton("hotel"), indices.get("hotel_v1"));
+    }
+
+    @Test
+    void testRebuildFromSlicedSource() throws Exception {
+        int slices = 4;
+        String target = manager().rebuild(slices, slice -> {
+            Iterator<Integer> ids = IntStream.rangeClosed(1, 100).filter(i -> i % slices == slice).iterator();
+            return new Iterator<Hotel>() {
+                @Override
+                public boolean hasNext() {
+                    return ids.hasNext();
+                }
+
+                @Override
+                public Hotel next() {
+                    Hotel hotel = new Hotel();
+                    hotel.setId((long) ids.next());
+                    hotel.setName("如家酒店");
+                    return hotel;
+                }
+            };
+        });
+
+        assertEquals("hotel_v1", target);
+        assertEquals(100, bulkDocs.get());
+        assertEquals("hotel_v1", bodies.get("bulk-index"));
+        assertTrue(indexOf("PUT /hotel_v1/_settings") < indexOf("POST /_aliases"));
+        assertEquals(Collections.singleton("hotel"), indices.get("hotel_v1"));
+    }
+}
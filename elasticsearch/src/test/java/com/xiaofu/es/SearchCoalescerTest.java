@@ -0,0 +1,165 @@
+package com.xiaofu.es;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.xiaofu.es.constants.HotelConstants;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description SearchCoalescer 把窗口内的并发查询合并成一次 _msearch，响应按顺序交还各自的调用方
+ **/
+public class SearchCoalescerTest {
+    private static final String BAD_QUERY =
+        "{\"error\":{\"root_cause\":[],\"type\":\"query_shard_exception\",\"reason\":\"stub\"},\"status\":400}";
+
+    private StubEsServer server;
+    private RestHighLevelClient client;
+    private final AtomicInteger searchCalls = new AtomicInteger();
+    private final AtomicInteger msearchCalls = new AtomicInteger();
+    private final List<Integer> msearchSizes = new ArrayList<>();
+
+    /**
+     * 每个查询按 name 的 term 返回一条同 id 的命中，term 为 bad 时该条目返回 400
+     */
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubEsServer()
+            .on("/_msearch", (method, path, query, body) -> {
+                msearchCalls.incrementAndGet();
+                String[] lines = new String(body, StandardCharsets.UTF_8).split("\n");
+                StringBuilder responses = new StringBuilder();
+                for (int i = 1; i < lines.length; i += 2) {
+                    String name = nameOf(JSON.parseObject(lines[i]));
+                    String item = "bad".equals(name)
+                        ? BAD_QUERY
+                        : hitResponse(name).replaceFirst("}$", ",\"status\":200}");
+                    responses.append(responses.length() == 0 ? "" : ",").append(item);
+                }
+                synchronized (msearchSizes) {
+                    msearchSizes.add(lines.length / 2);
+                }
+                return StubEsServer.Response.ok("{\"took\":1,\"responses\":[" + responses + "]}");
+            })
+            .on("/_search", (method, path, query, body) -> {
+                searchCalls.incrementAndGet();
+                String name = nameOf(JSON.parseObject(new String(body, StandardCharsets.UTF_8)));
+                return "bad".equals(name) ? new StubEsServer.Response(400, BAD_QUERY) : StubEsServer.Response.ok(hitResponse(name));
+            });
+        client = server.newClient();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    private static String nameOf(JSONObject source) {
+        return source.getJSONObject("query").getJSONObject("term").getJSONObject("name").getString("value");
+    }
+
+    private static String hitResponse(String name) {
+        return StubEsServer.searchResponse(1, StubEsServer.hit(name, "{\"name\":\"" + name + "\"}"));
+    }
+
+    private static SearchRequest byName(String name) {
+        return new SearchRequest(HotelConstants.INDEX_NAME)
+            .source(new SearchSourceBuilder().query(QueryBuilders.termQuery("name", name)));
+    }
+
+    @Test
+    void testConcurrentSearchesShareOneMsearch() throws Exception {
+        try (SearchCoalescer coalescer = new SearchCoalescer(client,
+            SearchCoalescer.Options.builder().windowMicros(50_000).build())) {
+            List<CompletableFuture<SearchResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(coalescer.searchAsync(byName("h" + i)));
+            }
+
+            for (int i = 0; i < 20; i++) {
+                SearchResponse response = futures.get(i).get(5, TimeUnit.SECONDS);
+                assertEquals("h" + i, response.getHits().getAt(0).getId());
+            }
+            assertEquals(1, msearchCalls.get());
+            assertEquals(0, searchCalls.get());
+            assertEquals(1, coalescer.getBatches());
+            assertEquals(20, coalescer.getCoalesced());
+        }
+    }
+
+    @Test
+    void testFullBatchIsSentWithoutWaitingForWindow() throws Exception {
+        try (SearchCoalescer coalescer = new SearchCoalescer(client,
+            SearchCoalescer.Options.builder().windowMicros(TimeUnit.SECONDS.toMicros(30)).maxBatchSize(4).build())) {
+            List<CompletableFuture<SearchResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(coalescer.searchAsync(byName("h" + i)));
+            }
+
+            for (CompletableFuture<SearchResponse> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+            assertEquals(2, msearchCalls.get());
+            assertEquals(4, (int) msearchSizes.get(0));
+            assertEquals(4, (int) msearchSizes.get(1));
+        }
+    }
+
+    @Test
+    void testFailedItemOnlyFailsItsCaller() throws Exception {
+        try (SearchCoalescer coalescer = new SearchCoalescer(client,
+            SearchCoalescer.Options.builder().windowMicros(50_000).build())) {
+            CompletableFuture<SearchResponse> good = coalescer.searchAsync(byName("h1"));
+            CompletableFuture<SearchResponse> bad = coalescer.searchAsync(byName("bad"));
+
+            assertEquals("h1", good.get(5, TimeUnit.SECONDS).getHits().getAt(0).getId());
+            ExecutionException e = assertThrows(ExecutionException.class, () -> bad.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof ElasticsearchException, e.getCause().toString());
+            assertThrows(ElasticsearchException.class, () -> coalescer.search(byName("bad")));
+        }
+    }
+
+    @Test
+    void testLoneSearchUsesPlainSearch() throws IOException {
+        try (SearchCoalescer coalescer = new SearchCoalescer(client,
+            SearchCoalescer.Options.builder().windowMicros(1_000).build())) {
+            SearchResponse response = coalescer.search(byName("h1"));
+
+            assertEquals("h1", response.getHits().getAt(0).getId());
+            assertEquals(1, searchCalls.get());
+            assertEquals(0, msearchCalls.get());
+        }
+    }
+
+    @Test
+    void testClosedCoalescerRejectsSearches() {
+        SearchCoalescer coalescer = new SearchCoalescer(client);
+        coalescer.close();
+
+        assertThrows(IllegalStateException.class, () -> coalescer.search(byName("h1")));
+    }
+}
@@ -0,0 +1,146 @@
+package com.xiaofu.es;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 本地 HTTP 替身，模拟 ES 集群的 REST 接口，供测试直接使用真实的 RestHighLevelClient
+ **/
+public class StubEsServer implements AutoCloseable {
+
+    /**
+     * 处理一次请求，返回 json 响应
+     */
+    @FunctionalInterface
+    public interface Handler {
+        Response handle(String method, String path, String query, byte[] body) throws Exception;
+    }
+
+    public static class Response {
+        final int status;
+        final String body;
+
+        public Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        public static Response ok(String body) {
+            return new Response(200, body);
+        }
+    }
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    /**
+     * 路径正则 -> 处理器，例如 "/_bulk"、"/hotel/_doc/\\w+"，按路径 find 匹配
+     */
+    private final Map<String, Handler> handlers = new ConcurrentHashMap<>();
+
+    public StubEsServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::dispatch);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public StubEsServer on(String pathRegex, Handler handler) {
+        handlers.put(pathRegex, handler);
+        return this;
+    }
+
+    public RestHighLevelClient newClient() {
+        return new RestHighLevelClient(RestClient.builder(
+            new HttpHost("127.0.0.1", server.getAddress().getPort(), "http")));
+    }
+
+    /**
+     * 拼装 _search 响应体
+     */
+    public static String searchResponse(long total, String... hits) {
+        return "{\"took\":1,\"timed_out\":false,"
+            + "\"_shards\":{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0},"
+            + "\"hits\":{\"total\":{\"value\":" + total + ",\"relation\":\"eq\"},\"max_score\":1.0,"
+            + "\"hits\":[" + String.join(",", hits) + "]}}";
+    }
+
+    /**
+     * 拼装单个命中，sort 为 search_after 使用的排序值（json 字面量）
+     */
+    public static String hit(String id, String source, String... sort) {
+        return "{\"_index\":\"hotel\",\"_type\":\"_doc\",\"_id\":\"" + id + "\",\"_score\":1.0,"
+            + "\"_source\":" + source
+            + (sort.length == 0 ? "" : ",\"sort\":[" + String.join(",", sort) + "]") + "}";
+    }
+
+    /**
+     * 拼装 index/update/delete 的单文档写响应
+     */
+    public static String writeResponse(String id, String result) {
+        return "{\"_index\":\"hotel\",\"_type\":\"_doc\",\"_id\":\"" + id + "\",\"_version\":1,"
+            + "\"result\":\"" + result + "\",\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0},"
+            + "\"_seq_no\":0,\"_primary_term\":1}";
+    }
+
+    private void dispatch(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        Response response;
+        try {
+            byte[] body = readAll(exchange.getRequestBody());
+            Handler handler = null;
+            for (Map.Entry<String, Handler> entry : handlers.entrySet()) {
+                if (Pattern.compile(entry.getKey()).matcher(path).find()) {
+                    handler = entry.getValue();
+                    break;
+                }
+            }
+            response = handler == null
+                ? new Response(404, "{\"error\":\"no handler for " + path + "\",\"status\":404}")
+                : handler.handle(exchange.getRequestMethod(), path, exchange.getRequestURI().getQuery(), body);
+        } catch (Exception e) {
+            response = new Response(500, "{\"error\":\"" + e + "\",\"status\":500}");
+        }
+        byte[] bytes = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(response.status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
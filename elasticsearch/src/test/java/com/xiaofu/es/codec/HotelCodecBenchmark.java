@@ -0,0 +1,79 @@
+package com.xiaofu.es.codec;
+
+import com.alibaba.fastjson2.JSON;
+import com.xiaofu.es.entity.Hotel;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.search.SearchHit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description HotelCodec 与 getSourceAsString + JSON.parseObject 的对比
+ *
+ * 运行：mvn -pl elasticsearch test-compile 后执行 main 方法，加 -prof gc 可看每次操作的分配字节数
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotelCodecBenchmark {
+
+    private SearchHit hit;
+
+    private Hotel hotel;
+
+    @Setup
+    public void setUp() {
+        hotel = HotelCodecTest.sampleHotel();
+        hit = new SearchHit(1, "36934", null, Collections.emptyMap(), Collections.emptyMap());
+        hit.sourceRef(new BytesArray(HotelCodec.encode(hotel)));
+    }
+
+    /**
+     * 原路径：先拼出完整 String 再反射解析
+     */
+    @Benchmark
+    public Hotel decodeViaString() {
+        return JSON.parseObject(hit.getSourceAsString(), Hotel.class);
+    }
+
+    @Benchmark
+    public Hotel decodeViaCodec() {
+        return HotelCodec.decode(hit);
+    }
+
+    @Benchmark
+    public byte[] encodeViaFastjson() {
+        return JSON.toJSONBytes(hotel);
+    }
+
+    @Benchmark
+    public byte[] encodeViaCodec() {
+        return HotelCodec.encode(hotel);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(HotelCodecBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
@@ -0,0 +1,108 @@
+package com.xiaofu.es.codec;
+
+import com.alibaba.fastjson2.JSON;
+import com.xiaofu.es.entity.Hotel;
+import com.xiaofu.es.entity.Location;
+import com.xiaofu.es.entity.Room;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description HotelCodec 编解码
+ **/
+public class HotelCodecTest {
+
+    static Hotel sampleHotel() {
+        Hotel hotel = new Hotel();
+        hotel.setId(36934L);
+        hotel.setName("7天连锁酒店(上海宝山路地铁站店)");
+        hotel.setBrand("7天酒店");
+        hotel.setCity("上海");
+        hotel.setBusiness("四川北路商业区");
+        hotel.setStars(2);
+        hotel.setPrice(336.5);
+        hotel.setDescription("交通便利，\"近地铁\"");
+        hotel.setAddress("静安交通路40号");
+        hotel.setPic("https://m.tuniucdn.com/fb2/t1/G1/M00/3E/40/Cii9EVkyLrKIXo1vAAHgrxo_pUcAALcKQLD688AAeDH564_w200_h200_c1_t0.jpg");
+        hotel.setIsAD(false);
+        hotel.setLocation(new Location(31.251433, 121.47522));
+        Room room1 = new Room();
+        room1.setRoomNumber("101");
+        room1.setRoomType("大床房");
+        room1.setBedCount(1);
+        Room room2 = new Room();
+        room2.setRoomNumber("102");
+        room2.setRoomType("双床房");
+        room2.setBedCount(2);
+        hotel.setRooms(Arrays.asList(room1, room2));
+        hotel.setAmenities(Arrays.asList("wifi", "parking"));
+        hotel.setLastUpdated(new Date(1717200000123L));
+        return hotel;
+    }
+
+    @Test
+    void testRoundTrip() {
+        Hotel hotel = sampleHotel();
+        assertEquals(hotel, HotelCodec.decode(HotelCodec.encode(hotel)));
+    }
+
+    @Test
+    void testEncodeIsValidSource() {
+        byte[] bytes = HotelCodec.encode(sampleHotel());
+        Map<String, Object> source = XContentHelper.convertToMap(new BytesArray(bytes), false, XContentType.JSON).v2();
+
+        assertEquals("2024-06-01T00:00:00.123Z", source.get("last_updated"));
+        assertEquals(2, ((List<?>) source.get("rooms")).size());
+        // 与 fastjson 反射路径的结果一致
+        assertEquals(sampleHotel(), JSON.parseObject(bytes, Hotel.class));
+
+        // strict_date_time 要求毫秒位必须存在
+        Hotel wholeSecond = new Hotel();
+        wholeSecond.setLastUpdated(new Date(1717200000000L));
+        assertEquals("{\"last_updated\":\"2024-06-01T00:00:00.000Z\"}",
+            new String(HotelCodec.encode(wholeSecond), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testDecodeSourceVariants() {
+        String json = "{\"id\":\"7\",\"name\":\"如家\",\"unknown\":{\"a\":[1,2,{\"b\":null}]},\"price\":199,"
+            + "\"location\":\"31.2, 121.5\",\"rooms\":{\"room_number\":\"8\",\"bed_count\":null},"
+            + "\"amenities\":\"wifi\",\"stars\":null,\"last_updated\":\"2024-06-01T08:00:00.000+08:00\"}";
+        byte[] padded = ("xx" + json + "yy").getBytes(StandardCharsets.UTF_8);
+        int length = json.getBytes(StandardCharsets.UTF_8).length;
+        Hotel hotel = HotelCodec.decode(new BytesArray(padded, 2, length));
+
+        assertEquals(7L, hotel.getId());
+        assertEquals("如家", hotel.getName());
+        assertEquals(199.0, hotel.getPrice());
+        assertNull(hotel.getStars());
+        assertEquals(new Location(31.2, 121.5), hotel.getLocation());
+        assertEquals("8", hotel.getRooms().get(0).getRoomNumber());
+        assertNull(hotel.getRooms().get(0).getBedCount());
+        assertEquals(Arrays.asList("wifi"), hotel.getAmenities());
+        assertEquals(1717200000000L, hotel.getLastUpdated().getTime());
+
+        Hotel fromArray = HotelCodec.decode("{\"location\":[121.5,31.2]}".getBytes(StandardCharsets.UTF_8));
+        assertEquals(new Location(31.2, 121.5), fromArray.getLocation());
+    }
+
+    @Test
+    void testDecodeNullSource() {
+        assertNull(HotelCodec.decode((BytesReference) null));
+    }
+}
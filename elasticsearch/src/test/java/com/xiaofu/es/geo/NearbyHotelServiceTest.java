@@ -0,0 +1,231 @@
+package com.xiaofu.es.geo;
+
+import com.xiaofu.es.HotelDocumentService;
+import com.xiaofu.es.StubEsServer;
+import com.xiaofu.es.codec.HotelCodec;
+import com.xiaofu.es.entity.Hotel;
+import com.xiaofu.es.entity.Location;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.geometry.Point;
+import org.elasticsearch.geometry.Rectangle;
+import org.elasticsearch.geometry.utils.Geohash;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description NearbyHotelService 热门区域本地查询、长尾区域走 ES、写入同步
+ **/
+public class NearbyHotelServiceTest {
+    /**
+     * 上海人民广场所在的 4 位 geohash 区域，查询点取区域中心
+     */
+    private static final String REGION = Geohash.stringEncode(121.47, 31.23, 4);
+    private static final Point CENTER = center(Geohash.toBoundingBox(REGION));
+    /**
+     * 纬度 0.001 度约 111 米
+     */
+    private static final double METERS_PER_MILLI_DEGREE = 111.19;
+
+    private static Point center(Rectangle box) {
+        return new Point((box.getMinLon() + box.getMaxLon()) / 2, (box.getMinLat() + box.getMaxLat()) / 2);
+    }
+
+    private StubEsServer server;
+    private RestHighLevelClient client;
+    private final AtomicInteger remoteSearches = new AtomicInteger();
+    private final AtomicReference<String> lastRemoteQuery = new AtomicReference<>();
+    private final AtomicInteger gets = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new StubEsServer()
+            .on("^/hotel/_pit$", (method, path, query, body) -> StubEsServer.Response.ok("{\"id\":\"pit-1\"}"))
+            .on("^/_pit$", (method, path, query, body) -> StubEsServer.Response.ok("{\"succeeded\":true}"))
+            // 区域加载：北偏 0.1km、0.5km、3km 三家
+            .on("^/_search$", (method, path, query, body) -> StubEsServer.Response.ok(StubEsServer.searchResponse(3,
+                StubEsServer.hit("1", source(1, "近", 1), "100.0", "\"1\""),
+                StubEsServer.hit("2", source(2, "中", 5), "100.0", "\"2\""),
+                StubEsServer.hit("3", source(3, "远", 27), "100.0", "\"3\""))))
+            .on("^/hotel/_search$", (method, path, query, body) -> {
+                remoteSearches.incrementAndGet();
+                lastRemoteQuery.set(new String(body));
+                return StubEsServer.Response.ok(StubEsServer.searchResponse(1,
+                    StubEsServer.hit("100", "{\"id\":100,\"name\":\"北京饭店\",\"location\":\"39.9,116.4\"}",
+                        "1234.5")));
+            })
+            .on("^/hotel/_doc/", (method, path, query, body) -> {
+                if ("GET".equals(method)) {
+                    gets.incrementAndGet();
+                    return StubEsServer.Response.ok("{\"_index\":\"hotel\",\"_type\":\"_doc\",\"_id\":\"9\","
+                        + "\"_version\":2,\"_seq_no\":1,\"_primary_term\":1,\"found\":true,\"_source\":"
+                        + source(9, "新店", 2) + "}");
+                }
+                return StubEsServer.Response.ok(StubEsServer.writeResponse("1",
+                    "DELETE".equals(method) ? "deleted" : "created"));
+            })
+            .on("^/hotel/_update/", (method, path, query, body) ->
+                StubEsServer.Response.ok(StubEsServer.writeResponse("1", "updated")));
+        client = server.newClient();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    /**
+     * 位于查询点正北 northMilliDegrees * 0.001 度的酒店
+     */
+    private static String source(long id, String name, int northMilliDegrees) {
+        return "{\"id\":" + id + ",\"name\":\"" + name + "\",\"price\":100.0,\"location\":{\"lat\":"
+            + (CENTER.getLat() + northMilliDegrees / 1000.0) + ",\"lon\":" + CENTER.getLon() + "}}";
+    }
+
+    private static Hotel hotel(long id, double lat, double lon) {
+        Hotel hotel = new Hotel();
+        hotel.setId(id);
+        hotel.setName("酒店" + id);
+        hotel.setPrice(200.0);
+        hotel.setLocation(new Location(lat, lon));
+        return hotel;
+    }
+
+    private static void awaitReloads(HotelGeoIndex geoIndex) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (geoIndex.pendingReloads() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, geoIndex.pendingReloads());
+    }
+
+    private static List<Long> ids(List<NearbyHotel> hotels) {
+        return hotels.stream().map(nearby -> nearby.getHotel().getId()).collect(Collectors.toList());
+    }
+
+    @Test
+    void testHotRegionAnsweredLocally() throws IOException {
+        HotelGeoIndex geoIndex = new HotelGeoIndex();
+        NearbyHotelService service = new NearbyHotelService(client, geoIndex);
+        service.loadRegion(REGION);
+
+        List<NearbyHotel> hotels = service.nearby(CENTER.getLat(), CENTER.getLon(), 1000, 10);
+
+        assertEquals(3, geoIndex.size());
+        assertEquals(Arrays.asList(1L, 2L), ids(hotels));
+        assertEquals(METERS_PER_MILLI_DEGREE, hotels.get(0).getDistanceMeters(), 1);
+        assertEquals(5 * METERS_PER_MILLI_DEGREE, hotels.get(1).getDistanceMeters(), 1);
+        assertEquals(Collections.singletonList(1L), ids(service.nearby(CENTER.getLat(), CENTER.getLon(), 5000, 1)));
+        assertEquals(0, remoteSearches.get());
+        assertEquals(2, service.localQueries());
+    }
+
+    @Test
+    void testLongTailGoesToEs() throws IOException {
+        HotelGeoIndex geoIndex = new HotelGeoIndex();
+        NearbyHotelService service = new NearbyHotelService(client, geoIndex);
+        service.loadRegion(REGION);
+
+        List<NearbyHotel> hotels = service.nearby(39.9, 116.4, 3000, 10);
+        // 查询圆超出热门区域边界时也交给 ES
+        service.nearby(CENTER.getLat(), CENTER.getLon(), 50_000, 10);
+
+        assertEquals(Collections.singletonList(100L), ids(hotels));
+        assertEquals(1234.5, hotels.get(0).getDistanceMeters());
+        assertEquals(2, remoteSearches.get());
+        assertTrue(lastRemoteQuery.get().contains("\"geo_distance\""), lastRemoteQuery.get());
+        assertTrue(lastRemoteQuery.get().contains("\"_geo_distance\""), lastRemoteQuery.get());
+    }
+
+    @Test
+    void testWritesAreSynced() throws IOException, InterruptedException {
+        HotelGeoIndex geoIndex = new HotelGeoIndex();
+        NearbyHotelService service = new NearbyHotelService(client, geoIndex);
+        service.loadRegion(REGION);
+        HotelDocumentService documentService = new HotelDocumentService(client).addListener(geoIndex);
+        double lat = CENTER.getLat();
+        double lon = CENTER.getLon();
+
+        documentService.index(hotel(7, lat, lon + 0.001));
+        assertEquals(7L, service.nearby(lat, lon, 1000, 10).get(0).getHotel().getId());
+
+        // 局部更新在本地合并，其余字段保留
+        documentService.update("7", Collections.singletonMap("price", 99.0));
+        assertEquals(99.0, geoIndex.get("7").getPrice());
+        assertEquals("酒店7", geoIndex.get("7").getName());
+
+        // 坐标移出热门区域
+        documentService.update("7", Collections.singletonMap("location", "39.9,116.4"));
+        assertNull(geoIndex.get("7"));
+        assertFalse(ids(service.nearby(lat, lon, 1000, 10)).contains(7L));
+
+        // 本地没有的酒店移入热门区域，从 ES 取完整文档
+        documentService.update("9", Collections.singletonMap("location", (lat + 0.002) + "," + lon));
+        awaitReloads(geoIndex);
+        assertEquals(1, gets.get());
+        assertEquals("新店", geoIndex.get("9").getName());
+
+        documentService.delete("1");
+        assertNull(geoIndex.get("1"));
+        assertEquals(0, remoteSearches.get());
+    }
+
+    @Test
+    void testReloadDoesNotBlockWriterOrReaders() throws Exception {
+        HotelGeoIndex geoIndex = new HotelGeoIndex();
+        geoIndex.startLoading(REGION);
+        geoIndex.markReady(REGION);
+        double lat = CENTER.getLat();
+        double lon = CENTER.getLon();
+        CountDownLatch release = new CountDownLatch(1);
+        geoIndex.setMissingDocLoader(id -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return hotel(Long.parseLong(id), lat, lon + 0.002);
+        });
+
+        // _id 以请求为准，不取 _source 里的 id
+        geoIndex.afterWrite(new IndexRequest("hotel").id("5")
+            .source("{\"id\":55,\"name\":\"酒店5\",\"location\":{\"lat\":" + lat + ",\"lon\":" + lon + "}}",
+                XContentType.JSON));
+        assertEquals("酒店5", geoIndex.get("5").getName());
+        assertNull(geoIndex.get("55"));
+
+        // 脚本更新要从 ES 取回，取回期间写入方和查询方都不被阻塞
+        geoIndex.afterWrite(new UpdateRequest("hotel", "5").script(new Script("ctx._source.price += 1")));
+        geoIndex.afterWrite(new IndexRequest("hotel").id("6").source(new String(
+            HotelCodec.encode(hotel(6, lat, lon + 0.001))), XContentType.JSON));
+        assertEquals(Collections.singletonList(6L), ids(geoIndex.nearby(lat, lon, 1000, 10)));
+        assertEquals(1, geoIndex.pendingReloads());
+
+        release.countDown();
+        awaitReloads(geoIndex);
+        assertEquals(Arrays.asList(6L, 5L), ids(geoIndex.nearby(lat, lon, 1000, 10)));
+    }
+}
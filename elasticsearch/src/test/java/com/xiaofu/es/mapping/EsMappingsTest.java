@@ -0,0 +1,123 @@
+package com.xiaofu.es.mapping;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.xiaofu.es.constants.HotelConstants;
+import com.xiaofu.es.entity.Hotel;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description EsMappings 按 @EsField 生成 mapping，以及 mapping 与实体的一致性校验
+ **/
+public class EsMappingsTest {
+
+    private static JSONObject hotelProperties() {
+        return JSON.parseObject(HotelConstants.MAPPING_TEMPLATE).getJSONObject("properties");
+    }
+
+    @Test
+    void testHotelMapping() {
+        JSONObject properties = hotelProperties();
+
+        assertEquals("text", properties.getJSONObject("all").getString("type"));
+        for (String field : Arrays.asList("name", "brand", "business", "description", "address", "amenities")) {
+            assertEquals(Collections.singletonList("all"), properties.getJSONObject(field).getJSONArray("copy_to"), field);
+        }
+        assertNull(properties.getJSONObject("city").get("copy_to"));
+
+        JSONObject name = properties.getJSONObject("name");
+        assertEquals("keyword", name.getJSONObject("fields").getJSONObject("keyword").getString("type"));
+        assertNull(name.get("index"));
+        assertEquals(false, properties.getJSONObject("description").get("index"));
+        assertEquals(false, properties.getJSONObject("pic").get("index"));
+        assertEquals(false, properties.getJSONObject("pic").get("doc_values"));
+        assertEquals("boolean", properties.getJSONObject("isAD").getString("type"));
+        assertEquals("geo_point", properties.getJSONObject("location").getString("type"));
+        assertEquals("strict_date_time", properties.getJSONObject("last_updated").getString("format"));
+
+        JSONObject rooms = properties.getJSONObject("rooms");
+        assertEquals("nested", rooms.getString("type"));
+        assertEquals(false, rooms.getJSONObject("properties").getJSONObject("room_number").get("doc_values"));
+        assertEquals("integer", rooms.getJSONObject("properties").getJSONObject("bed_count").getString("type"));
+    }
+
+    @Test
+    void testGeneratedMappingValidates() {
+        EsMappings.validate(Hotel.class, HotelConstants.MAPPING_TEMPLATE);
+
+        // GET _mapping 返回的 object 字段不带 type
+        JSONObject returned = JSON.parseObject(HotelConstants.MAPPING_TEMPLATE);
+        JSONObject location = new JSONObject();
+        location.put("properties", JSONObject.of("lat", JSONObject.of("type", "float")));
+        assertEquals(Collections.singletonList("location is geo_point in entity but object in mapping"),
+            EsMappings.diff(Hotel.class, replace(returned, "location", location)));
+    }
+
+    @Test
+    void testDriftIsReported() {
+        JSONObject mapping = JSON.parseObject(HotelConstants.MAPPING_TEMPLATE);
+        JSONObject properties = mapping.getJSONObject("properties");
+        properties.remove("all");
+        properties.put("price", JSONObject.of("type", "float"));
+        properties.getJSONObject("name").remove("fields");
+        properties.getJSONObject("rooms").getJSONObject("properties").remove("bed_count");
+        properties.put("score", JSONObject.of("type", "integer"));
+
+        List<String> problems = EsMappings.diff(Hotel.class, mapping);
+
+        assertTrue(problems.contains("price is double in entity but float in mapping"), problems.toString());
+        assertTrue(problems.contains("all missing from mapping"), problems.toString());
+        assertTrue(problems.contains("rooms.bed_count missing from mapping"), problems.toString());
+        assertTrue(problems.contains("score in mapping but not in entity"), problems.toString());
+        assertTrue(problems.stream().anyMatch(p -> p.startsWith("name.fields ")), problems.toString());
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+            () -> EsMappings.validate(Hotel.class, mapping));
+        assertTrue(e.getMessage().contains("price"), e.getMessage());
+    }
+
+    @Test
+    void testEntityErrors() {
+        assertThrows(IllegalStateException.class, () -> EsMappings.properties(Unmapped.class));
+        assertThrows(IllegalStateException.class, () -> EsMappings.properties(WrongType.class));
+        assertThrows(IllegalStateException.class, () -> EsMappings.properties(KeywordOnNumber.class));
+        assertEquals(JSONObject.of("type", "text"), EsMappings.properties(Copied.class).get("all"));
+    }
+
+    private static JSONObject replace(JSONObject mapping, String field, JSONObject property) {
+        mapping.getJSONObject("properties").put(field, property);
+        return mapping;
+    }
+
+    static class Unmapped {
+        @EsField(type = FieldType.KEYWORD)
+        private String id;
+        private String name;
+    }
+
+    static class WrongType {
+        @EsField(type = FieldType.INTEGER)
+        private String stars;
+    }
+
+    static class KeywordOnNumber {
+        @EsField(type = FieldType.INTEGER, keyword = true)
+        private Integer stars;
+    }
+
+    static class Copied {
+        @EsField(type = FieldType.KEYWORD, copyTo = "all")
+        private String brand;
+    }
+}
@@ -0,0 +1,51 @@
+package com.xiaofu.mq.compress;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 消息体压缩算法，写在消息属性 BODY_CODEC 上
+ *
+ * 没有这个属性的消息是原始消息体，老的生产者发出的消息和低于阈值未压缩的消息都不带
+ **/
+public enum BodyCodec {
+
+    /**
+     * 压缩解压都很快，压缩率一般，适合大消息体、CPU 敏感的生产者
+     */
+    LZ4("lz4"),
+
+    /**
+     * 压缩率明显更高，支持按 topic 训练的字典，小消息也能压
+     */
+    ZSTD("zstd");
+
+    /**
+     * 压缩算法，取值为 {@link #getName()}
+     */
+    public static final String PROPERTY = "BODY_CODEC";
+
+    /**
+     * 压缩时用到的 zstd 字典 ID，没用字典时不带
+     */
+    public static final String DICTIONARY_PROPERTY = "BODY_DICT";
+
+    private final String name;
+
+    BodyCodec(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static BodyCodec of(String name) {
+        for (BodyCodec codec : values()) {
+            if (codec.name.equals(name)) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("unknown body codec: " + name);
+    }
+}
@@ -0,0 +1,173 @@
+package com.xiaofu.mq.compress;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 生产端按 topic 的压缩策略压缩消息体，解压见 BodyDecompressor
+ *
+ * 压缩后的消息体是 varint 编码的原始长度加上压缩数据，算法和字典 ID 写在消息属性上（见 BodyCodec）。
+ * zstd 不写帧里的原始长度和字典 ID，小消息能再省几个字节。
+ * zstd 的压缩上下文和暂存区按线程复用，每条消息只分配一个与压缩结果等长的数组；
+ * 线程不多的发送线程池上常驻的是每线程一个上下文，加上不超过 1MB 的暂存区。
+ *
+ * 4.x 客户端自带的压缩（compressMsgBodyOverHowmuch，默认 4KB 以上用 zlib）与这里互不影响，
+ * 用这里的压缩时可以把该阈值调大，避免对已压缩的消息体再压一次
+ **/
+public class BodyCompressor {
+
+    /**
+     * 超过这个大小的暂存区用完即弃，不留在线程上
+     */
+    private static final int POOLED_LIMIT = 1024 * 1024;
+
+    private static final LZ4Compressor LZ4 = LZ4Factory.fastestInstance().fastCompressor();
+
+    private static final ThreadLocal<ZstdCompressCtx> PLAIN = ThreadLocal.withInitial(() ->
+        new ZstdCompressCtx().setContentSize(false));
+
+    /**
+     * 带字典的上下文单独一个，每次压缩前换上当前 topic 的字典
+     */
+    private static final ThreadLocal<ZstdCompressCtx> WITH_DICTIONARY = ThreadLocal.withInitial(() ->
+        new ZstdCompressCtx().setContentSize(false).setDictID(false));
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final CompressionPolicy defaultPolicy;
+
+    private final Map<String, CompressionPolicy> policies;
+
+    private final DictionaryStore dictionaries;
+
+    public BodyCompressor(CompressionPolicy defaultPolicy) {
+        this(defaultPolicy, Collections.emptyMap(), DictionaryStore.none());
+    }
+
+    /**
+     * @param policies 按 topic 覆盖的策略，没有列出的 topic 用 defaultPolicy
+     */
+    public BodyCompressor(CompressionPolicy defaultPolicy, Map<String, CompressionPolicy> policies,
+                          DictionaryStore dictionaries) {
+        this.defaultPolicy = defaultPolicy;
+        this.policies = new HashMap<>(policies);
+        this.dictionaries = dictionaries;
+    }
+
+    public CompressionPolicy policyOf(String topic) {
+        return policies.getOrDefault(topic, defaultPolicy);
+    }
+
+    /**
+     * @return 低于阈值或压缩后没有变小时返回 null，消息原样发送
+     */
+    public CompressedBody compress(String topic, byte[] body) {
+        return compress(topic, body, 0, body.length);
+    }
+
+    /**
+     * 压缩 body 的 [position, limit)，不改变 position。5.x 的 Message.getBody() 是只读 buffer，先拷进线程复用的暂存区
+     *
+     * @return 低于阈值或压缩后没有变小时返回 null，消息原样发送
+     */
+    public CompressedBody compress(String topic, ByteBuffer body) {
+        if (body.hasArray()) {
+            return compress(topic, body.array(), body.arrayOffset() + body.position(), body.remaining());
+        }
+        int length = body.remaining();
+        if (length < Math.min(policyOf(topic).getThreshold(), policyOf(topic).getDictionaryThreshold())) {
+            return null;
+        }
+        byte[] input = SCRATCH.get().input(length);
+        body.duplicate().get(input, 0, length);
+        return compress(topic, input, 0, length);
+    }
+
+    private CompressedBody compress(String topic, byte[] src, int offset, int length) {
+        CompressionPolicy policy = policyOf(topic);
+        ZstdDictionary dictionary = length >= policy.getDictionaryThreshold() ? dictionaries.forTopic(topic) : null;
+        BodyCodec codec;
+        if (dictionary != null) {
+            codec = BodyCodec.ZSTD;
+        } else if (length >= policy.getThreshold()) {
+            codec = policy.getCodec();
+        } else {
+            return null;
+        }
+
+        int bound = codec == BodyCodec.LZ4 ? LZ4.maxCompressedLength(length) : (int) Zstd.compressBound(length);
+        byte[] out = SCRATCH.get().output(5 + bound);
+        int position = writeVarInt(out, length);
+        int written;
+        if (codec == BodyCodec.LZ4) {
+            written = LZ4.compress(src, offset, length, out, position, out.length - position);
+        } else {
+            ZstdCompressCtx context;
+            if (dictionary != null) {
+                context = WITH_DICTIONARY.get();
+                context.loadDict(dictionary.compressDict(policy.getLevel()));
+            } else {
+                context = PLAIN.get();
+                context.setLevel(policy.getLevel());
+            }
+            written = context.compressByteArray(out, position, out.length - position, src, offset, length);
+        }
+        int total = position + written;
+        if (total >= length) {
+            return null;
+        }
+        return new CompressedBody(Arrays.copyOf(out, total), length, codec,
+            dictionary == null ? 0 : dictionary.getId());
+    }
+
+    private static int writeVarInt(byte[] out, int value) {
+        int position = 0;
+        while ((value & ~0x7F) != 0) {
+            out[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * 线程复用的输入、输出暂存区
+     */
+    private static final class Scratch {
+        byte[] input = new byte[0];
+        byte[] output = new byte[0];
+
+        byte[] input(int size) {
+            if (input.length >= size) {
+                return input;
+            }
+            byte[] grown = new byte[size];
+            if (size <= POOLED_LIMIT) {
+                input = grown;
+            }
+            return grown;
+        }
+
+        byte[] output(int size) {
+            if (output.length >= size) {
+                return output;
+            }
+            byte[] grown = new byte[size];
+            if (size <= POOLED_LIMIT) {
+                output = grown;
+            }
+            return grown;
+        }
+    }
+}
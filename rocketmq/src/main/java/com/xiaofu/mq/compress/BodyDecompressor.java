@@ -0,0 +1,189 @@
+package com.xiaofu.mq.compress;
+
+import com.github.luben.zstd.ZstdDecompressCtx;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 按消息属性解压 BodyCompressor 压缩的消息体，没有压缩属性的消息原样返回
+ *
+ * 两种出参：
+ * - decompress(ByteBuffer, Map) 解压到线程复用的缓冲区，返回它的只读视图，不为每条消息分配数组；
+ *   视图只在同一线程下一次调用之前有效，监听器返回前用完即可，需要留到之后的要自己拷贝
+ * - decompress(byte[], Map) 返回独立的数组，给 4.x 的 MessageExt.setBody 这类要持有数组的场景
+ * 原始长度超过 maxBodySize 的消息直接拒绝，不会因为伪造的长度分配大数组
+ **/
+public class BodyDecompressor {
+
+    /**
+     * 超过这个大小的缓冲区用完即弃，不留在线程上
+     */
+    private static final int POOLED_LIMIT = 1024 * 1024;
+
+    /**
+     * 比 broker 默认的 maxMessageSize（4MB）大得多，正常压缩率下不会触及
+     */
+    private static final int DEFAULT_MAX_BODY_SIZE = 64 * 1024 * 1024;
+
+    private static final LZ4SafeDecompressor LZ4 = LZ4Factory.fastestInstance().safeDecompressor();
+
+    private static final ThreadLocal<ZstdDecompressCtx> PLAIN = ThreadLocal.withInitial(ZstdDecompressCtx::new);
+
+    private static final ThreadLocal<ZstdDecompressCtx> WITH_DICTIONARY = ThreadLocal.withInitial(ZstdDecompressCtx::new);
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private final DictionaryStore dictionaries;
+
+    private final int maxBodySize;
+
+    public BodyDecompressor() {
+        this(DictionaryStore.none());
+    }
+
+    public BodyDecompressor(DictionaryStore dictionaries) {
+        this(dictionaries, DEFAULT_MAX_BODY_SIZE);
+    }
+
+    public BodyDecompressor(DictionaryStore dictionaries, int maxBodySize) {
+        this.dictionaries = dictionaries;
+        this.maxBodySize = maxBodySize;
+    }
+
+    public static boolean isCompressed(Map<String, String> properties) {
+        return properties.containsKey(BodyCodec.PROPERTY);
+    }
+
+    /**
+     * 解压到线程复用的缓冲区
+     *
+     * @return 未压缩时返回 body 本身；否则返回从 0 开始的只读视图，同一线程下一次调用后失效
+     * @throws IllegalArgumentException 算法未知、字典找不到或数据损坏时
+     */
+    public ByteBuffer decompress(ByteBuffer body, Map<String, String> properties) {
+        String codec = properties.get(BodyCodec.PROPERTY);
+        if (codec == null) {
+            return body;
+        }
+        ByteBuffer src = body.duplicate();
+        int length = readLength(src);
+        Buffers buffers = BUFFERS.get();
+        byte[] input;
+        int offset;
+        if (src.hasArray()) {
+            input = src.array();
+            offset = src.arrayOffset() + src.position();
+        } else {
+            input = buffers.input(src.remaining());
+            offset = 0;
+            src.duplicate().get(input, 0, src.remaining());
+        }
+        byte[] output = buffers.output(length);
+        decompress(BodyCodec.of(codec), properties, input, offset, src.remaining(), output, length);
+        return ByteBuffer.wrap(output, 0, length).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * 解压成独立的数组
+     *
+     * @return 未压缩时返回 body 本身
+     * @throws IllegalArgumentException 算法未知、字典找不到或数据损坏时
+     */
+    public byte[] decompress(byte[] body, Map<String, String> properties) {
+        String codec = properties.get(BodyCodec.PROPERTY);
+        if (codec == null) {
+            return body;
+        }
+        ByteBuffer src = ByteBuffer.wrap(body);
+        int length = readLength(src);
+        byte[] output = new byte[length];
+        decompress(BodyCodec.of(codec), properties, body, src.position(), src.remaining(), output, length);
+        return output;
+    }
+
+    private int readLength(ByteBuffer src) {
+        long length = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (!src.hasRemaining() || shift > 28) {
+                throw new IllegalArgumentException("malformed compressed body");
+            }
+            byte b = src.get();
+            length |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        if (length > maxBodySize) {
+            throw new IllegalArgumentException("decompressed body size " + length + " exceeds " + maxBodySize);
+        }
+        return (int) length;
+    }
+
+    private void decompress(BodyCodec codec, Map<String, String> properties, byte[] src, int offset, int length,
+                            byte[] dst, int expected) {
+        int written;
+        try {
+            if (codec == BodyCodec.LZ4) {
+                written = LZ4.decompress(src, offset, length, dst, 0, expected);
+            } else {
+                ZstdDecompressCtx context;
+                String dictionaryId = properties.get(BodyCodec.DICTIONARY_PROPERTY);
+                if (dictionaryId != null) {
+                    ZstdDictionary dictionary = dictionaries.byId(Integer.parseInt(dictionaryId));
+                    if (dictionary == null) {
+                        throw new IllegalArgumentException("zstd dictionary " + dictionaryId + " not found");
+                    }
+                    context = WITH_DICTIONARY.get();
+                    context.loadDict(dictionary.decompressDict());
+                } else {
+                    context = PLAIN.get();
+                }
+                written = context.decompressByteArray(dst, 0, expected, src, offset, length);
+            }
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("corrupted " + codec.getName() + " body", e);
+        }
+        if (written != expected) {
+            throw new IllegalArgumentException("corrupted " + codec.getName() + " body: expect " + expected
+                + " bytes, got " + written);
+        }
+    }
+
+    /**
+     * 线程复用的输入、输出缓冲区
+     */
+    private static final class Buffers {
+        byte[] input = new byte[0];
+        byte[] output = new byte[0];
+
+        byte[] input(int size) {
+            if (input.length >= size) {
+                return input;
+            }
+            byte[] grown = new byte[size];
+            if (size <= POOLED_LIMIT) {
+                input = grown;
+            }
+            return grown;
+        }
+
+        byte[] output(int size) {
+            if (output.length >= size) {
+                return output;
+            }
+            byte[] grown = new byte[size];
+            if (size <= POOLED_LIMIT) {
+                output = grown;
+            }
+            return grown;
+        }
+    }
+}
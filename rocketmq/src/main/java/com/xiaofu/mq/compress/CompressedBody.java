@@ -0,0 +1,56 @@
+package com.xiaofu.mq.compress;
+
+import java.util.function.BiConsumer;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 压缩后的消息体和需要附在消息上的属性
+ **/
+public final class CompressedBody {
+
+    private final byte[] body;
+
+    private final int originalSize;
+
+    private final BodyCodec codec;
+
+    private final int dictionaryId;
+
+    CompressedBody(byte[] body, int originalSize, BodyCodec codec, int dictionaryId) {
+        this.body = body;
+        this.originalSize = originalSize;
+        this.codec = codec;
+        this.dictionaryId = dictionaryId;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public int getOriginalSize() {
+        return originalSize;
+    }
+
+    public BodyCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * 没用字典时为 0
+     */
+    public int getDictionaryId() {
+        return dictionaryId;
+    }
+
+    /**
+     * 依次给出要写到消息上的属性，4.x 传 message::putUserProperty，5.x 传 builder::addProperty
+     */
+    public void forEachProperty(BiConsumer<String, String> action) {
+        action.accept(BodyCodec.PROPERTY, codec.getName());
+        if (dictionaryId != 0) {
+            action.accept(BodyCodec.DICTIONARY_PROPERTY, Integer.toString(dictionaryId));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.xiaofu.mq.compress;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 一个 topic 的压缩策略，由 BodyCompressor 按 topic 选用
+ *
+ * - 消息体不小于 threshold 时用 codec 压缩
+ * - topic 有训练好的字典时，不小于 dictionaryThreshold 的消息改用 zstd + 字典，小消息也能压下来
+ * - 压缩后没有变小的消息原样发送，不带压缩属性
+ **/
+@Getter
+@Builder
+public class CompressionPolicy {
+
+    /**
+     * 没有字典时使用的算法
+     */
+    @Builder.Default
+    private final BodyCodec codec = BodyCodec.ZSTD;
+
+    /**
+     * 不用字典时的压缩阈值（字节）。小消息没有足够的重复内容，压缩率很低，不值得花 CPU
+     */
+    @Builder.Default
+    private final int threshold = 1024;
+
+    /**
+     * 使用字典时的压缩阈值（字节）
+     */
+    @Builder.Default
+    private final int dictionaryThreshold = 64;
+
+    /**
+     * zstd 压缩级别，1~19，LZ4 忽略。3 是 zstd 的默认级别，压缩速度和压缩率比较均衡
+     */
+    @Builder.Default
+    private final int level = 3;
+
+    /**
+     * 不压缩
+     */
+    public static CompressionPolicy disabled() {
+        return CompressionPolicy.builder().threshold(Integer.MAX_VALUE).dictionaryThreshold(Integer.MAX_VALUE).build();
+    }
+}
@@ -0,0 +1,44 @@
+package com.xiaofu.mq.compress;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyContext;
+import org.apache.rocketmq.client.consumer.listener.ConsumeConcurrentlyStatus;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerConcurrently;
+import org.apache.rocketmq.common.message.MessageExt;
+
+import java.util.List;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 4.x MessageListenerConcurrently 的解压包装
+ *
+ * 解压失败（字典还没分发到本机、数据损坏）时整批稍后重新消费，不把压缩数据交给业务
+ **/
+@Slf4j
+public class DecompressingMessageListenerConcurrently implements MessageListenerConcurrently {
+
+    private final MessageListenerConcurrently delegate;
+
+    private final BodyDecompressor decompressor;
+
+    public DecompressingMessageListenerConcurrently(MessageListenerConcurrently delegate,
+                                                    BodyDecompressor decompressor) {
+        this.delegate = delegate;
+        this.decompressor = decompressor;
+    }
+
+    @Override
+    public ConsumeConcurrentlyStatus consumeMessage(List<MessageExt> messages, ConsumeConcurrentlyContext context) {
+        for (MessageExt message : messages) {
+            try {
+                DecompressingMessageSource.decompress(decompressor, message);
+            } catch (IllegalArgumentException e) {
+                log.error("Decompress message {} failed, reconsume later", message.getMsgId(), e);
+                return ConsumeConcurrentlyStatus.RECONSUME_LATER;
+            }
+        }
+        return delegate.consumeMessage(messages, context);
+    }
+}
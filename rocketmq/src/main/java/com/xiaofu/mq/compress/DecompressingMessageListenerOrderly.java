@@ -0,0 +1,43 @@
+package com.xiaofu.mq.compress;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.consumer.listener.ConsumeOrderlyContext;
+import org.apache.rocketmq.client.consumer.listener.ConsumeOrderlyStatus;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerOrderly;
+import org.apache.rocketmq.common.message.MessageExt;
+
+import java.util.List;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 4.x MessageListenerOrderly 的解压包装，可以和 IdempotentMessageListenerOrderly 任意嵌套
+ *
+ * 解压失败（字典还没分发到本机、数据损坏）时挂起队列稍后重试，不把压缩数据交给业务，也不跳过消息
+ **/
+@Slf4j
+public class DecompressingMessageListenerOrderly implements MessageListenerOrderly {
+
+    private final MessageListenerOrderly delegate;
+
+    private final BodyDecompressor decompressor;
+
+    public DecompressingMessageListenerOrderly(MessageListenerOrderly delegate, BodyDecompressor decompressor) {
+        this.delegate = delegate;
+        this.decompressor = decompressor;
+    }
+
+    @Override
+    public ConsumeOrderlyStatus consumeMessage(List<MessageExt> messages, ConsumeOrderlyContext context) {
+        for (MessageExt message : messages) {
+            try {
+                DecompressingMessageSource.decompress(decompressor, message);
+            } catch (IllegalArgumentException e) {
+                log.error("Decompress message {} failed, suspend queue", message.getMsgId(), e);
+                return ConsumeOrderlyStatus.SUSPEND_CURRENT_QUEUE_A_MOMENT;
+            }
+        }
+        return delegate.consumeMessage(messages, context);
+    }
+}
@@ -0,0 +1,59 @@
+package com.xiaofu.mq.compress;
+
+import com.xiaofu.mq.consumer.MessageSource;
+import org.apache.rocketmq.common.message.MessageAccessor;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 4.x MessageSource 的解压包装，KeyOrderedConsumer 和业务处理器拿到的都是原始消息体
+ *
+ * MessageExt 持有消息体数组，解压结果只能是独立的数组，每条压缩消息分配一次；
+ * 解压后去掉压缩属性，消息再被转发或重发时不会被误当成压缩消息
+ **/
+public class DecompressingMessageSource implements MessageSource {
+
+    private final MessageSource delegate;
+
+    private final BodyDecompressor decompressor;
+
+    public DecompressingMessageSource(MessageSource delegate, BodyDecompressor decompressor) {
+        this.delegate = delegate;
+        this.decompressor = decompressor;
+    }
+
+    /**
+     * 原地解压一条消息，未压缩的消息不变
+     *
+     * @throws IllegalArgumentException 算法未知、字典找不到或数据损坏时
+     */
+    public static void decompress(BodyDecompressor decompressor, MessageExt message) {
+        Map<String, String> properties = message.getProperties();
+        if (properties == null || !BodyDecompressor.isCompressed(properties)) {
+            return;
+        }
+        message.setBody(decompressor.decompress(message.getBody(), properties));
+        MessageAccessor.clearProperty(message, BodyCodec.PROPERTY);
+        MessageAccessor.clearProperty(message, BodyCodec.DICTIONARY_PROPERTY);
+    }
+
+    @Override
+    public List<MessageExt> poll(long timeoutMillis) {
+        List<MessageExt> messages = delegate.poll(timeoutMillis);
+        for (MessageExt message : messages) {
+            decompress(decompressor, message);
+        }
+        return messages;
+    }
+
+    @Override
+    public void commit(Map<MessageQueue, Long> offsets) {
+        delegate.commit(offsets);
+    }
+}
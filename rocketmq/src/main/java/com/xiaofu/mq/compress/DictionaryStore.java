@@ -0,0 +1,165 @@
+package com.xiaofu.mq.compress;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 按 topic 保存 zstd 字典的目录，生产者和消费者共用同一份（共享盘或随发布包分发）
+ *
+ * 文件名是 {@code <topic>.<代次>.dict}，代次最大的是该 topic 当前使用的字典。重新训练只新增文件、不覆盖旧字典，
+ * 用旧字典压缩、还没消费完的消息仍能解压；确认旧消息都过期后再手动删除旧文件。
+ * 消费端遇到不认识的字典 ID 时重新扫描一次目录，生产者先发布新字典、后使用它即可，消费端无需重启
+ **/
+@Slf4j
+public final class DictionaryStore {
+
+    private static final String SUFFIX = ".dict";
+
+    private static final DictionaryStore NONE = new DictionaryStore(null);
+
+    private final Path directory;
+
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+
+    private final Map<Integer, ZstdDictionary> byId = new ConcurrentHashMap<>();
+
+    /**
+     * 已读过的文件名，重新扫描时跳过
+     */
+    private final Set<String> loaded = ConcurrentHashMap.newKeySet();
+
+    private DictionaryStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * 打开字典目录，不存在时创建
+     */
+    public static DictionaryStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        DictionaryStore store = new DictionaryStore(directory);
+        store.scan();
+        return store;
+    }
+
+    /**
+     * 没有任何字典
+     */
+    public static DictionaryStore none() {
+        return NONE;
+    }
+
+    /**
+     * topic 当前使用的字典，没有时返回 null
+     */
+    public ZstdDictionary forTopic(String topic) {
+        Entry entry = current.get(topic);
+        return entry == null ? null : entry.dictionary;
+    }
+
+    /**
+     * 按字典 ID 查找，本地没有时重新扫描目录
+     *
+     * @return 目录里也没有时返回 null
+     */
+    public ZstdDictionary byId(int id) {
+        ZstdDictionary dictionary = byId.get(id);
+        if (dictionary == null && directory != null) {
+            synchronized (this) {
+                dictionary = byId.get(id);
+                if (dictionary == null) {
+                    try {
+                        scan();
+                    } catch (IOException e) {
+                        log.warn("Rescan dictionary directory {} failed", directory, e);
+                    }
+                    dictionary = byId.get(id);
+                }
+            }
+        }
+        return dictionary;
+    }
+
+    /**
+     * 用 topic 的样本消息训练新字典，保存后立即作为该 topic 的当前字典
+     */
+    public ZstdDictionary train(String topic, List<byte[]> samples, int capacity) throws IOException {
+        ZstdDictionary dictionary = ZstdDictionary.train(samples, capacity);
+        publish(topic, dictionary);
+        return dictionary;
+    }
+
+    /**
+     * 保存字典并作为 topic 的当前字典
+     */
+    public synchronized void publish(String topic, ZstdDictionary dictionary) throws IOException {
+        if (directory == null) {
+            throw new IllegalStateException("dictionary store is read-only");
+        }
+        // 其它进程可能已发布过更新的代次
+        scan();
+        Entry previous = current.get(topic);
+        long generation = previous == null ? 1 : previous.generation + 1;
+        Path file = directory.resolve(topic + '.' + generation + SUFFIX);
+        // 先写临时文件再原子替换，其它进程扫描时不会读到写了一半的字典
+        Path temp = Files.createTempFile(directory, topic, ".tmp");
+        Files.write(temp, dictionary.getBytes());
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        loaded.add(file.getFileName().toString());
+        byId.put(dictionary.getId(), dictionary);
+        current.put(topic, new Entry(generation, dictionary));
+    }
+
+    private synchronized void scan() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (loaded.contains(name)) {
+                    continue;
+                }
+                String stem = name.substring(0, name.length() - SUFFIX.length());
+                int dot = stem.lastIndexOf('.');
+                long generation;
+                try {
+                    generation = dot > 0 ? Long.parseLong(stem.substring(dot + 1)) : -1;
+                } catch (NumberFormatException e) {
+                    generation = -1;
+                }
+                if (generation < 0) {
+                    log.warn("Ignore unrecognized dictionary file {}", file);
+                    continue;
+                }
+                String topic = stem.substring(0, dot);
+                ZstdDictionary dictionary = new ZstdDictionary(Files.readAllBytes(file));
+                loaded.add(name);
+                byId.putIfAbsent(dictionary.getId(), dictionary);
+                Entry entry = current.get(topic);
+                if (entry == null || entry.generation < generation) {
+                    current.put(topic, new Entry(generation, dictionary));
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+        final long generation;
+        final ZstdDictionary dictionary;
+
+        Entry(long generation, ZstdDictionary dictionary) {
+            this.generation = generation;
+            this.dictionary = dictionary;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.xiaofu.mq.compress;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 用一个 topic 的样本消息训练出的 zstd 字典
+ *
+ * 同一 topic 的消息字段名、枚举值大量重复，但单条消息太短，普通压缩找不到重复内容；
+ * 字典把这些公共片段预先放进压缩窗口，几百字节的消息也能压到原来的几分之一。
+ * 字典 ID 由 zstd 训练时生成并写在字典头里，解压端按消息属性上的 ID 找字典。
+ * 编译后的字典（ZstdDictCompress / ZstdDictDecompress）是只读的，多线程共用
+ **/
+public final class ZstdDictionary {
+
+    private final int id;
+
+    private final byte[] bytes;
+
+    private final Map<Integer, ZstdDictCompress> compressDicts = new ConcurrentHashMap<>();
+
+    private final ZstdDictDecompress decompressDict;
+
+    public ZstdDictionary(byte[] bytes) {
+        long id = Zstd.getDictIdFromDict(bytes);
+        if (id == 0) {
+            throw new IllegalArgumentException("not a zstd dictionary");
+        }
+        this.id = (int) id;
+        this.bytes = bytes.clone();
+        this.decompressDict = new ZstdDictDecompress(this.bytes);
+    }
+
+    /**
+     * 用样本消息训练字典
+     *
+     * @param capacity 字典最大字节数，一般取样本总量的 1/100 左右，16KB~112KB
+     * @throws IllegalArgumentException 样本太少或太小无法训练时
+     */
+    public static ZstdDictionary train(List<byte[]> samples, int capacity) {
+        byte[] buffer = new byte[capacity];
+        long size = Zstd.trainFromBuffer(samples.toArray(new byte[0][]), buffer);
+        if (Zstd.isError(size)) {
+            throw new IllegalArgumentException("train dictionary from " + samples.size() + " samples failed: "
+                + Zstd.getErrorName(size));
+        }
+        byte[] trained = new byte[(int) size];
+        System.arraycopy(buffer, 0, trained, 0, trained.length);
+        return new ZstdDictionary(trained);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public byte[] getBytes() {
+        return bytes.clone();
+    }
+
+    /**
+     * 按压缩级别编译的字典，第一次用到某个级别时编译
+     */
+    ZstdDictCompress compressDict(int level) {
+        return compressDicts.computeIfAbsent(level, l -> new ZstdDictCompress(bytes, l));
+    }
+
+    ZstdDictDecompress decompressDict() {
+        return decompressDict;
+    }
+}
@@ -0,0 +1,346 @@
+package com.xiaofu.mq.consumer;
+
+import com.xiaofu.mq.metrics.MessagingMetrics;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 按消息 key 保序的并行消费引擎
+ *
+ * MessageListenerOrderly 每个队列只有一个线程在消费，吞吐上限就是队列数；而业务只要求同一订单（key）有序。
+ * - 拉取线程从 MessageSource 取消息，按 key 分发到各自的 lane，同一个 key 的消息在 lane 内串行、按位点顺序执行
+ * - 所有 lane 共享一个固定大小的线程池，lane 空闲后回收，热点 key 每执行一段就让出线程，不会饿死其它 key
+ * - 在途消息数达到 maxInFlight 时拉取线程阻塞（背压）
+ * - 每个队列只提交到最小未完成位点，重启或重平衡后从该位点重新投递，至少一次语义
+ **/
+@Slf4j
+public class KeyOrderedConsumer implements Closeable {
+
+    /**
+     * lane 每次连续处理的消息数，之后让出线程
+     */
+    private static final int LANE_BATCH = 64;
+
+    private final MessageSource source;
+
+    private final KeyedMessageHandler handler;
+
+    private final Options options;
+
+    private final ExecutorService workers;
+
+    private final ScheduledExecutorService committer;
+
+    private final Semaphore inFlight;
+
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    private final Map<MessageQueue, OffsetTracker> trackers = new ConcurrentHashMap<>();
+
+    private final Map<MessageQueue, Long> committed = new ConcurrentHashMap<>();
+
+    private final AtomicLong processed = new AtomicLong();
+
+    private final AtomicLong retried = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile boolean running;
+
+    private Thread poller;
+
+    public KeyOrderedConsumer(MessageSource source, KeyedMessageHandler handler) {
+        this(source, handler, Options.builder().build());
+    }
+
+    public KeyOrderedConsumer(MessageSource source, KeyedMessageHandler handler, Options options) {
+        this.source = source;
+        this.handler = handler;
+        this.options = options;
+        this.inFlight = new Semaphore(options.getMaxInFlight());
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(options.getThreads(), options.getThreads(), 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), r -> new Thread(r, "key-ordered-worker-" + threadIndex.incrementAndGet()));
+        this.committer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "key-ordered-committer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        poller = new Thread(this::pollLoop, "key-ordered-poller");
+        poller.start();
+        committer.scheduleWithFixedDelay(this::commitOffsets, options.getCommitIntervalMillis(),
+            options.getCommitIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void pollLoop() {
+        while (running) {
+            List<MessageExt> messages;
+            try {
+                messages = source.poll(options.getPollTimeoutMillis());
+            } catch (RuntimeException e) {
+                log.warn("Poll failed", e);
+                sleepQuietly(options.getRetryBackoffMillis());
+                continue;
+            }
+            for (MessageExt message : messages) {
+                try {
+                    // 背压：在途消息达到上限时不再拉取
+                    inFlight.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                options.getMetrics().received(message.getBornTimestamp());
+                MessageQueue queue = new MessageQueue(message.getTopic(), message.getBrokerName(), message.getQueueId());
+                trackers.computeIfAbsent(queue, q -> new OffsetTracker()).track(message.getQueueOffset());
+                dispatch(new Task(queue, message));
+            }
+        }
+    }
+
+    /**
+     * 入队与 lane 回收都在 compute 内完成，同一个 key 的两者互斥，不会把消息放进已回收的 lane
+     */
+    private void dispatch(Task task) {
+        String key = options.getKeyExtractor().apply(task.message);
+        lanes.compute(key, (k, lane) -> {
+            if (lane == null) {
+                lane = new Lane(k);
+                lane.tasks.add(task);
+                workers.execute(lane);
+            } else {
+                lane.tasks.add(task);
+            }
+            return lane;
+        });
+    }
+
+    private void process(Task task) {
+        long start = options.getMetrics().consumeStarted();
+        boolean success = false;
+        for (int attempt = 0; ; attempt++) {
+            try {
+                handler.handle(task.message);
+                processed.incrementAndGet();
+                success = true;
+                break;
+            } catch (Exception e) {
+                if (attempt < options.getMaxRetries()) {
+                    retried.incrementAndGet();
+                    // 原地重试，阻塞的只是这个 key，后续消息不会越过它
+                    sleepQuietly(options.getRetryBackoffMillis() << attempt);
+                    continue;
+                }
+                failed.incrementAndGet();
+                try {
+                    options.getFailureHandler().accept(task.message, e);
+                } catch (RuntimeException ex) {
+                    log.warn("Failure handler failed, msgId={}", task.message.getMsgId(), ex);
+                }
+                break;
+            }
+        }
+        // 消费耗时包含原地重试
+        options.getMetrics().consumeCompleted(start, success);
+        trackers.get(task.queue).complete(task.message.getQueueOffset());
+        inFlight.release();
+    }
+
+    /**
+     * 提交各队列的最小未完成位点，未变化的队列不提交
+     */
+    void commitOffsets() {
+        Map<MessageQueue, Long> offsets = new HashMap<>();
+        trackers.forEach((queue, tracker) -> {
+            long offset = tracker.committableOffset();
+            if (offset >= 0 && !Long.valueOf(offset).equals(committed.get(queue))) {
+                offsets.put(queue, offset);
+            }
+        });
+        if (offsets.isEmpty()) {
+            return;
+        }
+        try {
+            source.commit(offsets);
+            committed.putAll(offsets);
+        } catch (RuntimeException e) {
+            log.warn("Commit offsets failed: {}", offsets, e);
+        }
+    }
+
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    public long getRetried() {
+        return retried.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * 当前在途（已拉取未完成）的消息数
+     */
+    public int getInFlight() {
+        return options.getMaxInFlight() - inFlight.availablePermits();
+    }
+
+    /**
+     * 停止拉取，等待在途消息处理完后提交位点；超时未完成的消息不提交，重启后重新投递
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+        }
+        try {
+            poller.join();
+            if (!inFlight.tryAcquire(options.getMaxInFlight(), options.getShutdownTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("{} messages still in flight after shutdown timeout", getInFlight());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        committer.shutdownNow();
+        // 先提交再中断工作线程：被中断的消息会走失败处理并标记完成，不能让它的位点被提交
+        commitOffsets();
+        workers.shutdownNow();
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Task {
+        final MessageQueue queue;
+        final MessageExt message;
+
+        Task(MessageQueue queue, MessageExt message) {
+            this.queue = queue;
+            this.message = message;
+        }
+    }
+
+    /**
+     * 单个 key 的待处理消息，任意时刻最多只在一个线程上执行
+     */
+    private final class Lane implements Runnable {
+        final String key;
+        final Queue<Task> tasks = new ConcurrentLinkedQueue<>();
+
+        Lane(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < LANE_BATCH; i++) {
+                Task task = tasks.poll();
+                if (task == null) {
+                    // 确认仍为空才回收，否则继续处理
+                    if (lanes.compute(key, (k, lane) -> tasks.isEmpty() ? null : lane) == null) {
+                        return;
+                    }
+                    continue;
+                }
+                process(task);
+            }
+            // 让出线程，排到其它 lane 后面
+            workers.execute(this);
+        }
+    }
+
+    /**
+     * 消费引擎参数
+     */
+    @Getter
+    @Builder
+    public static class Options {
+        /**
+         * 工作线程数，即最多同时处理的 key 数
+         */
+        @Builder.Default
+        private final int threads = 16;
+        /**
+         * 最多在途消息数
+         */
+        @Builder.Default
+        private final int maxInFlight = 10_000;
+        @Builder.Default
+        private final long pollTimeoutMillis = 1000;
+        @Builder.Default
+        private final long commitIntervalMillis = 1000;
+        /**
+         * 单条消息失败后的重试次数，用尽后交给 failureHandler 并跳过
+         */
+        @Builder.Default
+        private final int maxRetries = 3;
+        @Builder.Default
+        private final long retryBackoffMillis = 100;
+        @Builder.Default
+        private final long shutdownTimeoutMillis = 30_000;
+        /**
+         * 保序的 key，默认取消息 keys；没有 key 的消息不需要保序，各自独立处理
+         */
+        @Builder.Default
+        private final Function<MessageExt, String> keyExtractor = KeyOrderedConsumer::defaultKey;
+        @Builder.Default
+        private final BiConsumer<MessageExt, Exception> failureHandler = (message, e) ->
+            log.error("Message dropped after retries, msgId={}, keys={}", message.getMsgId(), message.getKeys(), e);
+        /**
+         * 端到端延迟、消费耗时和在途数，默认不记录
+         */
+        @Builder.Default
+        private final MessagingMetrics metrics = MessagingMetrics.disabled();
+    }
+
+    static String defaultKey(MessageExt message) {
+        String keys = message.getKeys();
+        if (keys != null && !keys.isEmpty()) {
+            return keys;
+        }
+        return message.getTopic() + '@' + message.getBrokerName() + '@' + message.getQueueId()
+            + '@' + message.getQueueOffset();
+    }
+}
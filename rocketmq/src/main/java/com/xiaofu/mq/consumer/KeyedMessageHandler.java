@@ -0,0 +1,18 @@
+package com.xiaofu.mq.consumer;
+
+import org.apache.rocketmq.common.message.MessageExt;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 业务消息处理，同一个 key 的消息串行、按位点顺序回调，不同 key 并行
+ **/
+@FunctionalInterface
+public interface KeyedMessageHandler {
+
+    /**
+     * 抛出异常视为处理失败，按 KeyOrderedConsumer.Options 重试
+     */
+    void handle(MessageExt message) throws Exception;
+}
@@ -0,0 +1,40 @@
+package com.xiaofu.mq.consumer;
+
+import org.apache.rocketmq.client.consumer.DefaultLitePullConsumer;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 基于 DefaultLitePullConsumer 的 MessageSource
+ *
+ * DefaultMQPushConsumer 在监听器返回时就自己提交位点，无法做到"只提交到最小未完成位点"，
+ * 因此这里用 lite pull consumer 并关闭自动提交，位点完全由 KeyOrderedConsumer 决定
+ **/
+public class LitePullMessageSource implements MessageSource {
+
+    private final DefaultLitePullConsumer consumer;
+
+    public LitePullMessageSource(DefaultLitePullConsumer consumer) {
+        if (consumer.isAutoCommit()) {
+            throw new IllegalArgumentException("autoCommit must be disabled, offsets are committed by the engine");
+        }
+        this.consumer = consumer;
+    }
+
+    @Override
+    public List<MessageExt> poll(long timeoutMillis) {
+        return consumer.poll(timeoutMillis);
+    }
+
+    @Override
+    public void commit(Map<MessageQueue, Long> offsets) {
+        // 只更新本地位点，由客户端定时持久化到 broker
+        consumer.commit(offsets, false);
+    }
+}
@@ -0,0 +1,28 @@
+package com.xiaofu.mq.consumer;
+
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description KeyOrderedConsumer 的消息来源：拉取消息、提交位点，由调用方负责启动和关闭
+ *
+ * 同一个队列内 poll 返回的消息必须按 queueOffset 递增
+ **/
+public interface MessageSource {
+
+    /**
+     * 拉取一批消息，没有消息时最多等待 timeoutMillis
+     */
+    List<MessageExt> poll(long timeoutMillis);
+
+    /**
+     * 提交位点，offset 为下一条待消费消息的位点
+     */
+    void commit(Map<MessageQueue, Long> offsets);
+}
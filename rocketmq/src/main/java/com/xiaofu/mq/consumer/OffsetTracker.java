@@ -0,0 +1,62 @@
+package com.xiaofu.mq.consumer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 单个队列的位点跟踪：可提交位点 = 最小未完成位点，全部完成时为已拉取的最大位点 + 1
+ *
+ * 消息并行处理、乱序完成，提交到最小未完成位点保证重启后不会丢消息，代价是少量已完成的消息会被重复投递。
+ * 重平衡后 LitePull 可能再次拉到仍在处理中的位点，同一位点按在途份数计数，最后一份完成才算完成
+ **/
+public class OffsetTracker {
+
+    /**
+     * 位点 -> 在途份数
+     */
+    private final ConcurrentSkipListMap<Long, Integer> pending = new ConcurrentSkipListMap<>();
+
+    private volatile long maxTracked = -1;
+
+    /**
+     * 消息开始处理前登记，同一队列的调用方需保证单线程调用。
+     * 位点可以回退（seek 或重平衡后重新拉取），已拉取的最大位点不随之回退
+     */
+    public void track(long offset) {
+        pending.merge(offset, 1, Integer::sum);
+        if (offset > maxTracked) {
+            maxTracked = offset;
+        }
+    }
+
+    public void complete(long offset) {
+        pending.computeIfPresent(offset, (k, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * @return 可提交的位点，还没有登记过消息时返回 -1
+     */
+    public long committableOffset() {
+        // 先读 maxTracked 再读 pending：track 先写 pending 后写 maxTracked，不会漏掉刚登记的消息
+        long max = maxTracked;
+        if (max < 0) {
+            return -1;
+        }
+        Map.Entry<Long, Integer> lowest = pending.firstEntry();
+        return lowest != null && lowest.getKey() <= max ? lowest.getKey() : max + 1;
+    }
+
+    /**
+     * @return 在途消息数，同一位点的多份各算一条
+     */
+    public int pendingCount() {
+        int count = 0;
+        for (int copies : pending.values()) {
+            count += copies;
+        }
+        return count;
+    }
+}
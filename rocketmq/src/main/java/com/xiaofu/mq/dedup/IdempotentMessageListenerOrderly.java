@@ -0,0 +1,90 @@
+package com.xiaofu.mq.dedup;
+
+import org.apache.rocketmq.client.consumer.listener.ConsumeOrderlyContext;
+import org.apache.rocketmq.client.consumer.listener.ConsumeOrderlyStatus;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerOrderly;
+import org.apache.rocketmq.common.message.MessageClientIDSetter;
+import org.apache.rocketmq.common.message.MessageExt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 4.x MessageListenerOrderly 的幂等包装，已消费过的消息不再交给业务
+ *
+ * 去重 key 默认是消息的唯一 ID，一批消息里重复的直接跳过，只把新消息交给业务监听器：
+ * - 业务返回 SUCCESS 时这些 key 记为已消费，其它结果放开 key，重新投递时再次消费
+ * - 批内有 key 正在别处处理（重平衡期间新旧实例同时持有队列）时整批放开并挂起队列，稍后重试，保证不并发、不乱序
+ * - 整批都是重复消息时直接返回 SUCCESS，推进位点
+ **/
+public class IdempotentMessageListenerOrderly implements MessageListenerOrderly {
+
+    private final MessageListenerOrderly delegate;
+
+    private final MessageDeduplicator deduplicator;
+
+    private final Function<MessageExt, String> keyExtractor;
+
+    public IdempotentMessageListenerOrderly(MessageListenerOrderly delegate, MessageDeduplicator deduplicator) {
+        this(delegate, deduplicator, IdempotentMessageListenerOrderly::defaultKey);
+    }
+
+    public IdempotentMessageListenerOrderly(MessageListenerOrderly delegate, MessageDeduplicator deduplicator,
+                                            Function<MessageExt, String> keyExtractor) {
+        this.delegate = delegate;
+        this.deduplicator = deduplicator;
+        this.keyExtractor = keyExtractor;
+    }
+
+    /**
+     * 默认用客户端生成的唯一 ID：重试消息进入 %RETRY% 主题后 msgId 会变，UNIQ_KEY 属性不变。
+     * 业务 key 往往是订单号，同一订单的多个步骤共用，不能默认拿来去重；业务幂等号需要时通过 keyExtractor 指定
+     */
+    public static String defaultKey(MessageExt message) {
+        String uniqId = MessageClientIDSetter.getUniqID(message);
+        return uniqId != null ? uniqId : message.getMsgId();
+    }
+
+    @Override
+    public ConsumeOrderlyStatus consumeMessage(List<MessageExt> messages, ConsumeOrderlyContext context) {
+        List<MessageExt> fresh = new ArrayList<>(messages.size());
+        List<String> claimed = new ArrayList<>(messages.size());
+        for (MessageExt message : messages) {
+            String key = keyExtractor.apply(message);
+            if (claimed.contains(key)) {
+                // 同一批里的重复消息
+                continue;
+            }
+            MessageDeduplicator.Claim claim = deduplicator.begin(key);
+            if (claim == MessageDeduplicator.Claim.IN_PROGRESS) {
+                claimed.forEach(deduplicator::abort);
+                return ConsumeOrderlyStatus.SUSPEND_CURRENT_QUEUE_A_MOMENT;
+            }
+            if (claim == MessageDeduplicator.Claim.NEW) {
+                fresh.add(message);
+                claimed.add(key);
+            }
+        }
+        if (fresh.isEmpty()) {
+            return ConsumeOrderlyStatus.SUCCESS;
+        }
+
+        ConsumeOrderlyStatus status;
+        try {
+            status = delegate.consumeMessage(fresh, context);
+        } catch (RuntimeException e) {
+            claimed.forEach(deduplicator::abort);
+            throw e;
+        }
+        if (status == ConsumeOrderlyStatus.SUCCESS) {
+            claimed.forEach(deduplicator::commit);
+        } else {
+            claimed.forEach(deduplicator::abort);
+        }
+        return status;
+    }
+}
@@ -0,0 +1,482 @@
+package com.xiaofu.mq.dedup;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 幂等消费用的消息去重器，已消费的 key 记在堆外，4.x 和 5.x 的监听器包装共用
+ *
+ * RocketMQ 是至少一次投递，重平衡、ack 超时、生产者重试都会带来重复消息。每小时上千万个 key 放在堆上的 Set 里，
+ * 老年代会被撑大并拖慢 GC，这里把 key 的 128 位哈希放在堆外，分两层：
+ * - 精确窗口：两代开放寻址表，当前代写满或满 exactWindowMillis 后换代，旧的一代清空复用。
+ *   覆盖最近 1~2 个窗口，绝大多数重复投递（重平衡、ack 超时）都落在这里，结论是确定的
+ * - 时间轮 Bloom filter：bloomSlices 片，每片覆盖 bloomWindowMillis / bloomSlices，最老的一片整片清空后复用。
+ *   覆盖更久以前的 key，命中只代表"可能重复"：配置了 duplicateConfirmer 时交给业务确认；没有配置时按新消息处理，
+ *   老消息可能被再消费一次，但新消息不会因为误判被丢掉
+ *
+ * 消费流程：begin 返回 NEW 时占住 key（IN_PROGRESS），业务成功后 commit，失败则 abort 放开，下次投递可以重新消费。
+ * 同一个 key 还在处理中又被投递时返回 IN_PROGRESS，调用方稍后重试，不会并发执行两次。
+ * key 按哈希分到 segments 个分段，每段一把锁和一套独立的堆外结构；热路径上除了 key 本身不分配对象。
+ * 堆外内存由 DirectByteBuffer 持有，close 后随对象一起回收
+ **/
+@Slf4j
+public class MessageDeduplicator implements Closeable {
+
+    private static final long SEED_HI = 0x9e3779b97f4a7c15L;
+
+    private static final long SEED_LO = 0xc2b2ae3d27d4eb4fL;
+
+    private static final long MULTIPLIER_HI = 0x100000001b3L;
+
+    private static final long MULTIPLIER_LO = 0xff51afd7ed558ccdL;
+
+    private final Options options;
+
+    private final Segment[] segments;
+
+    private final LongAdder accepted = new LongAdder();
+
+    private final LongAdder duplicates = new LongAdder();
+
+    private final LongAdder probableDuplicates = new LongAdder();
+
+    private final LongAdder falsePositives = new LongAdder();
+
+    private final LongAdder conflicts = new LongAdder();
+
+    private volatile boolean running = true;
+
+    public MessageDeduplicator() {
+        this(Options.builder().build());
+    }
+
+    public MessageDeduplicator(Options options) {
+        this.options = options;
+        int count = Integer.highestOneBit(Math.max(1, options.getSegments()) * 2 - 1);
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(options, count);
+        }
+    }
+
+    /**
+     * 消费前调用，返回 NEW 时 key 已被占住，必须在消费结束后调用 commit 或 abort
+     */
+    public Claim begin(String key) {
+        ensureRunning();
+        long hi = hashHi(key);
+        long lo = hashLo(key);
+        Segment segment = segment(hi);
+        Claim claim = segment.begin(hi, lo, System.currentTimeMillis());
+        if (claim == Claim.PROBABLE_DUPLICATE) {
+            probableDuplicates.increment();
+            // 确认可能访问数据库，放在锁外。没有确认手段时不能把可能的误判当成重复：
+            // 每个新 key 都要查 Bloom filter，按重复处理会让约 bloomFpp 比例的新消息被确认却从未消费
+            Predicate<String> confirmer = options.getDuplicateConfirmer();
+            if (confirmer != null && confirmer.test(key)) {
+                claim = Claim.DUPLICATE;
+            } else {
+                if (confirmer != null) {
+                    falsePositives.increment();
+                }
+                claim = segment.claim(hi, lo, System.currentTimeMillis());
+            }
+        }
+        switch (claim) {
+            case NEW:
+                accepted.increment();
+                break;
+            case DUPLICATE:
+                duplicates.increment();
+                break;
+            default:
+                conflicts.increment();
+        }
+        return claim;
+    }
+
+    /**
+     * 消费成功，key 记为已消费
+     */
+    public void commit(String key) {
+        ensureRunning();
+        long hi = hashHi(key);
+        segment(hi).commit(hi, hashLo(key), System.currentTimeMillis());
+    }
+
+    /**
+     * 消费失败，放开 key，重新投递时可以再次消费
+     */
+    public void abort(String key) {
+        ensureRunning();
+        long hi = hashHi(key);
+        segment(hi).abort(hi, hashLo(key));
+    }
+
+    /**
+     * 只查询不占用
+     */
+    public boolean isConsumed(String key) {
+        ensureRunning();
+        long hi = hashHi(key);
+        return segment(hi).isConsumed(hi, hashLo(key), System.currentTimeMillis());
+    }
+
+    private Segment segment(long hi) {
+        // 低位用于表内寻址，分段用高位
+        return segments[(int) (hi >>> 48) & (segments.length - 1)];
+    }
+
+    private void ensureRunning() {
+        if (!running) {
+            throw new IllegalStateException("MessageDeduplicator is closed");
+        }
+    }
+
+    /**
+     * 精确窗口里的 key 数，含处理中和失败放开的
+     */
+    public long getExactSize() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.exactSize();
+        }
+        return size;
+    }
+
+    public long getOffHeapBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.offHeapBytes;
+        }
+        return bytes;
+    }
+
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    /**
+     * 只在 Bloom filter 中命中的次数，其中经 duplicateConfirmer 确认不是重复的计入 falsePositives
+     */
+    public long getProbableDuplicates() {
+        return probableDuplicates.sum();
+    }
+
+    public long getFalsePositives() {
+        return falsePositives.sum();
+    }
+
+    /**
+     * 同一个 key 正在处理时又被投递的次数
+     */
+    public long getConflicts() {
+        return conflicts.sum();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        for (Segment segment : segments) {
+            segment.release();
+        }
+        log.info("MessageDeduplicator closed, accepted={}, duplicates={}, falsePositives={}",
+            getAccepted(), getDuplicates(), getFalsePositives());
+    }
+
+    /**
+     * 两个独立的 64 位哈希，逐字符计算，不把 key 编码成字节数组
+     */
+    static long hashHi(String key) {
+        long hash = SEED_HI;
+        for (int i = 0, n = key.length(); i < n; i++) {
+            hash = (hash ^ key.charAt(i)) * MULTIPLIER_HI;
+        }
+        return mix64(hash ^ key.length());
+    }
+
+    static long hashLo(String key) {
+        long hash = SEED_LO;
+        for (int i = 0, n = key.length(); i < n; i++) {
+            hash = (hash + key.charAt(i)) * MULTIPLIER_LO;
+            hash ^= hash >>> 29;
+        }
+        return mix64(hash + key.length());
+    }
+
+    /**
+     * SplitMix64 的终结函数
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    public enum Claim {
+        /**
+         * 第一次见到，已占住，消费后 commit 或 abort
+         */
+        NEW,
+        /**
+         * 已消费过，直接确认消息即可
+         */
+        DUPLICATE,
+        /**
+         * 同一个 key 正在处理，稍后重试
+         */
+        IN_PROGRESS,
+        /**
+         * 仅内部使用：只在 Bloom filter 中命中，begin 按 duplicateConfirmer 的结果转成 DUPLICATE 或 NEW
+         */
+        PROBABLE_DUPLICATE
+    }
+
+    /**
+     * 一个分段：两代精确表 + 一圈 Bloom filter，所有操作在段锁内
+     */
+    private static final class Segment {
+        final long exactWindowMillis;
+        final long sliceMillis;
+        final OffHeapBloomFilter[] slices;
+        final long offHeapBytes;
+        OffHeapKeyTable current;
+        OffHeapKeyTable previous;
+        long generationStart;
+        int slice;
+        long sliceStart;
+
+        Segment(Options options, int segmentCount) {
+            int exactPerSegment = Math.max(16, options.getExactCapacity() / segmentCount);
+            int sliceCount = Math.max(1, options.getBloomSlices());
+            int keysPerSlice = (int) Math.max(16, options.getExpectedKeysPerBloomWindow() / sliceCount / segmentCount);
+            // 查询时各片的误判率相加，单片按 fpp / 片数 分配
+            double sliceFpp = options.getBloomFpp() / sliceCount;
+            this.exactWindowMillis = options.getExactWindowMillis();
+            this.sliceMillis = Math.max(1, options.getBloomWindowMillis() / sliceCount);
+            this.current = new OffHeapKeyTable(exactPerSegment);
+            this.previous = new OffHeapKeyTable(exactPerSegment);
+            this.slices = new OffHeapBloomFilter[sliceCount];
+            long bytes = current.offHeapBytes() + previous.offHeapBytes();
+            for (int i = 0; i < sliceCount; i++) {
+                slices[i] = new OffHeapBloomFilter(keysPerSlice, sliceFpp);
+                bytes += slices[i].offHeapBytes();
+            }
+            this.offHeapBytes = bytes;
+            long now = System.currentTimeMillis();
+            this.generationStart = now;
+            this.sliceStart = now;
+        }
+
+        synchronized Claim begin(long hi, long lo, long now) {
+            rotate(now);
+            int slot = current.find(hi, lo);
+            if (slot >= 0) {
+                return claimSlot(current, slot);
+            }
+            slot = previous.find(hi, lo);
+            if (slot >= 0 && previous.state(slot) != OffHeapKeyTable.ABORTED) {
+                return claimSlot(previous, slot);
+            }
+            if (inBloom(hi, lo)) {
+                return Claim.PROBABLE_DUPLICATE;
+            }
+            insert(hi, lo, OffHeapKeyTable.IN_PROGRESS, now);
+            return Claim.NEW;
+        }
+
+        /**
+         * Bloom filter 误判确认后占住 key；锁外确认期间可能已被其它线程占住或消费
+         */
+        synchronized Claim claim(long hi, long lo, long now) {
+            rotate(now);
+            int slot = current.find(hi, lo);
+            if (slot >= 0) {
+                return claimSlot(current, slot);
+            }
+            slot = previous.find(hi, lo);
+            if (slot >= 0 && previous.state(slot) != OffHeapKeyTable.ABORTED) {
+                return claimSlot(previous, slot);
+            }
+            insert(hi, lo, OffHeapKeyTable.IN_PROGRESS, now);
+            return Claim.NEW;
+        }
+
+        private static Claim claimSlot(OffHeapKeyTable table, int slot) {
+            switch (table.state(slot)) {
+                case OffHeapKeyTable.DONE:
+                    return Claim.DUPLICATE;
+                case OffHeapKeyTable.IN_PROGRESS:
+                    return Claim.IN_PROGRESS;
+                default:
+                    table.setState(slot, OffHeapKeyTable.IN_PROGRESS);
+                    return Claim.NEW;
+            }
+        }
+
+        synchronized void commit(long hi, long lo, long now) {
+            rotate(now);
+            int slot = current.find(hi, lo);
+            if (slot >= 0) {
+                current.setState(slot, OffHeapKeyTable.DONE);
+            } else if ((slot = previous.find(hi, lo)) >= 0) {
+                previous.setState(slot, OffHeapKeyTable.DONE);
+            } else {
+                // 处理期间占用记录已随换代清掉
+                insert(hi, lo, OffHeapKeyTable.DONE, now);
+            }
+            OffHeapBloomFilter filter = slices[slice];
+            if (filter.isFull()) {
+                advanceSlice(now);
+                filter = slices[slice];
+            }
+            filter.put(hi, lo);
+        }
+
+        synchronized void abort(long hi, long lo) {
+            int slot = current.find(hi, lo);
+            if (slot >= 0) {
+                abortSlot(current, slot);
+            } else if ((slot = previous.find(hi, lo)) >= 0) {
+                abortSlot(previous, slot);
+            }
+        }
+
+        private static void abortSlot(OffHeapKeyTable table, int slot) {
+            if (table.state(slot) == OffHeapKeyTable.IN_PROGRESS) {
+                table.setState(slot, OffHeapKeyTable.ABORTED);
+            }
+        }
+
+        synchronized boolean isConsumed(long hi, long lo, long now) {
+            rotate(now);
+            int slot = current.find(hi, lo);
+            if (slot >= 0) {
+                return current.state(slot) == OffHeapKeyTable.DONE;
+            }
+            slot = previous.find(hi, lo);
+            if (slot >= 0) {
+                return previous.state(slot) == OffHeapKeyTable.DONE;
+            }
+            return inBloom(hi, lo);
+        }
+
+        private boolean inBloom(long hi, long lo) {
+            for (OffHeapBloomFilter filter : slices) {
+                if (filter.mightContain(hi, lo)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void insert(long hi, long lo, int state, long now) {
+            if (current.isFull()) {
+                swapGenerations(now);
+            }
+            current.insert(hi, lo, state);
+        }
+
+        private void rotate(long now) {
+            if (now - generationStart >= exactWindowMillis) {
+                swapGenerations(now);
+            }
+            if (now - sliceStart >= sliceMillis) {
+                advanceSlice(now);
+            }
+        }
+
+        /**
+         * 旧的一代清空后变为当前代；超过两个窗口没有流量时两代都已过期
+         */
+        private void swapGenerations(long now) {
+            OffHeapKeyTable expired = previous;
+            previous = now - generationStart >= exactWindowMillis * 2 ? cleared(current) : current;
+            current = cleared(expired);
+            generationStart = now;
+        }
+
+        private static OffHeapKeyTable cleared(OffHeapKeyTable table) {
+            table.clear();
+            return table;
+        }
+
+        /**
+         * 最老的一片清空后成为当前片；长时间无流量时跳过的片也一并清空
+         */
+        private void advanceSlice(long now) {
+            long elapsed = Math.max(1, (now - sliceStart) / sliceMillis);
+            for (long i = 0; i < Math.min(elapsed, slices.length); i++) {
+                slice = (slice + 1) % slices.length;
+                slices[slice].clear();
+            }
+            sliceStart = now;
+        }
+
+        synchronized int exactSize() {
+            return current == null ? 0 : current.size() + previous.size();
+        }
+
+        synchronized void release() {
+            current = null;
+            previous = null;
+            for (int i = 0; i < slices.length; i++) {
+                slices[i] = null;
+            }
+        }
+    }
+
+    @Getter
+    @Builder
+    public static class Options {
+        /**
+         * 分段数，取整到 2 的幂
+         */
+        @Builder.Default
+        private int segments = 16;
+        /**
+         * 精确窗口每一代的时长
+         */
+        @Builder.Default
+        private long exactWindowMillis = 10 * 60_000L;
+        /**
+         * 精确窗口每一代最多容纳的 key 数，写满提前换代。每个 key 占 32 字节（装载因子 0.5），两代共 64 字节
+         */
+        @Builder.Default
+        private int exactCapacity = 1_000_000;
+        /**
+         * Bloom filter 覆盖的总时长
+         */
+        @Builder.Default
+        private long bloomWindowMillis = 60 * 60_000L;
+        @Builder.Default
+        private int bloomSlices = 6;
+        /**
+         * bloomWindowMillis 内预计消费的 key 数，单片写满提前换片
+         */
+        @Builder.Default
+        private long expectedKeysPerBloomWindow = 20_000_000L;
+        /**
+         * 写满时整圈的误判率
+         */
+        @Builder.Default
+        private double bloomFpp = 1e-5;
+        /**
+         * 只在 Bloom filter 中命中时的确认，返回 true 表示确实消费过；为 null 时按新消息处理，
+         * 精确窗口之外的重复投递会被再消费一次
+         */
+        private Predicate<String> duplicateConfirmer;
+    }
+}
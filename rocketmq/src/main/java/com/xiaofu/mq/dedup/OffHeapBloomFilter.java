@@ -0,0 +1,96 @@
+package com.xiaofu.mq.dedup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 位图放在堆外的 Bloom filter，作为 MessageDeduplicator 时间轮里的一片
+ *
+ * k 个位置由 128 位哈希的两半做双重哈希得到（h1 + i * h2），不再重复计算哈希；
+ * 位置用乘法取范围而不是取模或对 2 的幂取掩码，位图大小不必向上取整到 2 的幂。非线程安全
+ **/
+final class OffHeapBloomFilter {
+
+    private final LongBuffer words;
+
+    private final long bits;
+
+    private final int hashes;
+
+    private final int expectedKeys;
+
+    private int count;
+
+    /**
+     * @param expectedKeys 本片预计写入的 key 数，超过后误判率上升，由调用方换片
+     * @param fpp          写满 expectedKeys 时的误判率
+     */
+    OffHeapBloomFilter(int expectedKeys, double fpp) {
+        long optimalBits = (long) Math.ceil(-expectedKeys * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        // 乘法取范围要求位数不超过 2^31
+        long words = Math.min((optimalBits + 63) >>> 6, Integer.MAX_VALUE >>> 6);
+        this.words = ByteBuffer.allocateDirect((int) words * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+        this.bits = words << 6;
+        this.hashes = Math.max(1, (int) Math.round((double) bits / expectedKeys * Math.log(2)));
+        this.expectedKeys = expectedKeys;
+    }
+
+    void put(long h1, long h2) {
+        long combined = h1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = index(combined);
+            int word = (int) (bit >>> 6);
+            words.put(word, words.get(word) | (1L << bit));
+            combined += h2;
+        }
+        count++;
+    }
+
+    boolean mightContain(long h1, long h2) {
+        if (count == 0) {
+            return false;
+        }
+        long combined = h1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = index(combined);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+            combined += h2;
+        }
+        return true;
+    }
+
+    /**
+     * 取高 32 位乘以位数再右移 32 位，结果均匀落在 [0, bits)
+     */
+    private long index(long hash) {
+        return ((hash >>> 32) * bits) >>> 32;
+    }
+
+    boolean isFull() {
+        return count >= expectedKeys;
+    }
+
+    int count() {
+        return count;
+    }
+
+    void clear() {
+        if (count == 0) {
+            return;
+        }
+        for (int i = 0, n = words.capacity(); i < n; i++) {
+            words.put(i, 0L);
+        }
+        count = 0;
+    }
+
+    long offHeapBytes() {
+        return words.capacity() * 8L;
+    }
+}
@@ -0,0 +1,107 @@
+package com.xiaofu.mq.dedup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 堆外的开放寻址表，精确记录 128 位的 key 哈希及其消费状态
+ *
+ * 每个槽两个 long：哈希高 64 位，哈希低 62 位 + 2 位状态。状态非 0，所以占用的槽不会全为 0，全 0 即空槽。
+ * 不支持删除（线性探测删除需要墓碑），失败的 key 标记为 ABORTED，下次同一个 key 到来时复用该槽；
+ * 整张表随时间窗口整体清空。非线程安全，由 MessageDeduplicator 的分段锁保护
+ **/
+final class OffHeapKeyTable {
+
+    static final int IN_PROGRESS = 1;
+
+    static final int DONE = 2;
+
+    static final int ABORTED = 3;
+
+    private static final long STATE_MASK = 3L;
+
+    private final LongBuffer slots;
+
+    private final int mask;
+
+    private final int maxSize;
+
+    private int size;
+
+    /**
+     * @param maxSize 最多容纳的 key 数，槽数为其两倍以上的 2 的幂，装载因子不超过 0.5
+     */
+    OffHeapKeyTable(int maxSize) {
+        int capacity = Integer.highestOneBit(Math.max(2, maxSize) * 2 - 1) << 1;
+        this.slots = ByteBuffer.allocateDirect(capacity * 16).order(ByteOrder.nativeOrder()).asLongBuffer();
+        this.mask = capacity - 1;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return key 所在的槽，不存在返回 -1
+     */
+    int find(long hi, long lo) {
+        long tagged = lo & ~STATE_MASK;
+        for (int slot = (int) hi & mask; ; slot = (slot + 1) & mask) {
+            long storedLo = slots.get(slot * 2 + 1);
+            if (storedLo == 0) {
+                return -1;
+            }
+            if ((storedLo & ~STATE_MASK) == tagged && slots.get(slot * 2) == hi) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * 调用方已确认 key 不存在
+     *
+     * @return 新占用的槽，表已满返回 -1
+     */
+    int insert(long hi, long lo, int state) {
+        if (size >= maxSize) {
+            return -1;
+        }
+        int slot = (int) hi & mask;
+        while (slots.get(slot * 2 + 1) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots.put(slot * 2, hi);
+        slots.put(slot * 2 + 1, (lo & ~STATE_MASK) | state);
+        size++;
+        return slot;
+    }
+
+    int state(int slot) {
+        return (int) (slots.get(slot * 2 + 1) & STATE_MASK);
+    }
+
+    void setState(int slot, int state) {
+        long lo = slots.get(slot * 2 + 1);
+        slots.put(slot * 2 + 1, (lo & ~STATE_MASK) | state);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isFull() {
+        return size >= maxSize;
+    }
+
+    void clear() {
+        for (int i = 0, n = slots.capacity(); i < n; i++) {
+            slots.put(i, 0L);
+        }
+        size = 0;
+    }
+
+    long offHeapBytes() {
+        return slots.capacity() * 8L;
+    }
+}
@@ -0,0 +1,44 @@
+package com.xiaofu.mq.hotel;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 酒店数据变更事件，字段与 elasticsearch 模块的 Hotel 对应
+ *
+ * 除 id 和 version 外都可以为 null，null 表示这个字段没有变化，只有非 null 的字段会写进消息，
+ * 消费端据此生成局部更新。deleted 为 true 时其余字段忽略
+ **/
+@Data
+public class HotelEvent {
+    private long id;
+    /**
+     * 变更序号，同一酒店单调递增（如源库的更新时间戳或 binlog 位点），用于丢弃乱序到达的旧事件
+     */
+    private long version;
+    private boolean deleted;
+    private String name;
+    private Integer stars;
+    private Double price;
+    private String description;
+    private String address;
+    private Double lat;
+    private Double lon;
+    private List<Room> rooms;
+    private List<String> amenities;
+    /**
+     * epoch 毫秒
+     */
+    private Long lastUpdated;
+
+    @Data
+    public static class Room {
+        private String roomNumber;
+        private String roomType;
+        private Integer bedCount;
+    }
+}
@@ -0,0 +1,111 @@
+package com.xiaofu.mq.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 基于 HdrHistogram Recorder 的延迟记录，写入无锁、不分配对象
+ *
+ * 业务线程只调用 Recorder.recordValue（wait-free，不分配）；读取方按 windowMillis 换出一段区间直方图，
+ * 分位数取自最近一个完整窗口，累计次数和最大值覆盖整个生命周期。
+ * 单位为微秒，超过 maxLatency 的值按 maxLatency 记录，不会因越界抛异常
+ **/
+public class LatencyRecorder {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private final Recorder recorder = new Recorder(MAX_LATENCY_MICROS, 3);
+
+    private final long windowMillis;
+
+    /**
+     * 最近一个完整窗口，换出时与 recorder 交换复用，不重新分配
+     */
+    private Histogram window;
+
+    private Histogram recycled;
+
+    private long windowStart = System.currentTimeMillis();
+
+    private long totalCount;
+
+    private long maxMicros;
+
+    public LatencyRecorder(long windowMillis) {
+        this.windowMillis = windowMillis;
+        // 回收复用的直方图必须出自同一个 recorder
+        this.window = recorder.getIntervalHistogram();
+    }
+
+    public void recordNanos(long nanos) {
+        long micros = nanos / 1000;
+        recorder.recordValue(micros < 0 ? 0 : Math.min(micros, MAX_LATENCY_MICROS));
+    }
+
+    public void recordMillis(long millis) {
+        recordNanos(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /**
+     * 窗口到期时换出 recorder 中的区间数据，否则沿用上一个窗口
+     */
+    private void refresh() {
+        long now = System.currentTimeMillis();
+        if (now - windowStart < windowMillis) {
+            return;
+        }
+        Histogram interval = recorder.getIntervalHistogram(recycled);
+        recycled = window;
+        window = interval;
+        windowStart = now;
+        totalCount += interval.getTotalCount();
+        maxMicros = Math.max(maxMicros, interval.getMaxValue());
+    }
+
+    /**
+     * 最近一个窗口的分位数，单位毫秒
+     */
+    public synchronized double percentileMillis(double percentile) {
+        refresh();
+        return window.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    public synchronized double meanMillis() {
+        refresh();
+        return window.getMean() / 1000.0;
+    }
+
+    /**
+     * 最近一个窗口的记录次数
+     */
+    public synchronized long windowCount() {
+        refresh();
+        return window.getTotalCount();
+    }
+
+    /**
+     * 已换出窗口的累计次数，不含当前还在记录中的区间
+     */
+    public synchronized long totalCount() {
+        refresh();
+        return totalCount;
+    }
+
+    public synchronized double maxMillis() {
+        refresh();
+        return maxMicros / 1000.0;
+    }
+
+    /**
+     * 立即换出当前区间，测试和关闭前输出报告时使用
+     */
+    public synchronized void flush() {
+        windowStart = Long.MIN_VALUE / 2;
+        refresh();
+    }
+}
@@ -0,0 +1,265 @@
+package com.xiaofu.mq.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 4.x / 5.x 生产者与消费者共用的指标：发送延迟、端到端延迟、消费耗时、ack 延迟和在途数
+ *
+ * 每个客户端一个实例，业务线程上的调用只有 System.nanoTime、HdrHistogram 记录和计数器自增，不分配对象：
+ * <pre>
+ * long start = metrics.sendStarted();
+ * producer.sendAsync(message).whenComplete((r, e) -> metrics.sendCompleted(start, e == null));
+ * </pre>
+ * 作为 MeterBinder 注册到 Micrometer（MqApplication 里由 MetricsConfiguration 声明为 Bean），
+ * 指标名以 rocketmq. 开头，带 client 标签；延迟以最近一个窗口的分位数 gauge 暴露，单位毫秒。
+ * 未开启时使用 disabled()，所有记录方法直接返回
+ **/
+public class MessagingMetrics implements MeterBinder {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private static final MessagingMetrics DISABLED = new MessagingMetrics("disabled", 0, false);
+
+    private final String client;
+
+    private final boolean enabled;
+
+    private final LatencyRecorder sendLatency;
+
+    private final LatencyRecorder endToEndLatency;
+
+    private final LatencyRecorder consumeDuration;
+
+    private final LatencyRecorder ackLatency;
+
+    private final LongAdder sent = new LongAdder();
+
+    private final LongAdder sendFailed = new LongAdder();
+
+    private final LongAdder consumed = new LongAdder();
+
+    private final LongAdder consumeFailed = new LongAdder();
+
+    private final LongAdder acked = new LongAdder();
+
+    private final LongAdder ackFailed = new LongAdder();
+
+    private final AtomicLong sendsInFlight = new AtomicLong();
+
+    private final AtomicLong consumesInFlight = new AtomicLong();
+
+    private final AtomicLong acksInFlight = new AtomicLong();
+
+    public MessagingMetrics(String client) {
+        this(client, 10_000);
+    }
+
+    /**
+     * @param windowMillis 分位数统计窗口
+     */
+    public MessagingMetrics(String client, long windowMillis) {
+        this(client, windowMillis, true);
+    }
+
+    private MessagingMetrics(String client, long windowMillis, boolean enabled) {
+        this.client = client;
+        this.enabled = enabled;
+        this.sendLatency = enabled ? new LatencyRecorder(windowMillis) : null;
+        this.endToEndLatency = enabled ? new LatencyRecorder(windowMillis) : null;
+        this.consumeDuration = enabled ? new LatencyRecorder(windowMillis) : null;
+        this.ackLatency = enabled ? new LatencyRecorder(windowMillis) : null;
+    }
+
+    /**
+     * 不记录任何指标的共享实例，作为各组件的默认值
+     */
+    public static MessagingMetrics disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getClient() {
+        return client;
+    }
+
+    /**
+     * 发出一个发送请求（单条或一批），返回开始时间，完成时传给 sendCompleted
+     */
+    public long sendStarted() {
+        if (!enabled) {
+            return 0;
+        }
+        sendsInFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public void sendCompleted(long startNanos, boolean success) {
+        sendCompleted(startNanos, 1, success);
+    }
+
+    /**
+     * @param messages 本次请求包含的消息数，批量发送时延迟只记一次
+     */
+    public void sendCompleted(long startNanos, int messages, boolean success) {
+        if (!enabled) {
+            return;
+        }
+        sendLatency.recordNanos(System.nanoTime() - startNanos);
+        sendsInFlight.decrementAndGet();
+        (success ? sent : sendFailed).add(messages);
+    }
+
+    /**
+     * 消息到达消费者，端到端延迟从生产时间（定时消息取投递时间）算起，依赖两端时钟同步
+     */
+    public void received(long producedAtMillis) {
+        if (!enabled || producedAtMillis <= 0) {
+            return;
+        }
+        endToEndLatency.recordMillis(System.currentTimeMillis() - producedAtMillis);
+    }
+
+    public long consumeStarted() {
+        if (!enabled) {
+            return 0;
+        }
+        consumesInFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public void consumeCompleted(long startNanos, boolean success) {
+        if (!enabled) {
+            return;
+        }
+        consumeDuration.recordNanos(System.nanoTime() - startNanos);
+        consumesInFlight.decrementAndGet();
+        (success ? consumed : consumeFailed).increment();
+    }
+
+    public long ackStarted() {
+        if (!enabled) {
+            return 0;
+        }
+        acksInFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    public void ackCompleted(long startNanos, boolean success) {
+        if (!enabled) {
+            return;
+        }
+        ackLatency.recordNanos(System.nanoTime() - startNanos);
+        acksInFlight.decrementAndGet();
+        (success ? acked : ackFailed).increment();
+    }
+
+    public LatencyRecorder getSendLatency() {
+        return sendLatency;
+    }
+
+    public LatencyRecorder getEndToEndLatency() {
+        return endToEndLatency;
+    }
+
+    public LatencyRecorder getConsumeDuration() {
+        return consumeDuration;
+    }
+
+    public LatencyRecorder getAckLatency() {
+        return ackLatency;
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+
+    public long getSendFailed() {
+        return sendFailed.sum();
+    }
+
+    public long getConsumed() {
+        return consumed.sum();
+    }
+
+    public long getConsumeFailed() {
+        return consumeFailed.sum();
+    }
+
+    public long getAcked() {
+        return acked.sum();
+    }
+
+    public long getAckFailed() {
+        return ackFailed.sum();
+    }
+
+    public long getSendsInFlight() {
+        return sendsInFlight.get();
+    }
+
+    public long getConsumesInFlight() {
+        return consumesInFlight.get();
+    }
+
+    public long getAcksInFlight() {
+        return acksInFlight.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!enabled) {
+            return;
+        }
+        Tags tags = Tags.of("client", client);
+        bindLatency(registry, "rocketmq.send.latency", sendLatency, tags);
+        bindLatency(registry, "rocketmq.end.to.end.latency", endToEndLatency, tags);
+        bindLatency(registry, "rocketmq.consume.duration", consumeDuration, tags);
+        bindLatency(registry, "rocketmq.ack.latency", ackLatency, tags);
+
+        bindCounter(registry, "rocketmq.sent", MessagingMetrics::getSent, tags.and("result", "success"));
+        bindCounter(registry, "rocketmq.sent", MessagingMetrics::getSendFailed, tags.and("result", "failure"));
+        bindCounter(registry, "rocketmq.consumed", MessagingMetrics::getConsumed, tags.and("result", "success"));
+        bindCounter(registry, "rocketmq.consumed", MessagingMetrics::getConsumeFailed, tags.and("result", "failure"));
+        bindCounter(registry, "rocketmq.acked", MessagingMetrics::getAcked, tags.and("result", "success"));
+        bindCounter(registry, "rocketmq.acked", MessagingMetrics::getAckFailed, tags.and("result", "failure"));
+
+        Gauge.builder("rocketmq.in.flight", this, MessagingMetrics::getSendsInFlight)
+            .tags(tags.and("operation", "send")).register(registry);
+        Gauge.builder("rocketmq.in.flight", this, MessagingMetrics::getConsumesInFlight)
+            .tags(tags.and("operation", "consume")).register(registry);
+        Gauge.builder("rocketmq.in.flight", this, MessagingMetrics::getAcksInFlight)
+            .tags(tags.and("operation", "ack")).register(registry);
+    }
+
+    private static void bindLatency(MeterRegistry registry, String name, LatencyRecorder recorder, Tags tags) {
+        for (double percentile : PERCENTILES) {
+            Gauge.builder(name, recorder, r -> r.percentileMillis(percentile))
+                .tags(tags.and("quantile", String.valueOf(percentile / 100)))
+                .baseUnit("milliseconds")
+                .register(registry);
+        }
+        Gauge.builder(name + ".max", recorder, LatencyRecorder::maxMillis)
+            .tags(tags).baseUnit("milliseconds").register(registry);
+        FunctionCounter.builder(name + ".count", recorder, LatencyRecorder::totalCount)
+            .tags(tags).register(registry);
+    }
+
+    private void bindCounter(MeterRegistry registry, String name, ToDoubleFunction<MessagingMetrics> value,
+                             Tags tags) {
+        FunctionCounter.builder(name, this, value).tags(tags).register(registry);
+    }
+}
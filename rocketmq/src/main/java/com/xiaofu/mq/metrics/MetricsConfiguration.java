@@ -0,0 +1,24 @@
+package com.xiaofu.mq.metrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 在 MqApplication 中暴露 RocketMQ 客户端指标
+ *
+ * MessagingMetrics 是 MeterBinder，声明为 Bean 后由 actuator 自动注册到 MeterRegistry，
+ * 通过 /actuator/metrics/rocketmq.* 查看。生产者和消费者注入这个 Bean 后传给各自的 Options
+ **/
+@Configuration
+public class MetricsConfiguration {
+
+    @Bean
+    public MessagingMetrics messagingMetrics(@Value("${rocketmq.metrics.client:rocketmq}") String client,
+                                             @Value("${rocketmq.metrics.window-millis:10000}") long windowMillis) {
+        return new MessagingMetrics(client, windowMillis);
+    }
+}
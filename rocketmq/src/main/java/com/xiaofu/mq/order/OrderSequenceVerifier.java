@@ -0,0 +1,115 @@
+package com.xiaofu.mq.order;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 消费端校验每个订单的步骤按 CREATE -> PAY -> SHIP -> FINISH 依次到达
+ *
+ * - 收到的步骤等于上一步的下一步：正常
+ * - 收到的步骤不晚于上一步：重复投递（至少一次语义下允许），只计数
+ * - 跳过了中间步骤或订单不是从 CREATE 开始：顺序错误
+ * 同一个订单的 verify 调用需要串行（例如由 KeyOrderedConsumer 按订单号分发）；
+ * 已完成的订单从状态表移除，只在有界的最近完成集合里保留，用来识别 FINISH 之后的重复投递
+ **/
+@Slf4j
+public class OrderSequenceVerifier {
+
+    private static final int RECENTLY_FINISHED = 100_000;
+
+    private final Map<Long, OrderStep.StepType> lastSteps = new ConcurrentHashMap<>();
+
+    private final Map<Long, Boolean> recentlyFinished = new LinkedHashMap<Long, Boolean>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+            return size() > RECENTLY_FINISHED;
+        }
+    };
+
+    private final LongAdder steps = new LongAdder();
+
+    private final LongAdder duplicates = new LongAdder();
+
+    private final LongAdder violations = new LongAdder();
+
+    private final LongAdder finished = new LongAdder();
+
+    /**
+     * @return false 表示顺序错误
+     */
+    public boolean verify(OrderStep step) {
+        steps.increment();
+        long orderId = step.getOrderId();
+        OrderStep.StepType last = lastSteps.get(orderId);
+        if (last == null && isRecentlyFinished(orderId)) {
+            last = OrderStep.StepType.FINISH;
+        }
+        OrderStep.StepType expected = last == null ? OrderStep.StepType.CREATE : last.next();
+        if (step.getType() == expected) {
+            if (expected == OrderStep.StepType.FINISH) {
+                lastSteps.remove(orderId);
+                markFinished(orderId);
+                finished.increment();
+            } else {
+                lastSteps.put(orderId, expected);
+            }
+            return true;
+        }
+        if (last != null && step.getType().compareTo(last) <= 0) {
+            duplicates.increment();
+            return true;
+        }
+        violations.increment();
+        log.warn("Out of order step, orderId={}, last={}, received={}", orderId, last, step.getType());
+        return false;
+    }
+
+    private boolean isRecentlyFinished(long orderId) {
+        synchronized (recentlyFinished) {
+            return recentlyFinished.containsKey(orderId);
+        }
+    }
+
+    private void markFinished(long orderId) {
+        synchronized (recentlyFinished) {
+            recentlyFinished.put(orderId, Boolean.TRUE);
+        }
+    }
+
+    public long getSteps() {
+        return steps.sum();
+    }
+
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    public long getViolations() {
+        return violations.sum();
+    }
+
+    public long getFinished() {
+        return finished.sum();
+    }
+
+    /**
+     * 还没有收到 FINISH 的订单数
+     */
+    public int getOpenOrders() {
+        return lastSteps.size();
+    }
+
+    @Override
+    public String toString() {
+        return "OrderSequenceVerifier{steps=" + getSteps() + ", finished=" + getFinished()
+            + ", open=" + getOpenOrders() + ", duplicates=" + getDuplicates()
+            + ", violations=" + getViolations() + '}';
+    }
+}
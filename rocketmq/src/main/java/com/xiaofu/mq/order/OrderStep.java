@@ -1,13 +1,54 @@
 package com.xiaofu.mq.order;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 /**
  * @author fuzhouling
  * @date 2024/06/07
  * @program middle_ware_group
- * @description 订单实体类：模拟顺序发送消息
+ * @description 订单步骤：同一个订单的步骤必须按 CREATE -> PAY -> SHIP -> FINISH 的顺序被消费
  **/
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 public class OrderStep {
+    private long orderId;
+    private StepType type;
+    /**
+     * 步骤发生时间，epoch 毫秒
+     */
+    private long timestamp;
+
+    public enum StepType {
+        CREATE(1),
+        PAY(2),
+        SHIP(3),
+        FINISH(4);
+
+        /**
+         * 序列化使用的编码，同时也是步骤的先后顺序
+         */
+        private final byte code;
+
+        StepType(int code) {
+            this.code = (byte) code;
+        }
+
+        public byte code() {
+            return code;
+        }
+
+        public StepType next() {
+            return this == FINISH ? null : values()[ordinal() + 1];
+        }
+
+        public static StepType of(byte code) {
+            if (code < 1 || code > 4) {
+                throw new IllegalArgumentException("unknown step type code: " + code);
+            }
+            return values()[code - 1];
+        }
+    }
 }
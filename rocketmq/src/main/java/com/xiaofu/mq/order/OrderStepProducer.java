@@ -0,0 +1,272 @@
+package com.xiaofu.mq.order;
+
+import com.xiaofu.mq.metrics.MessagingMetrics;
+import com.xiaofu.mq.selector.JumpHashSelector;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.exception.MQClientException;
+import org.apache.rocketmq.client.producer.DefaultMQProducer;
+import org.apache.rocketmq.client.producer.MessageQueueSelector;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 高吞吐的订单步骤顺序发送
+ *
+ * 逐条同步发送时吞吐受限于单次 RTT。这里按订单号选定队列后，每个队列一个发送线程，
+ * 把排队中的消息攒成一批用 send(Collection, MessageQueue) 发到该队列：
+ * - 同一订单总是进入同一个队列、同一个发送线程，批内和批间都保持提交顺序
+ * - 每个队列的缓冲区有界，发送跟不上时 send 阻塞（背压）
+ * - 一批重试仍失败后所有队列停止发送，避免后面的步骤越过失败的步骤；缓冲区里未发送的消息丢弃，
+ *   正在阻塞和之后的 send 都抛出 IllegalStateException
+ **/
+@Slf4j
+public class OrderStepProducer implements Closeable {
+
+    /**
+     * 把一批消息发送到指定队列
+     */
+    @FunctionalInterface
+    public interface BatchSender {
+        void send(MessageQueue queue, List<Message> batch) throws Exception;
+    }
+
+    private final List<MessageQueue> queues;
+
+    private final BatchSender sender;
+
+    private final Options options;
+
+    private final MessageQueueSelector selector = new JumpHashSelector();
+
+    private final Lane[] lanes;
+
+    private final Map<MessageQueue, Lane> laneOf = new HashMap<>();
+
+    private final AtomicLong sent = new AtomicLong();
+
+    private final AtomicLong batches = new AtomicLong();
+
+    private volatile Exception failure;
+
+    private volatile boolean closed;
+
+    public OrderStepProducer(List<MessageQueue> queues, BatchSender sender, Options options) {
+        if (queues.isEmpty()) {
+            throw new IllegalArgumentException("no message queue");
+        }
+        this.queues = new ArrayList<>(queues);
+        this.sender = sender;
+        this.options = options;
+        this.lanes = new Lane[queues.size()];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(this.queues.get(i));
+            laneOf.put(lanes[i].queue, lanes[i]);
+            lanes[i].start();
+        }
+    }
+
+    /**
+     * 基于已启动的 DefaultMQProducer 创建，队列列表在创建时取一次
+     */
+    public static OrderStepProducer of(DefaultMQProducer producer, Options options) throws MQClientException {
+        List<MessageQueue> queues = producer.fetchPublishMessageQueues(options.getTopic());
+        return new OrderStepProducer(queues, (queue, batch) -> producer.send(batch, queue), options);
+    }
+
+    /**
+     * 提交一个步骤，缓冲区满时阻塞；阻塞期间发生发送失败或关闭时抛出 IllegalStateException
+     */
+    public void send(OrderStep step) throws InterruptedException {
+        checkOpen();
+        MessageQueue queue = selector.select(queues, null, step.getOrderId());
+        Message message = new Message(options.getTopic(), step.getType().name(), String.valueOf(step.getOrderId()),
+            OrderStepCodec.encode(step));
+        Lane lane = laneOf.get(queue);
+        lane.pending.incrementAndGet();
+        try {
+            // 发送线程停止后没人再取缓冲区，不能无限期 put
+            while (!lane.buffer.offer(message, 100, TimeUnit.MILLISECONDS)) {
+                checkOpen();
+            }
+            // 放进去的同时发送线程可能刚因失败退出，这条消息不会再发送
+            checkOpen();
+        } catch (InterruptedException | RuntimeException e) {
+            lane.pending.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("producer closed");
+        }
+        if (failure != null) {
+            throw new IllegalStateException("a batch failed, ordering can no longer be guaranteed", failure);
+        }
+    }
+
+    /**
+     * 等待已提交的步骤全部发送完成
+     */
+    public void flush() throws InterruptedException {
+        for (Lane lane : lanes) {
+            synchronized (lane) {
+                while (lane.pending.get() > 0) {
+                    if (failure != null) {
+                        throw new IllegalStateException("a batch failed", failure);
+                    }
+                    lane.wait(10);
+                }
+            }
+        }
+        if (failure != null) {
+            throw new IllegalStateException("a batch failed", failure);
+        }
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getBatches() {
+        return batches.get();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IllegalStateException e) {
+            log.warn("Close with unsent steps", e);
+        }
+        closed = true;
+        for (Lane lane : lanes) {
+            lane.interrupt();
+        }
+    }
+
+    /**
+     * 单个队列的发送线程
+     */
+    private final class Lane extends Thread {
+        final MessageQueue queue;
+        final BlockingQueue<Message> buffer;
+        /**
+         * 已提交未发送完成的消息数
+         */
+        final AtomicInteger pending = new AtomicInteger();
+
+        Lane(MessageQueue queue) {
+            super("order-step-sender-" + queue.getBrokerName() + "-" + queue.getQueueId());
+            setDaemon(true);
+            this.queue = queue;
+            this.buffer = new ArrayBlockingQueue<>(options.getBufferSize());
+        }
+
+        @Override
+        public void run() {
+            List<Message> batch = new ArrayList<>(options.getBatchSize());
+            while (!closed && failure == null) {
+                try {
+                    Message first = buffer.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    buffer.drainTo(batch, options.getBatchSize() - 1);
+                    sendWithRetry(batch);
+                    sent.addAndGet(batch.size());
+                    batches.incrementAndGet();
+                    pending.addAndGet(-batch.size());
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    log.error("Send batch to {} failed, stop sending", queue, e);
+                    failure = e;
+                } finally {
+                    batch.clear();
+                    synchronized (this) {
+                        notifyAll();
+                    }
+                }
+            }
+            if (failure != null) {
+                // 腾出缓冲区，阻塞在 offer 上的 send 随即看到失败
+                int dropped = buffer.drainTo(batch);
+                if (dropped > 0) {
+                    log.warn("Dropped {} unsent steps for {} after a failed batch", dropped, queue);
+                }
+            }
+        }
+
+        private void sendWithRetry(List<Message> batch) throws Exception {
+            MessagingMetrics metrics = options.getMetrics();
+            for (int attempt = 0; ; attempt++) {
+                // 每次尝试记一次请求延迟，失败的尝试计入 sendFailed
+                long start = metrics.sendStarted();
+                try {
+                    sender.send(queue, batch);
+                    metrics.sendCompleted(start, batch.size(), true);
+                    return;
+                } catch (Exception e) {
+                    metrics.sendCompleted(start, batch.size(), false);
+                    if (attempt >= options.getMaxRetries()) {
+                        throw e;
+                    }
+                    log.warn("Send batch to {} failed, retry {}", queue, attempt + 1, e);
+                    Thread.sleep(options.getRetryBackoffMillis() << attempt);
+                }
+            }
+        }
+    }
+
+    /**
+     * 发送参数
+     */
+    @Getter
+    @Builder
+    public static class Options {
+        @Builder.Default
+        private final String topic = "OrderTopic";
+        /**
+         * 单批最多消息数，批量消息总大小不能超过 broker 的 maxMessageSize（默认 4MB）
+         */
+        @Builder.Default
+        private final int batchSize = 256;
+        /**
+         * 每个队列的缓冲消息数
+         */
+        @Builder.Default
+        private final int bufferSize = 8192;
+        @Builder.Default
+        private final int maxRetries = 3;
+        @Builder.Default
+        private final long retryBackoffMillis = 100;
+        /**
+         * 批量发送延迟和在途批次数，默认不记录
+         */
+        @Builder.Default
+        private final MessagingMetrics metrics = MessagingMetrics.disabled();
+    }
+}
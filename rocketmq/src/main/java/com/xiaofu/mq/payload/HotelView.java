@@ -0,0 +1,131 @@
+package com.xiaofu.mq.payload;
+
+import com.alibaba.fastjson2.JSONException;
+import com.alibaba.fastjson2.JSONReader;
+import com.alibaba.fastjson2.util.Fnv;
+import com.xiaofu.mq.hotel.HotelEvent;
+import com.xiaofu.mq.schema.Envelope;
+import com.xiaofu.mq.schema.Envelopes;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 酒店变更消息的类型化视图，只取消费端常用的标量字段
+ *
+ * 消息体可以是 Hotel 的 JSON，也可以是 hotel-event 信封；信封直接解码成 HotelEvent，不需要扫描。
+ * JSON 在第一次调用 getter 时扫描一遍顶层字段，读出 id / name / stars / price / address，
+ * description、rooms、amenities 这些大字段只跳过不解析；其它字段可以通过 getPayload() 单独读取。
+ * 需要完整 Hotel 对象时在 elasticsearch 模块用 HotelCodec.decode(bytes, offset, length) 解码。
+ * 与消息一一对应，不是线程安全的
+ **/
+public final class HotelView {
+
+    private static final long ID = Fnv.hashCode64("id");
+    private static final long NAME = Fnv.hashCode64("name");
+    private static final long STARS = Fnv.hashCode64("stars");
+    private static final long PRICE = Fnv.hashCode64("price");
+    private static final long ADDRESS = Fnv.hashCode64("address");
+
+    private final Payload payload;
+
+    private boolean parsed;
+
+    private Long id;
+
+    private String name;
+
+    private Integer stars;
+
+    private Double price;
+
+    private String address;
+
+    private HotelView(Payload payload) {
+        this.payload = payload;
+    }
+
+    public static HotelView of(ByteBuffer body) {
+        return new HotelView(Payload.of(body));
+    }
+
+    public static HotelView of(byte[] body) {
+        return new HotelView(Payload.of(body));
+    }
+
+    public static HotelView of(Payload payload) {
+        return new HotelView(payload);
+    }
+
+    private void parse() {
+        if (parsed) {
+            return;
+        }
+        if (Envelope.isEnvelope(payload.buffer())) {
+            HotelEvent event = Envelopes.hotelEvent().decode(payload.buffer());
+            id = event.getId();
+            name = event.getName();
+            stars = event.getStars();
+            price = event.getPrice();
+            address = event.getAddress();
+            parsed = true;
+            return;
+        }
+        try (JSONReader reader = payload.reader()) {
+            if (!reader.nextIfObjectStart()) {
+                throw new JSONException("hotel payload must be a json object");
+            }
+            while (!reader.nextIfObjectEnd()) {
+                long field = reader.readFieldNameHashCode();
+                if (reader.nextIfNull()) {
+                    continue;
+                }
+                if (field == ID) {
+                    id = reader.readInt64Value();
+                } else if (field == NAME) {
+                    name = reader.readString();
+                } else if (field == STARS) {
+                    stars = reader.readInt32Value();
+                } else if (field == PRICE) {
+                    price = reader.readDoubleValue();
+                } else if (field == ADDRESS) {
+                    address = reader.readString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+        }
+        parsed = true;
+    }
+
+    public Payload getPayload() {
+        return payload;
+    }
+
+    public Long getId() {
+        parse();
+        return id;
+    }
+
+    public String getName() {
+        parse();
+        return name;
+    }
+
+    public Integer getStars() {
+        parse();
+        return stars;
+    }
+
+    public Double getPrice() {
+        parse();
+        return price;
+    }
+
+    public String getAddress() {
+        parse();
+        return address;
+    }
+}
@@ -0,0 +1,131 @@
+package com.xiaofu.mq.payload;
+
+import com.alibaba.fastjson2.JSONException;
+import com.alibaba.fastjson2.JSONReader;
+import com.alibaba.fastjson2.util.Fnv;
+import com.xiaofu.mq.order.OrderStep;
+import com.xiaofu.mq.order.OrderStepCodec;
+import com.xiaofu.mq.schema.Envelope;
+import com.xiaofu.mq.schema.Envelopes;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 订单步骤消息体的类型化视图，兼容 OrderStepCodec 的二进制格式、order-step 信封和旧生产者发的 JSON
+ *
+ * 二进制格式的首字节是步骤编码 1~4，信封是 Envelope.MAGIC，JSON 是 '{'，据此区分，不需要额外的消息属性。
+ * JSON 里的 type 按取值的 hash 匹配枚举名，整条消息解析下来不产生任何 String
+ **/
+public final class OrderStepView {
+
+    private static final long ORDER_ID = Fnv.hashCode64("orderId");
+    private static final long TYPE = Fnv.hashCode64("type");
+    private static final long TIMESTAMP = Fnv.hashCode64("timestamp");
+
+    private static final OrderStep.StepType[] TYPES = OrderStep.StepType.values();
+
+    private static final long[] TYPE_NAMES = new long[TYPES.length];
+
+    static {
+        for (OrderStep.StepType type : TYPES) {
+            TYPE_NAMES[type.ordinal()] = Fnv.hashCode64(type.name());
+        }
+    }
+
+    private final long orderId;
+
+    private final OrderStep.StepType type;
+
+    private final long timestamp;
+
+    private OrderStepView(long orderId, OrderStep.StepType type, long timestamp) {
+        this.orderId = orderId;
+        this.type = type;
+        this.timestamp = timestamp;
+    }
+
+    public static OrderStepView of(ByteBuffer body) {
+        return of(Payload.of(body));
+    }
+
+    public static OrderStepView of(byte[] body) {
+        return of(Payload.of(body));
+    }
+
+    public static OrderStepView of(Payload payload) {
+        ByteBuffer buffer = payload.buffer();
+        if (!buffer.hasRemaining()) {
+            throw new IllegalArgumentException("empty order step payload");
+        }
+        if (buffer.get(0) != '{') {
+            OrderStep step = Envelope.isEnvelope(buffer) ? Envelopes.orderStep().decode(buffer) : OrderStepCodec.decode(buffer);
+            return new OrderStepView(step.getOrderId(), step.getType(), step.getTimestamp());
+        }
+        try (JSONReader reader = payload.reader()) {
+            return readJson(reader);
+        }
+    }
+
+    private static OrderStepView readJson(JSONReader reader) {
+        if (!reader.nextIfObjectStart()) {
+            throw new JSONException("order step must be a json object");
+        }
+        long orderId = 0;
+        OrderStep.StepType type = null;
+        long timestamp = 0;
+        while (!reader.nextIfObjectEnd()) {
+            long field = reader.readFieldNameHashCode();
+            if (reader.nextIfNull()) {
+                continue;
+            }
+            if (field == ORDER_ID) {
+                orderId = reader.readInt64Value();
+            } else if (field == TYPE) {
+                type = readType(reader);
+            } else if (field == TIMESTAMP) {
+                timestamp = reader.readInt64Value();
+            } else {
+                reader.skipValue();
+            }
+        }
+        if (type == null) {
+            throw new JSONException("order step without type");
+        }
+        return new OrderStepView(orderId, type, timestamp);
+    }
+
+    /**
+     * 枚举名（默认序列化方式）或步骤编码
+     */
+    private static OrderStep.StepType readType(JSONReader reader) {
+        if (reader.isNumber()) {
+            return OrderStep.StepType.of((byte) reader.readInt32Value());
+        }
+        long hash = reader.readValueHashCode();
+        for (int i = 0; i < TYPE_NAMES.length; i++) {
+            if (TYPE_NAMES[i] == hash) {
+                return TYPES[i];
+            }
+        }
+        throw new JSONException("unknown step type");
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    public OrderStep.StepType getType() {
+        return type;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public OrderStep toOrderStep() {
+        return new OrderStep(orderId, type, timestamp);
+    }
+}
@@ -0,0 +1,127 @@
+package com.xiaofu.mq.payload;
+
+import com.alibaba.fastjson2.JSONException;
+import com.alibaba.fastjson2.JSONReader;
+import com.alibaba.fastjson2.util.Fnv;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 直接在消息体字节上读取 JSON 字段，不先解码成 String
+ *
+ * 5.x 的 MessageView.getBody() 和 4.x 的 MessageExt.getBody() 都可以直接包装，包装本身不拷贝。
+ * 每次按字段名取值都从头扫描顶层字段，命中即停，其余字段只跳过不解析；要读多个字段时用 HotelView 这类一次扫描的视图。
+ * 堆上可访问数组的 buffer 直接在数组上解析；5.x 返回的只读 buffer 拿不到数组，由 fastjson2 拷进线程复用的缓冲区，
+ * 只有一次内存拷贝，不会为每条消息分配新数组
+ **/
+public final class Payload {
+
+    private final ByteBuffer body;
+
+    private Payload(ByteBuffer body) {
+        this.body = body;
+    }
+
+    /**
+     * 包装 body 的 [position, limit)，不改变调用方 buffer 的 position
+     */
+    public static Payload of(ByteBuffer body) {
+        return new Payload(body.slice());
+    }
+
+    public static Payload of(byte[] body) {
+        return new Payload(ByteBuffer.wrap(body));
+    }
+
+    public int size() {
+        return body.remaining();
+    }
+
+    /**
+     * 消息体的只读副本，position 从 0 开始
+     */
+    public ByteBuffer buffer() {
+        return body.asReadOnlyBuffer();
+    }
+
+    /**
+     * 从消息体开头读的 JSONReader，用完需要关闭，否则借用的缓冲区不会归还
+     */
+    public JSONReader reader() {
+        if (body.hasArray()) {
+            return JSONReader.of(body.array(), body.arrayOffset() + body.position(), body.remaining(),
+                StandardCharsets.UTF_8);
+        }
+        return JSONReader.of(body.duplicate(), StandardCharsets.UTF_8);
+    }
+
+    public boolean contains(String field) {
+        try (JSONReader reader = reader()) {
+            return seek(reader, Fnv.hashCode64(field));
+        }
+    }
+
+    /**
+     * @return 字段不存在或为 null 时返回 null
+     */
+    public String getString(String field) {
+        try (JSONReader reader = reader()) {
+            return seek(reader, Fnv.hashCode64(field)) ? reader.readString() : null;
+        }
+    }
+
+    public long getLong(String field, long defaultValue) {
+        try (JSONReader reader = reader()) {
+            return seek(reader, Fnv.hashCode64(field)) ? reader.readInt64Value() : defaultValue;
+        }
+    }
+
+    public int getInt(String field, int defaultValue) {
+        try (JSONReader reader = reader()) {
+            return seek(reader, Fnv.hashCode64(field)) ? reader.readInt32Value() : defaultValue;
+        }
+    }
+
+    public double getDouble(String field, double defaultValue) {
+        try (JSONReader reader = reader()) {
+            return seek(reader, Fnv.hashCode64(field)) ? reader.readDoubleValue() : defaultValue;
+        }
+    }
+
+    /**
+     * 整体反序列化，同样直接读字节
+     */
+    public <T> T to(Class<T> type) {
+        try (JSONReader reader = reader()) {
+            return reader.read(type);
+        }
+    }
+
+    /**
+     * 移到目标字段的值上；字段不存在或值为 null 时返回 false
+     */
+    static boolean seek(JSONReader reader, long fieldHash) {
+        if (!reader.nextIfObjectStart()) {
+            throw new JSONException("payload must be a json object");
+        }
+        while (!reader.nextIfObjectEnd()) {
+            if (reader.readFieldNameHashCode() == fieldHash) {
+                return !reader.nextIfNull();
+            }
+            reader.skipValue();
+        }
+        return false;
+    }
+
+    /**
+     * 解码整个消息体，仅用于日志：作为 {} 占位符参数时只有日志级别开启才会真正解码
+     */
+    @Override
+    public String toString() {
+        return StandardCharsets.UTF_8.decode(body.duplicate()).toString();
+    }
+}
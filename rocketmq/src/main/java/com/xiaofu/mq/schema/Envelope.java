@@ -0,0 +1,103 @@
+package com.xiaofu.mq.schema;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 绑定了 schema id 和版本的编解码器，由 SchemaRegistry.bind 创建，线程安全
+ *
+ * 消息体格式：[MAGIC 1 字节][schema id 变长整数][版本 变长整数][字段...]。
+ * MAGIC 不会与 OrderStepCodec 的首字节（步骤编码 1~4）或 JSON 的 '{' 冲突，消费端据此识别格式。
+ * 解码只校验 schema id，不同版本之间靠字段编号兼容
+ **/
+public final class Envelope<T> {
+
+    public static final byte MAGIC = (byte) 0xA5;
+
+    private static final ThreadLocal<EnvelopeWriter> WRITERS = ThreadLocal.withInitial(() -> new EnvelopeWriter(256));
+
+    /**
+     * 超过这个大小的 writer 用完不再缓存，避免一条大消息让线程一直占着大数组
+     */
+    private static final int MAX_CACHED_WRITER = 64 * 1024;
+
+    private final EnvelopeCodec<T> codec;
+
+    private final int schemaId;
+
+    private final int version;
+
+    Envelope(EnvelopeCodec<T> codec, int schemaId, int version) {
+        this.codec = codec;
+        this.schemaId = schemaId;
+        this.version = version;
+    }
+
+    public int getSchemaId() {
+        return schemaId;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public byte[] encode(T value) {
+        EnvelopeWriter writer = WRITERS.get();
+        writer.reset();
+        writer.writeByte(MAGIC);
+        writer.writeVarLong(schemaId);
+        writer.writeVarLong(version);
+        codec.write(value, writer);
+        byte[] bytes = writer.toByteArray();
+        if (writer.size() > MAX_CACHED_WRITER) {
+            WRITERS.remove();
+        }
+        return bytes;
+    }
+
+    /**
+     * 从 body 的 position 开始解码，不改变 body 的 position
+     */
+    public T decode(ByteBuffer body) {
+        ByteBuffer buffer = body.slice();
+        int id = readHeader(buffer);
+        if (id != schemaId) {
+            throw new IllegalArgumentException("schema id " + id + " does not match " + codec.schema().getName()
+                + "(" + schemaId + ")");
+        }
+        return codec.read(new EnvelopeReader(buffer));
+    }
+
+    public T decode(byte[] body) {
+        return decode(ByteBuffer.wrap(body));
+    }
+
+    /**
+     * body 是否为信封格式
+     */
+    public static boolean isEnvelope(ByteBuffer body) {
+        return body.hasRemaining() && body.get(body.position()) == MAGIC;
+    }
+
+    /**
+     * 读信封头里的 schema id，不解码字段，用于按类型分派
+     */
+    public static int schemaId(ByteBuffer body) {
+        return readHeader(body.slice());
+    }
+
+    /**
+     * 读 magic、schema id 和版本，返回 schema id，读完 buffer 停在第一个字段上
+     */
+    private static int readHeader(ByteBuffer buffer) {
+        if (!buffer.hasRemaining() || buffer.get() != MAGIC) {
+            throw new IllegalArgumentException("not an envelope");
+        }
+        int id = (int) EnvelopeReader.readVarLong(buffer);
+        // 版本号目前只用于排查问题，解码不依赖它
+        EnvelopeReader.readVarLong(buffer);
+        return id;
+    }
+}
@@ -0,0 +1,19 @@
+package com.xiaofu.mq.schema;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 一种消息体的编解码，字段编号必须与 schema() 一致
+ *
+ * 编解码都是按编号逐个字段手写，不走反射；SchemaRegistry.bind 时会核对 schema() 与注册文件，
+ * 改了字段却没有更新注册文件的编解码器绑定不上
+ **/
+public interface EnvelopeCodec<T> {
+
+    Schema schema();
+
+    void write(T value, EnvelopeWriter writer);
+
+    T read(EnvelopeReader reader);
+}
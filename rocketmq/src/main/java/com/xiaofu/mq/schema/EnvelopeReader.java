@@ -0,0 +1,142 @@
+package com.xiaofu.mq.schema;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 按字段顺序读取信封内容，直接读消息体 buffer，不拷贝
+ *
+ * 用法：while ((field = reader.nextField()) != 0) { switch (field) { ... default: reader.skip(); } }。
+ * 不认识的字段必须 skip，新版本生产者加的字段在旧消费者上就是这样被忽略的
+ **/
+public final class EnvelopeReader {
+
+    private final ByteBuffer buffer;
+
+    private int wireType;
+
+    EnvelopeReader(ByteBuffer buffer) {
+        this.buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @return 下一个字段的编号，读完返回 0
+     */
+    public int nextField() {
+        if (!buffer.hasRemaining()) {
+            return 0;
+        }
+        long key = readVarLong();
+        wireType = (int) (key & 0x7);
+        int field = (int) (key >>> 3);
+        if (field == 0) {
+            throw new IllegalArgumentException("malformed envelope: field number 0");
+        }
+        return field;
+    }
+
+    public long readInt64() {
+        check(EnvelopeWriter.VARINT);
+        return readVarLong();
+    }
+
+    public int readInt32() {
+        return (int) readInt64();
+    }
+
+    public long readSInt64() {
+        long value = readInt64();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public boolean readBool() {
+        return readInt64() != 0;
+    }
+
+    public double readDouble() {
+        check(EnvelopeWriter.FIXED64);
+        return Double.longBitsToDouble(buffer.getLong());
+    }
+
+    public String readString() {
+        check(EnvelopeWriter.LENGTH_DELIMITED);
+        int length = readLength();
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[length];
+            buffer.duplicate().get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * 嵌套消息的 reader，与当前 reader 共享底层字节
+     */
+    public EnvelopeReader readMessage() {
+        check(EnvelopeWriter.LENGTH_DELIMITED);
+        int length = readLength();
+        ByteBuffer nested = buffer.duplicate();
+        nested.limit(nested.position() + length);
+        buffer.position(buffer.position() + length);
+        return new EnvelopeReader(nested);
+    }
+
+    /**
+     * 跳过当前字段的值
+     */
+    public void skip() {
+        switch (wireType) {
+            case EnvelopeWriter.VARINT:
+                readVarLong();
+                break;
+            case EnvelopeWriter.FIXED64:
+                buffer.position(buffer.position() + 8);
+                break;
+            case EnvelopeWriter.LENGTH_DELIMITED:
+                int length = readLength();
+                buffer.position(buffer.position() + length);
+                break;
+            default:
+                throw new IllegalArgumentException("malformed envelope: unknown wire type " + wireType);
+        }
+    }
+
+    long readVarLong() {
+        return readVarLong(buffer);
+    }
+
+    static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed envelope: varint too long");
+    }
+
+    private int readLength() {
+        long length = readVarLong();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("malformed envelope: length " + length + " exceeds "
+                + buffer.remaining());
+        }
+        return (int) length;
+    }
+
+    private void check(int expected) {
+        if (wireType != expected) {
+            throw new IllegalArgumentException("wire type " + wireType + " does not match expected " + expected);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.xiaofu.mq.schema;
+
+import java.util.Arrays;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 信封字段的写入，编码规则与 protobuf 相同
+ *
+ * 每个字段先写一个变长整数 key = 编号 << 3 | 线上类型，再写值：整数为变长整数，double 为 8 字节小端，
+ * 字符串和嵌套消息为长度 + 内容。值为 null 的字段不写，读的一方据此区分"没有变化"和"改成了默认值"
+ **/
+public final class EnvelopeWriter {
+
+    static final int VARINT = 0;
+    static final int FIXED64 = 1;
+    static final int LENGTH_DELIMITED = 2;
+
+    private byte[] buffer;
+
+    private int size;
+
+    public EnvelopeWriter(int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+
+    void reset() {
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    public void writeInt64(int field, Long value) {
+        if (value != null) {
+            writeKey(field, VARINT);
+            writeVarLong(value);
+        }
+    }
+
+    public void writeInt64(int field, long value) {
+        writeKey(field, VARINT);
+        writeVarLong(value);
+    }
+
+    public void writeSInt64(int field, Long value) {
+        if (value != null) {
+            writeKey(field, VARINT);
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+    }
+
+    public void writeInt32(int field, Integer value) {
+        if (value != null) {
+            writeKey(field, VARINT);
+            writeVarLong(value);
+        }
+    }
+
+    public void writeBool(int field, boolean value) {
+        writeKey(field, VARINT);
+        writeByte(value ? 1 : 0);
+    }
+
+    public void writeDouble(int field, Double value) {
+        if (value != null) {
+            writeKey(field, FIXED64);
+            long bits = Double.doubleToRawLongBits(value);
+            ensure(8);
+            for (int i = 0; i < 8; i++) {
+                buffer[size++] = (byte) (bits >>> (i * 8));
+            }
+        }
+    }
+
+    public void writeString(int field, String value) {
+        if (value == null) {
+            return;
+        }
+        writeKey(field, LENGTH_DELIMITED);
+        int length = utf8Length(value);
+        writeVarLong(length);
+        ensure(length);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer[size++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[size++] = (byte) (0xC0 | (c >> 6));
+                buffer[size++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[size++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[size++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // 落单的代理项与 String.getBytes 一致替换成 '?'
+                buffer[size++] = '?';
+            } else {
+                buffer[size++] = (byte) (0xE0 | (c >> 12));
+                buffer[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[size++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * 开始一个嵌套消息，写完子字段后用返回值调用 endMessage
+     */
+    public int beginMessage(int field) {
+        writeKey(field, LENGTH_DELIMITED);
+        // 先按 1 字节长度占位，绝大多数嵌套消息不超过 127 字节
+        ensure(1);
+        size++;
+        return size;
+    }
+
+    public void endMessage(int start) {
+        int length = size - start;
+        int lengthBytes = varLongSize(length);
+        if (lengthBytes > 1) {
+            ensure(lengthBytes - 1);
+            System.arraycopy(buffer, start, buffer, start + lengthBytes - 1, length);
+            size += lengthBytes - 1;
+        }
+        int position = start - 1;
+        long value = length;
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position] = (byte) value;
+    }
+
+    void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+    }
+
+    void writeByte(int value) {
+        ensure(1);
+        buffer[size++] = (byte) value;
+    }
+
+    private void writeKey(int field, int wireType) {
+        writeVarLong(((long) field << 3) | wireType);
+    }
+
+    private void ensure(int bytes) {
+        if (size + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes));
+        }
+    }
+
+    static int varLongSize(long value) {
+        int bytes = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    private static int utf8Length(String value) {
+        int length = value.length();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x800) {
+                if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    // 一对代理项两个 char 编成 4 字节
+                    length += 2;
+                    i++;
+                } else if (!Character.isSurrogate(c)) {
+                    length += 2;
+                }
+            } else if (c >= 0x80) {
+                length += 1;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,32 @@
+package com.xiaofu.mq.schema;
+
+import com.xiaofu.mq.hotel.HotelEvent;
+import com.xiaofu.mq.order.OrderStep;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 绑定在随代码发布的注册表上的信封编解码器，生产者和消费者共用
+ **/
+public final class Envelopes {
+
+    private Envelopes() {
+    }
+
+    public static Envelope<OrderStep> orderStep() {
+        return Holder.ORDER_STEP;
+    }
+
+    public static Envelope<HotelEvent> hotelEvent() {
+        return Holder.HOTEL_EVENT;
+    }
+
+    /**
+     * 第一次使用时才读注册表
+     */
+    private static final class Holder {
+        private static final Envelope<OrderStep> ORDER_STEP = SchemaRegistry.bundled().bind(new OrderStepEnvelopeCodec());
+        private static final Envelope<HotelEvent> HOTEL_EVENT = SchemaRegistry.bundled().bind(new HotelEventCodec());
+    }
+}
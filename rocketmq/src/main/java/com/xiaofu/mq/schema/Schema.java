@@ -0,0 +1,134 @@
+package com.xiaofu.mq.schema;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 一种消息体的字段定义：名称 + 按编号排列的字段
+ *
+ * 字段编号一旦发布就不能改类型，也不能挪给别的字段用；删字段只是不再写它，读旧消息时跳过。
+ * id 和版本号不在这里，由 SchemaRegistry 分配
+ **/
+@Getter
+@ToString
+@EqualsAndHashCode
+public final class Schema {
+
+    private final String name;
+
+    private final List<Field> fields;
+
+    public Schema(String name, List<Field> fields) {
+        this.name = name;
+        List<Field> sorted = new ArrayList<>(fields);
+        sorted.sort((a, b) -> Integer.compare(a.getNumber(), b.getNumber()));
+        for (int i = 1; i < sorted.size(); i++) {
+            if (sorted.get(i).getNumber() == sorted.get(i - 1).getNumber()) {
+                throw new IllegalArgumentException(name + ": duplicate field number " + sorted.get(i).getNumber());
+            }
+        }
+        this.fields = Collections.unmodifiableList(sorted);
+    }
+
+    public static Builder builder(String name) {
+        return new Builder(name);
+    }
+
+    public Field field(int number) {
+        for (Field field : fields) {
+            if (field.getNumber() == number) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    public enum Type {
+        /**
+         * 变长整数，负数固定占 10 字节，只用于非负值
+         */
+        INT64(EnvelopeWriter.VARINT),
+        /**
+         * zigzag 后的变长整数，绝对值小的负数也很短
+         */
+        SINT64(EnvelopeWriter.VARINT),
+        BOOL(EnvelopeWriter.VARINT),
+        DOUBLE(EnvelopeWriter.FIXED64),
+        STRING(EnvelopeWriter.LENGTH_DELIMITED),
+        /**
+         * 嵌套消息，字段定义在 Field.getFields()
+         */
+        MESSAGE(EnvelopeWriter.LENGTH_DELIMITED);
+
+        private final int wireType;
+
+        Type(int wireType) {
+            this.wireType = wireType;
+        }
+
+        public int wireType() {
+            return wireType;
+        }
+    }
+
+    @Getter
+    @ToString
+    @EqualsAndHashCode
+    public static final class Field {
+        private final int number;
+        private final String name;
+        private final Type type;
+        private final boolean repeated;
+        /**
+         * MESSAGE 类型的子字段，其它类型为空
+         */
+        private final List<Field> fields;
+
+        public Field(int number, String name, Type type, boolean repeated, List<Field> fields) {
+            if (number <= 0) {
+                throw new IllegalArgumentException(name + ": field number must be positive");
+            }
+            this.number = number;
+            this.name = name;
+            this.type = type;
+            this.repeated = repeated;
+            this.fields = fields == null ? Collections.emptyList() : new Schema(name, fields).getFields();
+        }
+    }
+
+    public static final class Builder {
+        private final String name;
+        private final List<Field> fields = new ArrayList<>();
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder field(int number, String name, Type type) {
+            fields.add(new Field(number, name, type, false, null));
+            return this;
+        }
+
+        public Builder repeated(int number, String name, Type type) {
+            fields.add(new Field(number, name, type, true, null));
+            return this;
+        }
+
+        public Builder message(int number, String name, boolean repeated, Schema nested) {
+            fields.add(new Field(number, name, Type.MESSAGE, repeated, nested.getFields()));
+            return this;
+        }
+
+        public Schema build() {
+            return new Schema(name, fields);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.xiaofu.mq.schema;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import com.alibaba.fastjson2.JSONWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 本地文件的 schema 注册表：给每种消息体分配 id，记录各版本的字段，新版本注册前做兼容性检查
+ *
+ * classpath 下的 schema/registry.json 随代码发布，是所有服务共用的基线，bundled() 只读它，
+ * 编解码器的字段与它不一致时绑定失败，所以改字段必须同时改这个文件（测试会检查）。
+ * open(path) 打开一个可写的本地注册表，文件不存在时以基线为初始内容，注册新 schema 或新版本后原子地写回，
+ * 用于开发中的新消息类型；同一个文件只应由一个进程写。
+ * 兼容规则：已发布的字段编号不能改类型或单值/多值，嵌套消息递归检查；改名和删字段允许
+ **/
+public final class SchemaRegistry {
+
+    public static final String BUNDLED = "schema/registry.json";
+
+    private static volatile SchemaRegistry bundled;
+
+    /**
+     * 为 null 表示只读
+     */
+    private final Path file;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private SchemaRegistry(Path file) {
+        this.file = file;
+    }
+
+    public static SchemaRegistry bundled() {
+        SchemaRegistry registry = bundled;
+        if (registry == null) {
+            synchronized (SchemaRegistry.class) {
+                registry = bundled;
+                if (registry == null) {
+                    registry = new SchemaRegistry(null);
+                    registry.parse(readBundled());
+                    bundled = registry;
+                }
+            }
+        }
+        return registry;
+    }
+
+    public static SchemaRegistry open(Path file) throws IOException {
+        SchemaRegistry registry = new SchemaRegistry(file);
+        if (Files.exists(file)) {
+            registry.parse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        } else {
+            registry.parse(readBundled());
+            registry.save();
+        }
+        return registry;
+    }
+
+    /**
+     * 找到与 codec.schema() 完全一致的版本并绑定；可写的注册表里找不到时检查兼容性后注册为新版本
+     *
+     * @throws IllegalStateException 只读注册表里没有这个版本，或者与已发布的版本不兼容
+     */
+    public synchronized <T> Envelope<T> bind(EnvelopeCodec<T> codec) {
+        Schema schema = codec.schema();
+        Entry entry = entries.get(schema.getName());
+        if (entry != null) {
+            for (Map.Entry<Integer, Schema> version : entry.versions.entrySet()) {
+                if (version.getValue().equals(schema)) {
+                    return new Envelope<>(codec, entry.id, version.getKey());
+                }
+            }
+        }
+        if (file == null) {
+            throw new IllegalStateException("schema " + schema.getName() + " is not registered in " + BUNDLED
+                + ", add it as a new version: " + schema);
+        }
+        if (entry == null) {
+            int id = entries.values().stream().mapToInt(e -> e.id).max().orElse(0) + 1;
+            entry = new Entry(id);
+            entries.put(schema.getName(), entry);
+        } else {
+            for (Schema published : entry.versions.values()) {
+                checkCompatible(schema.getName(), published.getFields(), schema.getFields());
+            }
+        }
+        int version = entry.versions.isEmpty() ? 1 : entry.versions.lastKey() + 1;
+        entry.versions.put(version, schema);
+        try {
+            save();
+        } catch (IOException e) {
+            entry.versions.remove(version);
+            if (entry.versions.isEmpty()) {
+                entries.remove(schema.getName());
+            }
+            throw new UncheckedIOException(e);
+        }
+        return new Envelope<>(codec, entry.id, version);
+    }
+
+    public synchronized Schema lookup(String name, int version) {
+        Entry entry = entries.get(name);
+        return entry == null ? null : entry.versions.get(version);
+    }
+
+    public synchronized Integer schemaId(String name) {
+        Entry entry = entries.get(name);
+        return entry == null ? null : entry.id;
+    }
+
+    static void checkCompatible(String path, List<Schema.Field> published, List<Schema.Field> current) {
+        for (Schema.Field before : published) {
+            for (Schema.Field now : current) {
+                if (now.getNumber() != before.getNumber()) {
+                    continue;
+                }
+                if (now.getType() != before.getType() || now.isRepeated() != before.isRepeated()) {
+                    throw new IllegalStateException(path + "." + now.getName() + ": field " + now.getNumber()
+                        + " was published as " + (before.isRepeated() ? "repeated " : "") + before.getType()
+                        + ", cannot change to " + (now.isRepeated() ? "repeated " : "") + now.getType());
+                }
+                if (now.getType() == Schema.Type.MESSAGE) {
+                    checkCompatible(path + "." + now.getName(), before.getFields(), now.getFields());
+                }
+            }
+        }
+    }
+
+    private static String readBundled() {
+        try (InputStream in = SchemaRegistry.class.getClassLoader().getResourceAsStream(BUNDLED)) {
+            if (in == null) {
+                throw new IllegalStateException(BUNDLED + " not found on classpath");
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void parse(String json) {
+        JSONArray schemas = JSON.parseObject(json).getJSONArray("schemas");
+        for (int i = 0; i < schemas.size(); i++) {
+            JSONObject schema = schemas.getJSONObject(i);
+            String name = schema.getString("name");
+            Entry entry = new Entry(schema.getIntValue("id"));
+            JSONArray versions = schema.getJSONArray("versions");
+            for (int j = 0; j < versions.size(); j++) {
+                JSONObject version = versions.getJSONObject(j);
+                entry.versions.put(version.getIntValue("version"), new Schema(name, parseFields(version.getJSONArray("fields"))));
+            }
+            entries.put(name, entry);
+        }
+    }
+
+    private static List<Schema.Field> parseFields(JSONArray array) {
+        List<Schema.Field> fields = new ArrayList<>();
+        for (int i = 0; i < array.size(); i++) {
+            JSONObject field = array.getJSONObject(i);
+            JSONArray nested = field.getJSONArray("fields");
+            fields.add(new Schema.Field(field.getIntValue("number"), field.getString("name"),
+                Schema.Type.valueOf(field.getString("type")), field.getBooleanValue("repeated"),
+                nested == null ? null : parseFields(nested)));
+        }
+        return fields;
+    }
+
+    private void save() throws IOException {
+        JSONArray schemas = new JSONArray();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            JSONArray versions = new JSONArray();
+            for (Map.Entry<Integer, Schema> version : entry.getValue().versions.entrySet()) {
+                JSONObject item = new JSONObject();
+                item.put("version", version.getKey());
+                item.put("fields", toJson(version.getValue().getFields()));
+                versions.add(item);
+            }
+            JSONObject schema = new JSONObject();
+            schema.put("name", entry.getKey());
+            schema.put("id", entry.getValue().id);
+            schema.put("versions", versions);
+            schemas.add(schema);
+        }
+        JSONObject root = new JSONObject();
+        root.put("schemas", schemas);
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        Files.write(temp, JSON.toJSONBytes(root, JSONWriter.Feature.PrettyFormat));
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static JSONArray toJson(List<Schema.Field> fields) {
+        JSONArray array = new JSONArray();
+        for (Schema.Field field : fields) {
+            JSONObject item = new JSONObject();
+            item.put("number", field.getNumber());
+            item.put("name", field.getName());
+            item.put("type", field.getType().name());
+            if (field.isRepeated()) {
+                item.put("repeated", true);
+            }
+            if (field.getType() == Schema.Type.MESSAGE) {
+                item.put("fields", toJson(field.getFields()));
+            }
+            array.add(item);
+        }
+        return array;
+    }
+
+    private static final class Entry {
+        private final int id;
+        private final TreeMap<Integer, Schema> versions = new TreeMap<>();
+
+        private Entry(int id) {
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.xiaofu.mq.selector;
+
+import org.apache.rocketmq.client.producer.MessageQueueSelector;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 热点 key 拆分：不要求顺序的热点 key 随机打散到 fanout 个子 key，再交给一致性哈希选队列
+ *
+ * 只能用于不要求顺序的 key，拆分后同一个 key 的消息会落在不同队列上；其余 key 原样交给 delegate，顺序不受影响
+ **/
+public class HotKeySplittingSelector implements MessageQueueSelector {
+
+    private final MessageQueueSelector delegate;
+
+    private final Predicate<Object> splittable;
+
+    private final int fanout;
+
+    /**
+     * @param delegate   一致性哈希选择器
+     * @param splittable 判断 key 是否为可拆分的热点 key
+     * @param fanout     每个热点 key 最多分散到的队列数
+     */
+    public HotKeySplittingSelector(MessageQueueSelector delegate, Predicate<Object> splittable, int fanout) {
+        if (fanout < 1) {
+            throw new IllegalArgumentException("fanout must be positive: " + fanout);
+        }
+        this.delegate = delegate;
+        this.splittable = splittable;
+        this.fanout = fanout;
+    }
+
+    @Override
+    public MessageQueue select(List<MessageQueue> mqs, Message msg, Object arg) {
+        if (fanout > 1 && splittable.test(arg)) {
+            // 子 key 固定为 fanout 个，一致性哈希下扩缩容时仍然只移动少量子 key
+            return delegate.select(mqs, msg, arg + "#" + ThreadLocalRandom.current().nextInt(fanout));
+        }
+        return delegate.select(mqs, msg, arg);
+    }
+}
@@ -0,0 +1,42 @@
+package com.xiaofu.mq.selector;
+
+import org.apache.rocketmq.client.producer.MessageQueueSelector;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.List;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 跳跃一致性哈希（Jump Consistent Hash）选择队列
+ *
+ * 队列数从 n 扩到 m 时只有 (m - n) / m 的 key 换队列，而 id % size 几乎全部换掉。
+ * O(log n) 时间、零内存，但只适合在列表末尾增减队列：同一个 broker 扩容队列时末尾追加，满足该条件；
+ * 多个 broker 时中间的 broker 扩容会插入到列表中间，这种场景用 RendezvousHashSelector
+ **/
+public class JumpHashSelector implements MessageQueueSelector {
+
+    @Override
+    public MessageQueue select(List<MessageQueue> mqs, Message msg, Object arg) {
+        return mqs.get(bucket(KeyHashing.hash64(arg), mqs.size()));
+    }
+
+    /**
+     * Lamping & Veach, "A Fast, Minimal Memory, Consistent Hash Algorithm"
+     */
+    public static int bucket(long key, int buckets) {
+        if (buckets <= 0) {
+            throw new IllegalArgumentException("buckets must be positive: " + buckets);
+        }
+        long b = -1;
+        long j = 0;
+        while (j < buckets) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+}
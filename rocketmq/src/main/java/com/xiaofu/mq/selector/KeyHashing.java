@@ -0,0 +1,72 @@
+package com.xiaofu.mq.selector;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 选择队列用的 64 位哈希
+ *
+ * 不用 Object.hashCode：Integer 的 hashCode 就是值本身，连续的订单号会落在连续的桶里，高位全为 0
+ **/
+public final class KeyHashing {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private KeyHashing() {
+    }
+
+    /**
+     * 整数按值哈希，其它类型按 toString 的 UTF-8 字节哈希，同一个订单号无论用 int/long/String 传入结果都一样，
+     * 包括 19 位的雪花 id；超出 long 范围的数字串按字符串哈希
+     */
+    public static long hash64(Object key) {
+        if (key instanceof Integer || key instanceof Long || key instanceof Short || key instanceof Byte) {
+            return mix64(((Number) key).longValue());
+        }
+        String text = String.valueOf(key);
+        if (isLong(text)) {
+            try {
+                return mix64(Long.parseLong(text));
+            } catch (NumberFormatException overflow) {
+                // 19 位但大于 Long.MAX_VALUE，不可能来自 long，按字符串哈希
+            }
+        }
+        long hash = FNV_OFFSET;
+        for (byte b : text.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return mix64(hash);
+    }
+
+    /**
+     * SplitMix64 的终结函数，雪崩性好
+     */
+    public static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * 可选负号加最多 19 位数字，是否溢出交给 Long.parseLong 判断
+     */
+    private static boolean isLong(String text) {
+        int length = text.length();
+        int start = length > 1 && text.charAt(0) == '-' ? 1 : 0;
+        if (length == 0 || length - start > 19) {
+            return false;
+        }
+        for (int i = start; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,42 @@
+package com.xiaofu.mq.selector;
+
+import org.apache.rocketmq.client.producer.MessageQueueSelector;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.List;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 最高随机权重（Rendezvous / HRW）哈希选择队列
+ *
+ * 每个队列按 (key, brokerName, queueId) 算一个权重，取最大者。权重只和队列本身有关，与列表顺序无关，
+ * 任意位置增删队列都只移动最少的 key；代价是每条消息 O(队列数)，队列数在几十到几百时可以忽略
+ **/
+public class RendezvousHashSelector implements MessageQueueSelector {
+
+    @Override
+    public MessageQueue select(List<MessageQueue> mqs, Message msg, Object arg) {
+        long key = KeyHashing.hash64(arg);
+        MessageQueue best = null;
+        long bestWeight = 0;
+        for (MessageQueue mq : mqs) {
+            long weight = KeyHashing.mix64(key ^ queueHash(mq));
+            // 按无符号比较，权重相同（概率可忽略）时取靠前的队列
+            if (best == null || Long.compareUnsigned(weight, bestWeight) > 0) {
+                best = mq;
+                bestWeight = weight;
+            }
+        }
+        if (best == null) {
+            throw new IllegalArgumentException("no message queue to select");
+        }
+        return best;
+    }
+
+    private static long queueHash(MessageQueue mq) {
+        return KeyHashing.mix64(((long) mq.getBrokerName().hashCode() << 32) ^ mq.getQueueId());
+    }
+}
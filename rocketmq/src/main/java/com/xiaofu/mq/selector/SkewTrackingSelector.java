@@ -0,0 +1,101 @@
+package com.xiaofu.mq.selector;
+
+import lombok.Getter;
+import org.apache.rocketmq.client.producer.MessageQueueSelector;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 统计每个队列被选中的次数，用于观察队列倾斜
+ **/
+public class SkewTrackingSelector implements MessageQueueSelector {
+
+    private final MessageQueueSelector delegate;
+
+    private final Map<MessageQueue, LongAdder> counts = new ConcurrentHashMap<>();
+
+    public SkewTrackingSelector(MessageQueueSelector delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public MessageQueue select(List<MessageQueue> mqs, Message msg, Object arg) {
+        MessageQueue mq = delegate.select(mqs, msg, arg);
+        counts.computeIfAbsent(mq, k -> new LongAdder()).increment();
+        return mq;
+    }
+
+    /**
+     * 当前各队列的计数，queues 中从未被选中的队列计为 0
+     */
+    public SkewReport report(List<MessageQueue> queues) {
+        Map<MessageQueue, Long> snapshot = new LinkedHashMap<>();
+        for (MessageQueue mq : queues) {
+            LongAdder count = counts.get(mq);
+            snapshot.put(mq, count == null ? 0 : count.sum());
+        }
+        return new SkewReport(snapshot);
+    }
+
+    public void reset() {
+        counts.clear();
+    }
+
+    /**
+     * 倾斜度报告
+     */
+    @Getter
+    public static class SkewReport {
+        private final Map<MessageQueue, Long> counts;
+        private final long total;
+        private final long max;
+        private final long min;
+        /**
+         * 最忙队列 / 平均值，1 表示完全均匀
+         */
+        private final double maxToMean;
+        /**
+         * 变异系数（标准差 / 平均值），0 表示完全均匀
+         */
+        private final double coefficientOfVariation;
+
+        SkewReport(Map<MessageQueue, Long> counts) {
+            this.counts = Collections.unmodifiableMap(counts);
+            long sum = 0;
+            long hi = 0;
+            long lo = counts.isEmpty() ? 0 : Long.MAX_VALUE;
+            for (long count : counts.values()) {
+                sum += count;
+                hi = Math.max(hi, count);
+                lo = Math.min(lo, count);
+            }
+            this.total = sum;
+            this.max = hi;
+            this.min = lo;
+            double mean = counts.isEmpty() ? 0 : (double) sum / counts.size();
+            double variance = 0;
+            for (long count : counts.values()) {
+                variance += (count - mean) * (count - mean);
+            }
+            variance = counts.isEmpty() ? 0 : variance / counts.size();
+            this.maxToMean = mean == 0 ? 0 : hi / mean;
+            this.coefficientOfVariation = mean == 0 ? 0 : Math.sqrt(variance) / mean;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("SkewReport{total=%d, max=%d, min=%d, maxToMean=%.3f, cv=%.3f}",
+                total, max, min, maxToMean, coefficientOfVariation);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.xiaofu.mq;
 
+import com.xiaofu.mq.payload.Payload;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.client.consumer.DefaultMQPushConsumer;
 import org.apache.rocketmq.client.consumer.listener.ConsumeOrderlyContext;
 import org.apache.rocketmq.client.consumer.listener.ConsumeOrderlyStatus;
@@ -16,6 +18,7 @@ import java.util.List;
  * @program middle_ware_group
  * @description rocketmq-client 消费消息
  **/
+@Slf4j
 public class MqConsumerTest {
 
     @Test
@@ -28,7 +31,8 @@ public class MqConsumerTest {
             @Override
             public ConsumeOrderlyStatus consumeMessage(List<MessageExt> list, ConsumeOrderlyContext consumeOrderlyContext) {
                 for(MessageExt messageExt: list) {
-                    System.out.println("线程名称："+Thread.currentThread().getName() +  "消费消息：" + new String(messageExt.getBody()));
+                    // Payload 作为占位符参数，日志级别开启时才解码消息体
+                    log.info("线程名称：{} 消费消息：{}", Thread.currentThread().getName(), Payload.of(messageExt.getBody()));
                 }
                 return ConsumeOrderlyStatus.SUCCESS;
             }
@@ -1,12 +1,12 @@
 package com.xiaofu.mq;
 
+import com.xiaofu.mq.selector.JumpHashSelector;
 import org.apache.rocketmq.client.exception.MQBrokerException;
 import org.apache.rocketmq.client.exception.MQClientException;
 import org.apache.rocketmq.client.producer.DefaultMQProducer;
 import org.apache.rocketmq.client.producer.MessageQueueSelector;
 import org.apache.rocketmq.client.producer.SendResult;
 import org.apache.rocketmq.common.message.Message;
-import org.apache.rocketmq.common.message.MessageQueue;
 import org.apache.rocketmq.remoting.common.RemotingHelper;
 import org.apache.rocketmq.remoting.exception.RemotingException;
 import org.junit.jupiter.api.AfterEach;
@@ -14,7 +14,6 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.UnsupportedEncodingException;
-import java.util.List;
 
 /**
  * @author fuzhouling
@@ -44,20 +43,15 @@ class MqProducerTest {
             producer.setNamesrvAddr("192.168.123.456:9876");
             producer.start();
 
+            MessageQueueSelector selector = new JumpHashSelector();
             String[] tags = new String[]{"TagA", "TagB", "TagC", "TagD", "TagE"};
             for (int i = 0; i < 100; i++) {
                 int orderId = i % 10;
                 Message msg =
                     new Message("OrderTopic", tags[i % tags.length], "KEY" + i,
                         ("Hello RocketMQ " + i).getBytes(RemotingHelper.DEFAULT_CHARSET));
-                SendResult sendResult = producer.send(msg, new MessageQueueSelector() {
-                    @Override
-                    public MessageQueue select(List<MessageQueue> mqs, Message msg, Object arg) {
-                        Integer id = (Integer) arg;
-                        int index = id % mqs.size();
-                        return mqs.get(index);
-                    }
-                }, orderId);
+                // 一致性哈希：扩容队列时只有少量订单换队列
+                SendResult sendResult = producer.send(msg, selector, orderId);
 
                 System.out.printf("发生结果%s%n", sendResult);
             }
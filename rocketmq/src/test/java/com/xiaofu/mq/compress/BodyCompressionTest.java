@@ -0,0 +1,221 @@
+package com.xiaofu.mq.compress;
+
+import com.xiaofu.mq.consumer.MessageSource;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 消息体压缩：两种算法互通、阈值和无收益时不压缩、topic 字典的训练和轮换、4.x 消费端原地解压
+ **/
+public class BodyCompressionTest {
+
+    private static final String TOPIC = "HotelSyncTopic";
+
+    @Test
+    void testRoundTripWithBothCodecs() {
+        byte[] body = hotelBatch(40);
+        for (BodyCodec codec : BodyCodec.values()) {
+            BodyCompressor compressor = new BodyCompressor(CompressionPolicy.builder().codec(codec).build());
+
+            CompressedBody compressed = compressor.compress(TOPIC, body);
+
+            assertNotNull(compressed);
+            assertEquals(codec, compressed.getCodec());
+            assertEquals(body.length, compressed.getOriginalSize());
+            assertTrue(compressed.getBody().length * 4 < body.length,
+                codec + " " + compressed.getBody().length + " of " + body.length + " bytes");
+            Map<String, String> properties = properties(compressed);
+            assertEquals(codec.getName(), properties.get(BodyCodec.PROPERTY));
+            assertNull(properties.get(BodyCodec.DICTIONARY_PROPERTY));
+
+            BodyDecompressor decompressor = new BodyDecompressor();
+            assertArrayEquals(body, decompressor.decompress(compressed.getBody(), properties));
+            // 5.x 的消息体是拿不到数组的只读 buffer
+            ByteBuffer view = decompressor.decompress(ByteBuffer.wrap(compressed.getBody()).asReadOnlyBuffer(), properties);
+            assertEquals(ByteBuffer.wrap(body), view);
+            // 输入同样来自只读 buffer
+            CompressedBody fromView = compressor.compress(TOPIC, ByteBuffer.wrap(body).asReadOnlyBuffer());
+            assertArrayEquals(body, decompressor.decompress(fromView.getBody(), properties(fromView)));
+        }
+    }
+
+    @Test
+    void testSmallAndIncompressibleBodiesStayRaw() {
+        BodyCompressor compressor = new BodyCompressor(CompressionPolicy.builder().threshold(1024).build(),
+            Collections.singletonMap("RawTopic", CompressionPolicy.disabled()), DictionaryStore.none());
+
+        assertNull(compressor.compress(TOPIC, hotel(1).getBytes(StandardCharsets.UTF_8)));
+        assertNull(compressor.compress("RawTopic", hotelBatch(40)));
+        byte[] random = new byte[8192];
+        new Random(42).nextBytes(random);
+        assertNull(compressor.compress(TOPIC, random));
+
+        // 没有压缩属性的消息原样返回
+        byte[] plain = hotelBatch(1);
+        BodyDecompressor decompressor = new BodyDecompressor();
+        assertSame(plain, decompressor.decompress(plain, Collections.emptyMap()));
+        ByteBuffer buffer = ByteBuffer.wrap(plain);
+        assertSame(buffer, decompressor.decompress(buffer, Collections.emptyMap()));
+    }
+
+    @Test
+    void testDictionaryCompressesSmallMessages(@TempDir Path dir) throws IOException {
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            samples.add(hotel(i).getBytes(StandardCharsets.UTF_8));
+        }
+        DictionaryStore producerSide = DictionaryStore.open(dir);
+        ZstdDictionary dictionary = producerSide.train(TOPIC, samples, 16 * 1024);
+
+        byte[] body = hotel(123_456).getBytes(StandardCharsets.UTF_8);
+        CompressedBody plain = new BodyCompressor(CompressionPolicy.builder().threshold(0).build())
+            .compress(TOPIC, body);
+        CompressedBody withDictionary = new BodyCompressor(CompressionPolicy.builder().build(),
+            Collections.emptyMap(), producerSide).compress(TOPIC, body);
+
+        assertNotNull(withDictionary);
+        assertEquals(dictionary.getId(), withDictionary.getDictionaryId());
+        int plainSize = plain == null ? body.length : plain.getBody().length;
+        assertTrue(withDictionary.getBody().length * 2 < plainSize,
+            "dictionary " + withDictionary.getBody().length + ", plain " + plainSize + ", raw " + body.length);
+
+        // 消费端是另一个进程，从同一目录读字典
+        BodyDecompressor decompressor = new BodyDecompressor(DictionaryStore.open(dir));
+        assertArrayEquals(body, decompressor.decompress(withDictionary.getBody(), properties(withDictionary)));
+    }
+
+    @Test
+    void testDictionaryRotationKeepsOldMessagesReadable(@TempDir Path dir) throws IOException {
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            samples.add(hotel(i).getBytes(StandardCharsets.UTF_8));
+        }
+        DictionaryStore producerSide = DictionaryStore.open(dir);
+        BodyCompressor compressor = new BodyCompressor(CompressionPolicy.builder().build(), Collections.emptyMap(),
+            producerSide);
+        DictionaryStore consumerSide = DictionaryStore.open(dir);
+        BodyDecompressor decompressor = new BodyDecompressor(consumerSide);
+
+        ZstdDictionary first = producerSide.train(TOPIC, samples, 16 * 1024);
+        byte[] oldBody = hotel(1).getBytes(StandardCharsets.UTF_8);
+        CompressedBody old = compressor.compress(TOPIC, oldBody);
+        Collections.reverse(samples);
+        ZstdDictionary second = producerSide.train(TOPIC, samples.subList(0, 1500), 8 * 1024);
+        byte[] newBody = hotel(2).getBytes(StandardCharsets.UTF_8);
+        CompressedBody rotated = compressor.compress(TOPIC, newBody);
+
+        assertEquals(first.getId(), old.getDictionaryId());
+        assertEquals(second.getId(), rotated.getDictionaryId());
+        // 消费端打开时还没有字典，遇到新 ID 时重新扫描目录
+        assertArrayEquals(oldBody, decompressor.decompress(old.getBody(), properties(old)));
+        assertArrayEquals(newBody, decompressor.decompress(rotated.getBody(), properties(rotated)));
+        assertEquals(second.getId(), DictionaryStore.open(dir).forTopic(TOPIC).getId());
+    }
+
+    @Test
+    void testRejectsCorruptedBodies() {
+        byte[] body = hotelBatch(40);
+        BodyDecompressor decompressor = new BodyDecompressor(DictionaryStore.none(), 1024 * 1024);
+        for (BodyCodec codec : BodyCodec.values()) {
+            CompressedBody compressed = new BodyCompressor(CompressionPolicy.builder().codec(codec).build())
+                .compress(TOPIC, body);
+            Map<String, String> properties = properties(compressed);
+            byte[] truncated = Arrays.copyOf(compressed.getBody(), compressed.getBody().length - 10);
+            assertThrows(IllegalArgumentException.class, () -> decompressor.decompress(truncated, properties));
+        }
+
+        Map<String, String> zstd = Collections.singletonMap(BodyCodec.PROPERTY, "zstd");
+        // 声明的原始长度超过上限
+        assertThrows(IllegalArgumentException.class,
+            () -> decompressor.decompress(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F}, zstd));
+        Map<String, String> unknownDictionary = new HashMap<>(zstd);
+        unknownDictionary.put(BodyCodec.DICTIONARY_PROPERTY, "12345");
+        assertThrows(IllegalArgumentException.class, () -> decompressor.decompress(new byte[]{4, 0, 0, 0, 0}, unknownDictionary));
+        assertThrows(IllegalArgumentException.class,
+            () -> decompressor.decompress(body, Collections.singletonMap(BodyCodec.PROPERTY, "snappy")));
+    }
+
+    @Test
+    void testMessageSourceDecompressesInPlace() {
+        byte[] body = hotelBatch(40);
+        CompressedBody compressed = new BodyCompressor(CompressionPolicy.builder().build()).compress(TOPIC, body);
+        MessageExt message = new MessageExt();
+        message.setTopic(TOPIC);
+        message.setBody(compressed.getBody());
+        compressed.forEachProperty(message::putUserProperty);
+        message.putUserProperty("traceId", "t-1");
+        MessageExt raw = new MessageExt();
+        raw.setTopic(TOPIC);
+        raw.setBody(body);
+
+        MessageSource source = new DecompressingMessageSource(new MessageSource() {
+            @Override
+            public List<MessageExt> poll(long timeoutMillis) {
+                List<MessageExt> messages = new ArrayList<>();
+                messages.add(message);
+                messages.add(raw);
+                return messages;
+            }
+
+            @Override
+            public void commit(Map<MessageQueue, Long> offsets) {
+            }
+        }, new BodyDecompressor());
+
+        List<MessageExt> polled = source.poll(0);
+
+        assertArrayEquals(body, polled.get(0).getBody());
+        assertNull(polled.get(0).getProperty(BodyCodec.PROPERTY));
+        assertEquals("t-1", polled.get(0).getUserProperty("traceId"));
+        assertSame(body, polled.get(1).getBody());
+    }
+
+    private static Map<String, String> properties(CompressedBody compressed) {
+        Map<String, String> properties = new HashMap<>();
+        compressed.forEachProperty(properties::put);
+        return properties;
+    }
+
+    /**
+     * 一条酒店同步消息，字段名和大部分取值在消息之间重复
+     */
+    private static String hotel(int i) {
+        return "{\"id\":" + (36934 + i) + ",\"name\":\"7天连锁酒店(上海" + (i % 17) + "号店)\",\"stars\":" + (i % 5 + 1)
+            + ",\"price\":" + (199 + i % 300) + ".5,\"address\":\"静安交通路" + (i % 90) + "号\","
+            + "\"amenities\":[\"wifi\",\"parking\"],\"rooms\":[{\"room_number\":\"" + (100 + i % 20)
+            + "\",\"room_type\":\"大床房\",\"bed_count\":1}],\"last_updated\":" + (1_717_200_000_000L + i * 1000L) + "}";
+    }
+
+    private static byte[] hotelBatch(int count) {
+        StringBuilder batch = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            batch.append(i == 0 ? "" : ",").append(hotel(i));
+        }
+        return batch.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
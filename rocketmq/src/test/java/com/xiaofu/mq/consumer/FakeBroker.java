@@ -0,0 +1,121 @@
+package com.xiaofu.mq.consumer;
+
+import org.apache.rocketmq.common.message.MessageExt;
+import org.apache.rocketmq.common.message.MessageQueue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 进程内的假 broker：一个 topic、若干队列，按 key 选队列，记录消费者提交的位点
+ **/
+public class FakeBroker implements MessageSource {
+
+    private static final String BROKER_NAME = "fake-broker";
+
+    private final String topic;
+
+    private final List<List<MessageExt>> queues = new ArrayList<>();
+
+    /**
+     * 下一次拉取的位点
+     */
+    private final long[] pullOffsets;
+
+    private final Map<MessageQueue, Long> committed = new ConcurrentHashMap<>();
+
+    private final int batchSize;
+
+    public FakeBroker(String topic, int queueCount, int batchSize) {
+        this.topic = topic;
+        this.batchSize = batchSize;
+        this.pullOffsets = new long[queueCount];
+        for (int i = 0; i < queueCount; i++) {
+            queues.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * 按订单号取模选队列
+     */
+    public void send(int orderId, String key, String body) {
+        append(orderId % queues.size(), key, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 追加到指定队列
+     */
+    public synchronized void append(int queueId, String key, byte[] body) {
+        List<MessageExt> queue = queues.get(queueId);
+        MessageExt message = new MessageExt();
+        message.setTopic(topic);
+        message.setBrokerName(BROKER_NAME);
+        message.setQueueId(queueId);
+        message.setQueueOffset(queue.size());
+        message.setMsgId(queueId + "-" + queue.size());
+        message.setKeys(key);
+        message.setBody(body);
+        queue.add(message);
+    }
+
+    public MessageQueue queue(int queueId) {
+        return new MessageQueue(topic, BROKER_NAME, queueId);
+    }
+
+    public synchronized long size(int queueId) {
+        return queues.get(queueId).size();
+    }
+
+    public int queueCount() {
+        return queues.size();
+    }
+
+    public Long committed(int queueId) {
+        return committed.get(queue(queueId));
+    }
+
+    /**
+     * 模拟消费者重启：从已提交位点重新拉取
+     */
+    public synchronized void rewindToCommitted() {
+        for (int i = 0; i < pullOffsets.length; i++) {
+            Long offset = committed.get(queue(i));
+            pullOffsets[i] = offset == null ? 0 : offset;
+        }
+    }
+
+    @Override
+    public List<MessageExt> poll(long timeoutMillis) {
+        synchronized (this) {
+            List<MessageExt> result = new ArrayList<>();
+            for (int i = 0; i < queues.size(); i++) {
+                List<MessageExt> queue = queues.get(i);
+                int from = (int) pullOffsets[i];
+                int to = Math.min(queue.size(), from + batchSize);
+                result.addAll(queue.subList(from, to));
+                pullOffsets[i] = to;
+            }
+            if (!result.isEmpty()) {
+                return result;
+            }
+        }
+        try {
+            Thread.sleep(Math.min(timeoutMillis, 10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void commit(Map<MessageQueue, Long> offsets) {
+        committed.putAll(offsets);
+    }
+}
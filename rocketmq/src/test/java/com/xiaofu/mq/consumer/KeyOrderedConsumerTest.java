@@ -0,0 +1,173 @@
+package com.xiaofu.mq.consumer;
+
+import org.apache.rocketmq.common.message.MessageExt;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description KeyOrderedConsumer 按 key 保序、并行度、位点提交与失败重试
+ **/
+public class KeyOrderedConsumerTest {
+
+    private static KeyOrderedConsumer.Options.OptionsBuilder options() {
+        return KeyOrderedConsumer.Options.builder()
+            .threads(8)
+            .pollTimeoutMillis(10)
+            .commitIntervalMillis(20)
+            .retryBackoffMillis(1);
+    }
+
+    private static String body(MessageExt message) {
+        return new String(message.getBody(), StandardCharsets.UTF_8);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("condition not met in time");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void testPerKeyOrderWithParallelism() throws Exception {
+        FakeBroker broker = new FakeBroker("OrderTopic", 4, 32);
+        int orders = 100;
+        int steps = 20;
+        for (int step = 0; step < steps; step++) {
+            for (int orderId = 0; orderId < orders; orderId++) {
+                broker.send(orderId, "ORDER" + orderId, String.valueOf(step));
+            }
+        }
+        Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        KeyOrderedConsumer consumer = new KeyOrderedConsumer(broker, message -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            received.computeIfAbsent(message.getKeys(), k -> Collections.synchronizedList(new ArrayList<>()))
+                .add(Integer.parseInt(body(message)));
+            Thread.sleep(1);
+            running.decrementAndGet();
+        }, options().build());
+
+        consumer.start();
+        await(() -> consumer.getProcessed() == orders * steps);
+        consumer.close();
+
+        assertEquals(orders, received.size());
+        received.forEach((key, list) -> {
+            for (int i = 0; i < steps; i++) {
+                assertEquals(i, list.get(i), key);
+            }
+        });
+        // 4 个队列，并行度超过了队列数
+        assertTrue(maxRunning.get() > broker.queueCount(), "max running " + maxRunning.get());
+        for (int i = 0; i < broker.queueCount(); i++) {
+            assertEquals(broker.size(i), broker.committed(i));
+        }
+    }
+
+    @Test
+    void testCommitStopsAtLowestUnfinished() throws Exception {
+        FakeBroker broker = new FakeBroker("OrderTopic", 1, 32);
+        for (int i = 0; i < 10; i++) {
+            broker.send(0, "KEY" + i, String.valueOf(i));
+        }
+        CountDownLatch release = new CountDownLatch(1);
+        KeyOrderedConsumer consumer = new KeyOrderedConsumer(broker, message -> {
+            if (message.getQueueOffset() == 2) {
+                release.await();
+            }
+        }, options().build());
+
+        consumer.start();
+        await(() -> consumer.getProcessed() == 9);
+        consumer.commitOffsets();
+        assertEquals(2L, broker.committed(0));
+
+        release.countDown();
+        await(() -> consumer.getProcessed() == 10);
+        consumer.commitOffsets();
+        assertEquals(10L, broker.committed(0));
+        consumer.close();
+    }
+
+    @Test
+    void testRedeliveryAfterRestart() throws Exception {
+        FakeBroker broker = new FakeBroker("OrderTopic", 1, 32);
+        for (int i = 0; i < 6; i++) {
+            broker.send(0, "KEY" + i, String.valueOf(i));
+        }
+        CountDownLatch release = new CountDownLatch(1);
+        KeyOrderedConsumer first = new KeyOrderedConsumer(broker, message -> {
+            if (message.getQueueOffset() == 3) {
+                release.await();
+            }
+        }, options().maxRetries(0).shutdownTimeoutMillis(100).failureHandler((message, e) -> { }).build());
+        first.start();
+        await(() -> first.getProcessed() == 5);
+        first.close();
+        release.countDown();
+        assertEquals(3L, broker.committed(0));
+
+        broker.rewindToCommitted();
+        Set<Long> redelivered = ConcurrentHashMap.newKeySet();
+        KeyOrderedConsumer second = new KeyOrderedConsumer(broker,
+            message -> redelivered.add(message.getQueueOffset()), options().build());
+        second.start();
+        await(() -> second.getProcessed() == 3);
+        second.close();
+
+        assertEquals(new HashSet<>(Arrays.asList(3L, 4L, 5L)), redelivered);
+        assertEquals(6L, broker.committed(0));
+    }
+
+    @Test
+    void testRetryKeepsKeyOrder() throws Exception {
+        FakeBroker broker = new FakeBroker("OrderTopic", 2, 32);
+        for (int i = 0; i < 5; i++) {
+            broker.send(1, "ORDER1", String.valueOf(i));
+        }
+        broker.send(0, "ORDER0", "poison");
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger failures = new AtomicInteger();
+        List<String> dropped = Collections.synchronizedList(new ArrayList<>());
+        KeyOrderedConsumer consumer = new KeyOrderedConsumer(broker, message -> {
+            String body = body(message);
+            if ("poison".equals(body) || ("1".equals(body) && failures.incrementAndGet() <= 2)) {
+                throw new IllegalStateException("boom " + body);
+            }
+            received.add(body);
+        }, options().maxRetries(3).failureHandler((message, e) -> dropped.add(body(message))).build());
+
+        consumer.start();
+        await(() -> consumer.getProcessed() + consumer.getFailed() == 6);
+        consumer.close();
+
+        assertEquals(Arrays.asList("0", "1", "2", "3", "4"), received);
+        assertEquals(Collections.singletonList("poison"), dropped);
+        assertEquals(5, consumer.getRetried());
+        assertEquals(1L, broker.committed(0));
+        assertEquals(5L, broker.committed(1));
+    }
+}
@@ -0,0 +1,64 @@
+package com.xiaofu.mq.consumer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description OffsetTracker 最小未完成位点、重复拉取与位点回退
+ **/
+public class OffsetTrackerTest {
+
+    @Test
+    void testCommitsLowestUnfinished() {
+        OffsetTracker tracker = new OffsetTracker();
+        assertEquals(-1, tracker.committableOffset());
+
+        tracker.track(10);
+        tracker.track(11);
+        tracker.track(12);
+        tracker.complete(11);
+        assertEquals(10, tracker.committableOffset());
+
+        tracker.complete(10);
+        assertEquals(12, tracker.committableOffset());
+        tracker.complete(12);
+        assertEquals(13, tracker.committableOffset());
+        assertEquals(0, tracker.pendingCount());
+    }
+
+    @Test
+    void testRedeliveredOffsetWaitsForEveryCopy() {
+        OffsetTracker tracker = new OffsetTracker();
+        tracker.track(5);
+        tracker.track(6);
+        // 重平衡后再次拉到 5，第一份还在处理
+        tracker.track(5);
+        assertEquals(3, tracker.pendingCount());
+
+        tracker.complete(5);
+        tracker.complete(6);
+        assertEquals(5, tracker.committableOffset());
+
+        tracker.complete(5);
+        assertEquals(7, tracker.committableOffset());
+    }
+
+    @Test
+    void testSeekBackKeepsMaxTracked() {
+        OffsetTracker tracker = new OffsetTracker();
+        tracker.track(20);
+        tracker.track(21);
+        tracker.complete(20);
+        tracker.complete(21);
+
+        // seek 回退后重新拉取 15
+        tracker.track(15);
+        assertEquals(15, tracker.committableOffset());
+        tracker.complete(15);
+        assertEquals(22, tracker.committableOffset());
+    }
+}
@@ -0,0 +1,201 @@
+package com.xiaofu.mq.dedup;
+
+import org.apache.rocketmq.client.consumer.listener.ConsumeOrderlyStatus;
+import org.apache.rocketmq.client.consumer.listener.MessageListenerOrderly;
+import org.apache.rocketmq.common.message.MessageAccessor;
+import org.apache.rocketmq.common.message.MessageConst;
+import org.apache.rocketmq.common.message.MessageExt;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description MessageDeduplicator：占用/提交/放开、精确窗口换代后由 Bloom filter 兜底、大量 key 下误判率与堆占用、Orderly 包装
+ **/
+public class MessageDeduplicatorTest {
+
+    private static MessageDeduplicator.Options.OptionsBuilder small() {
+        return MessageDeduplicator.Options.builder()
+            .segments(4)
+            .exactCapacity(10_000)
+            .expectedKeysPerBloomWindow(100_000);
+    }
+
+    @Test
+    void testClaimCommitAbort() {
+        MessageDeduplicator deduplicator = new MessageDeduplicator(small().build());
+
+        assertEquals(MessageDeduplicator.Claim.NEW, deduplicator.begin("m1"));
+        // 处理中再次投递
+        assertEquals(MessageDeduplicator.Claim.IN_PROGRESS, deduplicator.begin("m1"));
+        deduplicator.commit("m1");
+        assertEquals(MessageDeduplicator.Claim.DUPLICATE, deduplicator.begin("m1"));
+        assertTrue(deduplicator.isConsumed("m1"));
+
+        // 失败放开后可以重新消费
+        assertEquals(MessageDeduplicator.Claim.NEW, deduplicator.begin("m2"));
+        deduplicator.abort("m2");
+        assertFalse(deduplicator.isConsumed("m2"));
+        assertEquals(MessageDeduplicator.Claim.NEW, deduplicator.begin("m2"));
+        deduplicator.commit("m2");
+
+        assertEquals(2, deduplicator.getExactSize());
+        assertEquals(3, deduplicator.getAccepted());
+        assertEquals(1, deduplicator.getDuplicates());
+        assertEquals(1, deduplicator.getConflicts());
+        deduplicator.close();
+    }
+
+    @Test
+    void testBloomCoversKeysOlderThanExactWindow() throws Exception {
+        List<String> confirmed = Collections.synchronizedList(new ArrayList<>());
+        MessageDeduplicator deduplicator = new MessageDeduplicator(small()
+            .exactWindowMillis(50)
+            .duplicateConfirmer(key -> {
+                confirmed.add(key);
+                return !key.startsWith("fp");
+            })
+            .build());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(MessageDeduplicator.Claim.NEW, deduplicator.begin("old-" + i));
+            deduplicator.commit("old-" + i);
+        }
+        // 两个窗口之后精确表里已经没有这些 key
+        Thread.sleep(120);
+        assertFalse(deduplicator.isConsumed("never-seen"));
+        assertEquals(MessageDeduplicator.Claim.DUPLICATE, deduplicator.begin("old-1"));
+        assertEquals(Collections.singletonList("old-1"), confirmed);
+        assertEquals(1, deduplicator.getProbableDuplicates());
+        deduplicator.close();
+    }
+
+    @Test
+    void testExactTableFullRotatesEarly() {
+        MessageDeduplicator deduplicator = new MessageDeduplicator(small().segments(1).exactCapacity(100).build());
+        for (int i = 0; i < 1000; i++) {
+            deduplicator.begin("k" + i);
+            deduplicator.commit("k" + i);
+        }
+        assertTrue(deduplicator.getExactSize() <= 200, "exact size " + deduplicator.getExactSize());
+        // 被挤出精确表的 key 仍在 Bloom filter 里，没有确认手段时按新消息再消费一次
+        for (int i = 0; i < 800; i++) {
+            assertTrue(deduplicator.isConsumed("k" + i));
+            assertEquals(MessageDeduplicator.Claim.NEW, deduplicator.begin("k" + i));
+            deduplicator.abort("k" + i);
+        }
+        deduplicator.close();
+
+        MessageDeduplicator confirmed = new MessageDeduplicator(small().segments(1).exactCapacity(100)
+            .duplicateConfirmer(key -> true).build());
+        for (int i = 0; i < 1000; i++) {
+            confirmed.begin("k" + i);
+            confirmed.commit("k" + i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(MessageDeduplicator.Claim.DUPLICATE, confirmed.begin("k" + i));
+        }
+        confirmed.close();
+    }
+
+    @Test
+    void testMillionsOfKeysOffHeap() {
+        int keys = 5_000_000;
+        MessageDeduplicator deduplicator = new MessageDeduplicator(MessageDeduplicator.Options.builder()
+            .exactCapacity(1_000_000)
+            .expectedKeysPerBloomWindow(keys * 2L)
+            .build());
+        System.gc();
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        for (int i = 0; i < keys; i++) {
+            String key = "msg-" + i;
+            if (deduplicator.begin(key) == MessageDeduplicator.Claim.NEW) {
+                deduplicator.commit(key);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        System.gc();
+        long heapAfter = usedHeap();
+
+        // Bloom filter 的误判只会让新 key 多查一次，不能让任何新 key 被当成重复丢掉
+        long falsePositives = deduplicator.getProbableDuplicates();
+        int probes = 1_000_000;
+        int probeHits = 0;
+        for (int i = 0; i < probes; i++) {
+            if (deduplicator.isConsumed("other-" + i)) {
+                probeHits++;
+            }
+        }
+        System.out.printf("%d keys in %d ms, off-heap %d MB, heap delta %d KB, false positives %d, probe hits %d%n",
+            keys, elapsed / 1_000_000, deduplicator.getOffHeapBytes() >> 20, (heapAfter - heapBefore) >> 10,
+            falsePositives, probeHits);
+        assertEquals(keys, deduplicator.getAccepted());
+        assertEquals(0, deduplicator.getDuplicates());
+        assertTrue(falsePositives < 200, "false positives " + falsePositives);
+        assertTrue(probeHits < 100, "probe hits " + probeHits);
+        // 五百万个 key 放在堆上至少几百 MB，这里堆上基本不增长
+        assertTrue(heapAfter - heapBefore < 32L << 20, "heap delta " + (heapAfter - heapBefore));
+        for (int i = 0; i < keys; i += 997) {
+            assertTrue(deduplicator.isConsumed("msg-" + i));
+        }
+        deduplicator.close();
+    }
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static MessageExt message(String uniqId, String body) {
+        MessageExt message = new MessageExt();
+        message.setTopic("OrderTopic");
+        MessageAccessor.putProperty(message, MessageConst.PROPERTY_UNIQ_CLIENT_MESSAGE_ID_KEYIDX, uniqId);
+        message.setBody(body.getBytes());
+        return message;
+    }
+
+    @Test
+    void testOrderlyListenerSkipsConsumedMessages() {
+        MessageDeduplicator deduplicator = new MessageDeduplicator(small().build());
+        List<String> consumed = new ArrayList<>();
+        AtomicInteger calls = new AtomicInteger();
+        AtomicBoolean failNext = new AtomicBoolean(true);
+        MessageListenerOrderly business = (messages, context) -> {
+            calls.incrementAndGet();
+            if (failNext.getAndSet(false)) {
+                return ConsumeOrderlyStatus.SUSPEND_CURRENT_QUEUE_A_MOMENT;
+            }
+            messages.forEach(message -> consumed.add(new String(message.getBody())));
+            return ConsumeOrderlyStatus.SUCCESS;
+        };
+        IdempotentMessageListenerOrderly listener = new IdempotentMessageListenerOrderly(business, deduplicator);
+
+        List<MessageExt> batch = Arrays.asList(message("u1", "create"), message("u2", "pay"),
+            message("u1", "create"));
+        // 第一次业务失败，key 放开
+        assertEquals(ConsumeOrderlyStatus.SUSPEND_CURRENT_QUEUE_A_MOMENT, listener.consumeMessage(batch, null));
+        assertEquals(ConsumeOrderlyStatus.SUCCESS, listener.consumeMessage(batch, null));
+        assertEquals(Arrays.asList("create", "pay"), consumed);
+
+        // 重平衡后整批重新投递，业务不再被调用
+        assertEquals(ConsumeOrderlyStatus.SUCCESS, listener.consumeMessage(batch, null));
+        assertEquals(2, calls.get());
+
+        // 新消息和旧消息混在一批里，只有新消息交给业务
+        listener.consumeMessage(Arrays.asList(message("u2", "pay"), message("u3", "ship")), null);
+        assertEquals(Arrays.asList("create", "pay", "ship"), consumed);
+        deduplicator.close();
+    }
+}
@@ -0,0 +1,107 @@
+package com.xiaofu.mq.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description MessagingMetrics：分位数准确、记录不分配对象、通过 Micrometer 暴露、disabled 不记录
+ **/
+public class MessagingMetricsTest {
+
+    @Test
+    void testPercentiles() {
+        LatencyRecorder recorder = new LatencyRecorder(60_000);
+        for (int i = 1; i <= 10_000; i++) {
+            recorder.recordNanos(TimeUnit.MICROSECONDS.toNanos(i * 100L));
+        }
+        recorder.flush();
+        // 0.1ms ~ 1000ms 均匀分布，三位有效数字
+        assertEquals(500, recorder.percentileMillis(50), 1);
+        assertEquals(990, recorder.percentileMillis(99), 1);
+        assertEquals(1000, recorder.maxMillis(), 1);
+        assertEquals(10_000, recorder.totalCount());
+
+        // 下一个窗口只反映新数据，累计次数继续增加
+        recorder.recordMillis(5);
+        recorder.recordMillis(-1);
+        recorder.flush();
+        assertEquals(5, recorder.percentileMillis(100), 0.01);
+        assertEquals(2, recorder.windowCount());
+        assertEquals(10_002, recorder.totalCount());
+    }
+
+    @Test
+    void testHotPathDoesNotAllocate() {
+        MessagingMetrics metrics = new MessagingMetrics("alloc");
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        // 预热，LongAdder 等懒初始化的部分先分配好
+        record(metrics, 100_000);
+        long before = threads.getThreadAllocatedBytes(thread);
+        record(metrics, 1_000_000);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        System.out.printf("1000000 x 4 records allocated %d bytes%n", allocated);
+        assertTrue(allocated < 4096, "allocated " + allocated);
+        assertEquals(1_100_000, metrics.getSent());
+        assertEquals(0, metrics.getSendsInFlight());
+    }
+
+    private static void record(MessagingMetrics metrics, int times) {
+        long born = System.currentTimeMillis();
+        for (int i = 0; i < times; i++) {
+            long start = metrics.sendStarted();
+            metrics.sendCompleted(start, true);
+            metrics.received(born);
+            metrics.consumeCompleted(metrics.consumeStarted(), true);
+            metrics.ackCompleted(metrics.ackStarted(), i % 100 != 0);
+        }
+    }
+
+    @Test
+    void testBoundToMicrometer() {
+        MessagingMetrics metrics = new MessagingMetrics("order-consumer", 0);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        metrics.bindTo(registry);
+
+        long start = metrics.consumeStarted();
+        assertEquals(1, registry.get("rocketmq.in.flight").tag("operation", "consume").gauge().value());
+        metrics.consumeCompleted(start - TimeUnit.MILLISECONDS.toNanos(20), true);
+        metrics.received(System.currentTimeMillis() - 100);
+        metrics.ackCompleted(metrics.ackStarted(), false);
+
+        assertEquals(0, registry.get("rocketmq.in.flight").tag("operation", "consume").gauge().value());
+        assertEquals(1, registry.get("rocketmq.consumed").tags("client", "order-consumer", "result", "success")
+            .functionCounter().count());
+        assertEquals(1, registry.get("rocketmq.acked").tag("result", "failure").functionCounter().count());
+        double p99 = registry.get("rocketmq.consume.duration").tag("quantile", "0.99").gauge().value();
+        assertTrue(p99 >= 20 && p99 < 500, "p99 " + p99);
+        double endToEnd = registry.get("rocketmq.end.to.end.latency").tag("quantile", "0.5").gauge().value();
+        assertTrue(endToEnd >= 100 && endToEnd < 600, "end to end " + endToEnd);
+    }
+
+    @Test
+    void testDisabledRecordsNothing() {
+        MessagingMetrics metrics = MessagingMetrics.disabled();
+        metrics.sendCompleted(metrics.sendStarted(), true);
+        metrics.consumeCompleted(metrics.consumeStarted(), false);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        metrics.bindTo(registry);
+
+        assertFalse(metrics.isEnabled());
+        assertEquals(0, metrics.getSent());
+        assertEquals(0, metrics.getConsumeFailed());
+        assertTrue(registry.getMeters().isEmpty());
+    }
+}
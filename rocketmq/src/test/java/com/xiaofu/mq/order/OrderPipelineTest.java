@@ -0,0 +1,151 @@
+package com.xiaofu.mq.order;
+
+import com.xiaofu.mq.consumer.FakeBroker;
+import com.xiaofu.mq.consumer.KeyOrderedConsumer;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 订单步骤编码、顺序校验，以及发送 -> OrderTopic -> 按订单保序消费的完整链路压测
+ *
+ * 订单数可以用 -Dorder.pipeline.orders 调整，默认 5 万单 20 万步
+ **/
+public class OrderPipelineTest {
+
+    @Test
+    void testCodecRoundTrip() {
+        OrderStep step = new OrderStep(123_456_789L, OrderStep.StepType.SHIP, 1_760_000_000_000L);
+
+        byte[] bytes = OrderStepCodec.encode(step);
+
+        assertEquals(step, OrderStepCodec.decode(bytes));
+        assertTrue(bytes.length <= 11, "encoded size " + bytes.length);
+        OrderStep max = new OrderStep(Long.MAX_VALUE, OrderStep.StepType.FINISH, -1L);
+        assertEquals(max, OrderStepCodec.decode(OrderStepCodec.encode(max)));
+    }
+
+    @Test
+    void testVerifier() {
+        OrderSequenceVerifier verifier = new OrderSequenceVerifier();
+
+        assertTrue(verifier.verify(new OrderStep(1, OrderStep.StepType.CREATE, 0)));
+        assertTrue(verifier.verify(new OrderStep(1, OrderStep.StepType.PAY, 0)));
+        // 重复投递
+        assertTrue(verifier.verify(new OrderStep(1, OrderStep.StepType.PAY, 0)));
+        // 跳过 SHIP
+        assertFalse(verifier.verify(new OrderStep(1, OrderStep.StepType.FINISH, 0)));
+        // 没有 CREATE
+        assertFalse(verifier.verify(new OrderStep(2, OrderStep.StepType.PAY, 0)));
+        assertTrue(verifier.verify(new OrderStep(1, OrderStep.StepType.SHIP, 0)));
+        assertTrue(verifier.verify(new OrderStep(1, OrderStep.StepType.FINISH, 0)));
+        // 完成后的重复投递
+        assertTrue(verifier.verify(new OrderStep(1, OrderStep.StepType.FINISH, 0)));
+
+        assertEquals(1, verifier.getFinished());
+        assertEquals(2, verifier.getDuplicates());
+        assertEquals(2, verifier.getViolations());
+        assertEquals(0, verifier.getOpenOrders());
+    }
+
+    @Test
+    void testPipelineKeepsOrderPerOrder() throws Exception {
+        int orders = Integer.getInteger("order.pipeline.orders", 50_000);
+        FakeBroker broker = new FakeBroker("OrderTopic", 8, 256);
+        List<MessageQueue> queues = new ArrayList<>();
+        for (int i = 0; i < broker.queueCount(); i++) {
+            queues.add(broker.queue(i));
+        }
+        OrderSequenceVerifier verifier = new OrderSequenceVerifier();
+        KeyOrderedConsumer consumer = new KeyOrderedConsumer(broker,
+            message -> verifier.verify(OrderStepCodec.decode(message.getBody())),
+            KeyOrderedConsumer.Options.builder().threads(8).pollTimeoutMillis(10).build());
+        consumer.start();
+
+        long start = System.nanoTime();
+        try (OrderStepProducer producer = new OrderStepProducer(queues, (queue, batch) -> {
+            for (Message message : batch) {
+                broker.append(queue.getQueueId(), message.getKeys(), message.getBody());
+            }
+        }, OrderStepProducer.Options.builder().build())) {
+            // 每 1000 单为一组交错发送，组内同一步骤的不同订单相邻
+            for (int block = 0; block < orders; block += 1000) {
+                for (OrderStep.StepType type : OrderStep.StepType.values()) {
+                    for (long orderId = block; orderId < Math.min(orders, block + 1000); orderId++) {
+                        producer.send(new OrderStep(orderId, type, System.currentTimeMillis()));
+                    }
+                }
+            }
+            producer.flush();
+            assertEquals(orders * 4L, producer.getSent());
+        }
+        long deadline = System.currentTimeMillis() + 60_000;
+        while (consumer.getProcessed() < orders * 4L && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        consumer.close();
+
+        System.out.printf("%d steps in %.2fs, %.0f steps/min, %s%n", verifier.getSteps(), seconds,
+            verifier.getSteps() / seconds * 60, verifier);
+        assertEquals(orders * 4L, verifier.getSteps());
+        assertEquals(orders, verifier.getFinished());
+        assertEquals(0, verifier.getViolations());
+        assertEquals(0, verifier.getOpenOrders());
+    }
+
+    @Test
+    void testBlockedSendFailsWhenBatchFails() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<MessageQueue> queues = Collections.singletonList(new MessageQueue("OrderTopic", "broker-a", 0));
+        OrderStepProducer producer = new OrderStepProducer(queues, (queue, batch) -> {
+            sending.countDown();
+            release.await();
+            throw new IllegalStateException("broker busy");
+        }, OrderStepProducer.Options.builder().batchSize(1).bufferSize(2).maxRetries(0).build());
+        ExecutorService callers = Executors.newSingleThreadExecutor();
+        try {
+            producer.send(new OrderStep(1, OrderStep.StepType.CREATE, 1));
+            assertTrue(sending.await(5, TimeUnit.SECONDS));
+            // 第一批卡在发送中，再填满缓冲区，第四条阻塞
+            producer.send(new OrderStep(2, OrderStep.StepType.CREATE, 1));
+            producer.send(new OrderStep(3, OrderStep.StepType.CREATE, 1));
+            Future<?> blocked = callers.submit(() -> {
+                producer.send(new OrderStep(4, OrderStep.StepType.CREATE, 1));
+                return null;
+            });
+            Thread.sleep(200);
+            assertFalse(blocked.isDone());
+
+            release.countDown();
+            ExecutionException e = assertThrows(ExecutionException.class, () -> blocked.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof IllegalStateException, e.getCause().toString());
+            assertThrows(IllegalStateException.class, () -> producer.send(new OrderStep(5, OrderStep.StepType.CREATE, 1)));
+            assertThrows(IllegalStateException.class, producer::flush);
+            assertEquals(0, producer.getSent());
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+            producer.close();
+        }
+    }
+}
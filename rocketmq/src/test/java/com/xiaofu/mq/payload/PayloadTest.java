@@ -0,0 +1,96 @@
+package com.xiaofu.mq.payload;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONException;
+import com.alibaba.fastjson2.JSONObject;
+import com.xiaofu.mq.order.OrderStep;
+import com.xiaofu.mq.order.OrderStepCodec;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 消息体视图：数组 / 只读 / 堆外三种 buffer 上按字段读取，订单步骤两种格式，酒店视图
+ **/
+public class PayloadTest {
+
+    private static final String HOTEL = "{\"id\":36934,\"name\":\"7天连锁酒店\",\"stars\":2,\"price\":336.5,"
+        + "\"description\":\"交通便利，\\\"近地铁\\\"\",\"rooms\":[{\"room_number\":\"101\",\"bed_count\":1}],"
+        + "\"address\":\"静安交通路40号\",\"amenities\":[\"wifi\"],\"location\":null}";
+
+    @Test
+    void testFieldAccessOnAllBufferKinds() {
+        byte[] bytes = HOTEL.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        // 前后带无关字节，验证只读 [position, limit)
+        byte[] padded = new byte[bytes.length + 6];
+        System.arraycopy(bytes, 0, padded, 3, bytes.length);
+        ByteBuffer sliced = ByteBuffer.wrap(padded, 3, bytes.length);
+
+        for (Payload payload : new Payload[]{Payload.of(bytes), Payload.of(ByteBuffer.wrap(bytes).asReadOnlyBuffer()),
+            Payload.of(direct), Payload.of(sliced)}) {
+            assertEquals(bytes.length, payload.size());
+            assertEquals(36934L, payload.getLong("id", -1));
+            assertEquals(2, payload.getInt("stars", -1));
+            assertEquals(336.5, payload.getDouble("price", -1), 0.0001);
+            assertEquals("静安交通路40号", payload.getString("address"));
+            assertNull(payload.getString("missing"));
+            assertEquals(-1L, payload.getLong("missing", -1));
+            assertTrue(payload.contains("rooms"));
+            // 值为 null 视为不存在
+            assertFalse(payload.contains("location"));
+            assertEquals(HOTEL, payload.toString());
+            assertEquals("静安交通路40号", payload.to(JSONObject.class).getString("address"));
+        }
+        // 包装不移动调用方的 position
+        assertEquals(0, direct.position());
+        assertEquals(3, sliced.position());
+    }
+
+    @Test
+    void testRejectsNonObject() {
+        assertThrows(JSONException.class, () -> Payload.of("[1,2]".getBytes(StandardCharsets.UTF_8)).getString("id"));
+    }
+
+    @Test
+    void testOrderStepViewReadsBinaryAndJson() {
+        OrderStep step = new OrderStep(123_456_789L, OrderStep.StepType.PAY, 1_760_000_000_000L);
+
+        OrderStepView binary = OrderStepView.of(ByteBuffer.wrap(OrderStepCodec.encode(step)).asReadOnlyBuffer());
+        OrderStepView json = OrderStepView.of(JSON.toJSONBytes(step));
+        OrderStepView code = OrderStepView.of(
+            "{\"orderId\":123456789,\"type\":2,\"timestamp\":1760000000000}".getBytes(StandardCharsets.UTF_8));
+
+        for (OrderStepView view : new OrderStepView[]{binary, json, code}) {
+            assertEquals(step.getOrderId(), view.getOrderId());
+            assertEquals(OrderStep.StepType.PAY, view.getType());
+            assertEquals(step.getTimestamp(), view.getTimestamp());
+            assertEquals(step, view.toOrderStep());
+        }
+        assertThrows(JSONException.class,
+            () -> OrderStepView.of("{\"orderId\":1,\"type\":\"REFUND\"}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testHotelView() {
+        HotelView view = HotelView.of(ByteBuffer.wrap(HOTEL.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer());
+
+        assertEquals(36934L, view.getId());
+        assertEquals("7天连锁酒店", view.getName());
+        assertEquals(2, view.getStars());
+        assertEquals(336.5, view.getPrice(), 0.0001);
+        assertEquals("静安交通路40号", view.getAddress());
+        assertEquals("wifi", view.getPayload().to(JSONObject.class).getJSONArray("amenities").getString(0));
+    }
+}
@@ -0,0 +1,199 @@
+package com.xiaofu.mq.schema;
+
+import com.alibaba.fastjson2.JSON;
+import com.xiaofu.mq.hotel.HotelEvent;
+import com.xiaofu.mq.order.OrderStep;
+import com.xiaofu.mq.payload.HotelView;
+import com.xiaofu.mq.payload.OrderStepView;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 信封编解码、注册表的版本和兼容性检查，以及新旧版本互读
+ **/
+public class SchemaRegistryTest {
+
+    @Test
+    void testBundledRegistryMatchesCodecs() {
+        // 改了编解码器的字段却没改 schema/registry.json 时这里会失败
+        assertEquals(1, Envelopes.orderStep().getSchemaId());
+        assertEquals(2, Envelopes.hotelEvent().getSchemaId());
+    }
+
+    @Test
+    void testHotelEventRoundTrip() {
+        HotelEvent event = fullEvent();
+
+        byte[] bytes = Envelopes.hotelEvent().encode(event);
+
+        assertEquals(event, Envelopes.hotelEvent().decode(ByteBuffer.wrap(bytes).asReadOnlyBuffer()));
+        assertEquals(2, Envelope.schemaId(ByteBuffer.wrap(bytes)));
+        int json = JSON.toJSONBytes(event).length;
+        assertTrue(bytes.length < json, "envelope " + bytes.length + " bytes, json " + json + " bytes");
+    }
+
+    @Test
+    void testPartialAndDeletedEvents() {
+        HotelEvent priceChange = new HotelEvent();
+        priceChange.setId(36934);
+        priceChange.setVersion(1_760_000_000_123L);
+        priceChange.setPrice(299.0);
+        priceChange.setLastUpdated(1_760_000_000_000L);
+
+        byte[] bytes = Envelopes.hotelEvent().encode(priceChange);
+        HotelEvent decoded = Envelopes.hotelEvent().decode(bytes);
+
+        assertEquals(priceChange, decoded);
+        assertNull(decoded.getName());
+        assertNull(decoded.getRooms());
+        assertTrue(bytes.length < 32, "price change " + bytes.length + " bytes");
+
+        HotelEvent deleted = fullEvent();
+        deleted.setDeleted(true);
+        HotelEvent tombstone = Envelopes.hotelEvent().decode(Envelopes.hotelEvent().encode(deleted));
+        assertTrue(tombstone.isDeleted());
+        assertEquals(deleted.getId(), tombstone.getId());
+        assertNull(tombstone.getName());
+    }
+
+    @Test
+    void testViewsReadEnvelopes() {
+        OrderStep step = new OrderStep(123_456_789L, OrderStep.StepType.SHIP, 1_760_000_000_000L);
+        byte[] orderBytes = Envelopes.orderStep().encode(step);
+        assertEquals(step, Envelopes.orderStep().decode(orderBytes));
+        assertEquals(step, OrderStepView.of(ByteBuffer.wrap(orderBytes).asReadOnlyBuffer()).toOrderStep());
+
+        HotelView view = HotelView.of(ByteBuffer.wrap(Envelopes.hotelEvent().encode(fullEvent())).asReadOnlyBuffer());
+        assertEquals(36934L, view.getId());
+        assertEquals("7天连锁酒店(上海宝山路地铁站店)", view.getName());
+        assertEquals(336.5, view.getPrice(), 0.0001);
+
+        assertThrows(IllegalArgumentException.class, () -> Envelopes.orderStep().decode(Envelopes.hotelEvent().encode(fullEvent())));
+    }
+
+    @Test
+    void testNewVersionIsReadableByOldCodec(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("registry.json");
+        SchemaRegistry registry = SchemaRegistry.open(file);
+        Envelope<OrderStep> v1 = registry.bind(new OrderStepEnvelopeCodec());
+        assertEquals(1, v1.getVersion());
+
+        Envelope<OrderStep> v2 = registry.bind(new ChannelOrderStepCodec());
+
+        assertEquals(v1.getSchemaId(), v2.getSchemaId());
+        assertEquals(2, v2.getVersion());
+        // 重新打开仍是同一个版本，不会重复注册
+        assertEquals(2, SchemaRegistry.open(file).bind(new ChannelOrderStepCodec()).getVersion());
+        assertEquals(new ChannelOrderStepCodec().schema(), SchemaRegistry.open(file).lookup("order-step", 2));
+
+        OrderStep step = new OrderStep(42L, OrderStep.StepType.PAY, 1_760_000_000_000L);
+        // 新版本的消息旧消费者能读，多出的字段被跳过
+        assertEquals(step, Envelopes.orderStep().decode(v2.encode(step)));
+        assertEquals(step, v2.decode(Envelopes.orderStep().encode(step)));
+    }
+
+    @Test
+    void testRejectsIncompatibleSchemas(@TempDir Path dir) throws IOException {
+        SchemaRegistry registry = SchemaRegistry.open(dir.resolve("registry.json"));
+        EnvelopeCodec<OrderStep> retyped = new ChannelOrderStepCodec() {
+            @Override
+            public Schema schema() {
+                return Schema.builder("order-step")
+                    .field(1, "orderId", Schema.Type.INT64)
+                    .field(2, "type", Schema.Type.STRING)
+                    .field(3, "timestamp", Schema.Type.INT64)
+                    .build();
+            }
+        };
+        assertThrows(IllegalStateException.class, () -> registry.bind(retyped));
+
+        EnvelopeCodec<OrderStep> roomsAsStrings = new ChannelOrderStepCodec() {
+            @Override
+            public Schema schema() {
+                return new Schema("hotel-event", Collections.singletonList(
+                    new Schema.Field(11, "rooms", Schema.Type.STRING, true, null)));
+            }
+        };
+        assertThrows(IllegalStateException.class, () -> registry.bind(roomsAsStrings));
+        // 只读的基线注册表不接受新 schema
+        assertThrows(IllegalStateException.class, () -> SchemaRegistry.bundled().bind(new ChannelOrderStepCodec()));
+    }
+
+    @Test
+    void testRejectsMalformedInput() {
+        byte[] bytes = Envelopes.hotelEvent().encode(fullEvent());
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 3);
+        assertThrows(RuntimeException.class, () -> Envelopes.hotelEvent().decode(truncated));
+        assertThrows(IllegalArgumentException.class, () -> Envelopes.hotelEvent().decode(new byte[]{'{', '}'}));
+    }
+
+    private static HotelEvent fullEvent() {
+        HotelEvent event = new HotelEvent();
+        event.setId(36934);
+        event.setVersion(7);
+        event.setName("7天连锁酒店(上海宝山路地铁站店)");
+        event.setStars(2);
+        event.setPrice(336.5);
+        // 代理项对（emoji）走 4 字节 UTF-8 分支
+        event.setDescription("交通便利，\"近地铁\" 🚇");
+        event.setAddress("静安交通路40号");
+        event.setLat(31.251433);
+        event.setLon(121.47522);
+        HotelEvent.Room small = new HotelEvent.Room();
+        small.setRoomNumber("101");
+        small.setRoomType("大床房");
+        small.setBedCount(1);
+        HotelEvent.Room large = new HotelEvent.Room();
+        large.setRoomNumber("102");
+        // 超过 127 字节的嵌套消息，长度前缀要占 2 字节
+        large.setRoomType(String.join("", Collections.nCopies(50, "双床房")));
+        large.setBedCount(2);
+        event.setRooms(Arrays.asList(small, large));
+        event.setAmenities(Arrays.asList("wifi", "parking"));
+        event.setLastUpdated(1_717_200_000_123L);
+        return event;
+    }
+
+    /**
+     * order-step 加一个渠道字段后的新版本
+     */
+    private static class ChannelOrderStepCodec implements EnvelopeCodec<OrderStep> {
+
+        private final OrderStepEnvelopeCodec v1 = new OrderStepEnvelopeCodec();
+
+        @Override
+        public Schema schema() {
+            return Schema.builder("order-step")
+                .field(1, "orderId", Schema.Type.INT64)
+                .field(2, "type", Schema.Type.INT64)
+                .field(3, "timestamp", Schema.Type.INT64)
+                .field(4, "channel", Schema.Type.STRING)
+                .build();
+        }
+
+        @Override
+        public void write(OrderStep step, EnvelopeWriter writer) {
+            v1.write(step, writer);
+            writer.writeString(4, "app-渠道");
+        }
+
+        @Override
+        public OrderStep read(EnvelopeReader reader) {
+            return v1.read(reader);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.xiaofu.mq.selector;
+
+import org.apache.rocketmq.client.producer.MessageQueueSelector;
+import org.apache.rocketmq.common.message.Message;
+import org.apache.rocketmq.common.message.MessageQueue;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author fuzhouling
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 队列选择策略模拟：分布均匀度、热点 key、扩容时迁移的 key 比例
+ **/
+public class SelectorSimulationTest {
+
+    private static final Message MESSAGE = new Message("OrderTopic", "TagA", "KEY", new byte[0]);
+
+    /**
+     * MqProducerTest 原来的 id % size
+     */
+    private static final MessageQueueSelector MODULO =
+        (mqs, msg, arg) -> mqs.get(Math.floorMod(arg.hashCode(), mqs.size()));
+
+    private static Map<String, MessageQueueSelector> strategies() {
+        Map<String, MessageQueueSelector> strategies = new LinkedHashMap<>();
+        strategies.put("modulo", MODULO);
+        strategies.put("jump", new JumpHashSelector());
+        strategies.put("rendezvous", new RendezvousHashSelector());
+        return strategies;
+    }
+
+    /**
+     * 两个 broker，每个 perBroker 个队列，顺序与客户端路由信息一致：先按 broker，再按 queueId
+     */
+    private static List<MessageQueue> queues(int brokerA, int brokerB) {
+        List<MessageQueue> queues = new ArrayList<>();
+        for (int i = 0; i < brokerA; i++) {
+            queues.add(new MessageQueue("OrderTopic", "broker-a", i));
+        }
+        for (int i = 0; i < brokerB; i++) {
+            queues.add(new MessageQueue("OrderTopic", "broker-b", i));
+        }
+        return queues;
+    }
+
+    private static double moved(MessageQueueSelector selector, List<MessageQueue> before, List<MessageQueue> after,
+                                int keys) {
+        int moved = 0;
+        for (int key = 0; key < keys; key++) {
+            if (!selector.select(before, MESSAGE, key).equals(selector.select(after, MESSAGE, key))) {
+                moved++;
+            }
+        }
+        return (double) moved / keys;
+    }
+
+    @Test
+    void testUniformKeys() {
+        List<MessageQueue> queues = queues(8, 8);
+        System.out.println("== 100000 个订单号，16 个队列 ==");
+        for (Map.Entry<String, MessageQueueSelector> entry : strategies().entrySet()) {
+            SkewTrackingSelector selector = new SkewTrackingSelector(entry.getValue());
+            for (int orderId = 0; orderId < 100_000; orderId++) {
+                selector.select(queues, MESSAGE, orderId);
+            }
+            SkewTrackingSelector.SkewReport report = selector.report(queues);
+            System.out.printf("%-12s %s%n", entry.getKey(), report);
+            assertEquals(100_000, report.getTotal());
+            assertTrue(report.getMaxToMean() < 1.05, entry.getKey() + " " + report);
+        }
+    }
+
+    @Test
+    void testResizeMovement() {
+        int keys = 100_000;
+        List<MessageQueue> before = queues(8, 8);
+        // broker-b 扩容：新队列追加在列表末尾
+        List<MessageQueue> appended = queues(8, 12);
+        // broker-a 扩容：新队列插入到列表中间
+        List<MessageQueue> inserted = queues(12, 8);
+        double ideal = 4.0 / 20;
+        System.out.printf("== 16 -> 20 个队列，理想迁移比例 %.3f ==%n", ideal);
+        Map<String, double[]> result = new LinkedHashMap<>();
+        for (Map.Entry<String, MessageQueueSelector> entry : strategies().entrySet()) {
+            double tail = moved(entry.getValue(), before, appended, keys);
+            double middle = moved(entry.getValue(), before, inserted, keys);
+            result.put(entry.getKey(), new double[]{tail, middle});
+            System.out.printf("%-12s 末尾追加 %.3f  中间插入 %.3f%n", entry.getKey(), tail, middle);
+        }
+
+        assertTrue(result.get("modulo")[0] > 0.7);
+        assertEquals(ideal, result.get("jump")[0], 0.02);
+        assertEquals(ideal, result.get("rendezvous")[0], 0.02);
+        assertEquals(ideal, result.get("rendezvous")[1], 0.02);
+    }
+
+    @Test
+    void testHotKeySplitting() {
+        List<MessageQueue> queues = queues(8, 8);
+        int keys = 10_000;
+        // Zipf(s=1.1)：少数订单占了大部分消息
+        double[] cumulative = new double[keys];
+        double sum = 0;
+        for (int k = 0; k < keys; k++) {
+            sum += 1 / Math.pow(k + 1, 1.1);
+            cumulative[k] = sum;
+        }
+        Set<Object> hotKeys = new HashSet<>(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+        SkewTrackingSelector plain = new SkewTrackingSelector(new JumpHashSelector());
+        SkewTrackingSelector split = new SkewTrackingSelector(
+            new HotKeySplittingSelector(new JumpHashSelector(), hotKeys::contains, 8));
+        Random random = new Random(42);
+        for (int i = 0; i < 500_000; i++) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            int key = index >= 0 ? index : -index - 1;
+            plain.select(queues, MESSAGE, key);
+            split.select(queues, MESSAGE, key);
+        }
+        SkewTrackingSelector.SkewReport before = plain.report(queues);
+        SkewTrackingSelector.SkewReport after = split.report(queues);
+        System.out.println("== Zipf(1.1) 500000 条消息 ==");
+        System.out.printf("%-12s %s%n", "jump", before);
+        System.out.printf("%-12s %s%n", "jump+split", after);
+
+        assertTrue(after.getMaxToMean() < before.getMaxToMean());
+        assertTrue(after.getCoefficientOfVariation() < before.getCoefficientOfVariation() / 2);
+    }
+
+    @Test
+    void testSameKeySameQueue() {
+        List<MessageQueue> queues = queues(8, 8);
+        for (MessageQueueSelector selector : strategies().values()) {
+            for (int orderId = 0; orderId < 1000; orderId++) {
+                assertEquals(selector.select(queues, MESSAGE, orderId), selector.select(queues, MESSAGE, orderId));
+            }
+        }
+        // int、long、String 形式的同一个订单号落在同一个队列
+        JumpHashSelector jump = new JumpHashSelector();
+        assertEquals(jump.select(queues, MESSAGE, 42), jump.select(queues, MESSAGE, 42L));
+        assertEquals(jump.select(queues, MESSAGE, 42), jump.select(queues, MESSAGE, "42"));
+        // 19 位的雪花 id 与 long 边界
+        for (long orderId : new long[]{1580000000000000000L, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            assertEquals(KeyHashing.hash64(orderId), KeyHashing.hash64(String.valueOf(orderId)));
+        }
+        assertNotEquals(KeyHashing.hash64(Long.MAX_VALUE), KeyHashing.hash64("9223372036854775808"));
+    }
+}
@@ -0,0 +1,138 @@
+package com.xiaofu.mq.v5.consumer;
+
+import com.xiaofu.mq.compress.BodyCodec;
+import com.xiaofu.mq.compress.BodyDecompressor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.apis.consumer.ConsumeResult;
+import org.apache.rocketmq.client.apis.consumer.MessageListener;
+import org.apache.rocketmq.client.apis.message.MessageId;
+import org.apache.rocketmq.client.apis.message.MessageView;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 5.x MessageListener 的解压包装，与 AsyncBatchingProducer 的 compressor 配合使用
+ *
+ * 业务拿到的 MessageView.getBody() 是解压后的消息体，getProperties() 里不再有压缩属性。
+ * 解压结果放在消费线程复用的缓冲区里，只在 consume 返回前有效；要把消息体交给其它线程或留到之后的，自己拷贝一份。
+ * 解压失败（字典还没分发到本机、数据损坏）时返回 FAILURE，由 broker 重新投递，不把压缩数据交给业务。
+ * PushConsumer 和 SimpleConsumerRunner 都可以直接使用，可以和 IdempotentMessageListener 任意嵌套
+ **/
+@Slf4j
+public class DecompressingMessageListener implements MessageListener {
+
+    private final MessageListener delegate;
+
+    private final BodyDecompressor decompressor;
+
+    public DecompressingMessageListener(MessageListener delegate, BodyDecompressor decompressor) {
+        this.delegate = delegate;
+        this.decompressor = decompressor;
+    }
+
+    @Override
+    public ConsumeResult consume(MessageView message) {
+        Map<String, String> properties = message.getProperties();
+        if (!BodyDecompressor.isCompressed(properties)) {
+            return delegate.consume(message);
+        }
+        ByteBuffer body;
+        try {
+            body = decompressor.decompress(message.getBody(), properties);
+        } catch (IllegalArgumentException e) {
+            log.error("Decompress message {} failed", message.getMessageId(), e);
+            return ConsumeResult.FAILURE;
+        }
+        Map<String, String> plain = new HashMap<>(properties);
+        plain.remove(BodyCodec.PROPERTY);
+        plain.remove(BodyCodec.DICTIONARY_PROPERTY);
+        return delegate.consume(new DecompressedMessageView(message, body, plain));
+    }
+
+    /**
+     * 替换了消息体和属性，其余都取原消息
+     */
+    private static final class DecompressedMessageView implements MessageView {
+        private final MessageView message;
+        private final ByteBuffer body;
+        private final Map<String, String> properties;
+
+        DecompressedMessageView(MessageView message, ByteBuffer body, Map<String, String> properties) {
+            this.message = message;
+            this.body = body;
+            this.properties = properties;
+        }
+
+        @Override
+        public MessageId getMessageId() {
+            return message.getMessageId();
+        }
+
+        @Override
+        public String getTopic() {
+            return message.getTopic();
+        }
+
+        @Override
+        public ByteBuffer getBody() {
+            return body.duplicate();
+        }
+
+        @Override
+        public Map<String, String> getProperties() {
+            return properties;
+        }
+
+        @Override
+        public Optional<String> getTag() {
+            return message.getTag();
+        }
+
+        @Override
+        public Collection<String> getKeys() {
+            return message.getKeys();
+        }
+
+        @Override
+        public Optional<String> getMessageGroup() {
+            return message.getMessageGroup();
+        }
+
+        @Override
+        public Optional<Long> getDeliveryTimestamp() {
+            return message.getDeliveryTimestamp();
+        }
+
+        @Override
+        public String getBornHost() {
+            return message.getBornHost();
+        }
+
+        @Override
+        public Optional<String> getTraceContext() {
+            return message.getTraceContext();
+        }
+
+        @Override
+        public long getBornTimestamp() {
+            return message.getBornTimestamp();
+        }
+
+        @Override
+        public int getDeliveryAttempt() {
+            return message.getDeliveryAttempt();
+        }
+
+        @Override
+        public String toString() {
+            return message.toString();
+        }
+    }
+}
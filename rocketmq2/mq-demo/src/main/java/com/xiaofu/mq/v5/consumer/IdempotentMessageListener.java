@@ -0,0 +1,72 @@
+package com.xiaofu.mq.v5.consumer;
+
+import com.xiaofu.mq.dedup.MessageDeduplicator;
+import org.apache.rocketmq.client.apis.consumer.ConsumeResult;
+import org.apache.rocketmq.client.apis.consumer.MessageListener;
+import org.apache.rocketmq.client.apis.message.MessageView;
+
+import java.util.function.Function;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 5.x MessageListener 的幂等包装，与 4.x 的 IdempotentMessageListenerOrderly 共用 MessageDeduplicator
+ *
+ * - 已消费过的消息直接返回 SUCCESS，不交给业务
+ * - 同一条消息正在处理（ack 超时后被重新投递）时返回 FAILURE，等 broker 稍后再投，不会并发执行两次
+ * - 业务成功后记为已消费，失败或抛异常时放开，重新投递时再次消费
+ * PushConsumer 和 SimpleConsumerRunner 都可以直接使用
+ **/
+public class IdempotentMessageListener implements MessageListener {
+
+    private final MessageListener delegate;
+
+    private final MessageDeduplicator deduplicator;
+
+    private final Function<MessageView, String> keyExtractor;
+
+    public IdempotentMessageListener(MessageListener delegate, MessageDeduplicator deduplicator) {
+        this(delegate, deduplicator, IdempotentMessageListener::defaultKey);
+    }
+
+    public IdempotentMessageListener(MessageListener delegate, MessageDeduplicator deduplicator,
+                                     Function<MessageView, String> keyExtractor) {
+        this.delegate = delegate;
+        this.deduplicator = deduplicator;
+        this.keyExtractor = keyExtractor;
+    }
+
+    /**
+     * 默认用 messageId：由生产者生成，重试投递不变。业务 key 同一订单的多条消息共用，需要时通过 keyExtractor 指定
+     */
+    public static String defaultKey(MessageView message) {
+        return message.getMessageId().toString();
+    }
+
+    @Override
+    public ConsumeResult consume(MessageView message) {
+        String key = keyExtractor.apply(message);
+        switch (deduplicator.begin(key)) {
+            case DUPLICATE:
+                return ConsumeResult.SUCCESS;
+            case IN_PROGRESS:
+                return ConsumeResult.FAILURE;
+            default:
+                break;
+        }
+        ConsumeResult result;
+        try {
+            result = delegate.consume(message);
+        } catch (RuntimeException e) {
+            deduplicator.abort(key);
+            throw e;
+        }
+        if (result == ConsumeResult.SUCCESS) {
+            deduplicator.commit(key);
+        } else {
+            deduplicator.abort(key);
+        }
+        return result;
+    }
+}
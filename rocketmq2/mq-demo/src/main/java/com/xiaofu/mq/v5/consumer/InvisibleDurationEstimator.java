@@ -0,0 +1,59 @@
+package com.xiaofu.mq.v5.consumer;
+
+import java.time.Duration;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 根据实测的处理耗时估算 receive 的不可见时间
+ *
+ * 与 TCP 重传超时的估算方式相同：平滑均值 + 4 倍平均偏差，再限制在 [min, max] 内。
+ * 不可见时间太短，消息处理完之前就被重新投递，ack 也会因句柄过期失败；太长，消费者宕机后消息要很久才能被别人拿到
+ **/
+public class InvisibleDurationEstimator {
+
+    private final long minMillis;
+
+    private final long maxMillis;
+
+    private double smoothed;
+
+    private double deviation;
+
+    private boolean sampled;
+
+    private volatile long currentMillis;
+
+    public InvisibleDurationEstimator(long initialMillis, long minMillis, long maxMillis) {
+        if (minMillis <= 0 || minMillis > maxMillis) {
+            throw new IllegalArgumentException("require 0 < minMillis <= maxMillis");
+        }
+        this.minMillis = minMillis;
+        this.maxMillis = maxMillis;
+        this.currentMillis = clamp(initialMillis);
+    }
+
+    /**
+     * 记录一条消息从拉取到处理完成的耗时（包括在本地排队的时间）
+     */
+    public synchronized void record(long elapsedMillis) {
+        if (!sampled) {
+            smoothed = elapsedMillis;
+            deviation = elapsedMillis / 2.0;
+            sampled = true;
+        } else {
+            deviation = 0.75 * deviation + 0.25 * Math.abs(smoothed - elapsedMillis);
+            smoothed = 0.875 * smoothed + 0.125 * elapsedMillis;
+        }
+        currentMillis = clamp((long) Math.ceil(smoothed + 4 * deviation));
+    }
+
+    public Duration current() {
+        return Duration.ofMillis(currentMillis);
+    }
+
+    private long clamp(long millis) {
+        return Math.max(minMillis, Math.min(maxMillis, millis));
+    }
+}
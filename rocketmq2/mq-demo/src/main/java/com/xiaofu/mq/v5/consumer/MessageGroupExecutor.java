@@ -0,0 +1,121 @@
+package com.xiaofu.mq.v5.consumer;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 按 messageGroup 串行、组之间并行的执行器
+ *
+ * 每个有待处理消息的组一条 lane，lane 在共享的有界线程池上执行，同一组的任务按提交顺序逐个执行：
+ * - 组空闲后 lane 立即回收，空闲组不占线程也不占内存；活跃组只占一个 lane 对象和一个小数组
+ * - lane 每执行 LANE_BATCH 个任务让出线程，慢组最多占住一个线程，不会拖住其它组
+ * - 组内某个任务失败后，本组已排队的后续任务全部跳过（不执行），保证不会越过失败的消息；lane 回收后重新开始
+ **/
+public class MessageGroupExecutor {
+
+    /**
+     * lane 每次连续执行的任务数，之后让出线程
+     */
+    private static final int LANE_BATCH = 32;
+
+    private final Executor pool;
+
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    public MessageGroupExecutor(Executor pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 入队与 lane 回收都在 compute 内完成，同一个组的两者互斥，不会把任务放进已回收的 lane
+     */
+    public void execute(String group, GroupTask task) {
+        lanes.compute(group, (k, lane) -> {
+            if (lane == null) {
+                lane = new Lane(k);
+                lane.offer(task);
+                pool.execute(lane);
+            } else {
+                lane.offer(task);
+            }
+            return lane;
+        });
+    }
+
+    /**
+     * 当前有待处理任务的组数
+     */
+    public int getActiveGroups() {
+        return lanes.size();
+    }
+
+    /**
+     * 组内的一个任务
+     */
+    public interface GroupTask {
+        /**
+         * @return false 表示失败，本组后续已排队的任务改为调用 skip
+         */
+        boolean run();
+
+        /**
+         * 同组前面的任务失败，本任务不执行
+         */
+        void skip();
+    }
+
+    /**
+     * 单个组的待执行任务，任意时刻最多只在一个线程上执行
+     */
+    private final class Lane implements Runnable {
+        final String group;
+        final ArrayDeque<GroupTask> tasks = new ArrayDeque<>(4);
+        boolean failed;
+
+        Lane(String group) {
+            this.group = group;
+        }
+
+        synchronized void offer(GroupTask task) {
+            tasks.add(task);
+        }
+
+        synchronized GroupTask poll() {
+            return tasks.poll();
+        }
+
+        synchronized boolean isEmpty() {
+            return tasks.isEmpty();
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < LANE_BATCH; i++) {
+                GroupTask task = poll();
+                if (task == null) {
+                    // 确认仍为空才回收，否则继续处理
+                    if (lanes.compute(group, (k, lane) -> isEmpty() ? null : lane) == null) {
+                        return;
+                    }
+                    continue;
+                }
+                if (failed) {
+                    task.skip();
+                    continue;
+                }
+                try {
+                    failed = !task.run();
+                } catch (RuntimeException e) {
+                    failed = true;
+                }
+            }
+            // 让出线程，排到其它 lane 后面
+            pool.execute(this);
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package com.xiaofu.mq.v5.consumer;
+
+import com.xiaofu.mq.metrics.MessagingMetrics;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.apis.ClientException;
+import org.apache.rocketmq.client.apis.consumer.ConsumeResult;
+import org.apache.rocketmq.client.apis.consumer.MessageListener;
+import org.apache.rocketmq.client.apis.consumer.SimpleConsumer;
+import org.apache.rocketmq.client.apis.message.MessageView;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 有界、带背压的 SimpleConsumer 消费循环
+ *
+ * MqConsumerTest.testSimpleConsumerAsync 在死循环里不停调用 receiveAsync，回调交给两个 cachedThreadPool，
+ * 消息一多线程数和 future 数都没有上限。这里：
+ * - 固定 receivers 个拉取线程，同一时刻最多 receivers 个 receive 请求在途
+ * - 已拉取未 ack 的消息数不超过 maxBuffered，达到上限时不再发起 receive（背压），内存占用稳定
+ * - 消息交给固定大小的线程池处理，处理成功的消息进入 ack 队列，由单独的 ack 线程攒批后统一发出
+ * - receive 的不可见时间由 InvisibleDurationEstimator 按实测耗时调整
+ * - 处理失败的消息把不可见时间改为 retryBackoff，稍后重新投递，而不是等满整个不可见时间
+ * - 顺序消息按 messageGroup 进入 MessageGroupExecutor 的 lane：同一组串行，不同组在同一个线程池上并行；
+ *   组内某条失败时，本组已拉取的后续消息不处理，一起等待重新投递
+ *
+ * 关闭时停止拉取、等待已拉取的消息处理并 ack 完毕，不负责关闭底层 SimpleConsumer
+ **/
+@Slf4j
+public class SimpleConsumerRunner implements Closeable {
+
+    private final SimpleConsumer consumer;
+
+    private final MessageListener listener;
+
+    private final Options options;
+
+    private final InvisibleDurationEstimator estimator;
+
+    /**
+     * 已拉取（或正在拉取）但还没 ack 完成的消息数
+     */
+    private final Semaphore buffered;
+
+    private final ExecutorService workers;
+
+    private final MessageGroupExecutor groups;
+
+    private final BlockingQueue<MessageView> acks = new LinkedBlockingQueue<>();
+
+    private final List<Thread> receivers = new ArrayList<>();
+
+    private final AtomicLong received = new AtomicLong();
+
+    private final AtomicLong succeeded = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong expired = new AtomicLong();
+
+    private final AtomicLong skipped = new AtomicLong();
+
+    private final AtomicLong acked = new AtomicLong();
+
+    private final AtomicLong ackFailed = new AtomicLong();
+
+    private volatile boolean running;
+
+    private Thread acker;
+
+    public SimpleConsumerRunner(SimpleConsumer consumer, MessageListener listener) {
+        this(consumer, listener, Options.builder().build());
+    }
+
+    public SimpleConsumerRunner(SimpleConsumer consumer, MessageListener listener, Options options) {
+        if (options.getBatchSize() > options.getMaxBuffered()) {
+            throw new IllegalArgumentException("batchSize must not exceed maxBuffered");
+        }
+        this.consumer = consumer;
+        this.listener = listener;
+        this.options = options;
+        this.estimator = new InvisibleDurationEstimator(options.getInitialInvisibleMillis(),
+            options.getMinInvisibleMillis(), options.getMaxInvisibleMillis());
+        this.buffered = new Semaphore(options.getMaxBuffered());
+        AtomicInteger threadIndex = new AtomicInteger();
+        // 队列长度不会超过 maxBuffered，由 buffered 许可保证，不会触发拒绝
+        this.workers = new ThreadPoolExecutor(options.getWorkerThreads(), options.getWorkerThreads(), 0,
+            TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(options.getMaxBuffered()),
+            r -> new Thread(r, "simple-consumer-worker-" + threadIndex.incrementAndGet()));
+        this.groups = new MessageGroupExecutor(workers);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < options.getReceivers(); i++) {
+            Thread receiver = new Thread(this::receiveLoop, "simple-consumer-receiver-" + i);
+            receivers.add(receiver);
+            receiver.start();
+        }
+        acker = new Thread(this::ackLoop, "simple-consumer-acker");
+        acker.start();
+    }
+
+    private void receiveLoop() {
+        int batchSize = options.getBatchSize();
+        while (running) {
+            try {
+                // 背压：本地放不下一整批时不发起 receive
+                if (!buffered.tryAcquire(batchSize, 100, TimeUnit.MILLISECONDS)) {
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            Duration invisibleDuration = estimator.current();
+            List<MessageView> messages;
+            try {
+                messages = consumer.receive(batchSize, invisibleDuration);
+            } catch (ClientException | RuntimeException e) {
+                // 流控等原因拉取失败，稍后重试
+                buffered.release(batchSize);
+                log.warn("Receive failed", e);
+                sleepQuietly(options.getRetryBackoffMillis());
+                continue;
+            }
+            buffered.release(batchSize - messages.size());
+            long receivedAt = System.currentTimeMillis();
+            received.addAndGet(messages.size());
+            long invisibleMillis = invisibleDuration.toMillis();
+            for (MessageView message : messages) {
+                // 定时消息从投递时间算起
+                options.getMetrics().received(message.getDeliveryTimestamp().orElse(message.getBornTimestamp()));
+                if (!message.getMessageGroup().isPresent()) {
+                    workers.execute(() -> process(message, receivedAt, invisibleMillis));
+                    continue;
+                }
+                // 顺序消息：同一组串行，组之间并行
+                groups.execute(message.getMessageGroup().get(), new MessageGroupExecutor.GroupTask() {
+                    @Override
+                    public boolean run() {
+                        return process(message, receivedAt, invisibleMillis);
+                    }
+
+                    @Override
+                    public void skip() {
+                        skipped.incrementAndGet();
+                        redeliverLater(message);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * @return 是否处理成功
+     */
+    private boolean process(MessageView message, long receivedAt, long invisibleMillis) {
+        long start = options.getMetrics().consumeStarted();
+        ConsumeResult result;
+        try {
+            result = listener.consume(message);
+        } catch (RuntimeException e) {
+            log.warn("Consume failed, messageId={}", message.getMessageId(), e);
+            result = ConsumeResult.FAILURE;
+        }
+        options.getMetrics().consumeCompleted(start, result == ConsumeResult.SUCCESS);
+        long elapsed = System.currentTimeMillis() - receivedAt;
+        estimator.record(elapsed);
+        if (elapsed >= invisibleMillis) {
+            // 已经过了不可见时间，消息可能被重新投递给别的消费者，ack 大概率失败
+            expired.incrementAndGet();
+        }
+        if (result == ConsumeResult.SUCCESS) {
+            succeeded.incrementAndGet();
+            acks.add(message);
+            return true;
+        }
+        failed.incrementAndGet();
+        redeliverLater(message);
+        return false;
+    }
+
+    /**
+     * 不 ack，把不可见时间改为 retryBackoff，稍后由 broker 重新投递
+     */
+    private void redeliverLater(MessageView message) {
+        CompletableFuture<Void> future;
+        try {
+            future = consumer.changeInvisibleDurationAsync(message,
+                Duration.ofMillis(options.getRetryBackoffMillis()));
+        } catch (RuntimeException e) {
+            buffered.release();
+            return;
+        }
+        future.whenComplete((v, e) -> buffered.release());
+    }
+
+    private void ackLoop() {
+        List<MessageView> batch = new ArrayList<>(options.getAckBatchSize());
+        while (true) {
+            try {
+                MessageView first = acks.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // 攒够一批或等满 ackLingerMillis 后统一发出
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.getAckLingerMillis());
+                while (batch.size() < options.getAckBatchSize()) {
+                    acks.drainTo(batch, options.getAckBatchSize() - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= options.getAckBatchSize() || remaining <= 0) {
+                        break;
+                    }
+                    MessageView next = acks.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // 关闭时先把手上的一批发掉
+                acks.drainTo(batch);
+                ackAll(batch);
+                return;
+            }
+            ackAll(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * 5.x 客户端没有批量 ack 接口，一批内逐条 ackAsync，不等待单条结果
+     */
+    private void ackAll(List<MessageView> batch) {
+        MessagingMetrics metrics = options.getMetrics();
+        for (MessageView message : batch) {
+            long start = metrics.ackStarted();
+            CompletableFuture<Void> future;
+            try {
+                future = consumer.ackAsync(message);
+            } catch (RuntimeException e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+            future.whenComplete((v, e) -> {
+                metrics.ackCompleted(start, e == null);
+                if (e != null) {
+                    // ack 失败的消息在不可见时间过后重新投递
+                    ackFailed.incrementAndGet();
+                    log.warn("Ack failed, messageId={}", message.getMessageId(), e);
+                } else {
+                    acked.incrementAndGet();
+                }
+                buffered.release();
+            });
+        }
+    }
+
+    public long getReceived() {
+        return received.get();
+    }
+
+    public long getSucceeded() {
+        return succeeded.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * 处理完成时已超过不可见时间的消息数
+     */
+    public long getExpired() {
+        return expired.get();
+    }
+
+    /**
+     * 同组前面的消息失败而没有处理、等待重新投递的顺序消息数
+     */
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * 当前有待处理消息的 messageGroup 数
+     */
+    public int getActiveGroups() {
+        return groups.getActiveGroups();
+    }
+
+    public long getAcked() {
+        return acked.get();
+    }
+
+    public long getAckFailed() {
+        return ackFailed.get();
+    }
+
+    /**
+     * 当前已拉取未 ack 的消息数（包括正在进行的 receive 预留的名额）
+     */
+    public int getBuffered() {
+        return options.getMaxBuffered() - buffered.availablePermits();
+    }
+
+    /**
+     * 下一次 receive 使用的不可见时间
+     */
+    public Duration getInvisibleDuration() {
+        return estimator.current();
+    }
+
+    /**
+     * 停止拉取，等待已拉取的消息处理并 ack 完毕；超时未完成的消息在不可见时间过后由 broker 重新投递
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+        }
+        try {
+            for (Thread receiver : receivers) {
+                receiver.join();
+            }
+            if (buffered.tryAcquire(options.getMaxBuffered(), options.getShutdownTimeoutMillis(),
+                TimeUnit.MILLISECONDS)) {
+                buffered.release(options.getMaxBuffered());
+            } else {
+                log.warn("{} messages still not acked after shutdown timeout", getBuffered());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        acker.interrupt();
+        workers.shutdownNow();
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 消费循环参数
+     */
+    @Getter
+    @Builder
+    public static class Options {
+        /**
+         * 拉取线程数，即同时在途的 receive 请求数
+         */
+        @Builder.Default
+        private final int receivers = 2;
+        /**
+         * 单次 receive 最多拉取的消息数
+         */
+        @Builder.Default
+        private final int batchSize = 16;
+        /**
+         * 最多已拉取未 ack 的消息数
+         */
+        @Builder.Default
+        private final int maxBuffered = 256;
+        @Builder.Default
+        private final int workerThreads = 8;
+        /**
+         * ack 攒批的条数上限与最长等待时间
+         */
+        @Builder.Default
+        private final int ackBatchSize = 64;
+        @Builder.Default
+        private final long ackLingerMillis = 10;
+        @Builder.Default
+        private final long initialInvisibleMillis = 30_000;
+        @Builder.Default
+        private final long minInvisibleMillis = 10_000;
+        @Builder.Default
+        private final long maxInvisibleMillis = 300_000;
+        /**
+         * 处理失败或拉取失败后的重试间隔
+         */
+        @Builder.Default
+        private final long retryBackoffMillis = 1000;
+        @Builder.Default
+        private final long shutdownTimeoutMillis = 30_000;
+        /**
+         * 端到端延迟、消费耗时、ack 延迟和在途数，默认不记录
+         */
+        @Builder.Default
+        private final MessagingMetrics metrics = MessagingMetrics.disabled();
+    }
+}
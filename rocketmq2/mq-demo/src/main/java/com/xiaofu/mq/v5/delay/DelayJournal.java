@@ -0,0 +1,225 @@
+package com.xiaofu.mq.v5.delay;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.apis.ClientServiceProvider;
+import org.apache.rocketmq.client.apis.message.Message;
+import org.apache.rocketmq.client.apis.message.MessageBuilder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 定时消息的本地追加日志，进程重启后恢复未发送的定时消息
+ *
+ * 每条记录：类型(1) + id(8)，ADD 记录再跟到期时间和消息内容；发送成功后追加 DONE。
+ * 写入先进缓冲区，由调用方按固定间隔 flush（组提交），进程崩溃最多丢失一个间隔内的记录。
+ * 恢复时按 id 去重，尾部写了一半的记录直接丢弃；文件过大时用仍未发送的消息重写（compact）
+ **/
+@Slf4j
+final class DelayJournal implements Closeable {
+
+    private static final byte ADD = 1;
+
+    private static final byte DONE = 2;
+
+    private final Path file;
+
+    private FileOutputStream fileOut;
+
+    private DataOutputStream out;
+
+    /**
+     * 打开时的文件大小，之后写入的字节数由 out.size() 统计
+     */
+    private long baseSize;
+
+    private DelayJournal(Path file) throws IOException {
+        this.file = file;
+        open();
+    }
+
+    /**
+     * 读取已有日志并重写为只包含未发送的记录
+     *
+     * @param recovered 返回恢复出的记录，按写入顺序
+     */
+    static DelayJournal open(Path file, Map<Long, Record> recovered) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        if (Files.exists(file)) {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+                replay(new DataInputStream(in), recovered);
+            }
+        }
+        DelayJournal journal = new DelayJournal(file);
+        journal.rewrite(recovered.values());
+        return journal;
+    }
+
+    private static void replay(DataInputStream in, Map<Long, Record> records) throws IOException {
+        ClientServiceProvider provider = ClientServiceProvider.loadService();
+        while (true) {
+            try {
+                byte type = in.readByte();
+                long id = in.readLong();
+                if (type == ADD) {
+                    long deliverAt = in.readLong();
+                    records.put(id, new Record(id, deliverAt, readMessage(in, provider.newMessageBuilder())));
+                } else if (type == DONE) {
+                    records.remove(id);
+                } else {
+                    log.warn("Corrupted delay journal record, type={}, stop replay", type);
+                    return;
+                }
+            } catch (EOFException e) {
+                // 正常结束，或者崩溃时最后一条只写了一半
+                return;
+            }
+        }
+    }
+
+    private void open() throws IOException {
+        fileOut = new FileOutputStream(file.toFile(), true);
+        out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024));
+        baseSize = Files.size(file);
+    }
+
+    synchronized void appendAdd(long id, long deliverAt, Message message) throws IOException {
+        out.writeByte(ADD);
+        out.writeLong(id);
+        out.writeLong(deliverAt);
+        writeMessage(out, message);
+    }
+
+    synchronized void appendDone(long id) throws IOException {
+        out.writeByte(DONE);
+        out.writeLong(id);
+    }
+
+    /**
+     * 把缓冲区写入文件，sync 为 true 时同时刷盘
+     */
+    synchronized void flush(boolean sync) throws IOException {
+        out.flush();
+        if (sync) {
+            fileOut.getChannel().force(false);
+        }
+    }
+
+    /**
+     * 当前文件大小（包括未 flush 的部分）
+     */
+    synchronized long size() {
+        return baseSize + out.size();
+    }
+
+    /**
+     * 用给定的未发送记录重写日志：先写临时文件并刷盘，再原子替换
+     */
+    synchronized void rewrite(Collection<Record> live) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream tmpOut = new FileOutputStream(tmp.toFile())) {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(tmpOut, 64 * 1024));
+            for (Record record : live) {
+                data.writeByte(ADD);
+                data.writeLong(record.id);
+                data.writeLong(record.deliverAt);
+                writeMessage(data, record.message);
+            }
+            data.flush();
+            tmpOut.getChannel().force(false);
+        }
+        out.close();
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        open();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.flush();
+        fileOut.getChannel().force(false);
+        out.close();
+    }
+
+    private static void writeMessage(DataOutputStream out, Message message) throws IOException {
+        out.writeUTF(message.getTopic());
+        out.writeUTF(message.getTag().orElse(""));
+        out.writeUTF(message.getMessageGroup().orElse(""));
+        Collection<String> keys = message.getKeys();
+        out.writeShort(keys.size());
+        for (String key : keys) {
+            out.writeUTF(key);
+        }
+        Map<String, String> properties = message.getProperties();
+        out.writeShort(properties.size());
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            out.writeUTF(property.getKey());
+            out.writeUTF(property.getValue());
+        }
+        ByteBuffer body = message.getBody().duplicate();
+        out.writeInt(body.remaining());
+        if (body.hasArray()) {
+            out.write(body.array(), body.arrayOffset() + body.position(), body.remaining());
+        } else {
+            byte[] bytes = new byte[body.remaining()];
+            body.get(bytes);
+            out.write(bytes);
+        }
+    }
+
+    private static Message readMessage(DataInputStream in, MessageBuilder builder) throws IOException {
+        builder.setTopic(in.readUTF());
+        String tag = in.readUTF();
+        if (!tag.isEmpty()) {
+            builder.setTag(tag);
+        }
+        String group = in.readUTF();
+        if (!group.isEmpty()) {
+            builder.setMessageGroup(group);
+        }
+        String[] keys = new String[in.readShort()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = in.readUTF();
+        }
+        if (keys.length > 0) {
+            builder.setKeys(keys);
+        }
+        int properties = in.readShort();
+        for (int i = 0; i < properties; i++) {
+            builder.addProperty(in.readUTF(), in.readUTF());
+        }
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+        return builder.setBody(body).build();
+    }
+
+    /**
+     * 日志里的一条未发送记录
+     */
+    static final class Record {
+        final long id;
+        final long deliverAt;
+        final Message message;
+
+        Record(long id, long deliverAt, Message message) {
+            this.id = id;
+            this.deliverAt = deliverAt;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package com.xiaofu.mq.v5.delay;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.apis.ClientServiceProvider;
+import org.apache.rocketmq.client.apis.message.Message;
+import org.apache.rocketmq.client.apis.message.MessageBuilder;
+import org.apache.rocketmq.client.apis.producer.Producer;
+import org.apache.rocketmq.client.apis.producer.SendReceipt;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 客户端延迟投递：短延迟放在本地分层时间轮里，到期后再交给 Producer 发送
+ *
+ * delay.MqDelayProducerTest 每条延迟消息都走 broker 的定时消息（setDeliveryTimestamp），
+ * 大量秒级的重试消息会压垮 broker 的 timer 存储。这里：
+ * - 延迟不超过 brokerThresholdMillis 的消息在本地时间轮里等待，到期后以普通消息发送
+ * - 超过阈值的消息直接设置 deliveryTimestamp 交给 broker，本地不占内存
+ * - 到期的消息成批交给发送线程，以 sendAsync 流水线发出，在途请求数受 maxInFlight 限制
+ * - 本地等待的消息写入追加日志（journalFile），重启后恢复；发送成功后记 DONE，日志过大时压缩
+ * - 发送失败的消息推后 retryBackoffMillis 重新进入时间轮，不会丢
+ *
+ * 同一个 topic 既要接收本地到期的普通消息也要接收 broker 定时消息，topic 类型需要是 MIXED（或关闭类型校验）。
+ * 投递语义是至少一次：发送成功但 DONE 还没落盘时进程崩溃，重启后会再发一次
+ **/
+@Slf4j
+public class DelayScheduler implements Closeable {
+
+    /**
+     * 每个发送任务包含的到期消息数
+     */
+    private static final int SEND_CHUNK = 256;
+
+    private final Producer producer;
+
+    private final Options options;
+
+    private final ClientServiceProvider provider = ClientServiceProvider.loadService();
+
+    private final DelayQueue<TimerBucket> buckets = new DelayQueue<>();
+
+    private final TimingWheel wheel;
+
+    /**
+     * add 持读锁可以并发；推进时钟持写锁
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, TimerEntry> pending = new ConcurrentHashMap<>();
+
+    private final DelayJournal journal;
+
+    private final AtomicLong ids = new AtomicLong();
+
+    private final ExecutorService senders;
+
+    /**
+     * 在途的 sendAsync 请求数
+     */
+    private final Semaphore inFlight;
+
+    private final ScheduledExecutorService journalFlusher;
+
+    private final Thread ticker;
+
+    private final LongAdder sent = new LongAdder();
+
+    private final LongAdder retried = new LongAdder();
+
+    private final LongAdder viaBroker = new LongAdder();
+
+    private final LongAdder fired = new LongAdder();
+
+    private final LongAdder totalLateness = new LongAdder();
+
+    private final AtomicLong maxLateness = new AtomicLong();
+
+    private volatile boolean running = true;
+
+    public DelayScheduler(Producer producer) throws IOException {
+        this(producer, Options.builder().build());
+    }
+
+    public DelayScheduler(Producer producer, Options options) throws IOException {
+        this.producer = producer;
+        this.options = options;
+        this.wheel = new TimingWheel(options.getTickMillis(), options.getWheelSize(), System.currentTimeMillis(),
+            buckets);
+        this.inFlight = new Semaphore(options.getMaxInFlight());
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.senders = new ThreadPoolExecutor(options.getSenderThreads(), options.getSenderThreads(), 0,
+            TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+            r -> new Thread(r, "delay-scheduler-sender-" + threadIndex.incrementAndGet()));
+        Map<Long, DelayJournal.Record> recovered = new LinkedHashMap<>();
+        if (options.getJournalFile() != null) {
+            this.journal = DelayJournal.open(options.getJournalFile(), recovered);
+            this.journalFlusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "delay-scheduler-journal");
+                thread.setDaemon(true);
+                return thread;
+            });
+            journalFlusher.scheduleWithFixedDelay(this::flushJournal, options.getJournalFlushMillis(),
+                options.getJournalFlushMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            this.journal = null;
+            this.journalFlusher = null;
+        }
+        this.ticker = new Thread(this::tickLoop, "delay-scheduler-ticker");
+        ticker.start();
+        // 恢复上次未发送的消息，已过期的立即发送
+        for (DelayJournal.Record record : recovered.values()) {
+            ids.accumulateAndGet(record.id, Math::max);
+            TimerEntry entry = new TimerEntry(record.id, record.deliverAt, record.message, new CompletableFuture<>());
+            pending.put(entry.id, entry);
+            addOrFire(entry);
+        }
+        if (!recovered.isEmpty()) {
+            log.info("Recovered {} delayed messages from {}", recovered.size(), options.getJournalFile());
+        }
+    }
+
+    public CompletableFuture<SendReceipt> schedule(Message message, Duration delay) {
+        return schedule(message, System.currentTimeMillis() + delay.toMillis());
+    }
+
+    /**
+     * 在 deliverAtMillis 投递消息，future 在消息真正发送成功后完成
+     */
+    public CompletableFuture<SendReceipt> schedule(Message message, long deliverAtMillis) {
+        if (!running) {
+            throw new IllegalStateException("scheduler closed");
+        }
+        if (deliverAtMillis - System.currentTimeMillis() > options.getBrokerThresholdMillis()) {
+            viaBroker.increment();
+            return producer.sendAsync(withDeliveryTimestamp(message, deliverAtMillis));
+        }
+        TimerEntry entry = new TimerEntry(ids.incrementAndGet(), deliverAtMillis, message, new CompletableFuture<>());
+        // 先进 pending 再写日志，compact 时的快照不会漏掉已写日志的消息
+        pending.put(entry.id, entry);
+        if (journal != null) {
+            try {
+                journal.appendAdd(entry.id, deliverAtMillis, message);
+            } catch (IOException e) {
+                pending.remove(entry.id);
+                entry.future.completeExceptionally(e);
+                return entry.future;
+            }
+        }
+        addOrFire(entry);
+        return entry.future;
+    }
+
+    private void addOrFire(TimerEntry entry) {
+        boolean added;
+        lock.readLock().lock();
+        try {
+            added = wheel.add(entry);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!added) {
+            fire(Collections.singletonList(entry));
+        }
+    }
+
+    /**
+     * 到期的消息按 SEND_CHUNK 条一组交给发送线程，时钟线程不逐条提交任务
+     */
+    private void fire(List<TimerEntry> due) {
+        long now = System.currentTimeMillis();
+        for (TimerEntry entry : due) {
+            if (entry.attempts == 0) {
+                long lateness = Math.max(0, now - entry.deliverAt);
+                fired.increment();
+                totalLateness.add(lateness);
+                maxLateness.accumulateAndGet(lateness, Math::max);
+            }
+        }
+        for (int from = 0; from < due.size(); from += SEND_CHUNK) {
+            List<TimerEntry> chunk = due.subList(from, Math.min(due.size(), from + SEND_CHUNK));
+            try {
+                senders.execute(() -> chunk.forEach(this::send));
+            } catch (RuntimeException e) {
+                // 关闭中，留在日志里下次启动再发
+                log.debug("Sender rejected {} delayed messages", chunk.size());
+            }
+        }
+    }
+
+    private void send(TimerEntry entry) {
+        try {
+            // 背压：在途请求达到上限时阻塞发送线程，不影响时钟线程
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        entry.attempts++;
+        CompletableFuture<SendReceipt> future;
+        try {
+            future = producer.sendAsync(entry.message);
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        future.whenComplete((receipt, error) -> {
+            inFlight.release();
+            if (error != null) {
+                retry(entry, error);
+            } else {
+                done(entry, receipt);
+            }
+        });
+    }
+
+    private void retry(TimerEntry entry, Throwable error) {
+        if (!running) {
+            return;
+        }
+        retried.increment();
+        log.warn("Send delayed message {} failed, attempt {}, retry in {}ms", entry.id, entry.attempts,
+            options.getRetryBackoffMillis(), error);
+        entry.deliverAt = System.currentTimeMillis() + options.getRetryBackoffMillis();
+        addOrFire(entry);
+    }
+
+    private void done(TimerEntry entry, SendReceipt receipt) {
+        pending.remove(entry.id);
+        if (journal != null) {
+            try {
+                journal.appendDone(entry.id);
+            } catch (IOException e) {
+                // DONE 没写进去只会导致重启后重复发送
+                log.warn("Append DONE for delayed message {} failed", entry.id, e);
+            }
+        }
+        sent.increment();
+        entry.future.complete(receipt);
+    }
+
+    private void tickLoop() {
+        while (running) {
+            TimerBucket bucket;
+            try {
+                bucket = buckets.poll(200, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (bucket == null) {
+                continue;
+            }
+            List<TimerEntry> due = new ArrayList<>();
+            lock.writeLock().lock();
+            try {
+                while (bucket != null) {
+                    wheel.advanceClock(bucket.getExpiration());
+                    // 上层的桶到期后重新 add，落到下一层；第一层的桶到期后收集起来统一触发
+                    bucket.flush(entry -> {
+                        if (!wheel.add(entry)) {
+                            due.add(entry);
+                        }
+                    });
+                    bucket = buckets.poll();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            fire(due);
+        }
+    }
+
+    private void flushJournal() {
+        try {
+            journal.flush(options.isJournalSync());
+            if (journal.size() > options.getMaxJournalBytes()) {
+                List<DelayJournal.Record> live = new ArrayList<>(pending.size());
+                for (TimerEntry entry : pending.values()) {
+                    live.add(new DelayJournal.Record(entry.id, entry.deliverAt, entry.message));
+                }
+                journal.rewrite(live);
+            }
+        } catch (IOException e) {
+            log.warn("Flush delay journal failed", e);
+        }
+    }
+
+    private Message withDeliveryTimestamp(Message message, long deliverAtMillis) {
+        MessageBuilder builder = provider.newMessageBuilder()
+            .setTopic(message.getTopic())
+            .setDeliveryTimestamp(deliverAtMillis);
+        message.getTag().ifPresent(builder::setTag);
+        if (!message.getKeys().isEmpty()) {
+            builder.setKeys(message.getKeys().toArray(new String[0]));
+        }
+        message.getProperties().forEach(builder::addProperty);
+        ByteBuffer body = message.getBody().duplicate();
+        byte[] bytes = new byte[body.remaining()];
+        body.get(bytes);
+        return builder.setBody(bytes).build();
+    }
+
+    /**
+     * 本地等待中（含发送中）的消息数
+     */
+    public int getPending() {
+        return pending.size();
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+
+    public long getRetried() {
+        return retried.sum();
+    }
+
+    /**
+     * 超过阈值、交给 broker 定时投递的消息数
+     */
+    public long getViaBroker() {
+        return viaBroker.sum();
+    }
+
+    /**
+     * 到期触发时相对 deliverAt 的平均延后毫秒数
+     */
+    public double getAverageLatenessMillis() {
+        long count = fired.sum();
+        return count == 0 ? 0 : (double) totalLateness.sum() / count;
+    }
+
+    public long getMaxLatenessMillis() {
+        return maxLateness.get();
+    }
+
+    /**
+     * 停止触发，等待正在发送的消息结束；未到期的消息留在日志里，下次启动后继续
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        ticker.interrupt();
+        try {
+            ticker.join();
+            senders.shutdown();
+            if (!senders.awaitTermination(options.getCloseTimeoutMillis(), TimeUnit.MILLISECONDS)
+                || !inFlight.tryAcquire(options.getMaxInFlight(), options.getCloseTimeoutMillis(),
+                TimeUnit.MILLISECONDS)) {
+                log.warn("Delayed messages still sending after close timeout");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (journal != null) {
+            journalFlusher.shutdownNow();
+            journal.close();
+        }
+        IllegalStateException closed = new IllegalStateException("scheduler closed before delivery");
+        for (TimerEntry entry : pending.values()) {
+            entry.future.completeExceptionally(closed);
+        }
+    }
+
+    /**
+     * 调度参数
+     */
+    @Getter
+    @Builder
+    public static class Options {
+        /**
+         * 第一层时间轮每格的毫秒数，也是触发精度
+         */
+        @Builder.Default
+        private final long tickMillis = 1;
+        /**
+         * 每层格数，第一层覆盖 tickMillis * wheelSize，往上每层乘以 wheelSize
+         */
+        @Builder.Default
+        private final int wheelSize = 512;
+        /**
+         * 延迟超过该值的消息交给 broker 定时投递
+         */
+        @Builder.Default
+        private final long brokerThresholdMillis = 5 * 60 * 1000;
+        @Builder.Default
+        private final int senderThreads = 2;
+        /**
+         * 同时在途的 sendAsync 请求数
+         */
+        @Builder.Default
+        private final int maxInFlight = 1024;
+        @Builder.Default
+        private final long retryBackoffMillis = 1000;
+        /**
+         * 本地追加日志文件，为 null 时不持久化
+         */
+        private final Path journalFile;
+        @Builder.Default
+        private final long journalFlushMillis = 100;
+        /**
+         * flush 时是否同时刷盘
+         */
+        @Builder.Default
+        private final boolean journalSync = false;
+        /**
+         * 日志超过该大小时用未发送的消息重写
+         */
+        @Builder.Default
+        private final long maxJournalBytes = 256L * 1024 * 1024;
+        @Builder.Default
+        private final long closeTimeoutMillis = 30_000;
+    }
+}
@@ -0,0 +1,91 @@
+package com.xiaofu.mq.v5.delay;
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 时间轮的一个格子：到期时间落在同一个 tick 内的定时消息组成的双向链表
+ *
+ * 放进 DelayQueue 的是桶而不是单条消息，DelayQueue 里最多 wheelSize * 层数 个元素，
+ * 百万级定时消息的插入是 O(1)，不会因为堆里元素太多而变慢
+ **/
+final class TimerBucket implements Delayed {
+
+    /**
+     * 哨兵节点
+     */
+    private final TimerEntry root = new TimerEntry(-1, -1, null, null);
+
+    private final AtomicLong expiration = new AtomicLong(-1);
+
+    TimerBucket() {
+        root.next = root;
+        root.prev = root;
+    }
+
+    /**
+     * @return true 表示桶的到期时间变了，需要重新放进 DelayQueue
+     */
+    boolean setExpiration(long expirationMillis) {
+        return expiration.getAndSet(expirationMillis) != expirationMillis;
+    }
+
+    long getExpiration() {
+        return expiration.get();
+    }
+
+    void add(TimerEntry entry) {
+        synchronized (this) {
+            synchronized (entry) {
+                TimerEntry tail = root.prev;
+                entry.next = root;
+                entry.prev = tail;
+                entry.bucket = this;
+                tail.next = entry;
+                root.prev = entry;
+            }
+        }
+    }
+
+    void remove(TimerEntry entry) {
+        synchronized (this) {
+            synchronized (entry) {
+                if (entry.bucket == this) {
+                    entry.next.prev = entry.prev;
+                    entry.prev.next = entry.next;
+                    entry.next = null;
+                    entry.prev = null;
+                    entry.bucket = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * 取出全部消息交给 action（重新放到更低一层或直接触发），并把桶标记为未使用
+     */
+    synchronized void flush(Consumer<TimerEntry> action) {
+        TimerEntry head = root.next;
+        while (head != root) {
+            remove(head);
+            action.accept(head);
+            head = root.next;
+        }
+        expiration.set(-1);
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(Math.max(getExpiration() - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed o) {
+        return Long.compare(getExpiration(), ((TimerBucket) o).getExpiration());
+    }
+}
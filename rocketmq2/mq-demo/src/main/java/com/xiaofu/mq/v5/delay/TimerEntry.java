@@ -0,0 +1,55 @@
+package com.xiaofu.mq.v5.delay;
+
+import org.apache.rocketmq.client.apis.message.Message;
+import org.apache.rocketmq.client.apis.producer.SendReceipt;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 时间轮里的一个定时消息，同一时刻最多挂在一个 TimerBucket 的链表上
+ **/
+final class TimerEntry {
+
+    final long id;
+
+    final Message message;
+
+    final CompletableFuture<SendReceipt> future;
+
+    /**
+     * 到期时间，发送失败重试时推后
+     */
+    volatile long deliverAt;
+
+    /**
+     * 已尝试发送的次数
+     */
+    int attempts;
+
+    volatile TimerBucket bucket;
+
+    TimerEntry prev;
+
+    TimerEntry next;
+
+    TimerEntry(long id, long deliverAt, Message message, CompletableFuture<SendReceipt> future) {
+        this.id = id;
+        this.deliverAt = deliverAt;
+        this.message = message;
+        this.future = future;
+    }
+
+    /**
+     * 从所在的桶中摘除；桶可能同时在 flush，重试直到确实不在任何桶里
+     */
+    void remove() {
+        TimerBucket current = bucket;
+        while (current != null) {
+            current.remove(this);
+            current = bucket;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.xiaofu.mq.v5.delay;
+
+import java.util.concurrent.DelayQueue;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 分层时间轮
+ *
+ * 第一层每格 tickMillis，共 wheelSize 格；超出本层范围的消息放到上一层（每格是下一层一整圈），上一层按需创建。
+ * 上层的桶到期时，里面的消息重新 add，自然落到更低一层更细的格子里，最终在第一层到期触发。
+ * 调用方负责并发控制：add 可以并发调用，advanceClock 需要与 add 互斥
+ **/
+final class TimingWheel {
+
+    private final long tickMillis;
+
+    private final int wheelSize;
+
+    private final long interval;
+
+    private final TimerBucket[] buckets;
+
+    private final DelayQueue<TimerBucket> queue;
+
+    /**
+     * 本层当前时间，向下取整到 tickMillis
+     */
+    private volatile long currentTime;
+
+    private volatile TimingWheel overflow;
+
+    TimingWheel(long tickMillis, int wheelSize, long startMillis, DelayQueue<TimerBucket> queue) {
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.interval = tickMillis * wheelSize;
+        this.queue = queue;
+        this.currentTime = startMillis - startMillis % tickMillis;
+        this.buckets = new TimerBucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new TimerBucket();
+        }
+    }
+
+    /**
+     * @return false 表示已经到期，调用方应立即触发
+     */
+    boolean add(TimerEntry entry) {
+        long expiration = entry.deliverAt;
+        if (expiration < currentTime + tickMillis) {
+            return false;
+        }
+        if (expiration < currentTime + interval) {
+            long virtualId = expiration / tickMillis;
+            TimerBucket bucket = buckets[(int) (virtualId % wheelSize)];
+            bucket.add(entry);
+            // 同一个桶在每一圈只入队一次
+            if (bucket.setExpiration(virtualId * tickMillis)) {
+                queue.offer(bucket);
+            }
+            return true;
+        }
+        return overflow().add(entry);
+    }
+
+    void advanceClock(long timeMillis) {
+        if (timeMillis >= currentTime + tickMillis) {
+            currentTime = timeMillis - timeMillis % tickMillis;
+            TimingWheel upper = overflow;
+            if (upper != null) {
+                upper.advanceClock(currentTime);
+            }
+        }
+    }
+
+    private TimingWheel overflow() {
+        TimingWheel upper = overflow;
+        if (upper == null) {
+            synchronized (this) {
+                upper = overflow;
+                if (upper == null) {
+                    upper = new TimingWheel(interval, wheelSize, currentTime, queue);
+                    overflow = upper;
+                }
+            }
+        }
+        return upper;
+    }
+}
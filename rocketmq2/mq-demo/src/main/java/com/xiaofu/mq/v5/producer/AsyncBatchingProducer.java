@@ -0,0 +1,431 @@
+package com.xiaofu.mq.v5.producer;
+
+import com.xiaofu.mq.compress.BodyCompressor;
+import com.xiaofu.mq.compress.CompressedBody;
+import com.xiaofu.mq.metrics.MessagingMetrics;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.apis.ClientServiceProvider;
+import org.apache.rocketmq.client.apis.message.Message;
+import org.apache.rocketmq.client.apis.message.MessageBuilder;
+import org.apache.rocketmq.client.apis.producer.Producer;
+import org.apache.rocketmq.client.apis.producer.SendReceipt;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 批量异步发送：在 Producer.sendAsync 之上按 topic + messageGroup 攒批
+ *
+ * 逐条调用阻塞的 producer.send 时，大部分时间都在等单次往返。这里调用方拿到 CompletableFuture 立即返回：
+ * - 消息按 topic + messageGroup 进入各自的批次，条数或字节数达到上限、或第一条消息等待超过 linger 时整批发出
+ * - 5.x 客户端没有批量发送接口，一批消息以流水线方式逐条 sendAsync，不再逐条等待
+ * - 在途请求数受 maxInFlight 限制，达到上限时调用方的 send/flush 阻塞（背压）；顺序消息在 send 入批前就占用许可，
+ *   攒批和发出都在批次锁内完成，锁内不会阻塞
+ * - linger 计时线程从不阻塞：计时到期的普通批次拿不到许可时进入等待队列，有许可归还时再发出，
+ *   否则占着许可、等待计时的顺序批次永远发不出去
+ * - 顺序消息（有 messageGroup）同一组内严格串行：前一条成功后才发下一条，前一条失败则本组后续消息一起失败，不会乱序
+ * - 配置了 compressor 时消息体在入批前压缩，批次字节数按压缩后计算
+ *
+ * 关闭时发出剩余批次并等待在途请求结束，不负责关闭底层 Producer
+ **/
+@Slf4j
+public class AsyncBatchingProducer implements Closeable {
+
+    private final ClientServiceProvider provider = ClientServiceProvider.loadService();
+
+    private final Producer producer;
+
+    private final Options options;
+
+    private final Semaphore inFlight;
+
+    private final ScheduledExecutorService lingerScheduler;
+
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+
+    /**
+     * 顺序消息每组最后一条的发送结果，下一条在它之后发送
+     */
+    private final Map<String, CompletableFuture<?>> groupTails = new ConcurrentHashMap<>();
+
+    /**
+     * 计时线程发出、还没拿到许可的普通消息
+     */
+    private final Queue<Pending> waiting = new ConcurrentLinkedQueue<>();
+
+    /**
+     * sendWaiting 的排队计数，只有一个线程在发等待队列，其它线程的请求由它补上
+     */
+    private final AtomicInteger waitingDrains = new AtomicInteger();
+
+    private final AtomicLong flushes = new AtomicLong();
+
+    private volatile boolean closed;
+
+    public AsyncBatchingProducer(Producer producer) {
+        this(producer, Options.builder().build());
+    }
+
+    public AsyncBatchingProducer(Producer producer, Options options) {
+        if (options.getMaxBatchSize() > options.getMaxInFlight()) {
+            throw new IllegalArgumentException("maxBatchSize must not exceed maxInFlight");
+        }
+        this.producer = producer;
+        this.options = options;
+        this.inFlight = new Semaphore(options.getMaxInFlight());
+        this.lingerScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "async-batching-linger");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 提交一条消息，消息发送成功或失败时 future 完成
+     */
+    public CompletableFuture<SendReceipt> send(Message message) {
+        CompletableFuture<SendReceipt> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new IllegalStateException("producer closed"));
+            return future;
+        }
+        if (options.getCompressor() != null) {
+            message = compress(message);
+        }
+        String key = message.getTopic() + '|' + message.getMessageGroup().orElse("");
+        boolean ordered = message.getMessageGroup().isPresent();
+        if (ordered) {
+            // 在批次锁外等许可，满批时在锁内挂链不再阻塞，其它线程和计时线程照常 flush 这一组
+            acquire(1);
+        }
+        while (true) {
+            Batch batch = batches.computeIfAbsent(key, k -> new Batch(k, ordered));
+            List<Pending> full = null;
+            synchronized (batch) {
+                if (batch.retired) {
+                    // 批次已在计时到期后回收，重新取
+                    continue;
+                }
+                if (batch.pending.isEmpty()) {
+                    // 每批第一条消息到达时开始计时
+                    long generation = ++batch.generation;
+                    lingerScheduler.schedule(() -> flushIfGeneration(batch, generation),
+                        options.getLingerMillis(), TimeUnit.MILLISECONDS);
+                }
+                batch.pending.add(new Pending(message, future));
+                batch.bytes += message.getBody().remaining();
+                if (batch.pending.size() >= options.getMaxBatchSize() || batch.bytes >= options.getMaxBatchBytes()) {
+                    full = drain(batch);
+                }
+            }
+            if (full != null) {
+                dispatch(batch, full, true);
+            }
+            return future;
+        }
+    }
+
+    /**
+     * 用压缩后的消息体重建消息，低于阈值或压缩无收益时返回原消息
+     */
+    private Message compress(Message message) {
+        CompressedBody compressed = options.getCompressor().compress(message.getTopic(), message.getBody());
+        if (compressed == null) {
+            return message;
+        }
+        MessageBuilder builder = provider.newMessageBuilder()
+            .setTopic(message.getTopic())
+            .setBody(compressed.getBody());
+        message.getTag().ifPresent(builder::setTag);
+        if (!message.getKeys().isEmpty()) {
+            builder.setKeys(message.getKeys().toArray(new String[0]));
+        }
+        message.getMessageGroup().ifPresent(builder::setMessageGroup);
+        message.getDeliveryTimestamp().ifPresent(builder::setDeliveryTimestamp);
+        message.getParentTraceContext().ifPresent(builder::setTraceContext);
+        message.getProperties().forEach(builder::addProperty);
+        compressed.forEachProperty(builder::addProperty);
+        return builder.build();
+    }
+
+    /**
+     * 立即发出所有未满的批次，不等待发送结果
+     */
+    public void flush() {
+        for (Batch batch : batches.values()) {
+            List<Pending> pending;
+            synchronized (batch) {
+                pending = drain(batch);
+            }
+            if (pending != null) {
+                dispatch(batch, pending, true);
+            }
+        }
+    }
+
+    private void flushIfGeneration(Batch batch, long generation) {
+        List<Pending> pending;
+        synchronized (batch) {
+            if (batch.generation != generation || batch.pending.isEmpty()) {
+                // 该批已因条数/字节数提前发出，计时作废；批次空闲时回收，大量 messageGroup 不会常驻内存
+                if (batch.pending.isEmpty()) {
+                    batch.retired = true;
+                    batches.remove(batch.key, batch);
+                }
+                return;
+            }
+            pending = drain(batch);
+        }
+        if (pending != null) {
+            dispatch(batch, pending, false);
+        }
+    }
+
+    /**
+     * 取出批次，调用方持有批次锁。顺序消息的许可已在 send 时取得，直接在锁内挂到组内链路上，
+     * 批次之间的先后与取出顺序一致；普通消息返回给调用方在锁外发送，没有可发送的消息时返回 null
+     */
+    private List<Pending> drain(Batch batch) {
+        List<Pending> pending = batch.drain();
+        if (pending.isEmpty()) {
+            return null;
+        }
+        if (batch.ordered) {
+            dispatch(batch, pending, false);
+            return null;
+        }
+        return pending;
+    }
+
+    /**
+     * @param mayBlock 调用方线程上为 true，普通消息等许可；计时线程上为 false，拿不到许可的消息进入等待队列
+     */
+    private void dispatch(Batch batch, List<Pending> pending, boolean mayBlock) {
+        flushes.incrementAndGet();
+        if (!batch.ordered) {
+            if (mayBlock) {
+                for (Pending p : pending) {
+                    acquire(1);
+                    sendOne(p);
+                }
+            } else {
+                waiting.addAll(pending);
+                sendWaiting();
+            }
+            return;
+        }
+        // 同一组的批次之间也要串行，flush 可能在调用线程和计时线程上同时发生，compute 保证按 key 互斥
+        CompletableFuture<?> last = groupTails.compute(batch.key, (k, previous) -> {
+            CompletableFuture<?> tail = previous == null ? CompletableFuture.completedFuture(null) : previous;
+            for (Pending p : pending) {
+                tail = tail.handle((result, error) -> error).thenCompose(previousError -> {
+                    if (previousError != null) {
+                        p.future.completeExceptionally(previousError);
+                        release();
+                        return failed(previousError);
+                    }
+                    return sendOne(p);
+                });
+            }
+            return tail;
+        });
+        // 本组发送完毕后清理；失败只影响这一轮，后续消息重新开始
+        last.whenComplete((r, e) -> groupTails.remove(batch.key, last));
+    }
+
+    private CompletableFuture<SendReceipt> sendOne(Pending p) {
+        MessagingMetrics metrics = options.getMetrics();
+        long start = metrics.sendStarted();
+        CompletableFuture<SendReceipt> sent;
+        try {
+            sent = producer.sendAsync(p.message);
+        } catch (RuntimeException e) {
+            sent = failed(e);
+        }
+        return sent.whenComplete((receipt, error) -> {
+            metrics.sendCompleted(start, error == null);
+            if (error != null) {
+                p.future.completeExceptionally(error);
+            } else {
+                p.future.complete(receipt);
+            }
+            // 先完成调用方的 future 再归还许可，close 返回时所有 future 都已完成
+            release();
+        });
+    }
+
+    private void release() {
+        inFlight.release();
+        if (!waiting.isEmpty()) {
+            sendWaiting();
+        }
+    }
+
+    /**
+     * 用 tryAcquire 发出等待队列里的消息，不阻塞。发送在当前线程同步完成时归还许可会再次进入这里，
+     * 由计数合并到正在发送的线程上，不会递归
+     */
+    private void sendWaiting() {
+        if (waitingDrains.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        while (true) {
+            while (!waiting.isEmpty() && inFlight.tryAcquire()) {
+                Pending p = waiting.poll();
+                if (p == null) {
+                    inFlight.release();
+                    break;
+                }
+                sendOne(p);
+            }
+            missed = waitingDrains.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    private void acquire(int permits) {
+        try {
+            inFlight.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for in-flight permit", e);
+        }
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+
+    /**
+     * 当前在途请求数，包括已入批、占用了许可的顺序消息
+     */
+    public int getInFlight() {
+        return options.getMaxInFlight() - inFlight.availablePermits();
+    }
+
+    /**
+     * 已发出的批次数
+     */
+    public long getFlushes() {
+        return flushes.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        flush();
+        Pending p;
+        while ((p = waiting.poll()) != null) {
+            acquire(1);
+            sendOne(p);
+        }
+        for (CompletableFuture<?> tail : groupTails.values()) {
+            tail.handle((r, e) -> null).join();
+        }
+        try {
+            if (inFlight.tryAcquire(options.getMaxInFlight(), options.getCloseTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                inFlight.release(options.getMaxInFlight());
+            } else {
+                log.warn("{} requests still in flight after close timeout", getInFlight());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lingerScheduler.shutdownNow();
+    }
+
+    private static final class Pending {
+        final Message message;
+        final CompletableFuture<SendReceipt> future;
+
+        Pending(Message message, CompletableFuture<SendReceipt> future) {
+            this.message = message;
+            this.future = future;
+        }
+    }
+
+    /**
+     * 同一个 topic + messageGroup 正在攒的批次
+     */
+    private static final class Batch {
+        final String key;
+        final boolean ordered;
+        List<Pending> pending = new ArrayList<>();
+        long bytes;
+        long generation;
+        boolean retired;
+
+        Batch(String key, boolean ordered) {
+            this.key = key;
+            this.ordered = ordered;
+        }
+
+        List<Pending> drain() {
+            List<Pending> drained = pending;
+            pending = new ArrayList<>();
+            bytes = 0;
+            return drained;
+        }
+    }
+
+    /**
+     * 攒批参数
+     */
+    @Getter
+    @Builder
+    public static class Options {
+        /**
+         * 单批最多消息数
+         */
+        @Builder.Default
+        private final int maxBatchSize = 128;
+        /**
+         * 单批最多消息体字节数
+         */
+        @Builder.Default
+        private final long maxBatchBytes = 1024 * 1024;
+        /**
+         * 批次第一条消息最多等待的时间
+         */
+        @Builder.Default
+        private final long lingerMillis = 5;
+        /**
+         * 同时在途的 sendAsync 请求数，顺序消息从入批起计入
+         */
+        @Builder.Default
+        private final int maxInFlight = 256;
+        @Builder.Default
+        private final long closeTimeoutMillis = 30_000;
+        /**
+         * 单条 sendAsync 的延迟和在途数，默认不记录
+         */
+        @Builder.Default
+        private final MessagingMetrics metrics = MessagingMetrics.disabled();
+        /**
+         * 消息体压缩，默认不压缩；消费端需要用 DecompressingMessageListener 包装监听器
+         */
+        private final BodyCompressor compressor;
+    }
+}
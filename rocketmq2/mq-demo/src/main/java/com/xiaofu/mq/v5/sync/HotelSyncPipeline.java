@@ -0,0 +1,441 @@
+package com.xiaofu.mq.v5.sync;
+
+import com.xiaofu.es.HotelBulkIndexer;
+import com.xiaofu.es.codec.HotelCodec;
+import com.xiaofu.es.constants.HotelConstants;
+import com.xiaofu.es.entity.Hotel;
+import com.xiaofu.es.entity.Location;
+import com.xiaofu.es.entity.Room;
+import com.xiaofu.mq.compress.BodyDecompressor;
+import com.xiaofu.mq.hotel.HotelEvent;
+import com.xiaofu.mq.payload.Payload;
+import com.xiaofu.mq.schema.Envelope;
+import com.xiaofu.mq.schema.Envelopes;
+import com.xiaofu.mq.v5.consumer.DecompressingMessageListener;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.apis.ClientConfiguration;
+import org.apache.rocketmq.client.apis.ClientException;
+import org.apache.rocketmq.client.apis.ClientServiceProvider;
+import org.apache.rocketmq.client.apis.consumer.ConsumeResult;
+import org.apache.rocketmq.client.apis.consumer.FilterExpression;
+import org.apache.rocketmq.client.apis.consumer.MessageListener;
+import org.apache.rocketmq.client.apis.consumer.PushConsumer;
+import org.apache.rocketmq.client.apis.message.MessageView;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 酒店变更事件从 RocketMQ 同步到 ES 的 hotel 索引，替代定时全量重建
+ *
+ * 作为 5.x PushConsumer 的 MessageListener 使用（见 subscribe）：
+ * - 消息体是 hotel-event 信封或 HotelEvent 的 JSON，压缩过的消息先由 DecompressingMessageListener 解压
+ * - 一个时间窗口内到达的事件按酒店 id 合并，同一酒店只保留 version 最大的结果：局部字段按 version 顺序叠加，
+ *   删除之后的变更改为整篇覆盖（IndexRequest），最终是删除的只发 DeleteRequest，其余是 doc_as_upsert 的局部 UpdateRequest
+ * - 窗口达到 maxBatchSize 个酒店或超过 windowMillis 时整窗交给 HotelBulkIndexer 批量写入，窗口之间串行，不会乱序
+ * - consume 阻塞到所在窗口写完：该酒店写入成功才返回 SUCCESS（broker 随即 ack），失败或超时返回 FAILURE 等待重新投递。
+ *   因此一个窗口最多容纳消费线程数条消息，subscribe 把消费线程数设为 maxBatchSize
+ * - 已成功写入的 version 记在有界的本地表里，重新投递或乱序到达的旧事件直接确认，不再写 ES
+ *
+ * 合并依赖 version 的顺序，生产者应保证同一酒店的 version 单调递增；topic 用普通消息即可，
+ * 顺序消息的消费组同一 messageGroup 一次只投递一条，窗口里合并不到同一酒店的多次变更
+ **/
+@Slf4j
+public class HotelSyncPipeline implements MessageListener, Closeable {
+
+    private final HotelBulkIndexer indexer;
+
+    private final Options options;
+
+    /**
+     * 窗口计时和写入都在这个线程上，窗口之间天然串行
+     */
+    private final ScheduledExecutorService flusher;
+
+    /**
+     * 酒店 id -> 已写入 ES 的最大 version，按访问顺序淘汰
+     */
+    private final Map<Long, Long> appliedVersions;
+
+    /**
+     * 正在写入的窗口里 ES 确认成功的文档 id，只在写入期间非空
+     */
+    private volatile Set<String> written;
+
+    private Window window;
+
+    private volatile boolean closed;
+
+    private final AtomicLong windows = new AtomicLong();
+
+    private final AtomicLong merged = new AtomicLong();
+
+    private final AtomicLong stale = new AtomicLong();
+
+    public HotelSyncPipeline(HotelBulkIndexer indexer) {
+        this(indexer, Options.builder().build());
+    }
+
+    public HotelSyncPipeline(HotelBulkIndexer indexer, Options options) {
+        this.indexer = indexer;
+        this.options = options;
+        this.appliedVersions = new LinkedHashMap<Long, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+                return size() > options.getVersionCacheSize();
+            }
+        };
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "hotel-sync-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        indexer.addListener(request -> {
+            Set<String> current = written;
+            if (current != null) {
+                current.add(request.id());
+            }
+        });
+    }
+
+    /**
+     * 创建订阅 topic 的 PushConsumer，监听器外面包一层解压
+     */
+    public PushConsumer subscribe(ClientConfiguration configuration, String consumerGroup, String topic)
+        throws ClientException {
+        return ClientServiceProvider.loadService().newPushConsumerBuilder()
+            .setClientConfiguration(configuration)
+            .setConsumerGroup(consumerGroup)
+            .setSubscriptionExpressions(Collections.singletonMap(topic, FilterExpression.SUB_ALL))
+            .setConsumptionThreadCount(options.getMaxBatchSize())
+            .setMessageListener(new DecompressingMessageListener(this, options.getDecompressor()))
+            .build();
+    }
+
+    @Override
+    public ConsumeResult consume(MessageView message) {
+        HotelEvent event;
+        try {
+            event = decode(message.getBody());
+        } catch (RuntimeException e) {
+            log.error("Decode hotel event {} failed", message.getMessageId(), e);
+            return ConsumeResult.FAILURE;
+        }
+        if (isApplied(event)) {
+            stale.incrementAndGet();
+            return ConsumeResult.SUCCESS;
+        }
+        Window joined;
+        synchronized (this) {
+            if (closed) {
+                return ConsumeResult.FAILURE;
+            }
+            if (window == null) {
+                Window opened = new Window();
+                window = opened;
+                flusher.schedule(() -> flush(opened), options.getWindowMillis(), TimeUnit.MILLISECONDS);
+            }
+            joined = window;
+            joined.add(event);
+            if (joined.hotels.size() >= options.getMaxBatchSize()) {
+                window = null;
+                flusher.execute(() -> flush(joined));
+            }
+        }
+        return joined.await(event.getId(), options.getAckTimeoutMillis());
+    }
+
+    static HotelEvent decode(ByteBuffer body) {
+        if (Envelope.isEnvelope(body)) {
+            return Envelopes.hotelEvent().decode(body);
+        }
+        return Payload.of(body).to(HotelEvent.class);
+    }
+
+    private boolean isApplied(HotelEvent event) {
+        synchronized (appliedVersions) {
+            Long applied = appliedVersions.get(event.getId());
+            return applied != null && applied >= event.getVersion();
+        }
+    }
+
+    private void flush(Window flushing) {
+        synchronized (this) {
+            if (flushing.flushed) {
+                // 已因数量提前写入，计时作废
+                return;
+            }
+            flushing.flushed = true;
+            if (window == flushing) {
+                window = null;
+            }
+        }
+        windows.incrementAndGet();
+        List<DocWriteRequest<?>> requests = new ArrayList<>(flushing.hotels.size());
+        for (PendingHotel hotel : flushing.hotels.values()) {
+            requests.add(hotel.toRequest(options.getIndex()));
+        }
+        Set<String> succeeded = ConcurrentHashMap.newKeySet();
+        written = succeeded;
+        try {
+            HotelBulkIndexer.Result result = indexer.execute(requests.iterator());
+            if (result.getFailed() > 0) {
+                log.warn("Sync {} hotels, {} failed, their messages will be redelivered", requests.size(),
+                    result.getFailed());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("Sync {} hotels failed", requests.size(), e);
+        } finally {
+            written = null;
+        }
+        synchronized (appliedVersions) {
+            for (PendingHotel hotel : flushing.hotels.values()) {
+                if (succeeded.contains(String.valueOf(hotel.id))) {
+                    appliedVersions.merge(hotel.id, hotel.version, Math::max);
+                }
+            }
+        }
+        flushing.result.complete(succeeded);
+    }
+
+    /**
+     * 已写入的窗口数
+     */
+    public long getWindows() {
+        return windows.get();
+    }
+
+    /**
+     * 在窗口内被合并掉的事件数（同一酒店的第二次及以后的变更）
+     */
+    public long getMerged() {
+        return merged.get();
+    }
+
+    /**
+     * 因 version 不大于已写入版本而直接确认的事件数
+     */
+    public long getStale() {
+        return stale.get();
+    }
+
+    /**
+     * 写出当前窗口并停止，不关闭 indexer。之后到达的消息返回 FAILURE
+     */
+    @Override
+    public void close() {
+        Window last;
+        synchronized (this) {
+            closed = true;
+            last = window;
+        }
+        if (last != null) {
+            flusher.execute(() -> flush(last));
+        }
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(options.getAckTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("Hotel sync window still flushing after close timeout");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 一个合并窗口，hotels 在加入时由管道的锁保护，写入时已不再变化
+     */
+    private final class Window {
+        final Map<Long, PendingHotel> hotels = new HashMap<>();
+        final CompletableFuture<Set<String>> result = new CompletableFuture<>();
+        boolean flushed;
+
+        void add(HotelEvent event) {
+            PendingHotel hotel = hotels.computeIfAbsent(event.getId(), PendingHotel::new);
+            if (!hotel.events.isEmpty()) {
+                merged.incrementAndGet();
+            }
+            hotel.events.add(event);
+        }
+
+        ConsumeResult await(long id, long timeoutMillis) {
+            try {
+                return result.get(timeoutMillis, TimeUnit.MILLISECONDS).contains(String.valueOf(id))
+                    ? ConsumeResult.SUCCESS : ConsumeResult.FAILURE;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return ConsumeResult.FAILURE;
+            } catch (ExecutionException | TimeoutException e) {
+                return ConsumeResult.FAILURE;
+            }
+        }
+    }
+
+    /**
+     * 一个酒店在窗口内的全部变更，写入前按 version 排序再合并，窗口内的到达顺序不影响结果
+     */
+    private static final class PendingHotel {
+        final long id;
+        final List<HotelEvent> events = new ArrayList<>(1);
+        long version;
+        boolean deleted;
+        /**
+         * 窗口内先删除后又有变更，ES 里的旧字段都不能保留，整篇覆盖
+         */
+        boolean recreated;
+        HotelEvent fields;
+
+        PendingHotel(long id) {
+            this.id = id;
+        }
+
+        /**
+         * 按 version 依次叠加非空字段，重复投递的同一 version 只算一次
+         */
+        void fold() {
+            events.sort(Comparator.comparingLong(HotelEvent::getVersion));
+            HotelEvent first = events.get(0);
+            version = first.getVersion();
+            deleted = first.isDeleted();
+            recreated = false;
+            fields = first;
+            for (HotelEvent event : events.subList(1, events.size())) {
+                if (event.getVersion() == version) {
+                    continue;
+                }
+                version = event.getVersion();
+                if (event.isDeleted() || deleted) {
+                    recreated = deleted && !event.isDeleted();
+                    deleted = event.isDeleted();
+                    fields = event;
+                    continue;
+                }
+                fields = overlay(fields, event);
+            }
+        }
+
+        private static HotelEvent overlay(HotelEvent base, HotelEvent event) {
+            HotelEvent combined = new HotelEvent();
+            combined.setName(event.getName() != null ? event.getName() : base.getName());
+            combined.setStars(event.getStars() != null ? event.getStars() : base.getStars());
+            combined.setPrice(event.getPrice() != null ? event.getPrice() : base.getPrice());
+            combined.setDescription(event.getDescription() != null ? event.getDescription() : base.getDescription());
+            combined.setAddress(event.getAddress() != null ? event.getAddress() : base.getAddress());
+            combined.setLat(event.getLat() != null ? event.getLat() : base.getLat());
+            combined.setLon(event.getLon() != null ? event.getLon() : base.getLon());
+            combined.setRooms(event.getRooms() != null ? event.getRooms() : base.getRooms());
+            combined.setAmenities(event.getAmenities() != null ? event.getAmenities() : base.getAmenities());
+            combined.setLastUpdated(event.getLastUpdated() != null ? event.getLastUpdated() : base.getLastUpdated());
+            return combined;
+        }
+
+        DocWriteRequest<?> toRequest(String index) {
+            fold();
+            String docId = String.valueOf(id);
+            if (deleted) {
+                return new DeleteRequest(index, docId);
+            }
+            byte[] source = HotelCodec.encode(toHotel());
+            if (recreated) {
+                return new IndexRequest(index).id(docId).source(source, XContentType.JSON);
+            }
+            return new UpdateRequest(index, docId).doc(source, XContentType.JSON).docAsUpsert(true);
+        }
+
+        /**
+         * 只含有变化的字段，经纬度要成对出现才能写 geo_point
+         */
+        private Hotel toHotel() {
+            Hotel hotel = new Hotel();
+            hotel.setId(id);
+            hotel.setName(fields.getName());
+            hotel.setStars(fields.getStars());
+            hotel.setPrice(fields.getPrice());
+            hotel.setDescription(fields.getDescription());
+            hotel.setAddress(fields.getAddress());
+            if (fields.getLat() != null && fields.getLon() != null) {
+                hotel.setLocation(new Location(fields.getLat(), fields.getLon()));
+            }
+            if (fields.getRooms() != null) {
+                List<Room> rooms = new ArrayList<>(fields.getRooms().size());
+                for (HotelEvent.Room changed : fields.getRooms()) {
+                    Room room = new Room();
+                    room.setRoomNumber(changed.getRoomNumber());
+                    room.setRoomType(changed.getRoomType());
+                    room.setBedCount(changed.getBedCount());
+                    rooms.add(room);
+                }
+                hotel.setRooms(rooms);
+            }
+            hotel.setAmenities(fields.getAmenities());
+            if (fields.getLastUpdated() != null) {
+                hotel.setLastUpdated(new Date(fields.getLastUpdated()));
+            }
+            return hotel;
+        }
+    }
+
+    /**
+     * 同步参数
+     */
+    @Getter
+    @Builder
+    public static class Options {
+        @Builder.Default
+        private final String index = HotelConstants.INDEX_NAME;
+        /**
+         * 窗口第一条事件最多等待的时间，也是同步延迟的上限（不含 ES 写入时间）
+         */
+        @Builder.Default
+        private final long windowMillis = 200;
+        /**
+         * 单个窗口最多的酒店数，同时也是 PushConsumer 的消费线程数
+         */
+        @Builder.Default
+        private final int maxBatchSize = 128;
+        /**
+         * consume 等待窗口写完的最长时间，超时返回 FAILURE
+         */
+        @Builder.Default
+        private final long ackTimeoutMillis = 30_000;
+        /**
+         * 记录已写入 version 的酒店数
+         */
+        @Builder.Default
+        private final int versionCacheSize = 100_000;
+        /**
+         * subscribe 时用来解压消息体，需要 topic 字典时传入带 DictionaryStore 的实例
+         */
+        @Builder.Default
+        private final BodyDecompressor decompressor = new BodyDecompressor();
+    }
+}
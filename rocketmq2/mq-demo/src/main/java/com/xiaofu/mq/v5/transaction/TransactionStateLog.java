@@ -0,0 +1,127 @@
+package com.xiaofu.mq.v5.transaction;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.apis.producer.TransactionResolution;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 事务状态的预写日志，重启后把最近的事务结果重新装进缓存
+ *
+ * 每条记录：key(UTF) + 结果(1) + 记录时间(8)。日志只用来预热缓存，数据库才是准确来源，
+ * 所以按固定间隔 flush，崩溃丢掉最后一段也只是多几次数据库查询
+ **/
+@Slf4j
+final class TransactionStateLog implements Closeable {
+
+    private final Path file;
+
+    private FileOutputStream fileOut;
+
+    private DataOutputStream out;
+
+    /**
+     * 打开时的文件大小，之后写入的字节数由 out.size() 统计
+     */
+    private long baseSize;
+
+    TransactionStateLog(Path file) throws IOException {
+        this.file = file;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        open();
+    }
+
+    /**
+     * 按写入顺序读出全部记录，尾部写了一半的记录丢弃
+     */
+    void replay(RecordConsumer consumer) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+            DataInputStream data = new DataInputStream(in);
+            while (true) {
+                String key;
+                int ordinal;
+                long recordedAt;
+                try {
+                    key = data.readUTF();
+                    ordinal = data.readByte();
+                    recordedAt = data.readLong();
+                } catch (EOFException e) {
+                    return;
+                }
+                if (ordinal < 0 || ordinal >= TransactionResolution.values().length) {
+                    log.warn("Corrupted transaction state log record, stop replay");
+                    return;
+                }
+                consumer.accept(key, TransactionResolution.values()[ordinal], recordedAt);
+            }
+        }
+    }
+
+    private void open() throws IOException {
+        fileOut = new FileOutputStream(file.toFile(), true);
+        out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024));
+        baseSize = Files.size(file);
+    }
+
+    synchronized void append(String key, TransactionResolution resolution, long recordedAt) throws IOException {
+        write(out, key, resolution, recordedAt);
+    }
+
+    synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    synchronized long size() {
+        return baseSize + out.size();
+    }
+
+    /**
+     * 只保留 live 中的记录：先写临时文件，再原子替换
+     */
+    synchronized void rewrite(Map<String, TransactionStateRegistry.State> live) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream tmpOut = new FileOutputStream(tmp.toFile())) {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(tmpOut, 64 * 1024));
+            for (Map.Entry<String, TransactionStateRegistry.State> entry : live.entrySet()) {
+                write(data, entry.getKey(), entry.getValue().resolution, entry.getValue().recordedAt);
+            }
+            data.flush();
+            tmpOut.getChannel().force(false);
+        }
+        out.close();
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        open();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.flush();
+        out.close();
+    }
+
+    private static void write(DataOutputStream out, String key, TransactionResolution resolution, long recordedAt)
+        throws IOException {
+        out.writeUTF(key);
+        out.writeByte(resolution.ordinal());
+        out.writeLong(recordedAt);
+    }
+
+    interface RecordConsumer {
+        void accept(String key, TransactionResolution resolution, long recordedAt);
+    }
+}
@@ -0,0 +1,401 @@
+package com.xiaofu.mq.v5.transaction;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.apis.message.MessageView;
+import org.apache.rocketmq.client.apis.producer.TransactionChecker;
+import org.apache.rocketmq.client.apis.producer.TransactionResolution;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 事务回查：优先用本地记录的事务结果回答，查不到的合并成批量查询
+ *
+ * TestTransactionProducer 的 TransactionChecker 每次回查都单独查一次订单库，broker 恢复时的回查风暴会变成上千次点查。这里：
+ * - 本地事务提交/回滚后调用 record 记下结果，放在有界、按时间过期的内存表里，回查命中时不访问数据库
+ * - 可选的预写日志（logFile），重启后恢复最近的结果
+ * - 未命中的 key 交给加载线程，攒成一批调用 TransactionStateRepository.findStates，同一个 key 的并发回查只查一次
+ * - 批量查询失败、超时或仍无法确定时返回 UNKNOWN，由 broker 稍后再次回查
+ *
+ * 用法：producerBuilder.setTransactionChecker(registry)
+ **/
+@Slf4j
+public class TransactionStateRegistry implements TransactionChecker, Closeable {
+
+    /**
+     * 分段数，每段一把锁，减少回查线程之间的竞争
+     */
+    private static final int SEGMENTS = 16;
+
+    private final TransactionStateRepository repository;
+
+    private final Options options;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    /**
+     * 正在加载的 key，同一个 key 的并发回查共用一个 future
+     */
+    private final Map<String, CompletableFuture<TransactionResolution>> loading = new ConcurrentHashMap<>();
+
+    private final BlockingQueue<String> misses = new LinkedBlockingQueue<>();
+
+    private final TransactionStateLog stateLog;
+
+    private final ScheduledExecutorService logFlusher;
+
+    private final Thread loader;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder lookups = new LongAdder();
+
+    private final LongAdder batches = new LongAdder();
+
+    private volatile boolean running = true;
+
+    public TransactionStateRegistry(TransactionStateRepository repository) throws IOException {
+        this(repository, Options.builder().build());
+    }
+
+    public TransactionStateRegistry(TransactionStateRepository repository, Options options) throws IOException {
+        this.repository = repository;
+        this.options = options;
+        int perSegment = Math.max(1, options.getMaxEntries() / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment, options.getTtlMillis());
+        }
+        if (options.getLogFile() != null) {
+            boolean exists = Files.exists(options.getLogFile());
+            this.stateLog = new TransactionStateLog(options.getLogFile());
+            if (exists) {
+                long now = System.currentTimeMillis();
+                stateLog.replay((key, resolution, recordedAt) -> {
+                    if (now - recordedAt < options.getTtlMillis()) {
+                        segment(key).put(key, new State(resolution, recordedAt));
+                    }
+                });
+                // 丢掉已过期的记录
+                stateLog.rewrite(snapshot());
+            }
+            this.logFlusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "tx-state-log");
+                thread.setDaemon(true);
+                return thread;
+            });
+            logFlusher.scheduleWithFixedDelay(this::flushLog, options.getLogFlushMillis(),
+                options.getLogFlushMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            this.stateLog = null;
+            this.logFlusher = null;
+        }
+        this.loader = new Thread(this::loadLoop, "tx-state-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * 记录本地事务的结果，在 transaction.commit() / rollback() 之前调用
+     */
+    public void record(String transactionKey, TransactionResolution resolution) {
+        long now = System.currentTimeMillis();
+        segment(transactionKey).put(transactionKey, new State(resolution, now));
+        if (stateLog != null) {
+            try {
+                stateLog.append(transactionKey, resolution, now);
+            } catch (IOException e) {
+                log.warn("Append transaction state {} failed", transactionKey, e);
+            }
+        }
+    }
+
+    @Override
+    public TransactionResolution check(MessageView messageView) {
+        String key = options.getKeyExtractor().apply(messageView);
+        if (key == null || key.isEmpty()) {
+            // 错误的消息，直接回滚
+            return TransactionResolution.ROLLBACK;
+        }
+        TransactionResolution cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            return lookup(key).get(options.getCheckTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("Transaction state lookup timed out, key={}", key);
+            return TransactionResolution.UNKNOWN;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return TransactionResolution.UNKNOWN;
+        } catch (Exception e) {
+            return TransactionResolution.UNKNOWN;
+        }
+    }
+
+    /**
+     * 本地记录的结果，没有或已过期时返回 null
+     */
+    public TransactionResolution get(String transactionKey) {
+        State state = segment(transactionKey).get(transactionKey);
+        if (state == null) {
+            return null;
+        }
+        hits.increment();
+        return state.resolution;
+    }
+
+    private CompletableFuture<TransactionResolution> lookup(String key) {
+        CompletableFuture<TransactionResolution> created = new CompletableFuture<>();
+        CompletableFuture<TransactionResolution> existing = loading.putIfAbsent(key, created);
+        if (existing != null) {
+            return existing;
+        }
+        misses.add(key);
+        return created;
+    }
+
+    private void loadLoop() {
+        List<String> batch = new ArrayList<>(options.getMaxBatchSize());
+        while (running) {
+            try {
+                String first = misses.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // 回查通常成批到达，等一小会儿把同一波的 key 凑到一起
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(options.getBatchLingerMillis());
+                while (batch.size() < options.getMaxBatchSize()) {
+                    misses.drainTo(batch, options.getMaxBatchSize() - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= options.getMaxBatchSize() || remaining <= 0) {
+                        break;
+                    }
+                    String next = misses.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            load(batch);
+            batch.clear();
+        }
+    }
+
+    private void load(List<String> keys) {
+        batches.increment();
+        lookups.add(keys.size());
+        Map<String, TransactionResolution> found;
+        try {
+            found = repository.findStates(keys);
+        } catch (Exception e) {
+            log.warn("Batch lookup of {} transaction states failed", keys.size(), e);
+            found = new HashMap<>();
+        }
+        long now = System.currentTimeMillis();
+        for (String key : keys) {
+            TransactionResolution resolution = found.get(key);
+            if (resolution == null || resolution == TransactionResolution.UNKNOWN) {
+                // 不缓存，下次回查重新查询
+                resolution = TransactionResolution.UNKNOWN;
+            } else {
+                segment(key).put(key, new State(resolution, now));
+            }
+            CompletableFuture<TransactionResolution> future = loading.remove(key);
+            if (future != null) {
+                future.complete(resolution);
+            }
+        }
+    }
+
+    private void flushLog() {
+        try {
+            stateLog.flush();
+            if (stateLog.size() > options.getMaxLogBytes()) {
+                stateLog.rewrite(snapshot());
+            }
+        } catch (IOException e) {
+            log.warn("Flush transaction state log failed", e);
+        }
+    }
+
+    private Map<String, State> snapshot() {
+        Map<String, State> live = new LinkedHashMap<>();
+        for (Segment segment : segments) {
+            segment.copyLiveTo(live);
+        }
+        return live;
+    }
+
+    private Segment segment(String key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * 本地记录的事务数（包括已过期但还没清理的）
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * 交给 repository 查询的 key 总数
+     */
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    /**
+     * 调用 repository 的次数
+     */
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        loader.interrupt();
+        for (CompletableFuture<TransactionResolution> future : loading.values()) {
+            future.complete(TransactionResolution.UNKNOWN);
+        }
+        if (stateLog != null) {
+            logFlusher.shutdownNow();
+            stateLog.close();
+        }
+    }
+
+    static final class State {
+        final TransactionResolution resolution;
+        final long recordedAt;
+
+        State(TransactionResolution resolution, long recordedAt) {
+            this.resolution = resolution;
+            this.recordedAt = recordedAt;
+        }
+    }
+
+    /**
+     * 按写入顺序淘汰的一段：超过容量淘汰最早的，读到过期的顺便删除
+     */
+    private static final class Segment {
+        private final long ttlMillis;
+        private final LinkedHashMap<String, State> states;
+
+        Segment(int capacity, long ttlMillis) {
+            this.ttlMillis = ttlMillis;
+            this.states = new LinkedHashMap<String, State>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, State> eldest) {
+                    return size() > capacity
+                        || System.currentTimeMillis() - eldest.getValue().recordedAt >= ttlMillis;
+                }
+            };
+        }
+
+        synchronized void put(String key, State state) {
+            // 先删再放，保持按写入时间排序，过期淘汰只看最早的一条即可
+            states.remove(key);
+            states.put(key, state);
+        }
+
+        synchronized State get(String key) {
+            State state = states.get(key);
+            if (state != null && System.currentTimeMillis() - state.recordedAt >= ttlMillis) {
+                states.remove(key);
+                return null;
+            }
+            return state;
+        }
+
+        synchronized void copyLiveTo(Map<String, State> target) {
+            long now = System.currentTimeMillis();
+            states.forEach((key, state) -> {
+                if (now - state.recordedAt < ttlMillis) {
+                    target.put(key, state);
+                }
+            });
+        }
+
+        synchronized int size() {
+            return states.size();
+        }
+    }
+
+    /**
+     * 回查参数
+     */
+    @Getter
+    @Builder
+    public static class Options {
+        /**
+         * 从回查消息中取事务 key，默认取 OrderId 属性
+         */
+        @Builder.Default
+        private final Function<MessageView, String> keyExtractor = message -> message.getProperties().get("OrderId");
+        /**
+         * 本地最多记录的事务数
+         */
+        @Builder.Default
+        private final int maxEntries = 1_000_000;
+        /**
+         * 记录的保留时间，应覆盖 broker 的最长回查时间
+         */
+        @Builder.Default
+        private final long ttlMillis = TimeUnit.HOURS.toMillis(1);
+        /**
+         * 单次批量查询的最多 key 数
+         */
+        @Builder.Default
+        private final int maxBatchSize = 200;
+        @Builder.Default
+        private final long batchLingerMillis = 5;
+        /**
+         * 回查最多等待批量查询的时间，超时返回 UNKNOWN
+         */
+        @Builder.Default
+        private final long checkTimeoutMillis = 3000;
+        /**
+         * 预写日志文件，为 null 时只在内存中记录
+         */
+        private final Path logFile;
+        @Builder.Default
+        private final long logFlushMillis = 200;
+        @Builder.Default
+        private final long maxLogBytes = 64L * 1024 * 1024;
+    }
+}
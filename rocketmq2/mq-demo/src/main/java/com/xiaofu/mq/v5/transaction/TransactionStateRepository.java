@@ -0,0 +1,21 @@
+package com.xiaofu.mq.v5.transaction;
+
+import org.apache.rocketmq.client.apis.producer.TransactionResolution;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 本地事务状态的批量查询，例如 select id, status from t_order where id in (...)
+ **/
+public interface TransactionStateRepository {
+
+    /**
+     * 一次查询多个事务的状态。
+     * 能确定结果的 key 返回 COMMIT / ROLLBACK；不在返回值里的 key 视为暂时无法确定，回查返回 UNKNOWN，broker 稍后会再次回查
+     */
+    Map<String, TransactionResolution> findStates(Collection<String> transactionKeys) throws Exception;
+}
@@ -0,0 +1,177 @@
+package com.xiaofu.mq.v5;
+
+import org.apache.rocketmq.client.apis.ClientConfiguration;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 测试用的进程内 RocketMQ 5.x：namesrv + broker + proxy，端口随机、存储在临时目录，close 后删除
+ *
+ * 5.x 客户端连 getEndpoints()（proxy 的 gRPC 端口），4.x 客户端连 getNamesrvAddr()。
+ * rocketmq-client-java 是 shade 包，自带一份 apache.rocketmq.v2 协议类且依赖重定位后的 grpc，与 proxy 用的 rocketmq-proto 同名不同实现，
+ * 放在一个类加载器里必有一方出错。所以服务端（EmbeddedRocketMQServer）在一个去掉客户端 jar 的独立类加载器里运行，
+ * 这里只通过反射调用几个基本类型参数的方法。proxy 配置是静态变量，每个实例各自一个类加载器，互不影响
+ **/
+public class EmbeddedRocketMQ implements Closeable {
+
+    private static final String SERVER_CLASS = "com.xiaofu.mq.v5.EmbeddedRocketMQServer";
+
+    private static final String CLIENT_JAR = "rocketmq-client-java-";
+
+    private final Path storeDir;
+
+    private final URLClassLoader loader;
+
+    private final Object server;
+
+    private final String endpoints;
+
+    private final String namesrvAddr;
+
+    private EmbeddedRocketMQ(Path storeDir, URLClassLoader loader, Object server) {
+        this.storeDir = storeDir;
+        this.loader = loader;
+        this.server = server;
+        this.endpoints = (String) invoke("getEndpoints");
+        this.namesrvAddr = (String) invoke("getNamesrvAddr");
+    }
+
+    public static EmbeddedRocketMQ start() throws Exception {
+        Path storeDir = Files.createTempDirectory("embedded-rocketmq");
+        URLClassLoader loader = new URLClassLoader(serverClassPath(), ClassLoader.getSystemClassLoader().getParent());
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        // 服务端线程在 start 里创建，会继承这里的上下文类加载器
+        thread.setContextClassLoader(loader);
+        Object server = null;
+        try {
+            server = loader.loadClass(SERVER_CLASS).getConstructor(String.class).newInstance(storeDir.toString());
+            server.getClass().getMethod("start").invoke(server);
+            return new EmbeddedRocketMQ(storeDir, loader, server);
+        } catch (InvocationTargetException e) {
+            if (server != null) {
+                server.getClass().getMethod("shutdown").invoke(server);
+            }
+            loader.close();
+            deleteRecursively(storeDir);
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+
+    /**
+     * 测试 classpath 去掉 shade 过的 5.x 客户端；surefire 默认用 manifest jar 启动，真实 classpath 在 surefire.test.class.path 里
+     */
+    private static URL[] serverClassPath() throws MalformedURLException {
+        String classPath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+        List<URL> urls = new ArrayList<>();
+        for (String entry : classPath.split(File.pathSeparator)) {
+            if (!entry.isEmpty() && !Paths.get(entry).getFileName().toString().startsWith(CLIENT_JAR)) {
+                urls.add(Paths.get(entry).toUri().toURL());
+            }
+        }
+        return urls.toArray(new URL[0]);
+    }
+
+    /**
+     * 5.x 客户端的接入点（proxy 的 gRPC 地址）
+     */
+    public String getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * 4.x 客户端用的 namesrv 地址
+     */
+    public String getNamesrvAddr() {
+        return namesrvAddr;
+    }
+
+    public ClientConfiguration clientConfiguration() {
+        return ClientConfiguration.newBuilder()
+            .setEndpoints(endpoints)
+            .setRequestTimeout(Duration.ofSeconds(10))
+            .build();
+    }
+
+    public void createTopic(String topic, TopicType type) {
+        createTopic(topic, type, 4);
+    }
+
+    /**
+     * proxy 会校验消息类型与主题类型是否一致，所以主题要按用途提前建好
+     */
+    public void createTopic(String topic, TopicType type, int queues) {
+        invoke("createTopic", topic, type.name(), queues);
+    }
+
+    /**
+     * 建消费组并从 topic 的最早位点开始消费，需在 createTopic 之后调用
+     *
+     * @param orderly FIFO 主题的消费组必须是顺序消费组，broker 才会按 messageGroup 逐条投递
+     */
+    public void createConsumerGroup(String group, String topic, boolean orderly) {
+        invoke("createConsumerGroup", group, topic, orderly);
+    }
+
+    @Override
+    public void close() {
+        try {
+            invoke("shutdown");
+            loader.close();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            deleteRecursively(storeDir);
+        }
+    }
+
+    private Object invoke(String method, Object... args) {
+        Class<?>[] types = new Class<?>[args.length];
+        for (int i = 0; i < args.length; i++) {
+            types[i] = args[i] instanceof Integer ? int.class : args[i] instanceof Boolean ? boolean.class : args[i].getClass();
+        }
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        thread.setContextClassLoader(loader);
+        try {
+            return server.getClass().getMethod(method, types).invoke(server, args);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(method + " failed", e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+
+    private static void deleteRecursively(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException ignored) {
+            // 临时目录，删不干净不影响测试
+        }
+    }
+
+    public enum TopicType {
+        NORMAL, FIFO, DELAY, TRANSACTION
+    }
+}
@@ -0,0 +1,206 @@
+package com.xiaofu.mq.v5;
+
+import io.grpc.BindableService;
+import org.apache.rocketmq.broker.BrokerController;
+import org.apache.rocketmq.common.BrokerConfig;
+import org.apache.rocketmq.common.TopicConfig;
+import org.apache.rocketmq.common.attribute.TopicMessageType;
+import org.apache.rocketmq.common.TopicAttributes;
+import org.apache.rocketmq.common.namesrv.NamesrvConfig;
+import org.apache.rocketmq.namesrv.NamesrvController;
+import org.apache.rocketmq.proxy.common.StartAndShutdown;
+import org.apache.rocketmq.proxy.config.ConfigurationManager;
+import org.apache.rocketmq.proxy.config.ProxyConfig;
+import org.apache.rocketmq.proxy.grpc.GrpcServer;
+import org.apache.rocketmq.proxy.grpc.GrpcServerBuilder;
+import org.apache.rocketmq.proxy.grpc.v2.GrpcMessagingApplication;
+import org.apache.rocketmq.proxy.processor.DefaultMessagingProcessor;
+import org.apache.rocketmq.remoting.netty.NettyClientConfig;
+import org.apache.rocketmq.remoting.netty.NettyServerConfig;
+import org.apache.rocketmq.remoting.protocol.subscription.SubscriptionGroupConfig;
+import org.apache.rocketmq.store.config.MessageStoreConfig;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 进程内的 namesrv + broker + proxy（local 模式），由 EmbeddedRocketMQ 在隔离的类加载器里创建，测试代码不直接使用
+ *
+ * namesrv 和 broker 监听端口为 0，由系统分配；proxy 的 gRPC 服务拿不到实际端口而路由里又要返回它，只能先探测一个空闲端口。
+ * proxy 的配置来自 classpath 下的 rmq-proxy-home/conf/rmq-proxy.json，是进程级静态变量，同一个类加载器里只能有一个实例
+ **/
+public class EmbeddedRocketMQServer {
+
+    private static final String CLUSTER = "DefaultCluster";
+
+    private static final String BROKER_NAME = "embedded-broker";
+
+    private static final String HOST = "127.0.0.1";
+
+    private final Path storeDir;
+
+    private NamesrvController namesrv;
+
+    private BrokerController broker;
+
+    private DefaultMessagingProcessor processor;
+
+    private GrpcMessagingApplication application;
+
+    private ThreadPoolExecutor grpcExecutor;
+
+    private GrpcServer grpcServer;
+
+    private int proxyPort;
+
+    public EmbeddedRocketMQServer(String storeDir) {
+        this.storeDir = Paths.get(storeDir);
+    }
+
+    public void start() throws Exception {
+        startNamesrv();
+        startBroker();
+        startProxy();
+    }
+
+    private void startNamesrv() throws Exception {
+        NamesrvConfig config = new NamesrvConfig();
+        config.setKvConfigPath(storeDir.resolve("namesrv").resolve("kvConfig.json").toString());
+        config.setConfigStorePath(storeDir.resolve("namesrv").resolve("namesrv.properties").toString());
+        NettyServerConfig serverConfig = new NettyServerConfig();
+        serverConfig.setListenPort(0);
+        namesrv = new NamesrvController(config, serverConfig, new NettyClientConfig());
+        if (!namesrv.initialize()) {
+            throw new IllegalStateException("failed to initialize namesrv");
+        }
+        namesrv.start();
+    }
+
+    private void startBroker() throws Exception {
+        BrokerConfig config = new BrokerConfig();
+        config.setBrokerClusterName(CLUSTER);
+        config.setBrokerName(BROKER_NAME);
+        config.setBrokerIP1(HOST);
+        config.setNamesrvAddr(getNamesrvAddr());
+        // 缩短事务回查，状态未知的半消息几秒内就会回查
+        config.setTransactionTimeOut(3_000);
+        config.setTransactionCheckInterval(3_000);
+        MessageStoreConfig storeConfig = new MessageStoreConfig();
+        storeConfig.setStorePathRootDir(storeDir.resolve("store").toString());
+        storeConfig.setStorePathCommitLog(storeDir.resolve("store").resolve("commitlog").toString());
+        // 默认一个 commitlog 文件 1G，测试用不到
+        storeConfig.setMappedFileSizeCommitLog(64 * 1024 * 1024);
+        storeConfig.setMappedFileSizeTimerLog(16 * 1024 * 1024);
+        storeConfig.setHaListenPort(0);
+        storeConfig.setTimerWheelEnable(true);
+        NettyServerConfig serverConfig = new NettyServerConfig();
+        // broker 启动后会把实际端口回写到 serverConfig
+        serverConfig.setListenPort(0);
+        broker = new BrokerController(config, serverConfig, new NettyClientConfig(), storeConfig);
+        if (!broker.initialize()) {
+            throw new IllegalStateException("failed to initialize broker");
+        }
+        broker.start();
+    }
+
+    private void startProxy() throws Exception {
+        ConfigurationManager.initEnv();
+        ConfigurationManager.intConfig();
+        proxyPort = freePort();
+        ProxyConfig config = ConfigurationManager.getProxyConfig();
+        config.setGrpcServerPort(proxyPort);
+        config.setNamesrvAddr(getNamesrvAddr());
+
+        processor = DefaultMessagingProcessor.createForLocalMode(broker);
+        processor.start();
+        application = GrpcMessagingApplication.create(processor);
+        application.start();
+        grpcExecutor = new ThreadPoolExecutor(config.getGrpcThreadPoolNums(), config.getGrpcThreadPoolNums(),
+            1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(config.getGrpcThreadPoolQueueCapacity()));
+        // 编译期 classpath 上 shade 客户端里的同名协议类排在前面，看不出它实现了 BindableService；运行时在独立类加载器里没有这个问题
+        grpcServer = GrpcServerBuilder.newBuilder(grpcExecutor, proxyPort)
+            .addService((BindableService) (Object) application)
+            .configInterceptor()
+            .build();
+        grpcServer.start();
+    }
+
+    public String getEndpoints() {
+        return HOST + ":" + proxyPort;
+    }
+
+    public String getNamesrvAddr() {
+        return HOST + ":" + namesrv.getRemotingServer().localListenPort();
+    }
+
+    /**
+     * @param messageType NORMAL / FIFO / DELAY / TRANSACTION
+     */
+    public void createTopic(String topic, String messageType, int queues) {
+        TopicConfig topicConfig = new TopicConfig(topic, queues, queues);
+        // 与 mqadmin updateTopic -a +message.type=FIFO 相同，新建主题只接受 "+" 开头的属性
+        Map<String, String> attributes = new HashMap<>();
+        attributes.put("+" + TopicAttributes.TOPIC_MESSAGE_TYPE_ATTRIBUTE.getName(), TopicMessageType.valueOf(messageType).getValue());
+        topicConfig.setAttributes(attributes);
+        broker.getTopicConfigManager().updateTopicConfig(topicConfig);
+        // 同步给 namesrv，4.x 客户端才能查到路由
+        broker.registerIncrementBrokerData(topicConfig, broker.getTopicConfigManager().getDataVersion());
+    }
+
+    public void createConsumerGroup(String group, String topic, boolean orderly) {
+        SubscriptionGroupConfig config = new SubscriptionGroupConfig();
+        config.setGroupName(group);
+        config.setConsumeMessageOrderly(orderly);
+        broker.getSubscriptionGroupManager().updateSubscriptionGroupConfig(config);
+        // 5.x 客户端经 proxy pop 消费，新消费组默认从队列末尾开始，先提交 0 位点，消费者晚于生产者启动也能收到全部消息
+        TopicConfig topicConfig = broker.getTopicConfigManager().selectTopicConfig(topic);
+        for (int queueId = 0; topicConfig != null && queueId < topicConfig.getReadQueueNums(); queueId++) {
+            broker.getConsumerOffsetManager().commitOffset("embedded", group, topic, queueId, 0);
+        }
+    }
+
+    public void shutdown() {
+        if (grpcServer != null) {
+            grpcServer.shutdown();
+        }
+        if (grpcExecutor != null) {
+            grpcExecutor.shutdownNow();
+        }
+        shutdownQuietly(application);
+        shutdownQuietly(processor);
+        if (broker != null) {
+            broker.shutdown();
+        }
+        if (namesrv != null) {
+            namesrv.shutdown();
+        }
+    }
+
+    private static void shutdownQuietly(StartAndShutdown component) {
+        if (component == null) {
+            return;
+        }
+        try {
+            component.shutdown();
+        } catch (Exception ignored) {
+            // 关闭阶段的异常不影响后面组件的释放
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            socket.setReuseAddress(true);
+            return socket.getLocalPort();
+        }
+    }
+}
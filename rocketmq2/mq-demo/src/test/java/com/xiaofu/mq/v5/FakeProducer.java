@@ -0,0 +1,149 @@
+package com.xiaofu.mq.v5;
+
+import org.apache.rocketmq.client.apis.ClientException;
+import org.apache.rocketmq.client.apis.message.Message;
+import org.apache.rocketmq.client.apis.message.MessageId;
+import org.apache.rocketmq.client.apis.producer.Producer;
+import org.apache.rocketmq.client.apis.producer.SendReceipt;
+import org.apache.rocketmq.client.apis.producer.Transaction;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 测试用的 Producer：sendAsync 在随机延迟后完成，记录发送顺序和并发数
+ **/
+public class FakeProducer implements Producer {
+
+    private final ScheduledExecutorService completer = Executors.newScheduledThreadPool(4);
+
+    private final int maxDelayMillis;
+
+    /**
+     * 按到达 sendAsync 的顺序记录的消息
+     */
+    private final List<Message> sent = Collections.synchronizedList(new ArrayList<>());
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    private final Map<String, AtomicInteger> groupInFlight = new ConcurrentHashMap<>();
+
+    private final AtomicInteger maxGroupInFlight = new AtomicInteger();
+
+    private final AtomicLong ids = new AtomicLong();
+
+    private volatile Predicate<Message> failWhen = message -> false;
+
+    public FakeProducer(int maxDelayMillis) {
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public void failWhen(Predicate<Message> failWhen) {
+        this.failWhen = failWhen;
+    }
+
+    public static String body(Message message) {
+        return StandardCharsets.UTF_8.decode(message.getBody().duplicate()).toString();
+    }
+
+    @Override
+    public SendReceipt send(Message message) throws ClientException {
+        try {
+            return sendAsync(message).get();
+        } catch (Exception e) {
+            throw new ClientException(e);
+        }
+    }
+
+    @Override
+    public SendReceipt send(Message message, Transaction transaction) throws ClientException {
+        return send(message);
+    }
+
+    @Override
+    public CompletableFuture<SendReceipt> sendAsync(Message message) {
+        sent.add(message);
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        AtomicInteger group = groupInFlight.computeIfAbsent(message.getMessageGroup().orElse(""),
+            k -> new AtomicInteger());
+        if (message.getMessageGroup().isPresent()) {
+            maxGroupInFlight.accumulateAndGet(group.incrementAndGet(), Math::max);
+        }
+        CompletableFuture<SendReceipt> future = new CompletableFuture<>();
+        Runnable complete = () -> {
+            inFlight.decrementAndGet();
+            if (message.getMessageGroup().isPresent()) {
+                group.decrementAndGet();
+            }
+            if (failWhen.test(message)) {
+                future.completeExceptionally(new ClientException("fake failure: " + body(message)));
+            } else {
+                future.complete(receipt(ids.incrementAndGet()));
+            }
+        };
+        if (maxDelayMillis == 0) {
+            // 没有延迟时直接完成，压测大量消息时不经过调度线程
+            complete.run();
+        } else {
+            completer.schedule(complete, ThreadLocalRandom.current().nextInt(maxDelayMillis), TimeUnit.MILLISECONDS);
+        }
+        return future;
+    }
+
+    private static SendReceipt receipt(long id) {
+        MessageId messageId = new MessageId() {
+            @Override
+            public String getVersion() {
+                return "V1";
+            }
+
+            @Override
+            public String toString() {
+                return String.format("%032X", id);
+            }
+        };
+        return () -> messageId;
+    }
+
+    @Override
+    public Transaction beginTransaction() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+        completer.shutdownNow();
+    }
+
+    public List<Message> getSent() {
+        return sent;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    /**
+     * 同一个 messageGroup 同时在途的最大请求数
+     */
+    public int getMaxGroupInFlight() {
+        return maxGroupInFlight.get();
+    }
+}
@@ -0,0 +1,306 @@
+package com.xiaofu.mq.v5;
+
+import org.apache.rocketmq.client.apis.ClientException;
+import org.apache.rocketmq.client.apis.consumer.FilterExpression;
+import org.apache.rocketmq.client.apis.consumer.SimpleConsumer;
+import org.apache.rocketmq.client.apis.message.MessageId;
+import org.apache.rocketmq.client.apis.message.MessageView;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 测试用的 SimpleConsumer：内存里的一个队列，模拟不可见时间、到期重投、ack 句柄过期和顺序消息的组锁定
+ **/
+public class FakeSimpleConsumer implements SimpleConsumer {
+
+    private final String topic;
+
+    private final Deque<FakeMessageView> ready = new ArrayDeque<>();
+
+    /**
+     * 已投递未 ack 的消息及其不可见截止时间
+     */
+    private final Map<FakeMessageView, Long> invisible = new HashMap<>();
+
+    private final AtomicInteger outstandingReceives = new AtomicInteger();
+
+    private final AtomicInteger maxOutstandingReceives = new AtomicInteger();
+
+    private final AtomicLong acked = new AtomicLong();
+
+    private volatile Duration lastInvisibleDuration;
+
+    private long nextId;
+
+    public FakeSimpleConsumer(String topic) {
+        this.topic = topic;
+    }
+
+    public synchronized void publish(String body) {
+        publish(body, null);
+    }
+
+    /**
+     * 发布一条顺序消息，messageGroup 为 null 时是普通消息
+     */
+    public synchronized void publish(String body, String messageGroup) {
+        FakeMessageView message = new FakeMessageView(String.format("%032X", nextId++), topic, body);
+        message.messageGroup = messageGroup;
+        ready.add(message);
+    }
+
+    @Override
+    public List<MessageView> receive(int maxMessageNum, Duration invisibleDuration) {
+        maxOutstandingReceives.accumulateAndGet(outstandingReceives.incrementAndGet(), Math::max);
+        try {
+            lastInvisibleDuration = invisibleDuration;
+            List<MessageView> result = new ArrayList<>();
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                // 不可见时间已过的消息重新变为可消费
+                Iterator<Map.Entry<FakeMessageView, Long>> it = invisible.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<FakeMessageView, Long> entry = it.next();
+                    if (entry.getValue() <= now) {
+                        it.remove();
+                        ready.addFirst(entry.getKey());
+                    }
+                }
+                // 顺序消息：组内还有未 ack 的消息时，该组后面的消息不投递
+                Set<String> lockedGroups = new HashSet<>();
+                for (FakeMessageView message : invisible.keySet()) {
+                    if (message.messageGroup != null) {
+                        lockedGroups.add(message.messageGroup);
+                    }
+                }
+                Iterator<FakeMessageView> candidates = ready.iterator();
+                while (result.size() < maxMessageNum && candidates.hasNext()) {
+                    FakeMessageView message = candidates.next();
+                    if (message.messageGroup != null && lockedGroups.contains(message.messageGroup)) {
+                        continue;
+                    }
+                    candidates.remove();
+                    message.deliveryAttempt++;
+                    invisible.put(message, now + invisibleDuration.toMillis());
+                    result.add(message);
+                }
+                // 同一次 receive 可以返回同组的多条消息，之后该组锁定直到全部 ack
+                for (MessageView message : result) {
+                    message.getMessageGroup().ifPresent(lockedGroups::add);
+                }
+            }
+            if (result.isEmpty()) {
+                // 长轮询：没有消息时等一会儿再返回
+                Thread.sleep(5);
+            }
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        } finally {
+            outstandingReceives.decrementAndGet();
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<MessageView>> receiveAsync(int maxMessageNum, Duration invisibleDuration) {
+        return CompletableFuture.supplyAsync(() -> receive(maxMessageNum, invisibleDuration));
+    }
+
+    @Override
+    public void ack(MessageView messageView) throws ClientException {
+        synchronized (this) {
+            Long deadline = invisible.get(messageView);
+            if (deadline == null || deadline <= System.currentTimeMillis()) {
+                throw new ClientException("receipt handle expired: " + messageView.getMessageId());
+            }
+            invisible.remove(messageView);
+        }
+        acked.incrementAndGet();
+    }
+
+    @Override
+    public CompletableFuture<Void> ackAsync(MessageView messageView) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                ack(messageView);
+            } catch (ClientException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Override
+    public synchronized void changeInvisibleDuration(MessageView messageView, Duration invisibleDuration) {
+        if (invisible.containsKey(messageView)) {
+            invisible.put((FakeMessageView) messageView, System.currentTimeMillis() + invisibleDuration.toMillis());
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> changeInvisibleDurationAsync(MessageView messageView, Duration invisibleDuration) {
+        changeInvisibleDuration(messageView, invisibleDuration);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public String getConsumerGroup() {
+        return "fakeGroup";
+    }
+
+    @Override
+    public SimpleConsumer subscribe(String topic, FilterExpression filterExpression) {
+        return this;
+    }
+
+    @Override
+    public SimpleConsumer unsubscribe(String topic) {
+        return this;
+    }
+
+    @Override
+    public Map<String, FilterExpression> getSubscriptionExpressions() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * 队列里和不可见中的消息总数
+     */
+    public synchronized int remaining() {
+        return ready.size() + invisible.size();
+    }
+
+    public long getAcked() {
+        return acked.get();
+    }
+
+    public int getMaxOutstandingReceives() {
+        return maxOutstandingReceives.get();
+    }
+
+    public Duration getLastInvisibleDuration() {
+        return lastInvisibleDuration;
+    }
+
+    public static class FakeMessageView implements MessageView {
+        private final MessageId messageId;
+        private final String topic;
+        private final byte[] body;
+        private final Map<String, String> properties;
+        private String messageGroup;
+        private volatile int deliveryAttempt;
+
+        FakeMessageView(String id, String topic, String body) {
+            this(id, topic, body, Collections.emptyMap());
+        }
+
+        public FakeMessageView(String id, String topic, String body, Map<String, String> properties) {
+            this(id, topic, body.getBytes(StandardCharsets.UTF_8), properties);
+        }
+
+        public FakeMessageView(String id, String topic, byte[] body, Map<String, String> properties) {
+            this.messageId = new MessageId() {
+                @Override
+                public String getVersion() {
+                    return "V1";
+                }
+
+                @Override
+                public String toString() {
+                    return id;
+                }
+            };
+            this.topic = topic;
+            this.body = body;
+            this.properties = properties;
+        }
+
+        @Override
+        public MessageId getMessageId() {
+            return messageId;
+        }
+
+        @Override
+        public String getTopic() {
+            return topic;
+        }
+
+        @Override
+        public ByteBuffer getBody() {
+            return ByteBuffer.wrap(body).asReadOnlyBuffer();
+        }
+
+        public String getBodyAsString() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public Map<String, String> getProperties() {
+            return properties;
+        }
+
+        @Override
+        public Optional<String> getTag() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Collection<String> getKeys() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Optional<String> getMessageGroup() {
+            return Optional.ofNullable(messageGroup);
+        }
+
+        @Override
+        public Optional<Long> getDeliveryTimestamp() {
+            return Optional.empty();
+        }
+
+        @Override
+        public String getBornHost() {
+            return "localhost";
+        }
+
+        @Override
+        public Optional<String> getTraceContext() {
+            return Optional.empty();
+        }
+
+        @Override
+        public long getBornTimestamp() {
+            return 0;
+        }
+
+        @Override
+        public int getDeliveryAttempt() {
+            return deliveryAttempt;
+        }
+    }
+}
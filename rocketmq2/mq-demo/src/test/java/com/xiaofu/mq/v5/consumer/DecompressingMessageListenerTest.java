@@ -0,0 +1,112 @@
+package com.xiaofu.mq.v5.consumer;
+
+import com.xiaofu.mq.compress.BodyCodec;
+import com.xiaofu.mq.compress.BodyCompressor;
+import com.xiaofu.mq.compress.BodyDecompressor;
+import com.xiaofu.mq.compress.CompressionPolicy;
+import com.xiaofu.mq.v5.FakeProducer;
+import com.xiaofu.mq.v5.FakeSimpleConsumer;
+import com.xiaofu.mq.v5.producer.AsyncBatchingProducer;
+import org.apache.rocketmq.client.apis.consumer.ConsumeResult;
+import org.apache.rocketmq.client.apis.message.Message;
+import org.apache.rocketmq.client.apis.message.MessageView;
+import org.apache.rocketmq.client.java.message.MessageBuilderImpl;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description AsyncBatchingProducer 压缩发出的消息经 DecompressingMessageListener 还原，未压缩的消息原样交给业务
+ **/
+public class DecompressingMessageListenerTest {
+
+    private static String hotels(int count) {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"id\":").append(36934 + i)
+                .append(",\"name\":\"7天连锁酒店\",\"stars\":2,\"address\":\"静安交通路40号\",\"amenities\":[\"wifi\"]}");
+        }
+        return body.append(']').toString();
+    }
+
+    @Test
+    public void testProducerCompressesAndListenerRestores() throws Exception {
+        FakeProducer fake = new FakeProducer(0);
+        AsyncBatchingProducer producer = new AsyncBatchingProducer(fake, AsyncBatchingProducer.Options.builder()
+            .compressor(new BodyCompressor(CompressionPolicy.builder().threshold(1024).build()))
+            .build());
+        String large = hotels(50);
+        Message message = new MessageBuilderImpl()
+            .setTopic("HotelSyncTopic")
+            .setTag("update")
+            .setKeys("36934")
+            .setMessageGroup("hotel-36934")
+            .addProperty("traceId", "t-1")
+            .setBody(large.getBytes(StandardCharsets.UTF_8))
+            .build();
+        producer.send(message).get(5, TimeUnit.SECONDS);
+        producer.send(new MessageBuilderImpl().setTopic("HotelSyncTopic")
+            .setBody("small".getBytes(StandardCharsets.UTF_8)).build()).get(5, TimeUnit.SECONDS);
+        producer.close();
+
+        Message compressed = fake.getSent().get(0);
+        assertEquals("zstd", compressed.getProperties().get(BodyCodec.PROPERTY));
+        assertTrue(compressed.getBody().remaining() * 4 < large.length());
+        assertEquals("update", compressed.getTag().orElse(null));
+        assertEquals("hotel-36934", compressed.getMessageGroup().orElse(null));
+        assertEquals(Collections.singletonList("36934"), new ArrayList<>(compressed.getKeys()));
+        Message small = fake.getSent().get(1);
+        assertFalse(small.getProperties().containsKey(BodyCodec.PROPERTY));
+
+        List<String> bodies = new ArrayList<>();
+        List<Map<String, String>> properties = new ArrayList<>();
+        DecompressingMessageListener listener = new DecompressingMessageListener(view -> {
+            bodies.add(StandardCharsets.UTF_8.decode(view.getBody()).toString());
+            properties.add(view.getProperties());
+            return ConsumeResult.SUCCESS;
+        }, new BodyDecompressor());
+
+        for (Message sent : fake.getSent()) {
+            ByteBuffer body = sent.getBody().duplicate();
+            byte[] bytes = new byte[body.remaining()];
+            body.get(bytes);
+            assertEquals(ConsumeResult.SUCCESS, listener.consume(
+                new FakeSimpleConsumer.FakeMessageView("id", sent.getTopic(), bytes, sent.getProperties())));
+        }
+
+        assertEquals(large, bodies.get(0));
+        assertEquals("small", bodies.get(1));
+        assertFalse(properties.get(0).containsKey(BodyCodec.PROPERTY));
+        assertEquals("t-1", properties.get(0).get("traceId"));
+    }
+
+    @Test
+    public void testCorruptedBodyIsRedelivered() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put(BodyCodec.PROPERTY, "lz4");
+        MessageView view = new FakeSimpleConsumer.FakeMessageView("id", "HotelSyncTopic", new byte[]{100, 1, 2, 3},
+            properties);
+        List<MessageView> delivered = new ArrayList<>();
+        DecompressingMessageListener listener = new DecompressingMessageListener(m -> {
+            delivered.add(m);
+            return ConsumeResult.SUCCESS;
+        }, new BodyDecompressor());
+
+        assertEquals(ConsumeResult.FAILURE, listener.consume(view));
+        assertTrue(delivered.isEmpty());
+    }
+}
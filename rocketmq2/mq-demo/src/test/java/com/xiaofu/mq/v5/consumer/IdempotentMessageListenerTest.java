@@ -0,0 +1,77 @@
+package com.xiaofu.mq.v5.consumer;
+
+import com.xiaofu.mq.dedup.MessageDeduplicator;
+import com.xiaofu.mq.v5.FakeSimpleConsumer;
+import org.apache.rocketmq.client.apis.consumer.ConsumeResult;
+import org.apache.rocketmq.client.apis.message.MessageView;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description IdempotentMessageListener：重复投递只消费一次、失败后可重新消费、处理中的重复投递不并发执行
+ **/
+public class IdempotentMessageListenerTest {
+
+    private static MessageView message(String id) {
+        return new FakeSimpleConsumer.FakeMessageView(id, "TestTopic", "body-" + id, Collections.emptyMap());
+    }
+
+    @Test
+    public void testRedeliveryConsumedOnce() {
+        MessageDeduplicator deduplicator = new MessageDeduplicator();
+        AtomicInteger calls = new AtomicInteger();
+        IdempotentMessageListener listener = new IdempotentMessageListener(message -> {
+            // 第一次处理失败
+            return calls.incrementAndGet() == 1 ? ConsumeResult.FAILURE : ConsumeResult.SUCCESS;
+        }, deduplicator);
+
+        assertEquals(ConsumeResult.FAILURE, listener.consume(message("id-1")));
+        assertEquals(ConsumeResult.SUCCESS, listener.consume(message("id-1")));
+        assertEquals(ConsumeResult.SUCCESS, listener.consume(message("id-1")));
+        assertEquals(ConsumeResult.SUCCESS, listener.consume(message("id-1")));
+        assertEquals(2, calls.get());
+        assertEquals(2, deduplicator.getDuplicates());
+        deduplicator.close();
+    }
+
+    @Test
+    public void testConcurrentRedeliveryNotRunTwice() throws Exception {
+        MessageDeduplicator deduplicator = new MessageDeduplicator();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        IdempotentMessageListener listener = new IdempotentMessageListener(message -> {
+            calls.incrementAndGet();
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ConsumeResult.SUCCESS;
+        }, deduplicator);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+
+        Future<ConsumeResult> first = pool.submit(() -> listener.consume(message("id-2")));
+        entered.await();
+        // ack 超时后同一条消息又被投递，第一次还没处理完
+        assertEquals(ConsumeResult.FAILURE, listener.consume(message("id-2")));
+        release.countDown();
+        assertEquals(ConsumeResult.SUCCESS, first.get());
+        assertEquals(ConsumeResult.SUCCESS, listener.consume(message("id-2")));
+        assertEquals(1, calls.get());
+        pool.shutdown();
+        deduplicator.close();
+    }
+}
@@ -0,0 +1,159 @@
+package com.xiaofu.mq.v5.consumer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description MessageGroupExecutor：组内有序、空闲组回收、慢组不阻塞其它组、失败后跳过本组后续任务
+ **/
+public class MessageGroupExecutorTest {
+
+    private static MessageGroupExecutor.GroupTask task(Runnable body, AtomicInteger skipped) {
+        return new MessageGroupExecutor.GroupTask() {
+            @Override
+            public boolean run() {
+                body.run();
+                return true;
+            }
+
+            @Override
+            public void skip() {
+                skipped.incrementAndGet();
+            }
+        };
+    }
+
+    @Test
+    public void testOrderedPerGroupAndIdleGroupsReleased() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        MessageGroupExecutor executor = new MessageGroupExecutor(pool);
+        int groups = 100_000;
+        int perGroup = 5;
+        Map<Integer, List<Integer>> seen = new ConcurrentHashMap<>();
+        Map<Integer, AtomicInteger> running = new ConcurrentHashMap<>();
+        AtomicInteger overlaps = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(groups * perGroup);
+
+        for (int i = 0; i < perGroup; i++) {
+            for (int g = 0; g < groups; g++) {
+                int group = g;
+                int seq = i;
+                executor.execute("group-" + g, task(() -> {
+                    if (running.computeIfAbsent(group, k -> new AtomicInteger()).incrementAndGet() > 1) {
+                        overlaps.incrementAndGet();
+                    }
+                    seen.computeIfAbsent(group, k -> new ArrayList<>()).add(seq);
+                    running.get(group).decrementAndGet();
+                    done.countDown();
+                }, skipped));
+            }
+        }
+
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        assertEquals(0, overlaps.get());
+        for (List<Integer> sequence : seen.values()) {
+            assertEquals(Arrays.asList(0, 1, 2, 3, 4), sequence);
+        }
+        // 处理完的组不再占用 lane
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (executor.getActiveGroups() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, executor.getActiveGroups());
+        pool.shutdown();
+    }
+
+    @Test
+    public void testSlowGroupDoesNotBlockOthers() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        MessageGroupExecutor executor = new MessageGroupExecutor(pool);
+        AtomicInteger skipped = new AtomicInteger();
+        CountDownLatch slowDone = new CountDownLatch(5);
+        CountDownLatch othersDone = new CountDownLatch(1000);
+
+        for (int i = 0; i < 5; i++) {
+            executor.execute("slow", task(() -> {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                slowDone.countDown();
+            }, skipped));
+        }
+        for (int i = 0; i < 1000; i++) {
+            executor.execute("fast-" + (i % 10), task(othersDone::countDown, skipped));
+        }
+
+        // 慢组整体需要 500ms，其它组在此之前就已处理完
+        assertTrue(othersDone.await(300, TimeUnit.MILLISECONDS));
+        assertTrue(slowDone.getCount() > 0);
+        assertTrue(slowDone.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+    }
+
+    @Test
+    public void testFailureSkipsRestOfGroup() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(1);
+        MessageGroupExecutor executor = new MessageGroupExecutor(pool);
+        AtomicInteger skipped = new AtomicInteger();
+        AtomicInteger ran = new AtomicInteger();
+        CountDownLatch gate = new CountDownLatch(1);
+        // 先占住线程，保证后面的任务都排在同一个 lane 里
+        pool.execute(() -> {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        executor.execute("g", task(ran::incrementAndGet, skipped));
+        executor.execute("g", new MessageGroupExecutor.GroupTask() {
+            @Override
+            public boolean run() {
+                ran.incrementAndGet();
+                return false;
+            }
+
+            @Override
+            public void skip() {
+                skipped.incrementAndGet();
+            }
+        });
+        executor.execute("g", task(ran::incrementAndGet, skipped));
+        executor.execute("g", task(ran::incrementAndGet, skipped));
+        executor.execute("other", task(ran::incrementAndGet, skipped));
+        gate.countDown();
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (executor.getActiveGroups() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(3, ran.get());
+        assertEquals(2, skipped.get());
+
+        // lane 回收后同组的新任务正常执行
+        CountDownLatch again = new CountDownLatch(1);
+        executor.execute("g", task(again::countDown, skipped));
+        assertTrue(again.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+    }
+}
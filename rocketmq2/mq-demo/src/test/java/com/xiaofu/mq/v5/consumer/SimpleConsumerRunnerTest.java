@@ -0,0 +1,191 @@
+package com.xiaofu.mq.v5.consumer;
+
+import com.xiaofu.mq.metrics.MessagingMetrics;
+import com.xiaofu.mq.v5.FakeSimpleConsumer;
+import org.apache.rocketmq.client.apis.consumer.ConsumeResult;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description SimpleConsumerRunner：洪峰下在途有界、不可见时间自适应、失败消息重新投递、顺序消息按组保序
+ **/
+public class SimpleConsumerRunnerTest {
+
+    private static void awaitEmpty(FakeSimpleConsumer consumer, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (consumer.remaining() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testBoundedUnderFlood() throws Exception {
+        FakeSimpleConsumer consumer = new FakeSimpleConsumer("test");
+        int total = 50_000;
+        for (int i = 0; i < total; i++) {
+            consumer.publish("m" + i);
+        }
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        AtomicInteger maxBuffered = new AtomicInteger();
+        SimpleConsumerRunner[] holder = new SimpleConsumerRunner[1];
+        SimpleConsumerRunner runner = new SimpleConsumerRunner(consumer, message -> {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            maxBuffered.accumulateAndGet(holder[0].getBuffered(), Math::max);
+            concurrent.decrementAndGet();
+            return ConsumeResult.SUCCESS;
+        }, SimpleConsumerRunner.Options.builder()
+            .receivers(3).batchSize(16).maxBuffered(64).workerThreads(4).build());
+        holder[0] = runner;
+        runner.start();
+
+        awaitEmpty(consumer, 30_000);
+        runner.close();
+
+        assertEquals(total, consumer.getAcked());
+        assertEquals(total, runner.getAcked());
+        assertEquals(0, runner.getBuffered());
+        assertTrue("outstanding receives " + consumer.getMaxOutstandingReceives(),
+            consumer.getMaxOutstandingReceives() <= 3);
+        assertTrue("concurrent " + maxConcurrent.get(), maxConcurrent.get() <= 4);
+        assertTrue("buffered " + maxBuffered.get(), maxBuffered.get() <= 64);
+    }
+
+    @Test
+    public void testInvisibleDurationFollowsProcessingTime() throws Exception {
+        FakeSimpleConsumer consumer = new FakeSimpleConsumer("test");
+        for (int i = 0; i < 200; i++) {
+            consumer.publish("m" + i);
+        }
+        SimpleConsumerRunner runner = new SimpleConsumerRunner(consumer, message -> {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ConsumeResult.SUCCESS;
+        }, SimpleConsumerRunner.Options.builder()
+            .receivers(1).batchSize(4).maxBuffered(8).workerThreads(4)
+            .initialInvisibleMillis(30_000).minInvisibleMillis(50).build());
+        runner.start();
+
+        awaitEmpty(consumer, 30_000);
+        runner.close();
+
+        assertEquals(200, runner.getAcked());
+        assertEquals(0, runner.getExpired());
+        // 从初始的 30s 收敛到处理耗时附近，但不低于下限
+        long adapted = runner.getInvisibleDuration().toMillis();
+        assertTrue("invisible " + adapted, adapted >= 50 && adapted < 1000);
+        assertTrue(consumer.getLastInvisibleDuration().toMillis() < 30_000);
+    }
+
+    @Test
+    public void testFailedMessageRedelivered() throws Exception {
+        FakeSimpleConsumer consumer = new FakeSimpleConsumer("test");
+        for (int i = 0; i < 100; i++) {
+            consumer.publish("m" + i);
+        }
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        SimpleConsumerRunner runner = new SimpleConsumerRunner(consumer, message -> {
+            String body = ((FakeSimpleConsumer.FakeMessageView) message).getBodyAsString();
+            // 偶数消息第一次处理失败
+            if (Integer.parseInt(body.substring(1)) % 2 == 0 && seen.add(body)) {
+                return ConsumeResult.FAILURE;
+            }
+            return ConsumeResult.SUCCESS;
+        }, SimpleConsumerRunner.Options.builder()
+            .receivers(2).batchSize(8).maxBuffered(32).retryBackoffMillis(20).build());
+        runner.start();
+
+        awaitEmpty(consumer, 30_000);
+        runner.close();
+
+        assertEquals(50, runner.getFailed());
+        assertEquals(100, runner.getAcked());
+        assertEquals(150, runner.getReceived());
+        assertEquals(0, consumer.remaining());
+    }
+
+    @Test
+    public void testFifoGroupsInOrderAndParallel() throws Exception {
+        FakeSimpleConsumer consumer = new FakeSimpleConsumer("FIFOTopic");
+        int groups = 50;
+        int perGroup = 40;
+        for (int i = 0; i < perGroup; i++) {
+            for (int g = 0; g < groups; g++) {
+                consumer.publish(g + ":" + i, "order-" + g);
+            }
+        }
+        Map<String, Integer> next = new ConcurrentHashMap<>();
+        AtomicInteger violations = new AtomicInteger();
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        SimpleConsumerRunner runner = new SimpleConsumerRunner(consumer, message -> {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            String[] parts = ((FakeSimpleConsumer.FakeMessageView) message).getBodyAsString().split(":");
+            if (next.getOrDefault(parts[0], 0) != Integer.parseInt(parts[1])) {
+                violations.incrementAndGet();
+            }
+            next.put(parts[0], Integer.parseInt(parts[1]) + 1);
+            try {
+                // order-0 是慢组
+                Thread.sleep("0".equals(parts[0]) ? 5 : 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            concurrent.decrementAndGet();
+            return ConsumeResult.SUCCESS;
+        }, SimpleConsumerRunner.Options.builder()
+            .receivers(2).batchSize(32).maxBuffered(256).workerThreads(8).build());
+        runner.start();
+
+        awaitEmpty(consumer, 30_000);
+        runner.close();
+
+        assertEquals(0, violations.get());
+        assertEquals(groups * perGroup, runner.getAcked());
+        assertEquals(0, runner.getActiveGroups());
+        // 不同组在多个线程上并行
+        assertTrue("max concurrent " + maxConcurrent.get(), maxConcurrent.get() > 1);
+    }
+
+    @Test
+    public void testMetricsRecorded() throws Exception {
+        FakeSimpleConsumer consumer = new FakeSimpleConsumer("test");
+        for (int i = 0; i < 500; i++) {
+            consumer.publish("m" + i);
+        }
+        MessagingMetrics metrics = new MessagingMetrics("runner", 60_000);
+        SimpleConsumerRunner runner = new SimpleConsumerRunner(consumer, message -> {
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ConsumeResult.SUCCESS;
+        }, SimpleConsumerRunner.Options.builder().metrics(metrics).build());
+        runner.start();
+
+        awaitEmpty(consumer, 30_000);
+        runner.close();
+
+        assertEquals(500, metrics.getConsumed());
+        assertEquals(500, metrics.getAcked());
+        assertEquals(0, metrics.getConsumesInFlight());
+        assertEquals(0, metrics.getAcksInFlight());
+        metrics.getConsumeDuration().flush();
+        assertEquals(500, metrics.getConsumeDuration().totalCount());
+        assertTrue(metrics.getConsumeDuration().percentileMillis(50) >= 2);
+    }
+}
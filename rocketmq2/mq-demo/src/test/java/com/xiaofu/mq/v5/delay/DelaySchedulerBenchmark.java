@@ -0,0 +1,102 @@
+package com.xiaofu.mq.v5.delay;
+
+import com.xiaofu.mq.v5.FakeProducer;
+import org.apache.rocketmq.client.apis.message.Message;
+import org.apache.rocketmq.client.apis.producer.SendReceipt;
+import org.apache.rocketmq.client.java.message.MessageBuilderImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description DelayScheduler 在已有大量等待中定时消息时的调度吞吐
+ *
+ * 预先放入 pendingTimers 条 1 ~ 4 分钟后到期的消息，再测量继续 schedule 的耗时；journal 对比是否写本地日志。
+ * 触发精度见 DelaySchedulerTest.testPrecisionWithManyPendingTimers。
+ * 运行：mvn -pl rocketmq2/mq-demo test-compile 后执行 main 方法
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class DelaySchedulerBenchmark {
+
+    @Param({"0", "1000000"})
+    private int pendingTimers;
+
+    @Param({"false", "true"})
+    private boolean journal;
+
+    private FakeProducer producer;
+
+    private DelayScheduler scheduler;
+
+    private Path journalDir;
+
+    private Message message;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        producer = new FakeProducer(0);
+        DelayScheduler.Options.OptionsBuilder options = DelayScheduler.Options.builder();
+        if (journal) {
+            journalDir = Files.createTempDirectory("delay-benchmark");
+            options.journalFile(journalDir.resolve("delay.journal"));
+        }
+        scheduler = new DelayScheduler(producer, options.build());
+        message = new MessageBuilderImpl().setTopic("DelayTopic")
+            .setBody("retry".getBytes(StandardCharsets.UTF_8)).build();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < pendingTimers; i++) {
+            scheduler.schedule(message, now + 60_000 + i % 180_000);
+        }
+    }
+
+    @Benchmark
+    public CompletableFuture<SendReceipt> schedule() {
+        return scheduler.schedule(message, System.currentTimeMillis() + 60_000
+            + ThreadLocalRandom.current().nextInt(180_000));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        scheduler.close();
+        producer.close();
+        if (journalDir != null) {
+            Files.deleteIfExists(journalDir.resolve("delay.journal"));
+            Files.deleteIfExists(journalDir);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(DelaySchedulerBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
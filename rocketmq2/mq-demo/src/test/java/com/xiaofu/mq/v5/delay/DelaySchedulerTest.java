@@ -0,0 +1,201 @@
+package com.xiaofu.mq.v5.delay;
+
+import com.xiaofu.mq.v5.FakeProducer;
+import org.apache.rocketmq.client.apis.message.Message;
+import org.apache.rocketmq.client.apis.producer.SendReceipt;
+import org.apache.rocketmq.client.java.message.MessageBuilderImpl;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description DelayScheduler：按时触发、长延迟走 broker、日志恢复、失败重试，以及百万定时消息下的触发精度
+ *
+ * 百万定时消息的精度测量依赖机器负载，默认不跑，用 -Ddelay.scheduler.precision=true 开启，
+ * 定时消息数可以用 -Ddelay.scheduler.timers 调整，默认 100 万
+ **/
+public class DelaySchedulerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Message message(String body) {
+        return new MessageBuilderImpl().setTopic("DelayTopic").setTag("retry").setKeys("k-" + body)
+            .setBody(body.getBytes(StandardCharsets.UTF_8)).build();
+    }
+
+    private static void await(DelayScheduler scheduler, long sent, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (scheduler.getSent() < sent && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void testFiresNoEarlierThanDeliverAt() throws Exception {
+        FakeProducer fake = new FakeProducer(0);
+        DelayScheduler scheduler = new DelayScheduler(fake);
+        List<CompletableFuture<Long>> sentAt = new ArrayList<>();
+        List<Long> deliverAt = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 200; i++) {
+            long at = now + (i * 37) % 700;
+            deliverAt.add(at);
+            sentAt.add(scheduler.schedule(message("m" + i), at).thenApply(r -> System.currentTimeMillis()));
+        }
+
+        for (int i = 0; i < sentAt.size(); i++) {
+            long actual = sentAt.get(i).get(5, TimeUnit.SECONDS);
+            assertTrue("message " + i + " sent early", actual >= deliverAt.get(i));
+        }
+        assertEquals(200, scheduler.getSent());
+        assertEquals(0, scheduler.getPending());
+        scheduler.close();
+        fake.close();
+    }
+
+    @Test
+    public void testLongDelayGoesToBroker() throws Exception {
+        FakeProducer fake = new FakeProducer(0);
+        DelayScheduler scheduler = new DelayScheduler(fake,
+            DelayScheduler.Options.builder().brokerThresholdMillis(1000).build());
+
+        long deliverAt = System.currentTimeMillis() + 600_000;
+        scheduler.schedule(message("later"), deliverAt).get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, scheduler.getViaBroker());
+        assertEquals(0, scheduler.getPending());
+        Message sent = fake.getSent().get(0);
+        assertEquals(Long.valueOf(deliverAt), sent.getDeliveryTimestamp().orElse(null));
+        assertEquals("later", FakeProducer.body(sent));
+        assertEquals("retry", sent.getTag().orElse(null));
+        scheduler.close();
+        fake.close();
+    }
+
+    @Test
+    public void testRecoverPendingFromJournal() throws Exception {
+        Path journal = folder.getRoot().toPath().resolve("delay.journal");
+        FakeProducer first = new FakeProducer(0);
+        DelayScheduler scheduler = new DelayScheduler(first,
+            DelayScheduler.Options.builder().journalFile(journal).build());
+        for (int i = 0; i < 5; i++) {
+            scheduler.schedule(message("early" + i), Duration.ofMillis(10));
+        }
+        for (int i = 0; i < 10; i++) {
+            scheduler.schedule(message("late" + i), Duration.ofMillis(800));
+        }
+        await(scheduler, 5, 5_000);
+        scheduler.close();
+        assertEquals(5, first.getSent().size());
+
+        // 重启：已发送的不再发，未到期的继续等待并发送
+        FakeProducer second = new FakeProducer(0);
+        DelayScheduler restarted = new DelayScheduler(second,
+            DelayScheduler.Options.builder().journalFile(journal).build());
+        assertEquals(10, restarted.getPending());
+        await(restarted, 10, 5_000);
+        restarted.close();
+
+        Set<String> bodies = new HashSet<>();
+        for (Message message : second.getSent()) {
+            bodies.add(FakeProducer.body(message));
+            assertEquals("retry", message.getTag().orElse(null));
+            assertEquals("k-" + FakeProducer.body(message), message.getKeys().iterator().next());
+        }
+        assertEquals(10, bodies.size());
+        assertTrue(bodies.stream().allMatch(body -> body.startsWith("late")));
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void testSendFailureRetried() throws Exception {
+        FakeProducer fake = new FakeProducer(0);
+        AtomicBoolean failOnce = new AtomicBoolean(true);
+        fake.failWhen(message -> failOnce.getAndSet(false));
+        DelayScheduler scheduler = new DelayScheduler(fake,
+            DelayScheduler.Options.builder().retryBackoffMillis(20).build());
+
+        SendReceipt receipt = scheduler.schedule(message("flaky"), Duration.ofMillis(10)).get(5, TimeUnit.SECONDS);
+
+        assertTrue(receipt.getMessageId() != null);
+        assertEquals(1, scheduler.getRetried());
+        assertEquals(2, fake.getSent().size());
+        scheduler.close();
+        fake.close();
+    }
+
+    @Test
+    public void testManyPendingTimersAllFire() throws Exception {
+        int timers = 10_000;
+        FakeProducer fake = new FakeProducer(0);
+        DelayScheduler scheduler = new DelayScheduler(fake, DelayScheduler.Options.builder()
+            .journalFile(folder.getRoot().toPath().resolve("small.journal")).build());
+        Message message = message("tick");
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < timers; i++) {
+            scheduler.schedule(message, start + 500 + i % 200);
+        }
+        int pendingPeak = scheduler.getPending();
+        await(scheduler, timers, 10_000);
+        scheduler.close();
+
+        assertEquals(timers, pendingPeak);
+        assertEquals(timers, scheduler.getSent());
+        assertEquals(0, scheduler.getPending());
+        // 只排除明显的调度错误（漏掉一整圈时间轮），不测量精度
+        assertTrue("max lateness " + scheduler.getMaxLatenessMillis(), scheduler.getMaxLatenessMillis() < 1_000);
+        fake.close();
+    }
+
+    @Test
+    public void testPrecisionWithManyPendingTimers() throws Exception {
+        Assume.assumeTrue("set -Ddelay.scheduler.precision=true to measure", Boolean.getBoolean("delay.scheduler.precision"));
+        int timers = Integer.getInteger("delay.scheduler.timers", 1_000_000);
+        FakeProducer fake = new FakeProducer(0);
+        DelayScheduler scheduler = new DelayScheduler(fake, DelayScheduler.Options.builder()
+            .journalFile(folder.getRoot().toPath().resolve("precision.journal")).build());
+        Message message = message("tick");
+
+        long start = System.currentTimeMillis();
+        // 所有消息在 [5s, 7s) 内均匀到期，调度阶段全部处于等待状态
+        for (int i = 0; i < timers; i++) {
+            scheduler.schedule(message, start + 5_000 + i % 2_000);
+        }
+        long scheduleMillis = System.currentTimeMillis() - start;
+        int pendingPeak = scheduler.getPending();
+        await(scheduler, timers, 60_000);
+        long total = System.currentTimeMillis() - start;
+        scheduler.close();
+
+        System.out.printf("%d timers scheduled in %dms (%.0f/s), all sent after %dms, "
+                + "lateness avg %.2fms max %dms%n", timers, scheduleMillis, timers * 1000.0 / scheduleMillis,
+            total, scheduler.getAverageLatenessMillis(), scheduler.getMaxLatenessMillis());
+        assertTrue("scheduling took " + scheduleMillis + "ms", scheduleMillis < 5_000);
+        assertEquals(timers, pendingPeak);
+        assertEquals(timers, scheduler.getSent());
+        assertTrue("average lateness " + scheduler.getAverageLatenessMillis(),
+            scheduler.getAverageLatenessMillis() < 50);
+        fake.close();
+    }
+}
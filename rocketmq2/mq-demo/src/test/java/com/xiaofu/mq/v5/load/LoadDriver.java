@@ -0,0 +1,249 @@
+package com.xiaofu.mq.v5.load;
+
+import com.xiaofu.mq.metrics.LatencyRecorder;
+import com.xiaofu.mq.v5.EmbeddedRocketMQ;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.client.apis.ClientConfiguration;
+import org.apache.rocketmq.client.apis.ClientException;
+import org.apache.rocketmq.client.apis.ClientServiceProvider;
+import org.apache.rocketmq.client.apis.consumer.ConsumeResult;
+import org.apache.rocketmq.client.apis.consumer.FilterExpression;
+import org.apache.rocketmq.client.apis.consumer.PushConsumer;
+import org.apache.rocketmq.client.apis.message.Message;
+import org.apache.rocketmq.client.apis.message.MessageBuilder;
+import org.apache.rocketmq.client.apis.message.MessageView;
+import org.apache.rocketmq.client.apis.producer.Producer;
+import org.apache.rocketmq.client.apis.producer.ProducerBuilder;
+import org.apache.rocketmq.client.apis.producer.Transaction;
+import org.apache.rocketmq.client.apis.producer.TransactionResolution;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 按固定速率发送普通 / 顺序 / 定时 / 事务消息并用 PushConsumer 消费，统计吞吐和延迟分位数
+ *
+ * 发送按计划时间排队：第 i 条应在 start + i * interval 发出，发送延迟从计划时间算起。
+ * 服务端变慢导致发送线程落后时，排队等待的时间也计入延迟，不会因为少发了请求而显得延迟很低（coordinated omission）。
+ * 端到端延迟：普通、顺序、事务消息为消费时间减去消息的 bornTimestamp，定时消息为消费时间减去期望投递时间。
+ * 顺序场景下每个 messageGroup 固定由一个发送线程串行发送，消费端按组检查序号，倒序计入 orderViolations
+ **/
+@Slf4j
+public class LoadDriver {
+
+    private static final String SEQUENCE = "seq";
+
+    private final ClientServiceProvider provider = ClientServiceProvider.loadService();
+
+    private final ClientConfiguration configuration;
+
+    private final Options options;
+
+    private final byte[] body;
+
+    private final LatencyRecorder sendLatency = new LatencyRecorder(TimeUnit.DAYS.toMillis(1));
+
+    private final LatencyRecorder endToEndLatency = new LatencyRecorder(TimeUnit.DAYS.toMillis(1));
+
+    private final AtomicLong sent = new AtomicLong();
+
+    private final AtomicLong sendFailed = new AtomicLong();
+
+    private final AtomicLong received = new AtomicLong();
+
+    private final AtomicLong orderViolations = new AtomicLong();
+
+    /**
+     * messageGroup -> 已消费的最大序号
+     */
+    private final Map<String, Long> lastSequence = new ConcurrentHashMap<>();
+
+    public LoadDriver(ClientConfiguration configuration, Options options) {
+        this.configuration = configuration;
+        this.options = options;
+        this.body = new byte[options.getBodySize()];
+        ThreadLocalRandom.current().nextBytes(body);
+    }
+
+    /**
+     * 建好主题和消费组后再跑，主题类型需与场景一致
+     */
+    public static void prepare(EmbeddedRocketMQ mq, Options options) {
+        mq.createTopic(options.getTopic(), options.getScenario().getTopicType());
+        mq.createConsumerGroup(options.getConsumerGroup(), options.getTopic(),
+            options.getScenario() == Scenario.FIFO);
+    }
+
+    public LoadReport run() throws Exception {
+        long total = options.getRatePerSecond() * options.getDurationMillis() / 1000;
+        try (PushConsumer consumer = startConsumer(); Producer producer = startProducer()) {
+            long start = System.nanoTime();
+            Thread[] senders = new Thread[options.getSenderThreads()];
+            for (int i = 0; i < senders.length; i++) {
+                int index = i;
+                senders[i] = new Thread(() -> sendLoop(producer, index, total, start), "load-sender-" + i);
+                senders[i].start();
+            }
+            for (Thread sender : senders) {
+                sender.join();
+            }
+            long sendNanos = System.nanoTime() - start;
+            long drainDeadline = System.currentTimeMillis() + options.getDrainTimeoutMillis();
+            while (received.get() < sent.get() && System.currentTimeMillis() < drainDeadline) {
+                TimeUnit.MILLISECONDS.sleep(50);
+            }
+            long totalNanos = System.nanoTime() - start;
+            sendLatency.flush();
+            endToEndLatency.flush();
+            return new LoadReport(options.getScenario(), options.getRatePerSecond(), sent.get(), sendFailed.get(),
+                received.get(), orderViolations.get(), sendNanos, totalNanos, sendLatency, endToEndLatency);
+        }
+    }
+
+    private void sendLoop(Producer producer, int index, long total, long start) {
+        int threads = options.getSenderThreads();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) * threads / options.getRatePerSecond();
+        // 每个线程负责下标 index, index + threads, ...，合起来即为目标速率
+        long sequence = 0;
+        for (long i = index; i < total; i += threads, sequence++) {
+            long intended = start + (i / threads) * intervalNanos;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            try {
+                send(producer, index, sequence);
+                sent.incrementAndGet();
+            } catch (ClientException e) {
+                sendFailed.incrementAndGet();
+                log.warn("send failed, scenario={}", options.getScenario(), e);
+            }
+            sendLatency.recordNanos(System.nanoTime() - intended);
+        }
+    }
+
+    private void send(Producer producer, int senderIndex, long sequence) throws ClientException {
+        MessageBuilder builder = provider.newMessageBuilder()
+            .setTopic(options.getTopic())
+            .setTag(options.getScenario().name())
+            .setBody(body)
+            .addProperty(SEQUENCE, Long.toString(sequence));
+        switch (options.getScenario()) {
+            case FIFO:
+                // 组只归属一个发送线程，组内序号由该线程单调递增
+                int groups = Math.max(options.getMessageGroups(), options.getSenderThreads());
+                int group = senderIndex + options.getSenderThreads() * (int) (sequence % (groups / options.getSenderThreads()));
+                builder.setMessageGroup("group-" + group);
+                producer.send(builder.build());
+                break;
+            case DELAY:
+                builder.setDeliveryTimestamp(System.currentTimeMillis() + options.getDelayMillis());
+                producer.send(builder.build());
+                break;
+            case TRANSACTION:
+                Transaction transaction = producer.beginTransaction();
+                producer.send(builder.build(), transaction);
+                transaction.commit();
+                break;
+            default:
+                producer.send(builder.build());
+        }
+    }
+
+    private Producer startProducer() throws ClientException {
+        ProducerBuilder builder = provider.newProducerBuilder()
+            .setClientConfiguration(configuration)
+            .setTopics(options.getTopic());
+        if (options.getScenario() == Scenario.TRANSACTION) {
+            // 事务都在发送线程里直接提交，回查到的只可能是提交失败的，按已提交处理
+            builder.setTransactionChecker(messageView -> TransactionResolution.COMMIT);
+        }
+        return builder.build();
+    }
+
+    private PushConsumer startConsumer() throws ClientException {
+        return provider.newPushConsumerBuilder()
+            .setClientConfiguration(configuration)
+            .setConsumerGroup(options.getConsumerGroup())
+            .setSubscriptionExpressions(Collections.singletonMap(options.getTopic(), FilterExpression.SUB_ALL))
+            .setConsumptionThreadCount(options.getConsumptionThreads())
+            .setMessageListener(this::consume)
+            .build();
+    }
+
+    private ConsumeResult consume(MessageView view) {
+        long now = System.currentTimeMillis();
+        long expected = view.getDeliveryTimestamp().orElse(view.getBornTimestamp());
+        endToEndLatency.recordMillis(now - expected);
+        view.getMessageGroup().ifPresent(group -> checkOrder(group, Long.parseLong(view.getProperties().get(SEQUENCE))));
+        received.incrementAndGet();
+        return ConsumeResult.SUCCESS;
+    }
+
+    private void checkOrder(String group, long sequence) {
+        Long last = lastSequence.put(group, sequence);
+        if (last != null && sequence < last) {
+            orderViolations.incrementAndGet();
+        }
+    }
+
+    @Getter
+    public enum Scenario {
+        NORMAL(EmbeddedRocketMQ.TopicType.NORMAL),
+        FIFO(EmbeddedRocketMQ.TopicType.FIFO),
+        DELAY(EmbeddedRocketMQ.TopicType.DELAY),
+        TRANSACTION(EmbeddedRocketMQ.TopicType.TRANSACTION);
+
+        private final EmbeddedRocketMQ.TopicType topicType;
+
+        Scenario(EmbeddedRocketMQ.TopicType topicType) {
+            this.topicType = topicType;
+        }
+    }
+
+    @Getter
+    @Builder
+    public static class Options {
+        private final Scenario scenario;
+        private final String topic;
+        private final String consumerGroup;
+        /**
+         * 目标发送速率（条/秒），所有发送线程合计
+         */
+        @Builder.Default
+        private final long ratePerSecond = 200;
+        @Builder.Default
+        private final long durationMillis = 5_000;
+        @Builder.Default
+        private final int bodySize = 256;
+        /**
+         * 同步发送，线程数乘以单次发送耗时的倒数即为能达到的速率上限
+         */
+        @Builder.Default
+        private final int senderThreads = 4;
+        @Builder.Default
+        private final int consumptionThreads = 16;
+        /**
+         * 顺序场景的 messageGroup 数量，按发送线程数向下取整
+         */
+        @Builder.Default
+        private final int messageGroups = 16;
+        @Builder.Default
+        private final long delayMillis = 2_000;
+        /**
+         * 发送结束后等待消费追平的最长时间
+         */
+        @Builder.Default
+        private final long drainTimeoutMillis = 30_000;
+    }
+}
@@ -0,0 +1,84 @@
+package com.xiaofu.mq.v5.load;
+
+import com.xiaofu.mq.v5.EmbeddedRocketMQ;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 在内嵌的 RocketMQ 上跑四种消息的压测，默认低速率只做冒烟
+ *
+ * 压测时调大速率和时长，例如：
+ * mvn test -pl rocketmq2/mq-demo -am -Dtest=LoadDriverTest -DfailIfNoTests=false -Dload.rate=5000 -Dload.seconds=60 -Dload.senders=32
+ **/
+public class LoadDriverTest {
+
+    private static final long RATE = Long.getLong("load.rate", 100);
+
+    private static final long SECONDS = Long.getLong("load.seconds", 2);
+
+    private static final int SENDERS = Integer.getInteger("load.senders", 4);
+
+    private static EmbeddedRocketMQ mq;
+
+    @BeforeClass
+    public static void startBroker() throws Exception {
+        mq = EmbeddedRocketMQ.start();
+    }
+
+    @AfterClass
+    public static void stopBroker() {
+        if (mq != null) {
+            mq.close();
+        }
+    }
+
+    private static LoadReport run(LoadDriver.Scenario scenario) throws Exception {
+        String name = scenario.name().toLowerCase();
+        LoadDriver.Options options = LoadDriver.Options.builder()
+            .scenario(scenario)
+            .topic("load-" + name)
+            .consumerGroup("load-" + name + "-group")
+            .ratePerSecond(RATE)
+            .durationMillis(SECONDS * 1000)
+            .senderThreads(SENDERS)
+            .delayMillis(1_000)
+            .build();
+        LoadDriver.prepare(mq, options);
+        LoadReport report = new LoadDriver(mq.clientConfiguration(), options).run();
+        System.out.println(report);
+        assertEquals(0, report.getSendFailed());
+        assertEquals(RATE * SECONDS, report.getSent());
+        assertTrue(report.toString(), report.getReceived() >= report.getSent());
+        return report;
+    }
+
+    @Test
+    public void testNormal() throws Exception {
+        run(LoadDriver.Scenario.NORMAL);
+    }
+
+    @Test
+    public void testFifo() throws Exception {
+        LoadReport report = run(LoadDriver.Scenario.FIFO);
+        assertEquals(0, report.getOrderViolations());
+    }
+
+    @Test
+    public void testDelay() throws Exception {
+        LoadReport report = run(LoadDriver.Scenario.DELAY);
+        // 消费时间减期望投递时间，不应明显早于投递时间（时间轮精度 1 秒）
+        assertTrue(report.toString(), report.getEndToEndP50() >= -1000);
+    }
+
+    @Test
+    public void testTransaction() throws Exception {
+        run(LoadDriver.Scenario.TRANSACTION);
+    }
+}
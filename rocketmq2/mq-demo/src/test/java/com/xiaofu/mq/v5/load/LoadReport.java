@@ -0,0 +1,86 @@
+package com.xiaofu.mq.v5.load;
+
+import com.xiaofu.mq.metrics.LatencyRecorder;
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 一次压测的结果：条数、吞吐和延迟分位数（毫秒）
+ **/
+@Getter
+public class LoadReport {
+
+    private final LoadDriver.Scenario scenario;
+
+    private final long targetRate;
+
+    private final long sent;
+
+    private final long sendFailed;
+
+    private final long received;
+
+    private final long orderViolations;
+
+    /**
+     * 实际发送速率，条/秒
+     */
+    private final double sendThroughput;
+
+    /**
+     * 从开始发送到消费追平的平均消费速率，条/秒
+     */
+    private final double consumeThroughput;
+
+    private final double sendP50;
+
+    private final double sendP99;
+
+    private final double sendP999;
+
+    private final double sendMax;
+
+    private final double endToEndP50;
+
+    private final double endToEndP99;
+
+    private final double endToEndP999;
+
+    private final double endToEndMax;
+
+    LoadReport(LoadDriver.Scenario scenario, long targetRate, long sent, long sendFailed, long received,
+               long orderViolations, long sendNanos, long totalNanos, LatencyRecorder send, LatencyRecorder endToEnd) {
+        this.scenario = scenario;
+        this.targetRate = targetRate;
+        this.sent = sent;
+        this.sendFailed = sendFailed;
+        this.received = received;
+        this.orderViolations = orderViolations;
+        this.sendThroughput = sent * (double) TimeUnit.SECONDS.toNanos(1) / sendNanos;
+        this.consumeThroughput = received * (double) TimeUnit.SECONDS.toNanos(1) / totalNanos;
+        this.sendP50 = send.percentileMillis(50);
+        this.sendP99 = send.percentileMillis(99);
+        this.sendP999 = send.percentileMillis(99.9);
+        this.sendMax = send.maxMillis();
+        this.endToEndP50 = endToEnd.percentileMillis(50);
+        this.endToEndP99 = endToEnd.percentileMillis(99);
+        this.endToEndP999 = endToEnd.percentileMillis(99.9);
+        this.endToEndMax = endToEnd.maxMillis();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-11s target=%d/s sent=%d failed=%d received=%d orderViolations=%d%n"
+                + "  throughput  send=%.1f/s consume=%.1f/s%n"
+                + "  send        p50=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms%n"
+                + "  end-to-end  p50=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms",
+            scenario, targetRate, sent, sendFailed, received, orderViolations,
+            sendThroughput, consumeThroughput,
+            sendP50, sendP99, sendP999, sendMax,
+            endToEndP50, endToEndP99, endToEndP999, endToEndMax);
+    }
+}
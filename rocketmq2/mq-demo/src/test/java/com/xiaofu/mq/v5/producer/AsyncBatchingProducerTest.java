@@ -0,0 +1,241 @@
+package com.xiaofu.mq.v5.producer;
+
+import com.xiaofu.mq.v5.FakeProducer;
+import org.apache.rocketmq.client.apis.message.Message;
+import org.apache.rocketmq.client.apis.producer.SendReceipt;
+import org.apache.rocketmq.client.java.message.MessageBuilderImpl;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description 批量异步发送：按条数/linger 发出、在途上限、顺序消息组内保序
+ **/
+public class AsyncBatchingProducerTest {
+
+    private static Message message(String topic, String group, String body) {
+        MessageBuilderImpl builder = new MessageBuilderImpl();
+        builder.setTopic(topic).setBody(body.getBytes(StandardCharsets.UTF_8));
+        if (group != null) {
+            builder.setMessageGroup(group);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testFlushWhenBatchFull() throws Exception {
+        FakeProducer fake = new FakeProducer(0);
+        AsyncBatchingProducer producer = new AsyncBatchingProducer(fake,
+            AsyncBatchingProducer.Options.builder().maxBatchSize(10).lingerMillis(60_000).build());
+
+        List<CompletableFuture<SendReceipt>> futures = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            futures.add(producer.send(message("NormalTopic", null, "m" + i)));
+        }
+        CompletableFuture.allOf(futures.subList(0, 20).toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+        // 前两批满 10 条立即发出，最后 5 条还在等 linger
+        assertEquals(20, fake.getSent().size());
+        assertEquals(2, producer.getFlushes());
+        assertFalse(futures.get(24).isDone());
+
+        producer.close();
+        assertNotNull(futures.get(24).get(5, TimeUnit.SECONDS).getMessageId());
+        assertEquals(25, fake.getSent().size());
+        fake.close();
+    }
+
+    @Test
+    public void testFlushAfterLinger() throws Exception {
+        FakeProducer fake = new FakeProducer(0);
+        AsyncBatchingProducer producer = new AsyncBatchingProducer(fake,
+            AsyncBatchingProducer.Options.builder().maxBatchSize(100).lingerMillis(20).build());
+
+        CompletableFuture<SendReceipt> future = producer.send(message("NormalTopic", null, "alone"));
+
+        assertNotNull(future.get(5, TimeUnit.SECONDS));
+        assertEquals(1, producer.getFlushes());
+        producer.close();
+        fake.close();
+    }
+
+    @Test
+    public void testInFlightBounded() throws Exception {
+        FakeProducer fake = new FakeProducer(5);
+        AsyncBatchingProducer producer = new AsyncBatchingProducer(fake,
+            AsyncBatchingProducer.Options.builder().maxBatchSize(4).maxInFlight(4).lingerMillis(1).build());
+
+        List<CompletableFuture<SendReceipt>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(producer.send(message("NormalTopic", null, "m" + i)));
+        }
+        producer.close();
+
+        for (CompletableFuture<SendReceipt> future : futures) {
+            assertTrue(future.isDone());
+        }
+        assertEquals(200, fake.getSent().size());
+        assertTrue("max in flight " + fake.getMaxInFlight(), fake.getMaxInFlight() <= 4);
+        assertEquals(0, producer.getInFlight());
+        fake.close();
+    }
+
+    @Test
+    public void testFifoPerMessageGroup() throws Exception {
+        FakeProducer fake = new FakeProducer(3);
+        AsyncBatchingProducer producer = new AsyncBatchingProducer(fake,
+            AsyncBatchingProducer.Options.builder().maxBatchSize(16).maxInFlight(64).lingerMillis(2).build());
+
+        int groups = 20;
+        int perGroup = 100;
+        List<CompletableFuture<SendReceipt>> futures = new ArrayList<>();
+        for (int i = 0; i < perGroup; i++) {
+            for (int g = 0; g < groups; g++) {
+                futures.add(producer.send(message("FIFOTopic", "order-" + g, g + ":" + i)));
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        producer.close();
+
+        // 每组到达 sendAsync 的顺序与提交顺序一致，且同组同时最多一条在途
+        Map<String, Integer> next = new HashMap<>();
+        for (Message sent : fake.getSent()) {
+            String[] parts = FakeProducer.body(sent).split(":");
+            int expected = next.getOrDefault(parts[0], 0);
+            assertEquals("group " + parts[0], expected, Integer.parseInt(parts[1]));
+            next.put(parts[0], expected + 1);
+        }
+        assertEquals(groups * perGroup, fake.getSent().size());
+        assertEquals(1, fake.getMaxGroupInFlight());
+        fake.close();
+    }
+
+    @Test
+    public void testFailureStopsRestOfGroupRound() throws Exception {
+        FakeProducer fake = new FakeProducer(1);
+        fake.failWhen(m -> "a:2".equals(FakeProducer.body(m)));
+        AsyncBatchingProducer producer = new AsyncBatchingProducer(fake,
+            AsyncBatchingProducer.Options.builder().maxBatchSize(10).lingerMillis(60_000).build());
+
+        List<CompletableFuture<SendReceipt>> groupA = new ArrayList<>();
+        List<CompletableFuture<SendReceipt>> groupB = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            groupA.add(producer.send(message("FIFOTopic", "a", "a:" + i)));
+            groupB.add(producer.send(message("FIFOTopic", "b", "b:" + i)));
+        }
+        producer.flush();
+
+        assertNotNull(groupA.get(1).get(5, TimeUnit.SECONDS));
+        for (int i = 2; i < 5; i++) {
+            try {
+                groupA.get(i).get(5, TimeUnit.SECONDS);
+                fail("a:" + i + " should fail after a:2");
+            } catch (ExecutionException expected) {
+                assertTrue(expected.getCause().getMessage().contains("a:2"));
+            }
+        }
+        // a:3、a:4 没有发出去，其它组不受影响
+        for (CompletableFuture<SendReceipt> future : groupB) {
+            assertNotNull(future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(8, fake.getSent().size());
+
+        // 失败只影响这一轮，同一个 producer 上同组后续消息重新开始
+        CompletableFuture<SendReceipt> next = producer.send(message("FIFOTopic", "a", "a:5"));
+        producer.flush();
+        assertNotNull(next.get(5, TimeUnit.SECONDS));
+        assertEquals("a:5", FakeProducer.body(fake.getSent().get(fake.getSent().size() - 1)));
+        // 调用方的 future 先于许可归还完成，close 等完在途请求后再看
+        producer.close();
+        assertEquals(0, producer.getInFlight());
+        fake.close();
+    }
+
+    @Test
+    public void testOrderedSenderWaitsForPermitOutsideBatchLock() throws Exception {
+        CompletableFuture<Void> gate = new CompletableFuture<>();
+        FakeProducer fake = new FakeProducer(0) {
+            @Override
+            public CompletableFuture<SendReceipt> sendAsync(Message message) {
+                return gate.thenCompose(v -> super.sendAsync(message));
+            }
+        };
+        AsyncBatchingProducer producer = new AsyncBatchingProducer(fake,
+            AsyncBatchingProducer.Options.builder().maxBatchSize(2).maxInFlight(2).lingerMillis(60_000).build());
+        List<CompletableFuture<SendReceipt>> futures = new ArrayList<>();
+        futures.add(producer.send(message("FIFOTopic", "a", "a:0")));
+        futures.add(producer.send(message("FIFOTopic", "a", "a:1")));
+        assertEquals(2, producer.getInFlight());
+
+        // 许可用完，后续发送阻塞，但不能占着批次锁
+        CompletableFuture<Void> sender = CompletableFuture.runAsync(() -> {
+            futures.add(producer.send(message("FIFOTopic", "a", "a:2")));
+            futures.add(producer.send(message("FIFOTopic", "a", "a:3")));
+        });
+        Thread.sleep(200);
+        assertFalse(sender.isDone());
+        CompletableFuture.runAsync(producer::flush).get(5, TimeUnit.SECONDS);
+
+        gate.complete(null);
+        sender.get(5, TimeUnit.SECONDS);
+        producer.close();
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(futures.get(i).get(5, TimeUnit.SECONDS));
+            assertEquals("a:" + i, FakeProducer.body(fake.getSent().get(i)));
+        }
+        fake.close();
+    }
+
+    @Test
+    public void testLingerThreadNeverBlocksOnMixedTraffic() throws Exception {
+        FakeProducer fake = new FakeProducer(0);
+        AsyncBatchingProducer producer = new AsyncBatchingProducer(fake,
+            AsyncBatchingProducer.Options.builder().maxBatchSize(4).maxInFlight(4).lingerMillis(50).build());
+        List<CompletableFuture<SendReceipt>> futures = new CopyOnWriteArrayList<>();
+        // 普通批次先开始计时，先到期
+        futures.add(producer.send(message("NormalTopic", null, "n:0")));
+        // 8 条顺序消息多于 maxInFlight，入批时占满许可，后 4 条在 send 里等前面的批次计时发出
+        CompletableFuture<Void> sender = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 8; i++) {
+                futures.add(producer.send(message("FIFOTopic", "g" + i % 4, "g" + i % 4 + ":" + i / 4)));
+            }
+        });
+
+        // 不调用 flush/close，全靠计时发出
+        sender.get(5, TimeUnit.SECONDS);
+        for (CompletableFuture<SendReceipt> future : futures) {
+            assertNotNull(future.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(9, fake.getSent().size());
+        Map<String, Integer> next = new HashMap<>();
+        for (Message sent : fake.getSent()) {
+            String[] parts = FakeProducer.body(sent).split(":");
+            if (parts[0].startsWith("g")) {
+                int expected = next.getOrDefault(parts[0], 0);
+                assertEquals("group " + parts[0], expected, Integer.parseInt(parts[1]));
+                next.put(parts[0], expected + 1);
+            }
+        }
+        // 调用方的 future 先于许可归还完成，close 等完在途请求后再看
+        producer.close();
+        assertEquals(0, producer.getInFlight());
+        fake.close();
+    }
+}
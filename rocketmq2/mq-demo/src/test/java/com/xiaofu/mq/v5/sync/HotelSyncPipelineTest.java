@@ -0,0 +1,278 @@
+package com.xiaofu.mq.v5.sync;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.xiaofu.es.HotelBulkIndexer;
+import com.xiaofu.es.StubEsServer;
+import com.xiaofu.mq.hotel.HotelEvent;
+import com.xiaofu.mq.schema.Envelopes;
+import com.xiaofu.mq.v5.EmbeddedRocketMQ;
+import com.xiaofu.mq.v5.FakeSimpleConsumer;
+import org.apache.rocketmq.client.apis.ClientServiceProvider;
+import org.apache.rocketmq.client.apis.consumer.ConsumeResult;
+import org.apache.rocketmq.client.apis.consumer.PushConsumer;
+import org.apache.rocketmq.client.apis.producer.Producer;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description HotelSyncPipeline：窗口内按酒店合并成一次 bulk、写入成功后才确认、旧版本直接确认，最后在内嵌 RocketMQ 上端到端跑一遍
+ **/
+public class HotelSyncPipelineTest {
+
+    private StubEsServer server;
+
+    private RestHighLevelClient client;
+
+    private HotelBulkIndexer indexer;
+
+    /**
+     * 内存里的 hotel 索引，按 bulk 请求里的 index / update(doc_as_upsert) / delete 依次执行
+     */
+    private final Map<String, JSONObject> docs = new ConcurrentHashMap<>();
+
+    private final List<String> bulks = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * 这些文档 id 的写入返回 400（不重试）
+     */
+    private final Set<String> rejected = ConcurrentHashMap.newKeySet();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StubEsServer();
+        client = server.newClient();
+        indexer = new HotelBulkIndexer(client);
+        server.on("/_bulk", (method, path, query, body) -> {
+            String ndjson = new String(body, StandardCharsets.UTF_8);
+            bulks.add(ndjson);
+            String[] lines = ndjson.split("\n");
+            StringBuilder items = new StringBuilder();
+            boolean errors = false;
+            for (int i = 0; i < lines.length; i++) {
+                JSONObject line = JSON.parseObject(lines[i]);
+                String op = line.keySet().iterator().next();
+                String id = line.getJSONObject(op).getString("_id");
+                JSONObject source = "delete".equals(op) ? null : JSON.parseObject(lines[++i]);
+                int status = rejected.contains(id) ? 400 : 200;
+                if (status == 200) {
+                    apply(op, id, source);
+                }
+                errors |= status >= 300;
+                items.append(items.length() == 0 ? "" : ",").append(item(op, id, status));
+            }
+            return StubEsServer.Response.ok("{\"took\":1,\"errors\":" + errors + ",\"items\":[" + items + "]}");
+        });
+    }
+
+    private void apply(String op, String id, JSONObject source) {
+        if ("delete".equals(op)) {
+            docs.remove(id);
+        } else if ("index".equals(op)) {
+            docs.put(id, source);
+        } else {
+            docs.computeIfAbsent(id, k -> new JSONObject()).putAll(source.getJSONObject("doc"));
+        }
+    }
+
+    private static String item(String op, String id, int status) {
+        if (status < 300) {
+            String result = "delete".equals(op) ? "deleted" : "updated";
+            return "{\"" + op + "\":{\"_index\":\"hotel\",\"_type\":\"_doc\",\"_id\":\"" + id + "\",\"_version\":2,"
+                + "\"result\":\"" + result + "\",\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0},"
+                + "\"_seq_no\":1,\"_primary_term\":1,\"status\":" + status + "}}";
+        }
+        return "{\"" + op + "\":{\"_index\":\"hotel\",\"_type\":\"_doc\",\"_id\":\"" + id + "\",\"status\":" + status
+            + ",\"error\":{\"type\":\"mapper_parsing_exception\",\"reason\":\"stub\"}}}";
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        indexer.close();
+        client.close();
+        server.close();
+    }
+
+    private static HotelEvent event(long id, long version) {
+        HotelEvent event = new HotelEvent();
+        event.setId(id);
+        event.setVersion(version);
+        return event;
+    }
+
+    private static HotelEvent deleted(long id, long version) {
+        HotelEvent event = event(id, version);
+        event.setDeleted(true);
+        return event;
+    }
+
+    private static FakeSimpleConsumer.FakeMessageView message(HotelEvent event) {
+        return new FakeSimpleConsumer.FakeMessageView(event.getId() + "-" + event.getVersion(), "HotelSyncTopic",
+            Envelopes.hotelEvent().encode(event), Collections.emptyMap());
+    }
+
+    /**
+     * 每条事件一个消费线程，模拟 PushConsumer 并发投递
+     */
+    private static List<ConsumeResult> consumeConcurrently(HotelSyncPipeline pipeline, List<HotelEvent> events)
+        throws Exception {
+        ExecutorService consumers = Executors.newFixedThreadPool(events.size());
+        try {
+            List<Future<ConsumeResult>> futures = new ArrayList<>();
+            for (HotelEvent event : events) {
+                futures.add(consumers.submit(() -> pipeline.consume(message(event))));
+            }
+            List<ConsumeResult> results = new ArrayList<>();
+            for (Future<ConsumeResult> future : futures) {
+                results.add(future.get(10, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            consumers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMergesWindowIntoOneBulk() throws Exception {
+        docs.put("3", JSON.parseObject("{\"id\":3,\"name\":\"汉庭酒店\",\"stars\":2}"));
+        docs.put("4", JSON.parseObject("{\"id\":4,\"name\":\"全季酒店\",\"stars\":3,\"price\":300.0}"));
+        HotelEvent created = event(1, 1);
+        created.setName("如家酒店");
+        created.setStars(2);
+        HotelEvent priced = event(1, 2);
+        priced.setPrice(199.0);
+        HotelEvent upgraded = event(1, 3);
+        upgraded.setStars(4);
+        HotelEvent moved = event(2, 1);
+        moved.setLat(31.2);
+        moved.setLon(121.4);
+        HotelEvent reopened = event(4, 2);
+        reopened.setName("全季酒店(新店)");
+
+        HotelSyncPipeline pipeline = new HotelSyncPipeline(indexer, HotelSyncPipeline.Options.builder()
+            .windowMillis(300).build());
+        // 乱序到达：升级在创建之前，删除在重开之后
+        List<ConsumeResult> results = consumeConcurrently(pipeline,
+            Arrays.asList(upgraded, created, priced, moved, deleted(3, 5), reopened, deleted(4, 1)));
+        pipeline.close();
+
+        assertEquals(Collections.nCopies(7, ConsumeResult.SUCCESS), results);
+        assertEquals(1, bulks.size());
+        assertEquals(1, pipeline.getWindows());
+        assertEquals(3, pipeline.getMerged());
+        JSONObject hotel1 = docs.get("1");
+        assertEquals("如家酒店", hotel1.getString("name"));
+        assertEquals(4, hotel1.getIntValue("stars"));
+        assertEquals(199.0, hotel1.getDoubleValue("price"), 0);
+        assertEquals(31.2, docs.get("2").getJSONObject("location").getDoubleValue("lat"), 0);
+        assertNull(docs.get("3"));
+        // 先删后建，旧文档的字段不能留下
+        assertEquals("全季酒店(新店)", docs.get("4").getString("name"));
+        assertFalse(docs.get("4").containsKey("price"));
+    }
+
+    @Test
+    public void testFailedHotelIsNotAcked() throws Exception {
+        rejected.add("2");
+        HotelSyncPipeline pipeline = new HotelSyncPipeline(indexer, HotelSyncPipeline.Options.builder()
+            .windowMillis(300).build());
+
+        List<ConsumeResult> results = consumeConcurrently(pipeline,
+            Arrays.asList(event(1, 1), event(2, 1), event(2, 2), event(3, 1)));
+
+        assertEquals(Arrays.asList(ConsumeResult.SUCCESS, ConsumeResult.FAILURE, ConsumeResult.FAILURE,
+            ConsumeResult.SUCCESS), results);
+        // 重新投递后写入成功
+        rejected.clear();
+        assertEquals(ConsumeResult.SUCCESS, pipeline.consume(message(event(2, 2))));
+        assertTrue(docs.containsKey("2"));
+        pipeline.close();
+    }
+
+    @Test
+    public void testStaleEventsAreAckedWithoutWriting() throws Exception {
+        HotelSyncPipeline pipeline = new HotelSyncPipeline(indexer, HotelSyncPipeline.Options.builder()
+            .windowMillis(10).build());
+        HotelEvent current = event(1, 5);
+        current.setName("如家酒店");
+        assertEquals(ConsumeResult.SUCCESS, pipeline.consume(message(current)));
+
+        HotelEvent old = event(1, 4);
+        old.setName("旧名字");
+        assertEquals(ConsumeResult.SUCCESS, pipeline.consume(message(old)));
+        assertEquals(ConsumeResult.SUCCESS, pipeline.consume(message(current)));
+        pipeline.close();
+
+        assertEquals(1, bulks.size());
+        assertEquals(2, pipeline.getStale());
+        assertEquals("如家酒店", docs.get("1").getString("name"));
+        // 关闭后不再接收
+        assertEquals(ConsumeResult.FAILURE, pipeline.consume(message(event(2, 1))));
+    }
+
+    @Test
+    public void testSyncThroughEmbeddedBroker() throws Exception {
+        String topic = "HotelSyncTopic";
+        String group = "hotel-sync-group";
+        // 先让 hotel 7 写入失败，其余写完后放行，验证失败的消息被 broker 重新投递
+        rejected.add("7");
+        try (EmbeddedRocketMQ mq = EmbeddedRocketMQ.start()) {
+            mq.createTopic(topic, EmbeddedRocketMQ.TopicType.NORMAL);
+            mq.createConsumerGroup(group, topic, false);
+            HotelSyncPipeline pipeline = new HotelSyncPipeline(indexer, HotelSyncPipeline.Options.builder()
+                .maxBatchSize(16).build());
+            ClientServiceProvider provider = ClientServiceProvider.loadService();
+            try (Producer producer = provider.newProducerBuilder()
+                .setClientConfiguration(mq.clientConfiguration()).setTopics(topic).build();
+                 PushConsumer consumer = pipeline.subscribe(mq.clientConfiguration(), group, topic)) {
+                for (long id = 1; id <= 10; id++) {
+                    for (long version = 1; version <= 3; version++) {
+                        HotelEvent event = event(id, version);
+                        event.setName("酒店" + id + "-v" + version);
+                        producer.send(provider.newMessageBuilder().setTopic(topic).setKeys(String.valueOf(id))
+                            .setBody(Envelopes.hotelEvent().encode(event)).build());
+                    }
+                }
+                long deadline = System.currentTimeMillis() + 60_000;
+                while (docs.size() < 9 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(100);
+                }
+                assertEquals(9, docs.size());
+                rejected.clear();
+                while (docs.size() < 10 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(100);
+                }
+            } finally {
+                pipeline.close();
+            }
+        }
+        assertEquals(10, docs.size());
+        for (long id = 1; id <= 10; id++) {
+            assertEquals("酒店" + id + "-v3", docs.get(String.valueOf(id)).getString("name"));
+        }
+        assertTrue(bulks.size() < 30);
+    }
+}
@@ -0,0 +1,170 @@
+package com.xiaofu.mq.v5.transaction;
+
+import com.xiaofu.mq.v5.FakeSimpleConsumer;
+import org.apache.rocketmq.client.apis.message.MessageView;
+import org.apache.rocketmq.client.apis.producer.TransactionResolution;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author xiaofu
+ * @date 2026/10/18
+ * @program middle_ware_group
+ * @description TransactionStateRegistry：本地命中、回查风暴下合并查询、过期、日志恢复
+ **/
+public class TransactionStateRegistryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static MessageView halfMessage(String orderId) {
+        Map<String, String> properties = orderId == null
+            ? Collections.emptyMap() : Collections.singletonMap("OrderId", orderId);
+        return new FakeSimpleConsumer.FakeMessageView(orderId + "-msg", "TestTopic", "messageBody", properties);
+    }
+
+    /**
+     * 模拟订单库：偶数订单已提交，奇数订单已回滚，负数订单不存在
+     */
+    private static class OrderRepository implements TransactionStateRepository {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public Map<String, TransactionResolution> findStates(Collection<String> keys) throws Exception {
+            calls.incrementAndGet();
+            // 模拟一次数据库往返
+            Thread.sleep(5);
+            Map<String, TransactionResolution> states = new HashMap<>();
+            for (String key : keys) {
+                long id = Long.parseLong(key);
+                if (id >= 0) {
+                    states.put(key, id % 2 == 0 ? TransactionResolution.COMMIT : TransactionResolution.ROLLBACK);
+                }
+            }
+            return states;
+        }
+    }
+
+    @Test
+    public void testRecordedStateAnsweredLocally() throws Exception {
+        OrderRepository repository = new OrderRepository();
+        TransactionStateRegistry registry = new TransactionStateRegistry(repository);
+
+        registry.record("1", TransactionResolution.COMMIT);
+        registry.record("2", TransactionResolution.ROLLBACK);
+
+        assertEquals(TransactionResolution.COMMIT, registry.check(halfMessage("1")));
+        assertEquals(TransactionResolution.ROLLBACK, registry.check(halfMessage("2")));
+        assertEquals(TransactionResolution.ROLLBACK, registry.check(halfMessage(null)));
+        assertEquals(0, repository.calls.get());
+        assertEquals(2, registry.getHits());
+        registry.close();
+    }
+
+    @Test
+    public void testMissesBatchedDuringCheckStorm() throws Exception {
+        OrderRepository repository = new OrderRepository();
+        TransactionStateRegistry registry = new TransactionStateRegistry(repository,
+            TransactionStateRegistry.Options.builder().maxBatchSize(100).build());
+        ExecutorService checkers = Executors.newFixedThreadPool(32);
+
+        int orders = 2000;
+        List<Future<TransactionResolution>> results = new ArrayList<>();
+        for (int i = 0; i < orders; i++) {
+            // 每个订单被回查两次，同一个 key 只查一次库
+            String orderId = String.valueOf(i / 2);
+            results.add(checkers.submit(() -> registry.check(halfMessage(orderId))));
+        }
+        for (int i = 0; i < orders; i++) {
+            TransactionResolution expected = (i / 2) % 2 == 0 ? TransactionResolution.COMMIT
+                : TransactionResolution.ROLLBACK;
+            assertEquals(expected, results.get(i).get());
+        }
+        checkers.shutdown();
+
+        System.out.printf("%d checks -> %d repository calls for %d keys%n", orders, repository.calls.get(),
+            registry.getLookups());
+        assertTrue("repository calls " + repository.calls.get(), repository.calls.get() <= orders / 20);
+        assertTrue(registry.getLookups() <= orders / 2 + registry.getHits());
+        // 查到的结果已缓存
+        int before = repository.calls.get();
+        assertEquals(TransactionResolution.COMMIT, registry.check(halfMessage("0")));
+        assertEquals(before, repository.calls.get());
+        registry.close();
+    }
+
+    @Test
+    public void testUnknownNotCached() throws Exception {
+        OrderRepository repository = new OrderRepository();
+        TransactionStateRegistry registry = new TransactionStateRegistry(repository);
+
+        assertEquals(TransactionResolution.UNKNOWN, registry.check(halfMessage("-1")));
+        assertEquals(TransactionResolution.UNKNOWN, registry.check(halfMessage("-1")));
+        assertEquals(2, repository.calls.get());
+        assertNull(registry.get("-1"));
+
+        TransactionStateRegistry failing = new TransactionStateRegistry(keys -> {
+            throw new IllegalStateException("db down");
+        });
+        assertEquals(TransactionResolution.UNKNOWN, failing.check(halfMessage("4")));
+        registry.close();
+        failing.close();
+    }
+
+    @Test
+    public void testBoundedAndExpiring() throws Exception {
+        OrderRepository repository = new OrderRepository();
+        TransactionStateRegistry registry = new TransactionStateRegistry(repository,
+            TransactionStateRegistry.Options.builder().maxEntries(1600).ttlMillis(200).build());
+
+        for (int i = 0; i < 10_000; i++) {
+            registry.record(String.valueOf(i), TransactionResolution.COMMIT);
+        }
+        assertTrue("size " + registry.size(), registry.size() <= 1600);
+        assertEquals(TransactionResolution.COMMIT, registry.get("9999"));
+
+        Thread.sleep(250);
+        assertNull(registry.get("9999"));
+        // 过期后回查走数据库
+        assertEquals(TransactionResolution.ROLLBACK, registry.check(halfMessage("9999")));
+        assertEquals(1, repository.calls.get());
+        registry.close();
+    }
+
+    @Test
+    public void testRecoverFromLog() throws Exception {
+        Path logFile = folder.getRoot().toPath().resolve("tx-state.log");
+        OrderRepository repository = new OrderRepository();
+        TransactionStateRegistry registry = new TransactionStateRegistry(repository,
+            TransactionStateRegistry.Options.builder().logFile(logFile).build());
+        for (int i = 0; i < 1000; i++) {
+            registry.record("r" + i, i % 3 == 0 ? TransactionResolution.ROLLBACK : TransactionResolution.COMMIT);
+        }
+        registry.close();
+
+        TransactionStateRegistry restarted = new TransactionStateRegistry(repository,
+            TransactionStateRegistry.Options.builder().logFile(logFile).build());
+        assertEquals(1000, restarted.size());
+        assertEquals(TransactionResolution.ROLLBACK, restarted.check(halfMessage("r3")));
+        assertEquals(TransactionResolution.COMMIT, restarted.check(halfMessage("r4")));
+        assertEquals(0, repository.calls.get());
+        restarted.close();
+    }
+}
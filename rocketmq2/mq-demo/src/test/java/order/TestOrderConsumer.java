@@ -1,5 +1,6 @@
 package order;
 
+import com.xiaofu.mq.payload.Payload;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.client.apis.ClientConfiguration;
 import org.apache.rocketmq.client.apis.ClientException;
@@ -12,7 +13,6 @@ import org.apache.rocketmq.client.apis.consumer.SimpleConsumer;
 import org.apache.rocketmq.client.apis.message.MessageView;
 import org.junit.Test;
 
-import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
@@ -46,10 +46,10 @@ public class TestOrderConsumer {
             .setConsumerGroup("FIFOGroup")
             .setSubscriptionExpressions(Collections.singletonMap(fifoTopic, filterExpression))
             .setMessageListener(messageView -> {
-                // 处理消息并返回消费结果。
-                String str = StandardCharsets.UTF_8.decode(messageView.getBody()).toString();
+                // 处理消息并返回消费结果。消息体不先解码成 String，日志级别关闭时不会产生拷贝
+                Payload payload = Payload.of(messageView.getBody());
 
-                log.info("Consume message successfully, messageId={},content={}", messageView.getMessageId(), str);
+                log.info("Consume message successfully, messageId={},content={}", messageView.getMessageId(), payload);
                 try {
                     Thread.sleep(1000);
                 } catch (InterruptedException e) {